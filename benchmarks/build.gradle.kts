@@ -0,0 +1,43 @@
+plugins {
+    java
+    id(Plugins.kotlinJvm)
+    id(Plugins.jmh) version Versions.jmhPlugin
+}
+
+java {
+    sourceCompatibility = Config.compileSourceVersion
+    targetCompatibility = Config.compileTargetVersion
+}
+
+// Adapters are Android libraries, so their sources are compiled here against the in-process
+// stand-in of CxenseSdk from src/main. Android-only files are left out.
+sourceSets {
+    main {
+        java {
+            srcDir("../rxjava2-adapter/src/main/java")
+            exclude("**/SegmentStore.*", "**/ActiveTimeTracker.*", "**/ExternalDataSync.*", "**/AdaptiveDispatchController.*", "**/RxCxense.kt")
+        }
+        withConvention(org.jetbrains.kotlin.gradle.plugin.KotlinSourceSet::class) {
+            kotlin.srcDir("../coroutine-adapter/src/main/java")
+            kotlin.exclude("**/SegmentStore.*", "**/ActiveTimeTracker.*", "**/ExternalDataSync.*", "**/AdaptiveDispatchController.*", "**/RxCxense.kt")
+        }
+    }
+}
+
+tasks.withType<org.jetbrains.kotlin.gradle.tasks.KotlinCompile> {
+    kotlinOptions.jvmTarget = "1.8"
+}
+
+dependencies {
+    implementation(kotlin("stdlib-jdk8", Versions.kotlin))
+    implementation(Libs.annotation)
+    implementation(Libs.jetbrainsAnnotations)
+    implementation(Libs.rxJava)
+    implementation(Libs.kotlinCoroutinesCore)
+}
+
+jmh {
+    jmhVersion.set(Versions.jmh)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+}
@@ -0,0 +1,77 @@
+package com.cxense.benchmarks;
+
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.model.Event;
+import com.cxense.rxjava2adapter.EventSink;
+import com.cxense.rxjava2adapter.RxCxense;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+
+/**
+ * Event push throughput for different batch sizes. Scores are per pushed event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(PushEventsBenchmark.EVENTS)
+public class PushEventsBenchmark {
+    static final int EVENTS = 1000;
+
+    @Param({"1", "10", "50", "200"})
+    public int batchSize;
+
+    private Event[][] batches;
+    private Event[] events;
+    private EventSink sink;
+
+    @Setup
+    public void setUp() {
+        CxenseSdk.getInstance().setCallbackExecutor(null);
+        events = new Event[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            events[i] = new Event("event" + i);
+        }
+        int count = (EVENTS + batchSize - 1) / batchSize;
+        batches = new Event[count][];
+        for (int i = 0; i < count; i++) {
+            int from = i * batchSize;
+            batches[i] = new Event[Math.min(batchSize, EVENTS - from)];
+            System.arraycopy(events, from, batches[i], 0, batches[i].length);
+        }
+        sink = new EventSink.Builder()
+                .maxBatchSize(batchSize)
+                .maxDelay(1, TimeUnit.SECONDS)
+                .bufferCapacity(EVENTS)
+                .build();
+    }
+
+    @Benchmark
+    public void pushEvents() {
+        for (Event[] batch : batches) {
+            RxCxense.pushEvents(batch).blockingAwait();
+        }
+    }
+
+    @Benchmark
+    public void eventSink() {
+        sink.push(Flowable.fromArray(events)).blockingAwait();
+    }
+}
@@ -0,0 +1,187 @@
+package com.cxense.benchmarks;
+
+import com.cxense.cxensesdk.CxenseConstants;
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.LoadCallback;
+import com.cxense.cxensesdk.model.Event;
+import com.cxense.cxensesdk.model.UserExternalData;
+import com.cxense.cxensesdk.model.UserIdentity;
+import com.cxense.cxensesdk.model.WidgetContext;
+import com.cxense.cxensesdk.model.WidgetItem;
+import com.cxense.rxjava2adapter.AdapterMetrics;
+import com.cxense.rxjava2adapter.RxCxense;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of bridging SDK callbacks into RxJava: every {@link RxCxense} entry point against the stand-in SDK,
+ * which completes on the calling thread. {@link #baseline} is the same call with a bare callback.
+ * {@link #metrics} shows the overhead of {@link AdapterMetrics}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RxAdapterBenchmark {
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    private final List<String> siteGroupIds = Collections.singletonList("1234567890");
+    private UserIdentity identity;
+    private List<UserIdentity> identities;
+    private WidgetContext widgetContext;
+    private WidgetItem item;
+    private UserExternalData externalData;
+    private Event event;
+    private RxCxense rxCxense;
+
+    @Setup
+    public void setUp() {
+        CxenseSdk.getInstance().setCallbackExecutor(null);
+        RxCxense.setMetrics(metrics ? new AdapterMetrics() : null);
+        identity = new UserIdentity("cxd", "some_user_id");
+        identities = Collections.singletonList(identity);
+        widgetContext = new WidgetContext.Builder("https://example.com/article").build();
+        item = new WidgetItem("Title", "https://example.com/article", "https://example.com/click");
+        externalData = new UserExternalData.Builder(identity).build();
+        event = new Event("event");
+        rxCxense = new RxCxense();
+    }
+
+    @Benchmark
+    public void baseline(final Blackhole blackhole) {
+        CxenseSdk.getInstance().getUserSegmentIds(identities, siteGroupIds, new LoadCallback<List<String>>() {
+            @Override
+            public void onSuccess(List<String> data) {
+                blackhole.consume(data);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                blackhole.consume(throwable);
+            }
+        });
+    }
+
+    @Benchmark
+    public void trackClickUrl() {
+        RxCxense.trackClick("https://example.com/click").blockingAwait();
+    }
+
+    @Benchmark
+    public void trackClickItem() {
+        RxCxense.trackClick(item).blockingAwait();
+    }
+
+    @Benchmark
+    public Object loadWidgetRecommendations() {
+        return RxCxense.loadWidgetRecommendations("widget", widgetContext).blockingGet();
+    }
+
+    @Benchmark
+    public Object getUserId() {
+        return RxCxense.getUserId().blockingGet();
+    }
+
+    @Benchmark
+    public void setUserId() {
+        RxCxense.setUserId("0123456789abcdef").blockingAwait();
+    }
+
+    @Benchmark
+    public Object getDefaultUserId() {
+        return RxCxense.getDefaultUserId().blockingGet();
+    }
+
+    @Benchmark
+    public Object isLimitAdTrackingEnabled() {
+        return RxCxense.isLimitAdTrackingEnabled().blockingGet();
+    }
+
+    @Benchmark
+    public Object getConfiguration() {
+        return RxCxense.getConfiguration().blockingGet();
+    }
+
+    @Benchmark
+    public Object getUserSegmentIds() {
+        return RxCxense.getUserSegmentIds(identities, siteGroupIds).blockingGet();
+    }
+
+    @Benchmark
+    public Object getUser() {
+        return RxCxense.getUser(identity).blockingGet();
+    }
+
+    @Benchmark
+    public Object getUserExternalData() {
+        return RxCxense.getUserExternalData("cxd").blockingGet();
+    }
+
+    @Benchmark
+    public void setUserExternalData() {
+        RxCxense.setUserExternalData(externalData).blockingAwait();
+    }
+
+    @Benchmark
+    public void deleteUserExternalData() {
+        RxCxense.deleteUserExternalData(identity).blockingAwait();
+    }
+
+    @Benchmark
+    public Object getUserExternalLink() {
+        return RxCxense.getUserExternalLink("some_user_id", "cxd").blockingGet();
+    }
+
+    @Benchmark
+    public Object addUserExternalLink() {
+        return RxCxense.addUserExternalLink("some_user_id", identity).blockingGet();
+    }
+
+    @Benchmark
+    public void pushEvent() {
+        RxCxense.pushEvents(event).blockingAwait();
+    }
+
+    @Benchmark
+    public void trackActiveTime() {
+        RxCxense.trackActiveTime("event", 1000).blockingAwait();
+    }
+
+    @Benchmark
+    public Object getDefaultContentUser() {
+        return RxCxense.getDefaultContentUser().blockingGet();
+    }
+
+    @Benchmark
+    public void flushEventQueue() {
+        RxCxense.flushEventQueue().blockingAwait();
+    }
+
+    @Benchmark
+    public Object getQueueStatus() {
+        return RxCxense.getQueueStatus().blockingGet();
+    }
+
+    @Benchmark
+    public Object getPersistedQuery() {
+        return rxCxense.<List<String>>getPersistedQuerySingle(CxenseConstants.ENDPOINT_USER_SEGMENTS, "query").blockingGet();
+    }
+}
@@ -0,0 +1,136 @@
+package com.cxense.benchmarks
+
+import com.cxense.coroutinesadapter.AdapterMetrics
+import com.cxense.coroutinesadapter.EventSink
+import com.cxense.coroutinesadapter.adapterMetrics
+import com.cxense.coroutinesadapter.pushEvents
+import com.cxense.coroutinesadapter.trackClick
+import com.cxense.cxensesdk.CxenseConstants
+import com.cxense.cxensesdk.CxenseSdk
+import com.cxense.cxensesdk.model.Event
+import com.cxense.cxensesdk.model.UserExternalData
+import com.cxense.cxensesdk.model.UserIdentity
+import com.cxense.cxensesdk.model.WidgetContext
+import com.cxense.cxensesdk.model.WidgetItem
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.runBlocking
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OperationsPerInvocation
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.util.concurrent.TimeUnit
+
+/**
+ * Cost of bridging SDK callbacks into coroutines: every suspend function from CxenseKtx against the
+ * stand-in SDK, which completes on the calling thread. Each call runs in its own {@link runBlocking},
+ * {@link #baseline} is the cost of that alone. {@link #metrics} shows the overhead of {@link AdapterMetrics}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput, Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class CoroutineAdapterBenchmark {
+    @Param("false", "true")
+    var metrics: Boolean = false
+
+    private val siteGroupIds = listOf("1234567890")
+    private val identity = UserIdentity("cxd", "some_user_id")
+    private val identities = listOf(identity)
+    private val widgetContext = WidgetContext.Builder("https://example.com/article").build()
+    private val item = WidgetItem("Title", "https://example.com/article", "https://example.com/click")
+    private val externalData = UserExternalData.Builder(identity).build()
+
+    @Setup
+    fun setUp() {
+        CxenseSdk.getInstance().setCallbackExecutor(null)
+        adapterMetrics = if (metrics) AdapterMetrics() else null
+    }
+
+    @Benchmark
+    fun baseline() = runBlocking { identity }
+
+    @Benchmark
+    fun trackClickUrl() = runBlocking { trackClick("https://example.com/click") }
+
+    @Benchmark
+    fun trackClickItem() = runBlocking { trackClick(item) }
+
+    @Benchmark
+    fun loadWidgetRecommendations() = runBlocking {
+        com.cxense.coroutinesadapter.loadWidgetRecommendations("widget", widgetContext)
+    }
+
+    @Benchmark
+    fun getUserSegmentIds() = runBlocking {
+        com.cxense.coroutinesadapter.getUserSegmentIds(identities, siteGroupIds)
+    }
+
+    @Benchmark
+    fun getUser() = runBlocking { com.cxense.coroutinesadapter.getUser(identity) }
+
+    @Benchmark
+    fun getUserExternalData() = runBlocking { com.cxense.coroutinesadapter.getUserExternalData("cxd") }
+
+    @Benchmark
+    fun setUserExternalData() = runBlocking { com.cxense.coroutinesadapter.setUserExternalData(externalData) }
+
+    @Benchmark
+    fun deleteUserExternalData() = runBlocking { com.cxense.coroutinesadapter.deleteUserExternalData(identity) }
+
+    @Benchmark
+    fun getUserExternalLink() = runBlocking {
+        com.cxense.coroutinesadapter.getUserExternalLink("some_user_id", "cxd")
+    }
+
+    @Benchmark
+    fun addUserExternalLink() = runBlocking {
+        com.cxense.coroutinesadapter.addUserExternalLink("some_user_id", identity)
+    }
+
+    @Benchmark
+    fun getPersistedQuery() = runBlocking {
+        com.cxense.coroutinesadapter.getPersistedQuery<List<String>>(CxenseConstants.ENDPOINT_USER_SEGMENTS, "query")
+    }
+}
+
+/**
+ * Event push throughput of the coroutine {@link EventSink} for different batch sizes. Scores are per pushed event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(CoroutinePushEventsBenchmark.EVENTS)
+open class CoroutinePushEventsBenchmark {
+    @Param("1", "10", "50", "200")
+    var batchSize: Int = 0
+
+    private lateinit var events: List<Event>
+    private lateinit var sink: EventSink
+
+    @Setup
+    fun setUp() {
+        CxenseSdk.getInstance().setCallbackExecutor(null)
+        events = List(EVENTS) { Event("event$it") }
+        sink = EventSink(maxBatchSize = batchSize, bufferCapacity = EVENTS)
+    }
+
+    @Benchmark
+    fun eventSink() = runBlocking { pushEvents(events.asFlow(), sink) }
+
+    companion object {
+        const val EVENTS = 1000
+    }
+}
@@ -0,0 +1,17 @@
+package com.cxense.cxensesdk;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Stand-in for the SDK credentials provider.
+ */
+public interface CredentialsProvider {
+    @NotNull
+    String getUsername();
+
+    @NotNull
+    String getApiKey();
+
+    @NotNull
+    String getDmpPushPersistentId();
+}
@@ -0,0 +1,27 @@
+package com.cxense.cxensesdk;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for the SDK configuration.
+ */
+public class CxenseConfiguration {
+    private long dispatchPeriodMillis = CxenseConstants.getMinDispatchPeriod();
+    private CredentialsProvider credentialsProvider;
+
+    public void dispatchPeriod(long period, TimeUnit unit) {
+        dispatchPeriodMillis = unit.toMillis(period);
+    }
+
+    public long getDispatchPeriod() {
+        return dispatchPeriodMillis;
+    }
+
+    public CredentialsProvider getCredentialsProvider() {
+        return credentialsProvider;
+    }
+
+    public void setCredentialsProvider(CredentialsProvider credentialsProvider) {
+        this.credentialsProvider = credentialsProvider;
+    }
+}
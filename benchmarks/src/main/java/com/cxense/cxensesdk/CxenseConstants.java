@@ -0,0 +1,15 @@
+package com.cxense.cxensesdk;
+
+/**
+ * Stand-in for the SDK constants.
+ */
+public final class CxenseConstants {
+    public static final String ENDPOINT_USER_SEGMENTS = "/profile/user/segment";
+
+    private CxenseConstants() {
+    }
+
+    public static long getMinDispatchPeriod() {
+        return 10000;
+    }
+}
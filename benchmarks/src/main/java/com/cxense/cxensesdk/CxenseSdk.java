@@ -0,0 +1,217 @@
+package com.cxense.cxensesdk;
+
+import com.cxense.cxensesdk.model.ContentUser;
+import com.cxense.cxensesdk.model.Event;
+import com.cxense.cxensesdk.model.EventStatus;
+import com.cxense.cxensesdk.model.ExternalItem;
+import com.cxense.cxensesdk.model.Impression;
+import com.cxense.cxensesdk.model.QueueStatus;
+import com.cxense.cxensesdk.model.User;
+import com.cxense.cxensesdk.model.UserExternalData;
+import com.cxense.cxensesdk.model.UserIdentity;
+import com.cxense.cxensesdk.model.WidgetContext;
+import com.cxense.cxensesdk.model.WidgetItem;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Cxense SDK.
+ * <p>
+ * Mirrors the part of the SDK surface used by the adapters. Every call completes with canned data,
+ * on the calling thread by default or on the executor set by {@link #setCallbackExecutor(Executor)}.
+ * Pushed events are only counted, so the queue never grows.
+ */
+public class CxenseSdk {
+    private static final CxenseSdk INSTANCE = new CxenseSdk();
+    private static final QueueStatus EMPTY_QUEUE = new QueueStatus(Collections.<EventStatus>emptyList(), Collections.<EventStatus>emptyList());
+
+    private final CxenseConfiguration configuration = new CxenseConfiguration();
+    private final AtomicLong pushedEvents = new AtomicLong();
+    private final List<WidgetItem> widgetItems;
+    private final User user;
+    private final List<String> segments;
+    private final List<UserExternalData> externalData;
+    private final ContentUser defaultContentUser;
+    private volatile Executor callbackExecutor;
+    private volatile DispatchEventsCallback dispatchEventsCallback;
+    private volatile String userId = "0123456789abcdef";
+
+    private CxenseSdk() {
+        List<WidgetItem> items = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            items.add(new WidgetItem("Title " + i, "https://example.com/" + i, "https://example.com/click/" + i));
+        }
+        widgetItems = Collections.unmodifiableList(items);
+        UserIdentity identity = new UserIdentity("cxd", "some_user_id");
+        user = new User("some_user_id", Collections.singletonList(identity));
+        segments = Collections.unmodifiableList(Arrays.asList("segment1", "segment2", "segment3"));
+        externalData = Collections.singletonList(new UserExternalData.Builder(identity)
+                .addExternalItems(new ExternalItem("gender", "male"), new ExternalItem("interests", "football"))
+                .build());
+        defaultContentUser = new ContentUser(new HashMap<String, String>());
+    }
+
+    @NotNull
+    public static CxenseSdk getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param executor executor for callbacks, or null to complete calls on the calling thread
+     */
+    public void setCallbackExecutor(@Nullable Executor executor) {
+        callbackExecutor = executor;
+    }
+
+    /**
+     * @return number of events pushed since start
+     */
+    public long getPushedEventCount() {
+        return pushedEvents.get();
+    }
+
+    private <T> void complete(final LoadCallback<T> callback, final T data) {
+        Executor executor = callbackExecutor;
+        if (executor == null) {
+            callback.onSuccess(data);
+        } else {
+            executor.execute(() -> callback.onSuccess(data));
+        }
+    }
+
+    public void trackClick(@NotNull String url, @NotNull LoadCallback<Void> callback) {
+        complete(callback, null);
+    }
+
+    public void trackClick(@NotNull WidgetItem item, @NotNull LoadCallback<Void> callback) {
+        complete(callback, null);
+    }
+
+    public void loadWidgetRecommendations(@NotNull String widgetId, @NotNull WidgetContext widgetContext, @NotNull LoadCallback<List<WidgetItem>> callback) {
+        complete(callback, widgetItems);
+    }
+
+    public void loadWidgetRecommendations(@NotNull String widgetId, @NotNull WidgetContext widgetContext, @Nullable ContentUser user, @Nullable String tag, @Nullable String prnd, @NotNull LoadCallback<List<WidgetItem>> callback) {
+        complete(callback, widgetItems);
+    }
+
+    public void reportWidgetVisibilities(@NotNull LoadCallback<?> callback, @NotNull Impression... impressions) {
+        complete(callback, null);
+    }
+
+    @NotNull
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(@NotNull String userId) {
+        this.userId = userId;
+    }
+
+    @Nullable
+    public String getDefaultUserId() {
+        return "00000000-0000-0000-0000-000000000000";
+    }
+
+    public boolean getLimitAdTrackingEnabled() {
+        return false;
+    }
+
+    @NotNull
+    public CxenseConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    public void getUserSegmentIds(@NotNull List<UserIdentity> identities, @NotNull List<String> siteGroupIds, @NotNull LoadCallback<List<String>> callback) {
+        complete(callback, segments);
+    }
+
+    public void getUser(@NotNull UserIdentity identity, @NotNull LoadCallback<User> callback) {
+        complete(callback, user);
+    }
+
+    public void getUser(@NotNull UserIdentity identity, @Nullable List<String> groups, @Nullable Boolean recent, @Nullable List<String> identityTypes, @NotNull LoadCallback<User> callback) {
+        complete(callback, user);
+    }
+
+    public void getUserExternalData(@NotNull String type, @NotNull LoadCallback<List<UserExternalData>> callback) {
+        complete(callback, externalData);
+    }
+
+    public void getUserExternalData(@Nullable String id, @NotNull String type, @NotNull LoadCallback<List<UserExternalData>> callback) {
+        complete(callback, externalData);
+    }
+
+    public void getUserExternalData(@NotNull String type, @Nullable String id, @Nullable String filter, @NotNull LoadCallback<List<UserExternalData>> callback) {
+        complete(callback, externalData);
+    }
+
+    public void setUserExternalData(@NotNull UserExternalData userExternalData, @NotNull LoadCallback<Void> callback) {
+        complete(callback, null);
+    }
+
+    public void deleteUserExternalData(@NotNull UserIdentity identity, @NotNull LoadCallback<Void> callback) {
+        complete(callback, null);
+    }
+
+    public void getUserExternalLink(@NotNull String cxenseId, @NotNull String type, @NotNull LoadCallback<UserIdentity> callback) {
+        complete(callback, new UserIdentity(type, cxenseId));
+    }
+
+    public void addUserExternalLink(@NotNull String cxenseId, @NotNull UserIdentity identity, @NotNull LoadCallback<UserIdentity> callback) {
+        complete(callback, identity);
+    }
+
+    public void pushEvents(@NotNull Event... events) {
+        pushedEvents.addAndGet(events.length);
+    }
+
+    public void trackActiveTime(@NotNull String eventId) {
+    }
+
+    public void trackActiveTime(@NotNull String eventId, long activeTime) {
+    }
+
+    @NotNull
+    public ContentUser getDefaultContentUser() {
+        return defaultContentUser;
+    }
+
+    public void flushEventQueue() {
+        DispatchEventsCallback callback = dispatchEventsCallback;
+        if (callback != null)
+            callback.onDispatch(Collections.<EventStatus>emptyList());
+    }
+
+    @NotNull
+    public QueueStatus getQueueStatus() {
+        return EMPTY_QUEUE;
+    }
+
+    public void setDispatchEventsCallback(@Nullable DispatchEventsCallback callback) {
+        dispatchEventsCallback = callback;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> void executePersistedQuery(@NotNull String url, @NotNull String persistentQueryId, @NotNull LoadCallback<T> callback) {
+        complete(callback, (T) segments);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> void executePersistedQuery(@NotNull String url, @NotNull String persistentQueryId, @Nullable Object data, @NotNull LoadCallback<T> callback) {
+        complete(callback, (T) segments);
+    }
+
+    public interface DispatchEventsCallback {
+        void onDispatch(@NotNull List<EventStatus> statuses);
+    }
+}
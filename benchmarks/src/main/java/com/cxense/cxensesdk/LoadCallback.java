@@ -0,0 +1,14 @@
+package com.cxense.cxensesdk;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Stand-in for the SDK callback interface.
+ *
+ * @param <T> result type
+ */
+public interface LoadCallback<T> {
+    void onSuccess(@NotNull T data);
+
+    void onError(@NotNull Throwable throwable);
+}
@@ -0,0 +1,34 @@
+package com.cxense.cxensesdk.model;
+
+import java.util.Map;
+
+/**
+ * Stand-in for the SDK content user.
+ */
+public class ContentUser {
+    private final Map<String, String> ids;
+    private final Object likes;
+    private final Object dislikes;
+
+    public ContentUser(Map<String, String> ids) {
+        this(ids, null, null);
+    }
+
+    public ContentUser(Map<String, String> ids, Object likes, Object dislikes) {
+        this.ids = ids;
+        this.likes = likes;
+        this.dislikes = dislikes;
+    }
+
+    public Map<String, String> getIds() {
+        return ids;
+    }
+
+    public Object getLikes() {
+        return likes;
+    }
+
+    public Object getDislikes() {
+        return dislikes;
+    }
+}
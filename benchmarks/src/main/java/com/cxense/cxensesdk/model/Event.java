@@ -0,0 +1,16 @@
+package com.cxense.cxensesdk.model;
+
+/**
+ * Stand-in for the SDK event base class.
+ */
+public class Event {
+    private final String eventId;
+
+    public Event(String eventId) {
+        this.eventId = eventId;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+}
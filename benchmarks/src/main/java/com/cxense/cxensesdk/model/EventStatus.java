@@ -0,0 +1,28 @@
+package com.cxense.cxensesdk.model;
+
+/**
+ * Stand-in for the SDK event sending status.
+ */
+public class EventStatus {
+    private final String eventId;
+    private final boolean sent;
+    private final Exception exception;
+
+    public EventStatus(String eventId, boolean sent, Exception exception) {
+        this.eventId = eventId;
+        this.sent = sent;
+        this.exception = exception;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    public boolean isSent() {
+        return sent;
+    }
+
+    public Exception getException() {
+        return exception;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cxense.cxensesdk.model;
+
+/**
+ * Stand-in for the SDK external profile item.
+ */
+public class ExternalItem {
+    private final String group;
+    private final String item;
+
+    public ExternalItem(String group, String item) {
+        this.group = group;
+        this.item = item;
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public String getItem() {
+        return item;
+    }
+}
@@ -0,0 +1,22 @@
+package com.cxense.cxensesdk.model;
+
+/**
+ * Stand-in for the SDK widget impression.
+ */
+public class Impression {
+    private final String clickUrl;
+    private final int visibilitySeconds;
+
+    public Impression(String clickUrl, int visibilitySeconds) {
+        this.clickUrl = clickUrl;
+        this.visibilitySeconds = visibilitySeconds;
+    }
+
+    public String getClickUrl() {
+        return clickUrl;
+    }
+
+    public int getVisibilitySeconds() {
+        return visibilitySeconds;
+    }
+}
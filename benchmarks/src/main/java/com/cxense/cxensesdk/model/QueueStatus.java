@@ -0,0 +1,24 @@
+package com.cxense.cxensesdk.model;
+
+import java.util.List;
+
+/**
+ * Stand-in for the SDK event queue status.
+ */
+public class QueueStatus {
+    private final List<EventStatus> sentEvents;
+    private final List<EventStatus> notSentEvents;
+
+    public QueueStatus(List<EventStatus> sentEvents, List<EventStatus> notSentEvents) {
+        this.sentEvents = sentEvents;
+        this.notSentEvents = notSentEvents;
+    }
+
+    public List<EventStatus> getSentEvents() {
+        return sentEvents;
+    }
+
+    public List<EventStatus> getNotSentEvents() {
+        return notSentEvents;
+    }
+}
@@ -0,0 +1,24 @@
+package com.cxense.cxensesdk.model;
+
+import java.util.List;
+
+/**
+ * Stand-in for the SDK user profile.
+ */
+public class User {
+    private final String id;
+    private final List<UserIdentity> identities;
+
+    public User(String id, List<UserIdentity> identities) {
+        this.id = id;
+        this.identities = identities;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<UserIdentity> getIdentities() {
+        return identities;
+    }
+}
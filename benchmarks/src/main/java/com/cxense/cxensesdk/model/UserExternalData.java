@@ -0,0 +1,51 @@
+package com.cxense.cxensesdk.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stand-in for the SDK external user data.
+ */
+public class UserExternalData {
+    private final String id;
+    private final String type;
+    private final List<ExternalItem> items;
+
+    public UserExternalData(String id, String type, List<ExternalItem> items) {
+        this.id = id;
+        this.type = type;
+        this.items = items;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public List<ExternalItem> getItems() {
+        return items;
+    }
+
+    public static class Builder {
+        private final UserIdentity identity;
+        private final List<ExternalItem> items = new ArrayList<>();
+
+        public Builder(UserIdentity identity) {
+            this.identity = identity;
+        }
+
+        public Builder addExternalItems(ExternalItem... items) {
+            this.items.addAll(Arrays.asList(items));
+            return this;
+        }
+
+        public UserExternalData build() {
+            return new UserExternalData(identity.getId(), identity.getType(), Collections.unmodifiableList(new ArrayList<>(items)));
+        }
+    }
+}
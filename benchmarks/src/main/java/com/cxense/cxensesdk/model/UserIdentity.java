@@ -0,0 +1,22 @@
+package com.cxense.cxensesdk.model;
+
+/**
+ * Stand-in for the SDK user identity.
+ */
+public class UserIdentity {
+    private final String type;
+    private final String id;
+
+    public UserIdentity(String type, String id) {
+        this.type = type;
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
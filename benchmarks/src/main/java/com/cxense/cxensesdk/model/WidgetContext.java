@@ -0,0 +1,115 @@
+package com.cxense.cxensesdk.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stand-in for the SDK widget context.
+ */
+public class WidgetContext {
+    private final String url;
+    private final String referrer;
+    private final String pageclass;
+    private final String sentiment;
+    private final String recommending;
+    private final Map<String, String> categories;
+    private final List<String> keywords;
+    private final List<String> neighbors;
+
+    private WidgetContext(Builder builder) {
+        url = builder.url;
+        referrer = builder.referrer;
+        pageclass = builder.pageclass;
+        sentiment = builder.sentiment;
+        recommending = builder.recommending;
+        categories = builder.categories;
+        keywords = builder.keywords;
+        neighbors = builder.neighbors;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getReferrer() {
+        return referrer;
+    }
+
+    public String getPageclass() {
+        return pageclass;
+    }
+
+    public String getSentiment() {
+        return sentiment;
+    }
+
+    public String getRecommending() {
+        return recommending;
+    }
+
+    public Map<String, String> getCategories() {
+        return categories;
+    }
+
+    public List<String> getKeywords() {
+        return keywords;
+    }
+
+    public List<String> getNeighbors() {
+        return neighbors;
+    }
+
+    public static class Builder {
+        private final String url;
+        private String referrer;
+        private String pageclass;
+        private String sentiment;
+        private String recommending;
+        private Map<String, String> categories;
+        private List<String> keywords;
+        private List<String> neighbors;
+
+        public Builder(String url) {
+            this.url = url;
+        }
+
+        public Builder referrer(String referrer) {
+            this.referrer = referrer;
+            return this;
+        }
+
+        public Builder pageclass(String pageclass) {
+            this.pageclass = pageclass;
+            return this;
+        }
+
+        public Builder sentiment(String sentiment) {
+            this.sentiment = sentiment;
+            return this;
+        }
+
+        public Builder recommending(String recommending) {
+            this.recommending = recommending;
+            return this;
+        }
+
+        public Builder categories(Map<String, String> categories) {
+            this.categories = categories;
+            return this;
+        }
+
+        public Builder keywords(List<String> keywords) {
+            this.keywords = keywords;
+            return this;
+        }
+
+        public Builder neighbors(List<String> neighbors) {
+            this.neighbors = neighbors;
+            return this;
+        }
+
+        public WidgetContext build() {
+            return new WidgetContext(this);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.cxense.cxensesdk.model;
+
+/**
+ * Stand-in for the SDK widget item.
+ */
+public class WidgetItem {
+    private final String title;
+    private final String url;
+    private final String clickUrl;
+
+    public WidgetItem(String title, String url, String clickUrl) {
+        this.title = title;
+        this.url = url;
+        this.clickUrl = clickUrl;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getClickUrl() {
+        return clickUrl;
+    }
+}
@@ -24,6 +24,7 @@ object Versions {
     //Plugins
     const val versionsPlugin = "0.36.0"
     const val androidToolsPlugin = "4.2.0"
+    const val jmhPlugin = "0.6.5"
     // Android libraries
     const val compatLibrary = "1.2.0"
     const val materialLibrary = "1.3.0"
@@ -32,6 +33,11 @@ object Versions {
     const val rxJava = "2.2.21"
     const val kotlinCoroutines = "1.4.2"
     const val viewBindingProperty = "1.4.6"
+    const val lifecycle = "2.3.1"
+    // JVM libraries
+    const val annotation = "1.2.0"
+    const val jetbrainsAnnotations = "20.1.0"
+    const val jmh = "1.32"
 }
 
 object Plugins {
@@ -41,6 +47,8 @@ object Plugins {
     const val androidLibrary = "com.android.library"
     const val androidApp = "com.android.application"
     const val kotlinAndroidApp = "kotlin-android"
+    const val kotlinJvm = "org.jetbrains.kotlin.jvm"
+    const val jmh = "me.champeau.jmh"
 }
 
 object Libs {
@@ -50,4 +58,8 @@ object Libs {
     const val rxJava = "io.reactivex.rxjava2:rxjava:${Versions.rxJava}"
     const val kotlinCoroutines = "org.jetbrains.kotlinx:kotlinx-coroutines-android:${Versions.kotlinCoroutines}"
     const val viewBindingProperty = "com.github.kirich1409:viewbindingpropertydelegate:${Versions.viewBindingProperty}"
+    const val lifecycleCommon = "androidx.lifecycle:lifecycle-common:${Versions.lifecycle}"
+    const val annotation = "androidx.annotation:annotation:${Versions.annotation}"
+    const val jetbrainsAnnotations = "org.jetbrains:annotations:${Versions.jetbrainsAnnotations}"
+    const val kotlinCoroutinesCore = "org.jetbrains.kotlinx:kotlinx-coroutines-core:${Versions.kotlinCoroutines}"
 }
\ No newline at end of file
@@ -0,0 +1,310 @@
+package com.cxense.coroutinesadapter
+
+import android.content.Context
+import android.os.SystemClock
+import androidx.lifecycle.Lifecycle
+import androidx.lifecycle.LifecycleEventObserver
+import androidx.lifecycle.LifecycleOwner
+import com.cxense.cxensesdk.CxenseSdk
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures active time of page views and reports it with {@link CxenseSdk#trackActiveTime(String, Long)}.
+ *
+ * A page is bound to the {@link LifecycleOwner} that shows it. Time counts only while the owner is resumed and the
+ * user interacted with it during the last `idleTimeoutMillis`, measured with {@link SystemClock#elapsedRealtime}.
+ * Call {@link #onUserInteraction} from `Activity.onUserInteraction()`, it costs a clock read and a field write.
+ *
+ * Totals are checkpointed to a small file while a page is resumed and when it pauses, so time isn't lost when the
+ * process dies; the next tracker reports it. Changed totals of all pages are reported together when a page
+ * stops. Create one tracker per application and bind pages from the main thread; {@link #close} stops it.
+ *
+ * @param file              file to keep checkpoints in
+ * @param idleTimeoutMillis time without interaction after which the user is considered inactive
+ * @param dispatcher        dispatcher for checkpoints and reporting
+ */
+class ActiveTimeTracker(
+    private val file: File,
+    private val idleTimeoutMillis: Long = DEFAULT_IDLE_TIMEOUT_MILLIS,
+    dispatcher: CoroutineDispatcher = Dispatchers.IO
+) : LifecycleEventObserver {
+    private val scope = CoroutineScope(SupervisorJob() + dispatcher)
+    // Snapshots are taken and written in order, the main thread only waits for the snapshot.
+    private val fileMutex = Mutex()
+    // main thread only
+    private val owners = HashMap<LifecycleOwner, String>()
+    // main thread only
+    private var checkpoints: Job? = null
+    @Volatile
+    private var lastInteraction = 0L
+    // guarded by this
+    private val pages = LinkedHashMap<String, Page>()
+    // guarded by this
+    private var current: Page? = null
+    // guarded by this
+    private var segmentStart = 0L
+    // guarded by this
+    private var dirty = false
+    // guarded by fileMutex
+    private var recovered = false
+
+    init {
+        require(idleTimeoutMillis > 0) { "idleTimeoutMillis must be positive" }
+        scope.launch { recover() }
+    }
+
+    /**
+     * Creates tracker with checkpoints in application files directory and 30 seconds idle timeout.
+     *
+     * @param context any context
+     */
+    constructor(context: Context) : this(File(context.applicationContext.filesDir, FILE_NAME))
+
+    /**
+     * Binds the page view to the lifecycle of the screen that shows it. Tracking ends when the owner is destroyed.
+     *
+     * @param owner   the screen, usually an activity or a fragment
+     * @param eventId event id of the page view event
+     */
+    fun track(owner: LifecycleOwner, eventId: String) {
+        owners[owner] = eventId
+        owner.lifecycle.addObserver(this)
+    }
+
+    /**
+     * Marks user interaction with the resumed page.
+     */
+    fun onUserInteraction() {
+        val now = SystemClock.elapsedRealtime()
+        if (now - lastInteraction > idleTimeoutMillis)
+            resumeAfterIdle(now)
+        else
+            lastInteraction = now
+    }
+
+    /**
+     * @param eventId event id of the page view event
+     * @return measured active time of the page in milliseconds
+     */
+    @Synchronized
+    fun getActiveTime(eventId: String): Long {
+        account(SystemClock.elapsedRealtime())
+        return pages[eventId]?.activeMillis ?: 0
+    }
+
+    override fun onStateChanged(source: LifecycleOwner, event: Lifecycle.Event) {
+        val eventId = owners[source] ?: return
+        when (event) {
+            Lifecycle.Event.ON_RESUME -> {
+                onResume(eventId)
+                if (checkpoints == null)
+                    checkpoints = scope.launch {
+                        while (true) {
+                            delay(CHECKPOINT_INTERVAL_MILLIS)
+                            checkpoint()
+                        }
+                    }
+            }
+            Lifecycle.Event.ON_PAUSE -> {
+                onPause()
+                checkpoints?.cancel()
+                checkpoints = null
+                scope.launch { checkpoint() }
+            }
+            Lifecycle.Event.ON_STOP -> scope.launch { report() }
+            Lifecycle.Event.ON_DESTROY -> {
+                source.lifecycle.removeObserver(this)
+                owners.remove(source)
+                onDestroy(eventId)
+                scope.launch { report() }
+            }
+            else -> Unit
+        }
+    }
+
+    /**
+     * Stops the tracker: unbinds all pages, reports the measured time and cancels its coroutines. Call it from the
+     * main thread.
+     */
+    fun close() {
+        owners.keys.forEach { it.lifecycle.removeObserver(this) }
+        owners.clear()
+        checkpoints?.cancel()
+        checkpoints = null
+        onPause()
+        scope.launch {
+            try {
+                report()
+            } finally {
+                scope.cancel()
+            }
+        }
+    }
+
+    @Synchronized
+    private fun onResume(eventId: String) {
+        current = pages.getOrPut(eventId) { Page() }
+        segmentStart = SystemClock.elapsedRealtime()
+        lastInteraction = segmentStart
+    }
+
+    @Synchronized
+    private fun onPause() {
+        account(SystemClock.elapsedRealtime())
+        current = null
+    }
+
+    @Synchronized
+    private fun onDestroy(eventId: String) {
+        pages[eventId]?.finished = true
+    }
+
+    @Synchronized
+    private fun resumeAfterIdle(now: Long) {
+        account(now)
+        segmentStart = now
+        lastInteraction = now
+    }
+
+    // Called with the lock held.
+    private fun account(now: Long) {
+        val page = current ?: return
+        val end = minOf(now, lastInteraction + idleTimeoutMillis)
+        if (end > segmentStart) {
+            page.activeMillis += end - segmentStart
+            segmentStart = end
+            dirty = true
+        }
+    }
+
+    private suspend fun recover() {
+        fileMutex.withLock {
+            recovered = true
+            val stored = try {
+                read()
+            } catch (e: IOException) {
+                return
+            }
+            synchronized(this) {
+                stored.forEach { (eventId, page) ->
+                    // Pages of the previous process can't be resumed any more.
+                    if (eventId !in pages)
+                        pages[eventId] = page.apply { finished = true }
+                }
+                dirty = true
+            }
+        }
+        report()
+    }
+
+    private suspend fun report() {
+        val changed = LinkedHashMap<String, Long>()
+        synchronized(this) {
+            account(SystemClock.elapsedRealtime())
+            val it = pages.entries.iterator()
+            while (it.hasNext()) {
+                val (eventId, page) = it.next()
+                val seconds = TimeUnit.MILLISECONDS.toSeconds(page.activeMillis)
+                if (seconds > page.reportedSeconds) {
+                    changed[eventId] = seconds
+                    page.reportedSeconds = seconds
+                    dirty = true
+                }
+                if (page.finished && page !== current) {
+                    it.remove()
+                    dirty = true
+                }
+            }
+        }
+        changed.forEach { (eventId, seconds) -> CxenseSdk.getInstance().trackActiveTime(eventId, seconds) }
+        checkpoint()
+    }
+
+    private suspend fun checkpoint() {
+        fileMutex.withLock {
+            if (!recovered)
+                return
+            val snapshot = synchronized(this) {
+                account(SystemClock.elapsedRealtime())
+                if (!dirty)
+                    return
+                dirty = false
+                pages.mapValuesTo(LinkedHashMap()) { it.value.copy() }
+            }
+            try {
+                write(snapshot)
+            } catch (e: IOException) {
+                // written with the next checkpoint
+                synchronized(this) { dirty = true }
+            }
+        }
+    }
+
+    private fun read(): Map<String, Page> {
+        val map = LinkedHashMap<String, Page>()
+        if (!file.exists())
+            return map
+        val bytes = RandomAccessFile(file, "r").use { raf ->
+            ByteArray(raf.length().toInt()).also { raf.readFully(it) }
+        }
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        if (input.readInt() != MAGIC || input.readInt() != VERSION)
+            return map
+        repeat(input.readInt()) {
+            val eventId = input.readUTF()
+            map[eventId] = Page(activeMillis = input.readLong(), reportedSeconds = input.readLong())
+        }
+        return map
+    }
+
+    private fun write(map: Map<String, Page>) {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).apply {
+            writeInt(MAGIC)
+            writeInt(VERSION)
+            writeInt(map.size)
+            map.forEach { (eventId, page) ->
+                writeUTF(eventId)
+                writeLong(page.activeMillis)
+                writeLong(page.reportedSeconds)
+            }
+            flush()
+        }
+        val tmp = File(file.path + ".tmp")
+        FileOutputStream(tmp).use { bytes.writeTo(it) }
+        if (!tmp.renameTo(file))
+            throw IOException("Can't replace $file")
+    }
+
+    private data class Page(
+        var activeMillis: Long = 0,
+        var reportedSeconds: Long = 0,
+        var finished: Boolean = false
+    )
+
+    private companion object {
+        const val FILE_NAME = "cxense_active_time.bin"
+        const val MAGIC = 0x43584154
+        const val VERSION = 1
+        val DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30)
+        val CHECKPOINT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10)
+    }
+}
@@ -0,0 +1,154 @@
+package com.cxense.coroutinesadapter
+
+import java.util.EnumMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Immutable snapshot of call metrics for one [Endpoint]. Latencies are in microseconds.
+ *
+ * @property endpoint       the endpoint
+ * @property successCount   number of successful calls
+ * @property errorCount     number of failed calls
+ * @property cancelledCount number of calls cancelled before they finished
+ * @property retryCount     number of retries, each retry is also counted as a call
+ * @property inFlightCount  number of calls running now
+ * @property p50Micros      median latency
+ * @property p95Micros      95th percentile latency
+ * @property p99Micros      99th percentile latency
+ * @property maxMicros      maximum latency
+ * @property errorTypes     number of errors by error class name
+ */
+data class EndpointStats(
+    val endpoint: Endpoint,
+    val successCount: Long,
+    val errorCount: Long,
+    val cancelledCount: Long,
+    val retryCount: Long,
+    val inFlightCount: Int,
+    val p50Micros: Long,
+    val p95Micros: Long,
+    val p99Micros: Long,
+    val maxMicros: Long,
+    val errorTypes: Map<String, Long>
+) {
+    /**
+     * Number of finished calls, successful or not
+     */
+    val count: Long
+        get() = successCount + errorCount + cancelledCount
+}
+
+/**
+ * Latency and outcome metrics of adapter calls, per [Endpoint].
+ *
+ * Install with [adapterMetrics]. Every network call then records its latency in a fixed-memory histogram,
+ * in-flight count, outcome, error type and retries. Recording is lock-free and doesn't allocate, except the
+ * first time an error class is seen. Read the numbers with [getStats] and export them to your telemetry.
+ */
+class AdapterMetrics {
+    private val recorders = Array(Endpoint.values().size) { Recorder() }
+
+    /**
+     * @param endpoint the endpoint
+     * @return metrics snapshot for the endpoint
+     */
+    fun getStats(endpoint: Endpoint): EndpointStats = recorders[endpoint.ordinal].snapshot(endpoint)
+
+    /**
+     * @return metrics snapshots for all endpoints that were called at least once
+     */
+    fun getStats(): Map<Endpoint, EndpointStats> =
+        Endpoint.values()
+            .filter { recorders[it.ordinal].started.get() > 0 }
+            .associateWithTo(EnumMap(Endpoint::class.java)) { recorders[it.ordinal].snapshot(it) }
+
+    /**
+     * Clears all counters and histograms, except in-flight counts.
+     */
+    fun reset() {
+        recorders.forEach { it.reset() }
+    }
+
+    /**
+     * @return start time to pass to one of finishing methods
+     */
+    internal fun onStart(endpoint: Endpoint): Long {
+        val recorder = recorders[endpoint.ordinal]
+        recorder.started.incrementAndGet()
+        recorder.inFlight.incrementAndGet()
+        return System.nanoTime()
+    }
+
+    internal fun onSuccess(endpoint: Endpoint, startNanos: Long) {
+        val recorder = recorders[endpoint.ordinal]
+        recorder.finish(startNanos)
+        recorder.successes.incrementAndGet()
+    }
+
+    internal fun onError(endpoint: Endpoint, startNanos: Long, throwable: Throwable) {
+        val recorder = recorders[endpoint.ordinal]
+        recorder.finish(startNanos)
+        recorder.errors.incrementAndGet()
+        recorder.countError(throwable.javaClass)
+    }
+
+    internal fun onRetry(endpoint: Endpoint) {
+        recorders[endpoint.ordinal].retries.incrementAndGet()
+    }
+
+    internal fun onCancel(endpoint: Endpoint) {
+        val recorder = recorders[endpoint.ordinal]
+        recorder.inFlight.decrementAndGet()
+        recorder.cancelled.incrementAndGet()
+    }
+
+    private class Recorder {
+        val histogram = LatencyHistogram()
+        val started = AtomicLong()
+        val inFlight = AtomicInteger()
+        val successes = AtomicLong()
+        val errors = AtomicLong()
+        val cancelled = AtomicLong()
+        val retries = AtomicLong()
+        val errorTypes = ConcurrentHashMap<String, AtomicLong>()
+
+        fun finish(startNanos: Long) {
+            inFlight.decrementAndGet()
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos))
+        }
+
+        fun countError(type: Class<*>) {
+            val counter = errorTypes[type.name] ?: run {
+                val name = if (errorTypes.size < MAX_ERROR_TYPES) type.name else OTHER_ERRORS
+                errorTypes[name] ?: AtomicLong().let { errorTypes.putIfAbsent(name, it) ?: it }
+            }
+            counter.incrementAndGet()
+        }
+
+        fun snapshot(endpoint: Endpoint): EndpointStats {
+            val (p50, p95, p99) = histogram.valuesAtPercentiles(50.0, 95.0, 99.0)
+            return EndpointStats(
+                endpoint, successes.get(), errors.get(), cancelled.get(), retries.get(), inFlight.get(),
+                p50, p95, p99, histogram.max, errorTypes.mapValues { it.value.get() }
+            )
+        }
+
+        fun reset() {
+            histogram.reset()
+            started.set(0)
+            successes.set(0)
+            errors.set(0)
+            cancelled.set(0)
+            retries.set(0)
+            errorTypes.clear()
+        }
+    }
+
+    private companion object {
+        const val MAX_ERROR_TYPES = 32
+        const val OTHER_ERRORS = "other"
+    }
+}
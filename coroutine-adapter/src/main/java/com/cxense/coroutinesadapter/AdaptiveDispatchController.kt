@@ -0,0 +1,207 @@
+package com.cxense.coroutinesadapter
+
+import android.app.Activity
+import android.app.Application
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
+import android.net.ConnectivityManager
+import android.os.BatteryManager
+import android.os.Build
+import android.os.Bundle
+import com.cxense.cxensesdk.CxenseConstants
+import com.cxense.cxensesdk.CxenseSdk
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Adjusts the SDK dispatch period and flushes the event queue following a {@link DispatchPolicy}, instead of
+ * dispatching at a fixed period.
+ *
+ * The controller re-evaluates the policy on every {@link QueueMonitor} snapshot, when the app moves between
+ * foreground and background, when the network changes and when a charger is plugged in or out. While events are
+ * waiting it also re-evaluates when the oldest of them is about to miss its latency target, so the target holds
+ * even if the queue doesn't change. Flushes are at least the policy minimum period apart, except for one when the
+ * app leaves foreground, so events of the session don't wait for the background target. The app is in
+ * foreground while any of its activities is started, so start the controller from `Application.onCreate()`.
+ * Only pushes through the adapter are seen right away; events pushed to the SDK directly or queued by the SDK
+ * itself wait for the dispatch timer, which the policy keeps within the latency target.
+ * The library manifest declares `ACCESS_NETWORK_STATE` for reading the network state.
+ *
+ * @param application the application
+ * @param policy      policy that chooses the dispatch period and flushes
+ * @param dispatcher  dispatcher for evaluating the policy
+ */
+class AdaptiveDispatchController(
+    private val application: Application,
+    private val policy: DispatchPolicy = DispatchPolicy(),
+    dispatcher: CoroutineDispatcher = Dispatchers.IO
+) : Application.ActivityLifecycleCallbacks {
+    private val scope = CoroutineScope(SupervisorJob() + dispatcher)
+    // The SDK doesn't dispatch more often than its own minimum.
+    private val minPeriodMillis = maxOf(policy.minPeriodMillis, CxenseConstants.getMinDispatchPeriod())
+    private val triggerCount = AtomicLong()
+    private val triggers = MutableStateFlow(0L)
+    private val leftForeground = AtomicBoolean()
+    private val receiver = object : BroadcastReceiver() {
+        override fun onReceive(context: Context, intent: Intent) = trigger()
+    }
+    // main thread only
+    private var startedActivities = 0
+    // main thread only
+    private var job: Job? = null
+    @Volatile
+    private var foreground = false
+    @Volatile
+    private var last: QueueSnapshot? = null
+
+    /**
+     * The last decision of the policy, or null if the policy wasn't evaluated yet
+     */
+    @Volatile
+    var lastDecision: DispatchPolicy.Decision? = null
+        private set
+
+    // evaluation loop only
+    private var appliedPeriodMillis = 0L
+    // evaluation loop only
+    private var appliedAtMillis = 0L
+    // evaluation loop only
+    private var lastFlushMillis = Long.MIN_VALUE / 2
+
+    /**
+     * Starts controlling dispatch. Must be called from the main thread.
+     */
+    @Suppress("DEPRECATION") // CONNECTIVITY_ACTION is the network broadcast on every supported API level.
+    fun start() {
+        if (job != null)
+            return
+        application.registerActivityLifecycleCallbacks(this)
+        val filter = IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION).apply {
+            addAction(Intent.ACTION_POWER_CONNECTED)
+            addAction(Intent.ACTION_POWER_DISCONNECTED)
+        }
+        application.registerReceiver(receiver, filter)
+        job = scope.launch {
+            launch {
+                QueueMonitor.observe().collect {
+                    last = it
+                    trigger()
+                }
+            }
+            while (true) {
+                val seen = triggers.value
+                val recheckMillis = evaluate()
+                if (recheckMillis > 0)
+                    withTimeoutOrNull(recheckMillis) { triggers.first { it != seen } }
+                else
+                    triggers.first { it != seen }
+            }
+        }
+    }
+
+    /**
+     * Stops controlling dispatch. The last applied dispatch period stays. Must be called from the main thread.
+     */
+    fun stop() {
+        job?.cancel() ?: return
+        job = null
+        last = null
+        application.unregisterActivityLifecycleCallbacks(this)
+        application.unregisterReceiver(receiver)
+    }
+
+    override fun onActivityStarted(activity: Activity) {
+        if (startedActivities++ == 0) {
+            foreground = true
+            trigger()
+        }
+    }
+
+    override fun onActivityStopped(activity: Activity) {
+        if (startedActivities > 0 && --startedActivities == 0) {
+            foreground = false
+            leftForeground.set(true)
+            trigger()
+        }
+    }
+
+    override fun onActivityCreated(activity: Activity, savedInstanceState: Bundle?) {}
+
+    override fun onActivityResumed(activity: Activity) {}
+
+    override fun onActivityPaused(activity: Activity) {}
+
+    override fun onActivitySaveInstanceState(activity: Activity, outState: Bundle) {}
+
+    override fun onActivityDestroyed(activity: Activity) {}
+
+    private fun trigger() {
+        triggers.value = triggerCount.incrementAndGet()
+    }
+
+    /**
+     * @return time until the next evaluation is needed, or 0 if only a change can need it
+     */
+    private fun evaluate(): Long {
+        val now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
+        val snapshot = last
+        val depth = snapshot?.queueDepth ?: 0
+        // Snapshots are emitted on changes only, so the oldest event keeps ageing after its snapshot.
+        val age = if (snapshot != null && depth > 0) snapshot.oldestEventAgeMillis + now - snapshot.takenAtMillis else 0
+        // The SDK timer ticks every period since the period was set.
+        val untilTick =
+            if (appliedPeriodMillis > 0) appliedPeriodMillis - (now - appliedAtMillis) % appliedPeriodMillis else 0
+        val state = DispatchPolicy.State(
+            depth, age, appliedPeriodMillis, untilTick, isUnmetered(), isCharging(), foreground
+        )
+        val decision = policy.decide(state)
+        lastDecision = decision
+        val period = maxOf(decision.periodMillis, CxenseConstants.getMinDispatchPeriod())
+        if (period != appliedPeriodMillis) {
+            CxenseSdk.getInstance().configuration.dispatchPeriod(period, TimeUnit.MILLISECONDS)
+            appliedPeriodMillis = period
+            appliedAtMillis = now
+        }
+        var sinceFlush = now - lastFlushMillis
+        val leaving = leftForeground.getAndSet(false)
+        if ((decision.flush && sinceFlush >= minPeriodMillis) || leaving) {
+            lastFlushMillis = now
+            sinceFlush = 0
+            CxenseSdk.getInstance().flushEventQueue()
+            QueueMonitor.onActivity()
+        }
+        if (depth == 0)
+            return 0
+        // Wake up when the oldest event needs a flush, or when flushing is allowed again.
+        return maxOf(decision.recheckMillis, minPeriodMillis - sinceFlush, 1)
+    }
+
+    @Suppress("DEPRECATION") // NetworkInfo is the only source before API 16.
+    private fun isUnmetered(): Boolean {
+        val manager = application.getSystemService(Context.CONNECTIVITY_SERVICE) as? ConnectivityManager
+            ?: return false
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            return !manager.isActiveNetworkMetered
+        val type = manager.activeNetworkInfo?.type
+        return type == ConnectivityManager.TYPE_WIFI || type == ConnectivityManager.TYPE_ETHERNET
+    }
+
+    private fun isCharging(): Boolean {
+        // The battery broadcast is sticky, so this reads the current state without registering a receiver.
+        val battery = application.registerReceiver(null, IntentFilter(Intent.ACTION_BATTERY_CHANGED))
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0
+    }
+}
@@ -0,0 +1,167 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.CxenseSdk
+import com.cxense.cxensesdk.model.User
+import com.cxense.cxensesdk.model.UserIdentity
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.asFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.flatMapMerge
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.withTimeout
+import java.util.concurrent.TimeUnit
+
+/**
+ * Outcome of reading data of one user with {@link BulkReader}.
+ *
+ * @property identity the user identity
+ * @property value    the read value, or null if reading failed
+ * @property error    error of the last attempt, or null if the value was read
+ */
+data class ReadResult<T>(
+    val identity: UserIdentity,
+    val value: T? = null,
+    val error: Throwable? = null
+) {
+    /**
+     * True if the value was read
+     */
+    val isSuccess: Boolean
+        get() = error == null
+}
+
+/**
+ * Results of a {@link BulkReader} flow collected by identity.
+ *
+ * @property values   values of users that were read, in completion order
+ * @property failures errors of users that failed, in completion order
+ */
+data class BulkReadReport<T>(
+    val values: Map<UserIdentity, T>,
+    val failures: Map<UserIdentity, Throwable>
+) {
+    /**
+     * True if no user failed
+     */
+    val isComplete: Boolean
+        get() = failures.isEmpty()
+
+    override fun toString(): String =
+        "BulkReadReport(read=${values.size}, failed=${Keys.identities(failures.keys)})"
+}
+
+/**
+ * Reads DMP data of many users with bounded parallelism.
+ *
+ * Identities are deduplicated by type and id, then up to `maxConcurrency` users are read at the same time, each
+ * with its own retries. All users of a flow share one deadline counted from collection start; users that are not
+ * read by then fail with {@link TimeoutCancellationException}. Failed users don't stop the flow: every distinct
+ * identity produces a {@link ReadResult}, in completion order. Use {@link #report} to collect them into a
+ * {@link BulkReadReport}.
+ *
+ * @param maxConcurrency maximum number of users read at the same time
+ * @param timeoutMillis  deadline of the whole flow
+ * @param retryPolicy    retries of each user, by default {@link adapterRetryPolicy}
+ */
+@FlowPreview
+class BulkReader(
+    private val maxConcurrency: Int = 8,
+    private val timeoutMillis: Long = TimeUnit.SECONDS.toMillis(30),
+    private val retryPolicy: RetryPolicy? = null
+) {
+    init {
+        require(maxConcurrency > 0) { "maxConcurrency must be positive" }
+        require(timeoutMillis > 0) { "timeoutMillis must be positive" }
+    }
+
+    /**
+     * Gets profile of each user.
+     *
+     * @param identities    user identifiers with type and id
+     * @param groups        the groups to get data for
+     * @param recent        flag whether to only fetch recently updated data
+     * @param identityTypes the identity types to get data for
+     * @return a flow of results for each distinct identity
+     */
+    fun getUsers(
+        identities: List<UserIdentity>,
+        groups: List<String>? = null,
+        recent: Boolean? = null,
+        identityTypes: List<String>? = null
+    ): Flow<ReadResult<User>> = read(identities) { identity ->
+        await(Endpoint.GET_USER, policy()) { callback ->
+            CxenseSdk.getInstance().getUser(identity, groups, recent, identityTypes, callback)
+        }
+    }
+
+    /**
+     * Gets segment ids of each user.
+     *
+     * @param identities   user identifiers with type and id
+     * @param siteGroupIds the site groups to get segments for
+     * @return a flow of results for each distinct identity
+     */
+    fun getSegmentsForMany(
+        identities: List<UserIdentity>,
+        siteGroupIds: List<String>
+    ): Flow<ReadResult<List<String>>> = read(identities) { identity ->
+        await(Endpoint.GET_USER_SEGMENT_IDS, policy()) { callback ->
+            CxenseSdk.getInstance().getUserSegmentIds(listOf(identity), siteGroupIds, callback)
+        }
+    }
+
+    private fun policy(): RetryPolicy? = retryPolicy ?: adapterRetryPolicy
+
+    private fun <T : Any> read(
+        identities: List<UserIdentity>,
+        call: suspend (UserIdentity) -> T
+    ): Flow<ReadResult<T>> = flow {
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)
+        emitAll(identities.distinctBy { Keys.identity(it) }.asFlow().flatMapMerge(maxConcurrency) { identity ->
+            flow {
+                emit(readOne(identity, deadline, call))
+            }
+        })
+    }
+
+    private suspend fun <T : Any> readOne(
+        identity: UserIdentity,
+        deadline: Long,
+        call: suspend (UserIdentity) -> T
+    ): ReadResult<T> = try {
+        val remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())
+        ReadResult(identity, withTimeout(remaining) { call(identity) })
+    } catch (e: TimeoutCancellationException) {
+        ReadResult(identity, error = e)
+    } catch (e: CancellationException) {
+        throw e
+    } catch (e: Exception) {
+        ReadResult(identity, error = e)
+    }
+
+    companion object {
+        /**
+         * Collects results of a flow.
+         *
+         * @param results results of {@link #getUsers} or {@link #getSegmentsForMany}
+         * @return the report once all users are finished
+         */
+        suspend fun <T> report(results: Flow<ReadResult<T>>): BulkReadReport<T> {
+            val values = LinkedHashMap<UserIdentity, T>()
+            val failures = LinkedHashMap<UserIdentity, Throwable>()
+            results.collect { result ->
+                val error = result.error
+                if (error == null)
+                    @Suppress("UNCHECKED_CAST")
+                    values[result.identity] = result.value as T
+                else
+                    failures[result.identity] = error
+            }
+            return BulkReadReport(values, failures)
+        }
+    }
+}
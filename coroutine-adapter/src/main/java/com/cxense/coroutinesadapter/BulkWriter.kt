@@ -0,0 +1,145 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.CxenseSdk
+import com.cxense.cxensesdk.model.UserExternalData
+import com.cxense.cxensesdk.model.UserIdentity
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flatMapMerge
+import kotlinx.coroutines.flow.flow
+import java.util.Locale
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Outcome of writing one item with {@link BulkWriter}.
+ *
+ * @property item  the written item
+ * @property error error of the last attempt, or null if the item was written
+ */
+data class WriteResult<T>(
+    val item: T,
+    val error: Throwable? = null
+) {
+    /**
+     * True if the item was written
+     */
+    val isSuccess: Boolean
+        get() = error == null
+}
+
+/**
+ * Immutable snapshot of {@link BulkWriter} progress.
+ *
+ * @property succeededCount number of written items
+ * @property failedCount    number of items that failed after all attempts
+ * @property inFlightCount  number of items being written now
+ * @property elapsedMillis  time since the first item started, in milliseconds
+ */
+data class BulkWriteStats(
+    val succeededCount: Long,
+    val failedCount: Long,
+    val inFlightCount: Int,
+    val elapsedMillis: Long
+) {
+    /**
+     * Finished items per second since the first item started
+     */
+    val itemsPerSecond: Double
+        get() = if (elapsedMillis == 0L) 0.0 else (succeededCount + failedCount) * 1000.0 / elapsedMillis
+
+    override fun toString(): String = String.format(
+        Locale.US, "BulkWriteStats(succeeded=%d, failed=%d, inFlight=%d, elapsed=%dms, %.1f items/s)",
+        succeededCount, failedCount, inFlightCount, elapsedMillis, itemsPerSecond
+    )
+}
+
+/**
+ * Writes and deletes external data of many users with bounded parallelism.
+ *
+ * Up to `maxConcurrency` items are written at the same time, each with its own retries. Failed items don't
+ * stop the flow: every item produces a {@link WriteResult}, in completion order. Progress of all flows of the
+ * writer is available with {@link #stats}.
+ *
+ * @param maxConcurrency maximum number of items written at the same time
+ * @param retryPolicy    retries of each item, by default {@link adapterRetryPolicy}
+ */
+@FlowPreview
+class BulkWriter(
+    private val maxConcurrency: Int = 8,
+    private val retryPolicy: RetryPolicy? = null
+) {
+    private val succeeded = AtomicLong()
+    private val failed = AtomicLong()
+    private val inFlight = AtomicInteger()
+    private val startNanos = AtomicLong()
+
+    init {
+        require(maxConcurrency > 0) { "maxConcurrency must be positive" }
+    }
+
+    /**
+     * Progress of all flows of this writer
+     */
+    val stats: BulkWriteStats
+        get() {
+            val start = startNanos.get()
+            val elapsed = if (start == 0L) 0 else TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+            return BulkWriteStats(succeeded.get(), failed.get(), inFlight.get(), elapsed)
+        }
+
+    /**
+     * Sets external data for each user of the flow.
+     *
+     * @param items external data of users
+     * @return a flow of results for each item
+     */
+    fun set(items: Flow<UserExternalData>): Flow<WriteResult<UserExternalData>> =
+        items.flatMapMerge(maxConcurrency) { item ->
+            flow {
+                emit(write(item) {
+                    await<Void>(Endpoint.SET_USER_EXTERNAL_DATA, policy()) { callback ->
+                        CxenseSdk.getInstance().setUserExternalData(item, callback)
+                    }
+                })
+            }
+        }
+
+    /**
+     * Deletes external data for each user of the flow.
+     *
+     * @param identities user identifiers with type and id
+     * @return a flow of results for each item
+     */
+    fun delete(identities: Flow<UserIdentity>): Flow<WriteResult<UserIdentity>> =
+        identities.flatMapMerge(maxConcurrency) { identity ->
+            flow {
+                emit(write(identity) {
+                    await<Void>(Endpoint.DELETE_USER_EXTERNAL_DATA, policy()) { callback ->
+                        CxenseSdk.getInstance().deleteUserExternalData(identity, callback)
+                    }
+                })
+            }
+        }
+
+    private fun policy(): RetryPolicy? = retryPolicy ?: adapterRetryPolicy
+
+    private suspend fun <T> write(item: T, call: suspend () -> Unit): WriteResult<T> {
+        startNanos.compareAndSet(0, System.nanoTime())
+        inFlight.incrementAndGet()
+        return try {
+            call()
+            succeeded.incrementAndGet()
+            WriteResult(item)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            failed.incrementAndGet()
+            WriteResult(item, e)
+        } finally {
+            inFlight.decrementAndGet()
+        }
+    }
+}
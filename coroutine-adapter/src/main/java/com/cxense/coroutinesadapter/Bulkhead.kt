@@ -0,0 +1,70 @@
+package com.cxense.coroutinesadapter
+
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Signals that a call was rejected because the bulkhead of its family has no free slot and its queue is full.
+ */
+class BulkheadFullException internal constructor(family: EndpointFamily) :
+    RuntimeException("Bulkhead for $family endpoints is full")
+
+/**
+ * Concurrency limit for one {@link EndpointFamily}.
+ *
+ * At most `maxConcurrent` calls of the family run at the same time. Further calls suspend in a FIFO queue of
+ * `maxQueued` places and resume when a running call finishes. When the queue is full calls fail at once with
+ * {@link BulkheadFullException}. A cancelled call leaves the queue or frees its slot immediately.
+ *
+ * Install with {@link adapterBulkheads}.
+ *
+ * @param maxConcurrent maximum number of calls running at the same time
+ * @param maxQueued     maximum number of calls waiting for a slot
+ */
+class Bulkhead(
+    private val maxConcurrent: Int,
+    private val maxQueued: Int
+) {
+    private val semaphore: Semaphore
+    private val admitted = AtomicInteger()
+    private val rejected = AtomicLong()
+
+    init {
+        require(maxConcurrent > 0 && maxQueued >= 0) { "maxConcurrent must be positive and maxQueued not negative" }
+        semaphore = Semaphore(maxConcurrent)
+    }
+
+    /**
+     * Number of calls running now
+     */
+    val runningCount: Int
+        get() = maxConcurrent - semaphore.availablePermits
+
+    /**
+     * Number of calls waiting for a slot
+     */
+    val queuedCount: Int
+        get() = maxOf(0, admitted.get() - maxConcurrent)
+
+    /**
+     * Number of calls rejected because the queue was full
+     */
+    val rejectedCount: Long
+        get() = rejected.get()
+
+    internal suspend fun <T> execute(family: EndpointFamily, call: suspend () -> T): T {
+        // Running and waiting calls together, the semaphore keeps the FIFO order among the waiting ones.
+        if (admitted.incrementAndGet() > maxConcurrent + maxQueued) {
+            admitted.decrementAndGet()
+            rejected.incrementAndGet()
+            throw BulkheadFullException(family)
+        }
+        try {
+            return semaphore.withPermit { call() }
+        } finally {
+            admitted.decrementAndGet()
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.cxense.coroutinesadapter
+
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+
+/**
+ * Sends [element] applying [policy] when the channel is full.
+ *
+ * @return false if an element (the new or the oldest one) was dropped
+ */
+internal suspend fun <E> Channel<E>.sendWith(element: E, policy: BufferOverflow): Boolean =
+    if (policy == BufferOverflow.SUSPEND) {
+        send(element)
+        true
+    } else {
+        offerWith(element, policy)
+    }
+
+/**
+ * Offers [element] without suspending, applying [policy] when the channel is full.
+ * [BufferOverflow.SUSPEND] can't suspend here and behaves like [BufferOverflow.DROP_LATEST].
+ *
+ * @return false if an element (the new or the oldest one) was dropped
+ */
+internal fun <E> Channel<E>.offerWith(element: E, policy: BufferOverflow): Boolean {
+    if (offer(element))
+        return true
+    if (policy == BufferOverflow.DROP_OLDEST) {
+        while (!isClosedForSend) {
+            poll()
+            if (offer(element))
+                return false
+        }
+    }
+    return false
+}
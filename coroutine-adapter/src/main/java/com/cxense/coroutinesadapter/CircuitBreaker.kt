@@ -0,0 +1,198 @@
+package com.cxense.coroutinesadapter
+
+import kotlinx.coroutines.CancellationException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Signals that a call was rejected because the circuit breaker of its family is open.
+ */
+class CircuitBreakerOpenException internal constructor(family: EndpointFamily) :
+    RuntimeException("Circuit breaker for $family endpoints is open")
+
+/**
+ * Circuit breaker for one {@link EndpointFamily}.
+ *
+ * While {@link State#CLOSED closed} it keeps outcomes of the last `windowSize` calls. When at least
+ * `minimumCalls` are recorded and the share of failures reaches the threshold, the breaker opens. While
+ * {@link State#OPEN open} calls fail at once with {@link CircuitBreakerOpenException}. After the open duration
+ * the breaker lets a few trial calls through ({@link State#HALF_OPEN half-open}): if all of them succeed it
+ * closes, any failure opens it again. Cancelled calls are not recorded.
+ *
+ * Install with {@link adapterCircuitBreakers}.
+ *
+ * @param windowSize           number of last calls whose outcomes are kept
+ * @param minimumCalls         number of calls in the window needed before the breaker may open
+ * @param failureRateThreshold share of failures in the window that opens the breaker, from 0 to 1
+ * @param openDurationMillis   time the breaker stays open before trial calls
+ * @param halfOpenCalls        number of trial calls that must succeed to close the breaker
+ * @param recordFailure        returns true for errors that count as failures, by default all errors do
+ */
+class CircuitBreaker(
+    windowSize: Int = 20,
+    private val minimumCalls: Int = 10,
+    private val failureRateThreshold: Double = 0.5,
+    openDurationMillis: Long = 30_000,
+    private val halfOpenCalls: Int = 3,
+    private val recordFailure: (Throwable) -> Boolean = { true }
+) {
+    /**
+     * Breaker states
+     */
+    enum class State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private val openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis)
+    private val rejected = AtomicLong()
+    private val opened = AtomicLong()
+    // guarded by this
+    private val window = BooleanArray(windowSize)
+    // guarded by this
+    private var windowIndex = 0
+    // guarded by this
+    private var windowCount = 0
+    // guarded by this
+    private var windowFailures = 0
+    // guarded by this
+    private var state = State.CLOSED
+    // guarded by this
+    private var openedAtNanos = 0L
+    // guarded by this
+    private var halfOpenPermits = 0
+    // guarded by this
+    private var halfOpenSuccesses = 0
+
+    init {
+        require(windowSize > 0 && minimumCalls in 1..windowSize) {
+            "windowSize and minimumCalls must be positive, minimumCalls not greater than windowSize"
+        }
+        require(failureRateThreshold > 0 && failureRateThreshold <= 1) {
+            "failureRateThreshold must be greater than 0 and not greater than 1"
+        }
+        require(openDurationMillis > 0) { "openDurationMillis must be positive" }
+        require(halfOpenCalls > 0) { "halfOpenCalls must be positive" }
+    }
+
+    /**
+     * Current state
+     */
+    val currentState: State
+        @Synchronized get() =
+            if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos) State.HALF_OPEN else state
+
+    /**
+     * Share of failures among calls in the window, or 0 if the window is empty
+     */
+    val failureRate: Double
+        @Synchronized get() = if (windowCount == 0) 0.0 else windowFailures.toDouble() / windowCount
+
+    /**
+     * Number of calls rejected while the breaker was open
+     */
+    val rejectedCount: Long
+        get() = rejected.get()
+
+    /**
+     * Number of times the breaker opened
+     */
+    val openedCount: Long
+        get() = opened.get()
+
+    internal suspend fun <T> execute(family: EndpointFamily, call: suspend () -> T): T {
+        if (!tryAcquire()) {
+            rejected.incrementAndGet()
+            throw CircuitBreakerOpenException(family)
+        }
+        val result = try {
+            call()
+        } catch (e: Throwable) {
+            when {
+                e is CancellationException || e is BulkheadFullException -> onIgnored()
+                isFailure(e) -> onFailure()
+                else -> onSuccess()
+            }
+            throw e
+        }
+        onSuccess()
+        return result
+    }
+
+    private fun isFailure(throwable: Throwable): Boolean = try {
+        recordFailure(throwable)
+    } catch (e: Exception) {
+        true
+    }
+
+    @Synchronized
+    private fun tryAcquire(): Boolean {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openDurationNanos)
+                return false
+            state = State.HALF_OPEN
+            halfOpenPermits = halfOpenCalls
+            halfOpenSuccesses = 0
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0)
+                return false
+            halfOpenPermits--
+        }
+        return true
+    }
+
+    @Synchronized
+    private fun onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccesses >= halfOpenCalls)
+                close()
+        } else if (state == State.CLOSED) {
+            record(false)
+        }
+    }
+
+    @Synchronized
+    private fun onFailure() {
+        if (state == State.HALF_OPEN) {
+            open()
+        } else if (state == State.CLOSED) {
+            record(true)
+            if (windowCount >= minimumCalls && windowFailures.toDouble() / windowCount >= failureRateThreshold)
+                open()
+        }
+    }
+
+    @Synchronized
+    private fun onIgnored() {
+        if (state == State.HALF_OPEN)
+            halfOpenPermits++
+    }
+
+    private fun record(failed: Boolean) {
+        if (windowCount == window.size) {
+            if (window[windowIndex])
+                windowFailures--
+        } else {
+            windowCount++
+        }
+        window[windowIndex] = failed
+        if (failed)
+            windowFailures++
+        windowIndex = (windowIndex + 1) % window.size
+    }
+
+    private fun open() {
+        state = State.OPEN
+        openedAtNanos = System.nanoTime()
+        opened.incrementAndGet()
+    }
+
+    private fun close() {
+        state = State.CLOSED
+        windowIndex = 0
+        windowCount = 0
+        windowFailures = 0
+    }
+}
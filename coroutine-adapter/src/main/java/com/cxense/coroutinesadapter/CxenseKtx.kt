@@ -3,19 +3,48 @@ package com.cxense.coroutinesadapter
 import com.cxense.cxensesdk.CxenseSdk
 import com.cxense.cxensesdk.LoadCallback
 import com.cxense.cxensesdk.model.ContentUser
+import com.cxense.cxensesdk.model.Event
 import com.cxense.cxensesdk.model.EventStatus
 import com.cxense.cxensesdk.model.User
 import com.cxense.cxensesdk.model.UserExternalData
 import com.cxense.cxensesdk.model.UserIdentity
 import com.cxense.cxensesdk.model.WidgetContext
 import com.cxense.cxensesdk.model.WidgetItem
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineStart
 import kotlinx.coroutines.ExperimentalCoroutinesApi
-import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.coroutineScope
 import kotlinx.coroutines.flow.Flow
-import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.launch
 import kotlinx.coroutines.suspendCancellableCoroutine
-import kotlin.coroutines.resume
-import kotlin.coroutines.resumeWithException
+import kotlinx.coroutines.withTimeoutOrNull
+
+/**
+ * Metrics for all network calls of the adapter, see {@link AdapterMetrics}. Null disables recording.
+ */
+@Volatile
+var adapterMetrics: AdapterMetrics? = null
+
+/**
+ * Retries of failed network calls, see {@link RetryPolicy}. Null disables retries.
+ */
+@Volatile
+var adapterRetryPolicy: RetryPolicy? = null
+
+/**
+ * Circuit breakers per endpoint family, see {@link CircuitBreaker}. Families without a breaker are not guarded.
+ */
+@Volatile
+var adapterCircuitBreakers: Map<EndpointFamily, CircuitBreaker> = emptyMap()
+
+/**
+ * Concurrency limits per endpoint family, see {@link Bulkhead}. Families without a bulkhead are not limited.
+ */
+@Volatile
+var adapterBulkheads: Map<EndpointFamily, Bulkhead> = emptyMap()
 
 /**
  * Tracks a click for the given click-url
@@ -23,7 +52,7 @@ import kotlin.coroutines.resumeWithException
  * @param url the click-url
  */
 suspend fun trackClick(url: String) {
-    await<Void> { callback ->
+    await<Void>(Endpoint.TRACK_CLICK) { callback ->
         CxenseSdk.getInstance().trackClick(url, callback)
     }
 }
@@ -34,7 +63,7 @@ suspend fun trackClick(url: String) {
  * @param item the item that contains the click-url
  */
 suspend fun trackClick(item: WidgetItem) {
-    await<Void> { callback ->
+    await<Void>(Endpoint.TRACK_CLICK) { callback ->
         CxenseSdk.getInstance().trackClick(item, callback)
     }
 }
@@ -51,11 +80,56 @@ suspend fun loadWidgetRecommendations(
     user: ContentUser? = null,
     tag: String? = null,
     prnd: String? = null
-): List<WidgetItem> = await { callback ->
+): List<WidgetItem> = await(Endpoint.LOAD_WIDGET_RECOMMENDATIONS) { callback ->
     CxenseSdk.getInstance()
         .loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd, callback)
 }
 
+/**
+ * Fetch a list of widgets through the cache. Fresh cached items are returned without a network request,
+ * stale ones are returned at once and refreshed in background.
+ *
+ * @param cache         the cache to read from and to update
+ * @param widgetId      the widget id
+ * @param widgetContext the WidgetContext
+ * @param user          custom user
+ * @return a list of widgets
+ */
+suspend fun loadWidgetRecommendations(
+    cache: WidgetRecommendationsCache,
+    widgetId: String,
+    widgetContext: WidgetContext,
+    user: ContentUser? = null,
+    tag: String? = null,
+    prnd: String? = null
+): List<WidgetItem> = cache.get(Keys.widget(widgetId, widgetContext, user, tag, prnd)) {
+    loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd)
+}
+
+/**
+ * Fetch a list of widgets with hedged requests. A duplicate request is sent when the first one is slow,
+ * the first response wins, see {@link HedgingPolicy}.
+ *
+ * @param policy         the hedging policy
+ * @param deadlineMillis maximum time to wait for the response
+ * @param widgetId       the widget id
+ * @param widgetContext  the WidgetContext
+ * @param user           custom user
+ * @return a list of widgets
+ * @throws java.util.concurrent.TimeoutException when the deadline passes
+ */
+suspend fun loadWidgetRecommendations(
+    policy: HedgingPolicy,
+    deadlineMillis: Long,
+    widgetId: String,
+    widgetContext: WidgetContext,
+    user: ContentUser? = null,
+    tag: String? = null,
+    prnd: String? = null
+): List<WidgetItem> = policy.execute(deadlineMillis) {
+    loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd)
+}
+
 /**
  * Asynchronously retrieves a list of all segments where the specified user is a member
  *
@@ -66,7 +140,7 @@ suspend fun loadWidgetRecommendations(
 suspend fun getUserSegmentIds(
     identities: List<UserIdentity>,
     siteGroupIds: List<String>
-): List<String> = await { callback ->
+): List<String> = await(Endpoint.GET_USER_SEGMENT_IDS) { callback ->
     CxenseSdk.getInstance().getUserSegmentIds(identities, siteGroupIds, callback)
 }
 
@@ -87,7 +161,7 @@ suspend fun getUser(
     groups: List<String>? = null,
     recent: Boolean? = null,
     identityTypes: List<String>? = null
-): User = await { callback ->
+): User = await(Endpoint.GET_USER) { callback ->
     CxenseSdk.getInstance().getUser(identity, groups, recent, identityTypes, callback)
 }
 
@@ -103,17 +177,34 @@ suspend fun getUserExternalData(
     type: String,
     id: String? = null,
     filter: String? = null
-): List<UserExternalData> = await { callback ->
+): List<UserExternalData> = await(Endpoint.GET_USER_EXTERNAL_DATA) { callback ->
     CxenseSdk.getInstance().getUserExternalData(type, id, filter, callback)
 }
 
+/**
+ * Streams the external data of all users of a type, one slice at a time. Every filter selects one slice, for
+ * example one group, and is read with its own request. The next slice is requested only after the collector
+ * consumed the previous one, so at most one slice is held in memory and cancelling skips the remaining requests.
+ * Filters that overlap emit the shared items more than once.
+ *
+ * @param type    the customer identifier type
+ * @param filters traffic filters of type user-external with required group and optional item/items specified,
+ *                one per slice
+ * @return a flow of {@link UserExternalData} objects
+ */
+fun getUserExternalDataFlow(type: String, filters: List<String>): Flow<UserExternalData> = flow {
+    filters.forEach { filter ->
+        getUserExternalData(type, null, filter).forEach { emit(it) }
+    }
+}
+
 /**
  * Asynchronously sets the external data associated with a given user
  *
  * @param userExternalData external data associated with a user
  */
 suspend fun setUserExternalData(userExternalData: UserExternalData) {
-    await<Void> { callback ->
+    await<Void>(Endpoint.SET_USER_EXTERNAL_DATA) { callback ->
         CxenseSdk.getInstance().setUserExternalData(userExternalData, callback)
     }
 }
@@ -124,7 +215,7 @@ suspend fun setUserExternalData(userExternalData: UserExternalData) {
  * @param identity user identifier with type and id
  */
 suspend fun deleteUserExternalData(identity: UserIdentity) {
-    await<Void> { callback ->
+    await<Void>(Endpoint.DELETE_USER_EXTERNAL_DATA) { callback ->
         CxenseSdk.getInstance().deleteUserExternalData(identity, callback)
     }
 }
@@ -136,9 +227,10 @@ suspend fun deleteUserExternalData(identity: UserIdentity) {
  * @param type     the identity mapping type (customer identifier type) that contains the mapping.
  * @return an {@link UserIdentity} object
  */
-suspend fun getUserExternalLink(cxenseId: String, type: String): UserIdentity = await { callback ->
-    CxenseSdk.getInstance().getUserExternalLink(cxenseId, type, callback)
-}
+suspend fun getUserExternalLink(cxenseId: String, type: String): UserIdentity =
+    await(Endpoint.GET_USER_EXTERNAL_LINK) { callback ->
+        CxenseSdk.getInstance().getUserExternalLink(cxenseId, type, callback)
+    }
 
 /**
  * Asynchronously register a new identity-mapping for the given user
@@ -148,28 +240,86 @@ suspend fun getUserExternalLink(cxenseId: String, type: String): UserIdentity =
  * @return an {@link UserIdentity} object
  */
 suspend fun addUserExternalLink(cxenseId: String, identity: UserIdentity): UserIdentity =
-    await { callback ->
+    await(Endpoint.ADD_USER_EXTERNAL_LINK) { callback ->
         CxenseSdk.getInstance().addUserExternalLink(cxenseId, identity, callback)
     }
 
 /**
- * Listener for events sending statuses
+ * Push events from the flow to sending queue in batches, see {@link EventSink}.
+ * Returns when the flow completed and all its events were pushed.
  *
- * @return an {@link Observable} that emits statuses at each events sending
+ * @param events the flow of events that should be pushed.
+ * @param sink   the sink that batches events
  */
-@ExperimentalCoroutinesApi
-suspend fun getDispatchEventsStatuses(): Flow<List<EventStatus>> =
-    callbackFlow {
-        val callback = object : CxenseSdk.DispatchEventsCallback {
-            override fun onDispatch(statuses: List<EventStatus>) {
-                offer(statuses)
+suspend fun pushEvents(events: Flow<Event>, sink: EventSink = EventSink()) {
+    sink.push(events)
+}
+
+/**
+ * Forces sending events from queue to server and waits for the SDK to report the result of every event that was
+ * waiting at call time. Events pushed later are not waited for.
+ *
+ * Statuses are taken from {@link DispatchStatusHub}, which registers its callback again for every call. Calling
+ * {@link CxenseSdk#setDispatchEventsCallback} directly while waiting replaces that callback, and the call then
+ * ends with the timeout and the remaining events pending. Failed events stay in the queue for a later dispatch.
+ *
+ * @param timeoutMillis maximum time to wait
+ * @return summary of the flush once all waiting events are reported, or when the timeout elapses with the events
+ * still not reported
+ */
+suspend fun flushAndAwait(timeoutMillis: Long): FlushResult {
+    require(timeoutMillis > 0) { "timeoutMillis must be positive" }
+    val tracker = FlushTracker()
+    val done = CompletableDeferred<Unit>()
+    coroutineScope {
+        // Started undispatched, so the collector is registered before the queue is read.
+        val statuses = launch(start = CoroutineStart.UNDISPATCHED) {
+            DispatchStatusHub.statuses().collect {
+                if (tracker.onStatuses(it))
+                    done.complete(Unit)
             }
         }
-        CxenseSdk.getInstance().setDispatchEventsCallback(callback)
-        awaitClose {
-            CxenseSdk.getInstance().setDispatchEventsCallback(null)
+        if (tracker.track(CxenseSdk.getInstance().queueStatus.notSentEvents)) {
+            done.complete(Unit)
+        } else {
+            CxenseSdk.getInstance().flushEventQueue()
+            QueueMonitor.onActivity()
         }
+        withTimeoutOrNull(timeoutMillis) { done.await() }
+        statuses.cancel()
     }
+    return tracker.result()
+}
+
+/**
+ * Event queue snapshots driven by dispatch and push activity instead of polling, see {@link QueueMonitor}.
+ *
+ * @return a {@link Flow} that emits a snapshot whenever the queue changes
+ */
+fun observeQueueStatus(): Flow<QueueSnapshot> = QueueMonitor.observe()
+
+/**
+ * Listener for events sending statuses. Any number of collectors can listen at the same time,
+ * see {@link DispatchStatusHub}.
+ *
+ * @return a {@link Flow} that emits statuses of batches sent after the collection started
+ */
+@ExperimentalCoroutinesApi
+suspend fun getDispatchEventsStatuses(): Flow<List<EventStatus>> = DispatchStatusHub.statuses()
+
+/**
+ * Listener for events sending statuses, see {@link DispatchStatusHub}.
+ *
+ * @param replayed         true to receive the last batches sent before the collection first
+ * @param capacity         number of batches buffered for a slow collector
+ * @param onBufferOverflow what to do when the buffer is full
+ * @return a {@link Flow} that emits statuses at each events sending
+ */
+fun getDispatchEventsStatuses(
+    replayed: Boolean,
+    capacity: Int = DispatchStatusHub.DEFAULT_CAPACITY,
+    onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST
+): Flow<List<EventStatus>> = DispatchStatusHub.statuses(capacity, onBufferOverflow, replayed)
 
 /**
  * Executes persisted query to Cxense API endpoint. You can find some popular endpoints in {@link CxenseConstants}
@@ -184,19 +334,35 @@ suspend fun <T : Any> getPersistedQuery(
     url: String,
     persistentQueryId: String,
     data: Any? = null
-): T = await { callback ->
+): T = await(Endpoint.PERSISTED_QUERY) { callback ->
     CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, data, callback)
 }
 
-private suspend fun <T : Any> await(block: (LoadCallback<T>) -> Unit): T =
-    suspendCancellableCoroutine { cont ->
-        block(object : LoadCallback<T> {
-            override fun onError(throwable: Throwable) {
-                cont.resumeWithException(throwable)
-            }
+private suspend fun <T : Any> await(endpoint: Endpoint, block: (LoadCallback<T>) -> Unit): T =
+    await(endpoint, adapterRetryPolicy, block)
 
-            override fun onSuccess(data: T) {
-                cont.resume(data)
-            }
-        })
-    }
\ No newline at end of file
+internal suspend fun <T : Any> await(endpoint: Endpoint, policy: RetryPolicy?, block: (LoadCallback<T>) -> Unit): T {
+    policy ?: return awaitIsolated(endpoint, block)
+    return policy.execute(endpoint, adapterMetrics) { awaitIsolated(endpoint, block) }
+}
+
+private suspend fun <T : Any> awaitIsolated(endpoint: Endpoint, block: (LoadCallback<T>) -> Unit): T {
+    val family = endpoint.family
+    val bulkhead = adapterBulkheads[family]
+    val call: suspend () -> T =
+        if (bulkhead == null) ({ awaitOnce(endpoint, block) })
+        else ({ bulkhead.execute(family) { awaitOnce(endpoint, block) } })
+    // The breaker goes outside, so that an open breaker rejects calls without queueing them.
+    val circuitBreaker = adapterCircuitBreakers[family] ?: return call()
+    return circuitBreaker.execute(family, call)
+}
+
+private suspend fun <T : Any> awaitOnce(endpoint: Endpoint, block: (LoadCallback<T>) -> Unit): T =
+    suspendCancellableCoroutine { cont ->
+        // Don't start a request for a coroutine that is already cancelled.
+        if (!cont.isActive)
+            return@suspendCancellableCoroutine
+        val callback = MeteredCallback(endpoint, adapterMetrics, cont)
+        cont.invokeOnCancellation { callback.cancel() }
+        block(callback)
+    }
@@ -0,0 +1,96 @@
+package com.cxense.coroutinesadapter
+
+import java.util.concurrent.TimeUnit
+
+/**
+ * Chooses the SDK dispatch period and when to flush, from the state of the event queue and the device.
+ *
+ * While the queue looks empty the period is half the latency target of the current state. Events pushed to the SDK
+ * directly or queued by the SDK itself are seen only when they are dispatched, so the timer alone has to keep
+ * them within the target, and a later switch to the cheaper period still leaves them room. Push events through
+ * the adapter to have them seen right away. While events wait, the period is the latency target of the current state, [foregroundLatencyMillis] for a visible app and
+ * [backgroundLatencyMillis] otherwise, less one minimum period, so an event that restarts the timer still makes its
+ * target. While charging on an unmetered network, where a wake-up is almost free, it is half the target. The policy
+ * asks for a flush when [batchSize] events are waiting, or when the next tick would deliver the oldest event too
+ * late, which happens after the state changed under it. A smaller batch doesn't pay off even when wake-ups are
+ * cheap: flushes don't move the dispatch timer, so a busy stream would wake the radio for the flush and again for
+ * the next tick.
+ *
+ * The policy is a pure function of its input and has no Android dependencies, so recorded traces can be replayed
+ * through it. {@link AdaptiveDispatchController} applies it to the SDK.
+ *
+ * @param minPeriodMillis         shortest dispatch period
+ * @param maxPeriodMillis         longest dispatch period
+ * @param foregroundLatencyMillis latency target while the app is visible
+ * @param backgroundLatencyMillis latency target while the app is in background
+ * @param batchSize               number of waiting events worth a wake-up of their own
+ */
+class DispatchPolicy(
+    val minPeriodMillis: Long = TimeUnit.SECONDS.toMillis(10),
+    private val maxPeriodMillis: Long = TimeUnit.MINUTES.toMillis(15),
+    private val foregroundLatencyMillis: Long = TimeUnit.SECONDS.toMillis(30),
+    private val backgroundLatencyMillis: Long = TimeUnit.MINUTES.toMillis(5),
+    private val batchSize: Int = 50
+) {
+    init {
+        require(minPeriodMillis > 0 && maxPeriodMillis >= minPeriodMillis) {
+            "minPeriodMillis must be positive and not greater than maxPeriodMillis"
+        }
+        require(foregroundLatencyMillis > 0 && backgroundLatencyMillis > 0) { "latency targets must be positive" }
+        require(batchSize > 0) { "batchSize must be positive" }
+    }
+
+    /**
+     * Input of {@link DispatchPolicy#decide}.
+     *
+     * @property queueDepth           number of events waiting to be sent
+     * @property oldestEventAgeMillis time the oldest waiting event has been waiting, in milliseconds
+     * @property periodMillis         dispatch period in effect, in milliseconds, or 0 if unknown
+     * @property untilTickMillis      time until the next dispatch of the SDK timer, in milliseconds
+     * @property unmetered            true if the active network is unmetered
+     * @property charging             true if the device is charging
+     * @property foreground           true if the app is visible
+     */
+    data class State(
+        val queueDepth: Int,
+        val oldestEventAgeMillis: Long,
+        val periodMillis: Long,
+        val untilTickMillis: Long,
+        val unmetered: Boolean,
+        val charging: Boolean,
+        val foreground: Boolean
+    )
+
+    /**
+     * Output of {@link DispatchPolicy#decide}.
+     *
+     * @property periodMillis  dispatch period to set, in milliseconds
+     * @property flush         true if the queue should be flushed now
+     * @property recheckMillis time after which the oldest waiting event needs a flush if nothing else changes, in
+     *                         milliseconds, or 0 if there is nothing to wait for
+     */
+    data class Decision(
+        val periodMillis: Long,
+        val flush: Boolean,
+        val recheckMillis: Long
+    )
+
+    /**
+     * @param state state of the queue and the device
+     * @return dispatch period and whether to flush now
+     */
+    fun decide(state: State): Decision {
+        val latency = if (state.foreground) foregroundLatencyMillis else backgroundLatencyMillis
+        if (state.queueDepth == 0)
+            return Decision((latency / 2).coerceIn(minPeriodMillis, maxPeriodMillis), false, 0)
+        val cheap = state.unmetered && state.charging
+        val period = (if (cheap) latency / 2 else latency - minPeriodMillis).coerceIn(minPeriodMillis, maxPeriodMillis)
+        // Setting another period restarts the dispatch timer.
+        val untilTick = if (period == state.periodMillis) minOf(state.untilTickMillis, period) else period
+        val slack = latency - untilTick - state.oldestEventAgeMillis
+        return if (state.queueDepth >= batchSize || slack < 0)
+            Decision(period, true, 0)
+        else
+            Decision(period, false, slack + 1)
+    }
+}
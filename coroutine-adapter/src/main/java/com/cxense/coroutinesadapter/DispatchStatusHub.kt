@@ -0,0 +1,86 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.CxenseSdk
+import com.cxense.cxensesdk.model.EventStatus
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Shared source of events sending statuses.
+ *
+ * The SDK keeps a single [CxenseSdk.DispatchEventsCallback]. The hub registers its own on every subscription
+ * and fans statuses out to any number of collectors through a copy-on-write subscriber list.
+ * Collectors receive batches sent after they started; those that ask for replay receive the last [REPLAY_SIZE]
+ * batches first. Every collector has its own bounded buffer, batches that don't fit are handled by the requested
+ * [BufferOverflow] policy and counted.
+ *
+ * Don't call [CxenseSdk.setDispatchEventsCallback] directly while the hub is in use: it replaces the callback of
+ * the hub, and current collectors receive nothing until the next collection registers it again.
+ */
+object DispatchStatusHub {
+    const val REPLAY_SIZE = 16
+    const val DEFAULT_CAPACITY = 64
+
+    private class Subscriber(val channel: Channel<List<EventStatus>>, val policy: BufferOverflow)
+
+    private val subscribers = CopyOnWriteArrayList<Subscriber>()
+
+    // guarded by itself, also orders registration of subscribers against publishing
+    private val replay = ArrayDeque<List<EventStatus>>(REPLAY_SIZE)
+    private val droppedBatches = AtomicLong()
+
+    private val callback = object : CxenseSdk.DispatchEventsCallback {
+        override fun onDispatch(statuses: List<EventStatus>) {
+            val targets = synchronized(replay) {
+                if (replay.size == REPLAY_SIZE)
+                    replay.removeFirst()
+                replay.addLast(statuses)
+                subscribers.iterator()
+            }
+            targets.forEach {
+                if (!it.channel.offerWith(statuses, it.policy))
+                    droppedBatches.incrementAndGet()
+            }
+        }
+    }
+
+    /**
+     * Number of batches dropped for slow collectors
+     */
+    val droppedBatchCount: Long
+        get() = droppedBatches.get()
+
+    /**
+     * @param capacity         number of batches buffered for a slow collector
+     * @param onBufferOverflow what to do when the buffer is full. [BufferOverflow.SUSPEND] can't suspend
+     *                         the SDK and behaves like [BufferOverflow.DROP_LATEST]
+     * @param replayed         true to receive the last [REPLAY_SIZE] batches first
+     * @return a flow that emits statuses at each events sending. The collector is registered before the flow
+     * suspends for the first time.
+     */
+    fun statuses(
+        capacity: Int = DEFAULT_CAPACITY,
+        onBufferOverflow: BufferOverflow = BufferOverflow.DROP_OLDEST,
+        replayed: Boolean = false
+    ): Flow<List<EventStatus>> = flow {
+        // The app may have replaced the callback since the last collection.
+        CxenseSdk.getInstance().setDispatchEventsCallback(callback)
+        val subscriber = Subscriber(Channel(capacity), onBufferOverflow)
+        val batches = synchronized(replay) {
+            subscribers.add(subscriber)
+            if (replayed) replay.toList() else emptyList()
+        }
+        try {
+            batches.forEach { emit(it) }
+            for (statuses in subscriber.channel) {
+                emit(statuses)
+            }
+        } finally {
+            subscribers.remove(subscriber)
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.cxense.coroutinesadapter
+
+/**
+ * SDK calls that go to the network. Metrics are kept per endpoint.
+ *
+ * @property family     backend family of the endpoint, circuit breakers and bulkheads are set per family
+ * @property idempotent true if repeating the call has the same effect as making it once, so it can be retried
+ */
+enum class Endpoint(val family: EndpointFamily, val idempotent: Boolean) {
+    TRACK_CLICK(EndpointFamily.WIDGETS, false),
+    LOAD_WIDGET_RECOMMENDATIONS(EndpointFamily.WIDGETS, true),
+    GET_USER_SEGMENT_IDS(EndpointFamily.DMP, true),
+    GET_USER(EndpointFamily.DMP, true),
+    GET_USER_EXTERNAL_DATA(EndpointFamily.DMP, true),
+    SET_USER_EXTERNAL_DATA(EndpointFamily.DMP, true),
+    DELETE_USER_EXTERNAL_DATA(EndpointFamily.DMP, true),
+    GET_USER_EXTERNAL_LINK(EndpointFamily.DMP, true),
+    ADD_USER_EXTERNAL_LINK(EndpointFamily.DMP, true),
+    PERSISTED_QUERY(EndpointFamily.DMP, true)
+}
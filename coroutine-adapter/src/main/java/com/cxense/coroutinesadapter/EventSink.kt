@@ -0,0 +1,123 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.CxenseSdk
+import com.cxense.cxensesdk.model.Event
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Streaming sink that pushes events to the SDK queue in batches.
+ *
+ * Events are grouped by count and by time window, each batch is pushed with a single
+ * [CxenseSdk.pushEvents] call. While the SDK queue holds [maxQueueDepth] or more not sent events,
+ * pushing waits and finished batches are kept in a buffer of [bufferCapacity] batches. When the buffer is full
+ * [onBufferOverflow] applies: [BufferOverflow.SUSPEND] suspends the upstream flow, the other policies drop a batch.
+ *
+ * @param maxBatchSize       maximum number of events pushed with one call
+ * @param maxDelayMillis     maximum time an event waits for its batch to be pushed
+ * @param maxQueueDepth      number of not sent events in the SDK queue at which pushing waits
+ * @param pollIntervalMillis how often the SDK queue is checked while it is saturated
+ * @param bufferCapacity     number of batches kept while the SDK queue is saturated
+ * @param onBufferOverflow   what to do when the batch buffer is full
+ */
+class EventSink(
+    private val maxBatchSize: Int = 50,
+    private val maxDelayMillis: Long = 1000,
+    private val maxQueueDepth: Int = 500,
+    private val pollIntervalMillis: Long = 500,
+    private val bufferCapacity: Int = 16,
+    private val onBufferOverflow: BufferOverflow = BufferOverflow.SUSPEND
+) {
+    private val pushedEvents = AtomicLong()
+    private val pushedBatches = AtomicLong()
+    private val droppedBatches = AtomicLong()
+
+    init {
+        require(maxBatchSize > 0) { "maxBatchSize must be positive" }
+        require(maxDelayMillis > 0) { "maxDelayMillis must be positive" }
+        require(maxQueueDepth > 0) { "maxQueueDepth must be positive" }
+        require(pollIntervalMillis > 0) { "pollIntervalMillis must be positive" }
+        require(bufferCapacity > 0) { "bufferCapacity must be positive" }
+    }
+
+    /**
+     * Number of events pushed to the SDK queue
+     */
+    val pushedEventCount: Long
+        get() = pushedEvents.get()
+
+    /**
+     * Number of [CxenseSdk.pushEvents] calls
+     */
+    val pushedBatchCount: Long
+        get() = pushedBatches.get()
+
+    /**
+     * Number of batches dropped because the buffer was full
+     */
+    val droppedBatchCount: Long
+        get() = droppedBatches.get()
+
+    /**
+     * Pushes all events from the flow. Returns when the flow completed and all its events were pushed.
+     *
+     * @param events flow of events
+     */
+    suspend fun push(events: Flow<Event>) = coroutineScope {
+        val batches = Channel<List<Event>>(bufferCapacity)
+        launch {
+            val mutex = Mutex()
+            val buffer = ArrayList<Event>(maxBatchSize)
+            var timer: Job? = null
+
+            suspend fun flush(fromTimer: Boolean) {
+                val batch = mutex.withLock {
+                    if (!fromTimer)
+                        timer?.cancel()
+                    timer = null
+                    if (buffer.isEmpty()) null else ArrayList(buffer).also { buffer.clear() }
+                } ?: return
+                if (!batches.sendWith(batch, onBufferOverflow))
+                    droppedBatches.incrementAndGet()
+            }
+
+            events.collect { event ->
+                val full = mutex.withLock {
+                    buffer.add(event)
+                    if (buffer.size == 1)
+                        timer = launch {
+                            delay(maxDelayMillis)
+                            flush(true)
+                        }
+                    buffer.size >= maxBatchSize
+                }
+                if (full)
+                    flush(false)
+            }
+            flush(false)
+            batches.close()
+        }
+        for (batch in batches) {
+            awaitCapacity()
+            CxenseSdk.getInstance().pushEvents(*batch.toTypedArray())
+            pushedBatches.incrementAndGet()
+            pushedEvents.addAndGet(batch.size.toLong())
+            QueueMonitor.onActivity()
+        }
+    }
+
+    private suspend fun awaitCapacity() {
+        while (CxenseSdk.getInstance().queueStatus.notSentEvents.size >= maxQueueDepth) {
+            delay(pollIntervalMillis)
+        }
+    }
+}
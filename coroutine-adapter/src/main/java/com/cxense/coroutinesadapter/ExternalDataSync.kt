@@ -0,0 +1,198 @@
+package com.cxense.coroutinesadapter
+
+import android.content.Context
+import com.cxense.cxensesdk.model.ExternalItem
+import com.cxense.cxensesdk.model.UserExternalData
+import com.cxense.cxensesdk.model.UserIdentity
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Sends external data of a user only when it differs from the last state acknowledged by the server.
+ *
+ * For each user the store keeps a fingerprint: the sorted 64-bit hashes of its external items. A sync with the
+ * same items as the fingerprint skips the network call. Otherwise the data is sent and, once the server
+ * acknowledged it, becomes the new fingerprint. The update endpoint replaces all external data of the user, so
+ * changed data is sent whole: a payload with changed items only would drop the unchanged ones.
+ *
+ * @param file       file to keep fingerprints in
+ * @param dispatcher dispatcher for disk operations
+ */
+class ExternalDataSync(
+    private val file: File,
+    private val dispatcher: CoroutineDispatcher = Dispatchers.IO
+) {
+    private val sent = AtomicLong()
+    private val skipped = AtomicLong()
+    // guarded by this
+    private var fingerprints: MutableMap<String, LongArray>? = null
+
+    /**
+     * Creates store in application files directory.
+     *
+     * @param context any context
+     */
+    constructor(context: Context) : this(File(context.applicationContext.filesDir, FILE_NAME))
+
+    /**
+     * Number of syncs that sent data.
+     */
+    val sentCount: Long
+        get() = sent.get()
+
+    /**
+     * Number of syncs skipped because the data was unchanged.
+     */
+    val skippedCount: Long
+        get() = skipped.get()
+
+    /**
+     * Sends the external data if it changed since the last acknowledged sync.
+     *
+     * @param userExternalData external data associated with a user
+     * @return true if the data was sent, false if it was unchanged
+     */
+    suspend fun sync(userExternalData: UserExternalData): Boolean {
+        val key = Keys.externalData(userExternalData.type, userExternalData.id, null)
+        val fingerprint = fingerprint(userExternalData.items)
+        if (withContext(dispatcher) { fingerprint.contentEquals(get(key)) }) {
+            skipped.incrementAndGet()
+            return false
+        }
+        setUserExternalData(userExternalData)
+        sent.incrementAndGet()
+        withContext(dispatcher) { put(key, fingerprint) }
+        return true
+    }
+
+    /**
+     * Forgets the fingerprint of the user, so the next sync sends its data. Call it after the data was changed
+     * or deleted by other means.
+     *
+     * @param identity user identifier with type and id
+     */
+    suspend fun forget(identity: UserIdentity) {
+        val key = Keys.externalData(identity.type, identity.id, null)
+        withContext(dispatcher) { put(key, null) }
+    }
+
+    /**
+     * Removes all fingerprints.
+     *
+     * @return true if the file was deleted or did not exist
+     */
+    @Synchronized
+    fun clear(): Boolean {
+        fingerprints = HashMap()
+        return !file.exists() || file.delete()
+    }
+
+    @Synchronized
+    private fun get(key: String): LongArray? = load()[key]
+
+    @Synchronized
+    private fun put(key: String, fingerprint: LongArray?) {
+        val map = load()
+        val unchanged = if (fingerprint == null)
+            map.remove(key) == null
+        else
+            fingerprint.contentEquals(map.put(key, fingerprint))
+        if (unchanged)
+            return
+        try {
+            write(map)
+        } catch (e: IOException) {
+            // fingerprints stay in memory and are written with the next change
+        }
+    }
+
+    private fun load(): MutableMap<String, LongArray> =
+        fingerprints ?: try {
+            read()
+        } catch (e: IOException) {
+            HashMap()
+        }.also { fingerprints = it }
+
+    private fun read(): MutableMap<String, LongArray> {
+        val map = HashMap<String, LongArray>()
+        if (!file.exists())
+            return map
+        val bytes = RandomAccessFile(file, "r").use { raf ->
+            ByteArray(raf.length().toInt()).also { raf.readFully(it) }
+        }
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        if (input.readInt() != MAGIC || input.readInt() != VERSION)
+            return map
+        // An entry takes at least a key length and a hash count.
+        repeat(input.readCount(2 + 4)) {
+            val key = input.readUTF()
+            map[key] = LongArray(input.readCount(8)) { input.readLong() }
+        }
+        return map
+    }
+
+    // Reads a count of items of at least itemBytes each, a corrupt count fails like a truncated file.
+    private fun DataInputStream.readCount(itemBytes: Int): Int {
+        val count = readInt()
+        if (count < 0 || count.toLong() * itemBytes > available())
+            throw IOException("Bad count $count")
+        return count
+    }
+
+    private fun write(map: Map<String, LongArray>) {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).apply {
+            writeInt(MAGIC)
+            writeInt(VERSION)
+            writeInt(map.size)
+            map.forEach { (key, hashes) ->
+                writeUTF(key)
+                writeInt(hashes.size)
+                hashes.forEach { writeLong(it) }
+            }
+            flush()
+        }
+        val tmp = File(file.path + ".tmp")
+        FileOutputStream(tmp).use {
+            bytes.writeTo(it)
+            it.fd.sync()
+        }
+        if (!tmp.renameTo(file))
+            throw IOException("Can't replace $file")
+    }
+
+    private companion object {
+        const val FILE_NAME = "cxense_external_data.bin"
+        const val MAGIC = 0x43584544
+        const val VERSION = 1
+        const val FNV_OFFSET = -0x340d631b7bdddcdbL
+        const val SEPARATOR = "\u001f"
+
+        fun fingerprint(items: List<ExternalItem>?): LongArray {
+            if (items.isNullOrEmpty())
+                return LongArray(0)
+            val hashes = LongArray(items.size) { hash(hash(hash(FNV_OFFSET, items[it].group), SEPARATOR), items[it].item) }
+            hashes.sort()
+            var unique = 0
+            for (i in hashes.indices) {
+                if (i == 0 || hashes[i] != hashes[unique - 1])
+                    hashes[unique++] = hashes[i]
+            }
+            return if (unique == hashes.size) hashes else hashes.copyOf(unique)
+        }
+
+        // FNV-1a
+        fun hash(hash: Long, value: String?): Long =
+            value?.fold(hash) { h, c -> (h xor c.toLong()) * 0x100000001b3L } ?: hash
+    }
+}
@@ -0,0 +1,107 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.model.EventStatus
+import java.util.concurrent.TimeUnit
+
+/**
+ * Summary of a {@link #flushAndAwait} call: what happened to the events that were waiting when it was called.
+ *
+ * @property deliveredEventIds ids of events the SDK reported sent
+ * @property failures          errors by id of events the SDK failed to send, an error can be null. These events
+ *                             stay in the queue.
+ * @property pendingEventIds   ids of events without a status when the timeout elapsed
+ * @property elapsedMillis     time the flush took, in milliseconds
+ */
+data class FlushResult(
+    val deliveredEventIds: Set<String>,
+    val failures: Map<String, Exception?>,
+    val pendingEventIds: Set<String>,
+    val elapsedMillis: Long
+) {
+    /**
+     * True if the timeout elapsed before all events were reported
+     */
+    val isTimedOut: Boolean
+        get() = pendingEventIds.isNotEmpty()
+
+    /**
+     * True if all events were delivered
+     */
+    val isSuccess: Boolean
+        get() = failures.isEmpty() && pendingEventIds.isEmpty()
+}
+
+/**
+ * Correlates the events waiting at flush time with the statuses the SDK reports for them.
+ *
+ * Only events passed to [track] are followed; statuses of other events are ignored. Statuses that arrive before the
+ * queue is tracked are kept and applied by [track]. A failed event stays in the SDK queue and counts as failed
+ * unless a later status within the same flush reports it sent.
+ */
+internal class FlushTracker {
+    private val start = System.nanoTime()
+
+    // guarded by this
+    private val pending = LinkedHashSet<String>()
+
+    // guarded by this
+    private val delivered = LinkedHashSet<String>()
+
+    // guarded by this
+    private val failures = LinkedHashMap<String, Exception?>()
+
+    // guarded by this, null once tracking
+    private var early: MutableList<List<EventStatus>>? = ArrayList()
+
+    /**
+     * @param queued events waiting to be sent
+     * @return true if there is nothing to wait for
+     */
+    @Synchronized
+    fun track(queued: List<EventStatus>): Boolean {
+        queued.mapTo(pending) { it.eventId }
+        early?.forEach { apply(it) }
+        early = null
+        return pending.isEmpty()
+    }
+
+    /**
+     * @param statuses statuses of one sending
+     * @return true if all tracked events are reported, always false before [track]
+     */
+    @Synchronized
+    fun onStatuses(statuses: List<EventStatus>): Boolean {
+        early?.let {
+            it.add(statuses)
+            return false
+        }
+        apply(statuses)
+        return pending.isEmpty()
+    }
+
+    /**
+     * @return summary of the statuses reported so far
+     */
+    @Synchronized
+    fun result(): FlushResult = FlushResult(
+        LinkedHashSet(delivered),
+        LinkedHashMap(failures),
+        LinkedHashSet(pending),
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+    )
+
+    // Called with the lock held.
+    private fun apply(statuses: List<EventStatus>) {
+        statuses.forEach { status ->
+            val eventId = status.eventId
+            if (status.isSent) {
+                if (pending.remove(eventId) || failures.containsKey(eventId)) {
+                    failures.remove(eventId)
+                    delivered.add(eventId)
+                }
+            } else if (pending.remove(eventId)) {
+                failures[eventId] = status.exception
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.cxense.coroutinesadapter
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.cancelChildren
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.min
+
+/**
+ * Hedged requests with a deadline.
+ *
+ * A request that hasn't finished after the hedge delay gets a duplicate. The first successful response wins
+ * and the other request is cancelled. If a request fails, the other one still may succeed. The hedge delay is
+ * either fixed or follows the observed 95th percentile of request latency. Hedges are limited to a share of
+ * requests, so the extra load on the server stays bounded. The whole call fails with [TimeoutException]
+ * when the deadline passes.
+ *
+ * Use one policy per kind of request, so that latencies of different requests don't mix.
+ *
+ * @param hedgeDelayMillis delay before the duplicate request. With adaptive delay it is used until enough
+ *                         latencies are observed
+ * @param adaptive         true to follow the observed 95th percentile of latency, false for a fixed delay
+ * @param maxHedgeRatio    maximum share of requests that get a duplicate, from 0 to 1
+ */
+class HedgingPolicy(
+    private val hedgeDelayMillis: Long = 300,
+    private val adaptive: Boolean = true,
+    private val maxHedgeRatio: Double = 0.1
+) {
+    private class Outcome<T>(val value: T?, val error: Throwable?)
+
+    private val latencies = LatencyHistogram()
+    private val requests = AtomicLong()
+    private val hedges = AtomicLong()
+    private val hedgeWins = AtomicLong()
+    @Volatile
+    private var adaptiveDelayMicros = TimeUnit.MILLISECONDS.toMicros(hedgeDelayMillis)
+    // guarded by this
+    private var tokens = MAX_TOKENS
+
+    init {
+        require(hedgeDelayMillis >= 0) { "hedgeDelayMillis must not be negative" }
+        require(maxHedgeRatio in 0.0..1.0) { "maxHedgeRatio must be between 0 and 1" }
+    }
+
+    /**
+     * Current hedge delay in milliseconds
+     */
+    val hedgeDelay: Long
+        get() = if (adaptive) TimeUnit.MICROSECONDS.toMillis(adaptiveDelayMicros) else hedgeDelayMillis
+
+    /**
+     * Number of requests made through the policy
+     */
+    val requestCount: Long
+        get() = requests.get()
+
+    /**
+     * Number of hedged duplicates sent
+     */
+    val hedgeCount: Long
+        get() = hedges.get()
+
+    /**
+     * Number of hedged duplicates that responded first
+     */
+    val hedgeWinCount: Long
+        get() = hedgeWins.get()
+
+    internal suspend fun <T : Any> execute(deadlineMillis: Long, request: suspend () -> T): T =
+        withTimeoutOrNull(deadlineMillis) {
+            requests.incrementAndGet()
+            addToken()
+            val start = System.nanoTime()
+            coroutineScope {
+                // Every attempt sends exactly one outcome, a skipped hedge sends null.
+                val outcomes = Channel<Outcome<T>?>(2)
+                launch {
+                    try {
+                        outcomes.send(attempt(request))
+                    } finally {
+                        // A primary cancelled because the hedge won took at least that long, record it as well.
+                        observe(start)
+                    }
+                }
+                launch {
+                    delay(hedgeDelay)
+                    if (tryAcquireToken()) {
+                        hedges.incrementAndGet()
+                        outcomes.send(attempt(request).also { if (it.error == null) hedgeWins.incrementAndGet() })
+                    } else {
+                        outcomes.send(null)
+                    }
+                }
+                var error: Throwable? = null
+                repeat(2) {
+                    val outcome = outcomes.receive()
+                    if (outcome != null) {
+                        if (outcome.error == null) {
+                            coroutineContext.cancelChildren()
+                            @Suppress("UNCHECKED_CAST")
+                            return@coroutineScope outcome.value as T
+                        }
+                        error = error ?: outcome.error
+                    }
+                }
+                throw error!!
+            }
+        } ?: throw TimeoutException("Deadline of $deadlineMillis ms exceeded")
+
+    private suspend fun <T : Any> attempt(request: suspend () -> T): Outcome<T> =
+        try {
+            Outcome(request(), null)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Throwable) {
+            Outcome(null, e)
+        }
+
+    private fun observe(startNanos: Long) {
+        latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos))
+        val count = latencies.totalCount
+        if (adaptive && count >= MIN_SAMPLES && count % RECALCULATE_EVERY == 0L)
+            adaptiveDelayMicros = latencies.valuesAtPercentiles(95.0)[0]
+    }
+
+    @Synchronized
+    private fun addToken() {
+        tokens = min(MAX_TOKENS, tokens + maxHedgeRatio)
+    }
+
+    @Synchronized
+    private fun tryAcquireToken(): Boolean {
+        if (tokens < 1) return false
+        tokens -= 1
+        return true
+    }
+
+    private companion object {
+        const val MIN_SAMPLES = 20
+        const val RECALCULATE_EVERY = 16
+        const val MAX_TOKENS = 10.0
+    }
+}
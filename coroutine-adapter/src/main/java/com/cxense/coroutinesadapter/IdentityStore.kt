@@ -0,0 +1,152 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.CxenseSdk
+import com.cxense.cxensesdk.model.ContentUser
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.onStart
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Memoized user identity of the SDK.
+ *
+ * Reading the identity from the SDK may touch preferences or Google Play services. The store reads each value once
+ * and keeps it, so later calls return without I/O. Call {@link #prewarm} from `Application.onCreate` to read
+ * everything on a background thread; the advertising ID is retried for a while, since it arrives asynchronously.
+ * The `observe*()` flows emit the current value and its changes.
+ *
+ * Change the user id with {@link #setUserId}. Calling {@link CxenseSdk#setUserId} directly while the store is in
+ * use leaves the store stale.
+ */
+object IdentityStore {
+    private const val DEFAULT_USER_ID_ATTEMPTS = 6
+    private const val DEFAULT_USER_ID_DELAY_MILLIS = 500L
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val prewarmed = AtomicBoolean()
+    private val userId = MutableStateFlow<String?>(null)
+    private val defaultUserId = MutableStateFlow<String?>(null)
+    private val limitAdTracking = MutableStateFlow<Boolean?>(null)
+    @Volatile
+    private var defaultContentUser: ContentUser? = null
+    // guarded by this, counts id changes
+    private var idGeneration = 0L
+
+    /**
+     * Reads all values on the IO dispatcher. Subsequent calls do nothing.
+     */
+    fun prewarm() {
+        if (!prewarmed.compareAndSet(false, true))
+            return
+        scope.launch {
+            try {
+                loadUserId()
+                loadLimitAdTracking()
+                loadDefaultContentUser()
+            } catch (e: RuntimeException) {
+                // the SDK isn't ready, the next prewarm() tries again
+                prewarmed.set(false)
+                return@launch
+            }
+            for (attempt in 0 until DEFAULT_USER_ID_ATTEMPTS) {
+                if (loadDefaultUserId() != null)
+                    break
+                delay(DEFAULT_USER_ID_DELAY_MILLIS shl attempt)
+            }
+        }
+    }
+
+    /**
+     * @return current user id
+     */
+    suspend fun getUserId(): String = userId.value ?: withContext(Dispatchers.IO) { loadUserId() }
+
+    /**
+     * Sets the user id used by the SDK and publishes it to {@link #observeUserId} collectors.
+     *
+     * @param id new user id
+     */
+    suspend fun setUserId(id: String) {
+        withContext(Dispatchers.IO) { CxenseSdk.getInstance().userId = id }
+        publish(userId, id)
+    }
+
+    /**
+     * @return advertising ID
+     * @throws IllegalStateException if it isn't available yet
+     */
+    suspend fun getDefaultUserId(): String = defaultUserId.value ?: withContext(Dispatchers.IO) {
+        loadDefaultUserId() ?: throw IllegalStateException("Advertising ID is not available at this moment")
+    }
+
+    /**
+     * @return true if the user has limit ad tracking enabled or false else
+     */
+    suspend fun isLimitAdTrackingEnabled(): Boolean =
+        limitAdTracking.value ?: withContext(Dispatchers.IO) { loadLimitAdTracking() }
+
+    /**
+     * @return the default {@link ContentUser}
+     */
+    suspend fun getDefaultContentUser(): ContentUser =
+        defaultContentUser ?: withContext(Dispatchers.IO) { loadDefaultContentUser() }
+
+    /**
+     * @return a flow of current user id and its changes
+     */
+    fun observeUserId(): Flow<String> = observe(userId)
+
+    /**
+     * @return a flow of advertising ID once it is available and its changes
+     */
+    fun observeDefaultUserId(): Flow<String> = observe(defaultUserId)
+
+    /**
+     * @return a flow of current limit ad tracking flag and its changes
+     */
+    fun observeLimitAdTrackingEnabled(): Flow<Boolean> = observe(limitAdTracking)
+
+    private fun <T : Any> observe(state: MutableStateFlow<T?>): Flow<T> =
+        state.onStart { prewarm() }.filterNotNull()
+
+    private fun loadUserId(): String = CxenseSdk.getInstance().userId.also { publish(userId, it) }
+
+    private fun loadDefaultUserId(): String? = CxenseSdk.getInstance().defaultUserId?.also {
+        publish(defaultUserId, it)
+        // The flag comes with the advertising ID.
+        loadLimitAdTracking()
+    }
+
+    private fun loadLimitAdTracking(): Boolean =
+        CxenseSdk.getInstance().limitAdTrackingEnabled.also { publish(limitAdTracking, it) }
+
+    private fun loadDefaultContentUser(): ContentUser {
+        val generation = synchronized(this) { idGeneration }
+        return CxenseSdk.getInstance().defaultContentUser.also {
+            synchronized(this) {
+                // An id changed while loading, the user may be built from the old one.
+                if (generation == idGeneration)
+                    defaultContentUser = it
+            }
+        }
+    }
+
+    @Synchronized
+    private fun <T : Any> publish(state: MutableStateFlow<T?>, value: T) {
+        if (state.value == value)
+            return
+        state.value = value
+        if (state !== limitAdTracking) {
+            // The default content user is built from the ids.
+            idGeneration++
+            defaultContentUser = null
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.model.ContentUser
+import com.cxense.cxensesdk.model.UserIdentity
+import com.cxense.cxensesdk.model.WidgetContext
+import java.lang.reflect.AccessibleObject
+import java.lang.reflect.Field
+import java.lang.reflect.Modifier
+import java.util.Collections
+import java.util.IdentityHashMap
+import java.util.concurrent.ConcurrentHashMap
+
+private const val SEPARATOR = '\u001f'
+private const val NULL = "\u0000"
+
+/**
+ * Builds canonical string keys for adapter requests. Two requests with equal arguments always produce
+ * the same key, regardless of map iteration order inside the model objects.
+ */
+internal object Keys {
+    private val fields = ConcurrentHashMap<Class<*>, Array<Field>>()
+
+    fun widget(
+        widgetId: String,
+        context: WidgetContext,
+        user: ContentUser?,
+        tag: String?,
+        prnd: String?
+    ): String = buildString {
+        append("widget")
+        add(widgetId)
+        add(context.url)
+        add(context.referrer)
+        add(context.pageclass)
+        add(context.sentiment)
+        add(context.recommending)
+        add(context.categories)
+        add(context.keywords)
+        add(context.neighbors)
+        if (user == null) {
+            add(null as String?)
+        } else {
+            add(user.ids)
+            add(canonical(user.likes))
+            add(canonical(user.dislikes))
+        }
+        add(tag)
+        add(prnd)
+    }
+
+    fun user(
+        identity: UserIdentity,
+        groups: List<String>?,
+        recent: Boolean?,
+        identityTypes: List<String>?
+    ): String = buildString {
+        append("user")
+        add(identity)
+        add(groups?.sorted())
+        add(recent?.toString())
+        add(identityTypes?.sorted())
+    }
+
+    fun segments(identities: List<UserIdentity>, siteGroupIds: List<String>): String = buildString {
+        append("segments")
+        add(identities(identities))
+        add(siteGroupIds.sorted())
+    }
+
+    fun externalData(type: String, id: String?, filter: String?): String = buildString {
+        append("external")
+        add(type)
+        add(id)
+        add(filter)
+    }
+
+    fun persistedQuery(url: String, persistentQueryId: String, data: Any?): String = buildString {
+        append("query")
+        add(url)
+        add(persistentQueryId)
+        add(java.lang.Long.toHexString(hash(canonical(data))))
+    }
+
+    fun identity(identity: UserIdentity): String = buildString { add(identity) }
+
+    fun identities(identities: Collection<UserIdentity>): List<String> =
+        identities.map { "${it.type}:${it.id}" }.sorted()
+
+    fun StringBuilder.add(identity: UserIdentity) {
+        add(identity.type)
+        add(identity.id)
+    }
+
+    fun StringBuilder.add(value: String?) {
+        append(SEPARATOR).append(value ?: NULL)
+    }
+
+    fun StringBuilder.add(values: Collection<*>?) {
+        append(SEPARATOR)
+        values?.joinTo(this, ",", "[", "]") ?: append(NULL)
+    }
+
+    fun StringBuilder.add(values: Map<String, *>?) {
+        append(SEPARATOR)
+        values?.toSortedMap()?.entries?.joinTo(this, ",", "{", "}") { "${it.key}=${it.value}" } ?: append(NULL)
+    }
+
+    /**
+     * String form of the value with map keys and set elements sorted. Other objects are written field by field, in
+     * name order, so equal beans get equal forms; platform types and values use their toString().
+     */
+    fun canonical(value: Any?): String =
+        buildString { addCanonical(value, Collections.newSetFromMap(IdentityHashMap())) }
+
+    // FNV-1a
+    fun hash(value: String): Long =
+        value.fold(-0x340d631b7bdddcdbL) { hash, c -> (hash xor c.toLong()) * 0x100000001b3L }
+
+    private fun StringBuilder.addCanonical(value: Any?, path: MutableSet<Any>) {
+        when {
+            value == null -> append(NULL)
+            value is CharSequence -> append('"').append(value).append('"')
+            value is Number || value is Enum<*> || value is Boolean || value is Char -> append(value)
+            // a cycle, the object is already being written
+            !path.add(value) -> append('^')
+            else -> {
+                addStructure(value, path)
+                path.remove(value)
+            }
+        }
+    }
+
+    private fun StringBuilder.addStructure(value: Any, path: MutableSet<Any>) {
+        when {
+            value is Map<*, *> -> {
+                append('{')
+                value.entries.sortedBy { it.key.toString() }.forEach {
+                    append(it.key).append('=')
+                    addCanonical(it.value, path)
+                    append(',')
+                }
+                append('}')
+            }
+            value is Set<*> ->
+                value.map { buildString { addCanonical(it, path) } }.sorted().joinTo(this, ", ", "[", "]")
+            value is Collection<*> -> addCanonical(value.iterator(), path)
+            value.javaClass.isArray -> addCanonical(
+                (0 until java.lang.reflect.Array.getLength(value)).map { java.lang.reflect.Array.get(value, it) }
+                    .iterator(),
+                path
+            )
+            isPlatform(value.javaClass) -> append(value)
+            else -> {
+                append(value.javaClass.name).append('{')
+                fieldsOf(value.javaClass).forEach { field ->
+                    val fieldValue = try {
+                        field.get(value)
+                    } catch (e: IllegalAccessException) {
+                        return@forEach
+                    }
+                    append(field.name).append('=')
+                    addCanonical(fieldValue, path)
+                    append(',')
+                }
+                append('}')
+            }
+        }
+    }
+
+    private fun StringBuilder.addCanonical(elements: Iterator<*>, path: MutableSet<Any>) {
+        append('[')
+        elements.forEach {
+            addCanonical(it, path)
+            append(',')
+        }
+        append(']')
+    }
+
+    private fun isPlatform(type: Class<*>): Boolean = type.name.let {
+        it.startsWith("java.") || it.startsWith("javax.") || it.startsWith("android.") || it.startsWith("kotlin.")
+    }
+
+    private fun fieldsOf(type: Class<*>): Array<Field> = fields[type] ?: generateSequence(type) { it.superclass }
+        .takeWhile { it != Any::class.java }
+        .flatMap { it.declaredFields.asSequence() }
+        .filter { !Modifier.isStatic(it.modifiers) && !Modifier.isTransient(it.modifiers) && !it.isSynthetic }
+        .sortedWith(compareBy({ it.name }, { it.declaringClass.name }))
+        .toList()
+        .toTypedArray()
+        .also {
+            try {
+                AccessibleObject.setAccessible(it, true)
+            } catch (e: SecurityException) {
+                // inaccessible fields are skipped
+            }
+            fields[type] = it
+        }
+}
@@ -0,0 +1,92 @@
+package com.cxense.coroutinesadapter
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import kotlin.math.ceil
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * Fixed-memory log-linear histogram of latencies in microseconds, in the spirit of HdrHistogram.
+ *
+ * Values below 64 are counted exactly, larger values fall into buckets that are at most 1/32 of the value wide,
+ * so percentiles are reported within about 3%. Values up to 2^32 microseconds (over an hour) are tracked, larger
+ * values are counted in the last bucket. Recording is lock-free and doesn't allocate.
+ */
+internal class LatencyHistogram {
+    private val counts = AtomicLongArray(BUCKET_COUNT)
+    private val total = AtomicLong()
+    private val maxValue = AtomicLong()
+
+    val totalCount: Long
+        get() = total.get()
+
+    val max: Long
+        get() = maxValue.get()
+
+    /**
+     * @param micros latency in microseconds
+     */
+    fun record(micros: Long) {
+        val value = max(0L, micros)
+        counts.incrementAndGet(min(indexOf(value), BUCKET_COUNT - 1))
+        total.incrementAndGet()
+        while (true) {
+            val current = maxValue.get()
+            if (value <= current || maxValue.compareAndSet(current, value)) break
+        }
+    }
+
+    /**
+     * Counts are read one by one while other threads may record, so the result is approximate under load.
+     *
+     * @param percentiles percentiles from 0 to 100, in ascending order
+     * @return highest equivalent value for each percentile, or zeros if nothing was recorded
+     */
+    fun valuesAtPercentiles(vararg percentiles: Double): LongArray {
+        val result = LongArray(percentiles.size)
+        val snapshot = LongArray(BUCKET_COUNT) { counts.get(it) }
+        val count = snapshot.sum()
+        if (count == 0L) return result
+        val max = maxValue.get()
+        var seen = 0L
+        var index = 0
+        percentiles.forEachIndexed { p, percentile ->
+            val rank = max(1L, ceil(percentile / 100 * count).toLong())
+            while (index < BUCKET_COUNT - 1 && seen + snapshot[index] < rank) {
+                seen += snapshot[index++]
+            }
+            result[p] = min(highestEquivalentValue(index), max)
+        }
+        return result
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKET_COUNT) {
+            counts.set(i, 0)
+        }
+        total.set(0)
+        maxValue.set(0)
+    }
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 5
+        private const val LINEAR_LIMIT = 1 shl (SUB_BUCKET_BITS + 1)
+        private const val MAX_EXPONENT = 31
+        val BUCKET_COUNT = indexOf((1L shl (MAX_EXPONENT + 1)) - 1) + 1
+
+        fun indexOf(value: Long): Int {
+            if (value < LINEAR_LIMIT) return value.toInt()
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value)
+            val shift = exponent - SUB_BUCKET_BITS
+            return (shift shl SUB_BUCKET_BITS) + (value ushr shift).toInt()
+        }
+
+        fun highestEquivalentValue(index: Int): Long {
+            if (index < LINEAR_LIMIT) return index.toLong()
+            val shift = (index shr SUB_BUCKET_BITS) - 1
+            val subBucket = (index - (shift shl SUB_BUCKET_BITS)).toLong()
+            return ((subBucket + 1) shl shift) - 1
+        }
+    }
+}
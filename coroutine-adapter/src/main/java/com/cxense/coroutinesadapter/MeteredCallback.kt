@@ -0,0 +1,46 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.LoadCallback
+import kotlinx.coroutines.CancellableContinuation
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.coroutines.resume
+import kotlin.coroutines.resumeWithException
+
+/**
+ * Bridges an SDK callback to a continuation and records the outcome in [AdapterMetrics] exactly once:
+ * success, error or cancellation, whichever comes first. Extends [AtomicBoolean] to hold the finished flag
+ * without another allocation.
+ *
+ * The SDK keeps the callback until its request finishes. Cancellation detaches the continuation, so the
+ * cancelled coroutine and everything it captures can be collected while the request is still in flight.
+ * A late response is dropped.
+ */
+internal class MeteredCallback<T : Any>(
+    private val endpoint: Endpoint,
+    private val metrics: AdapterMetrics?,
+    cont: CancellableContinuation<T>
+) : AtomicBoolean(), LoadCallback<T> {
+    private val startNanos = metrics?.onStart(endpoint) ?: 0L
+    @Volatile
+    private var cont: CancellableContinuation<T>? = cont
+
+    override fun onSuccess(data: T) {
+        if (metrics != null && compareAndSet(false, true))
+            metrics.onSuccess(endpoint, startNanos)
+        detach()?.resume(data)
+    }
+
+    override fun onError(throwable: Throwable) {
+        if (metrics != null && compareAndSet(false, true))
+            metrics.onError(endpoint, startNanos, throwable)
+        detach()?.resumeWithException(throwable)
+    }
+
+    fun cancel() {
+        if (metrics != null && compareAndSet(false, true))
+            metrics.onCancel(endpoint)
+        cont = null
+    }
+
+    private fun detach(): CancellableContinuation<T>? = cont?.also { cont = null }
+}
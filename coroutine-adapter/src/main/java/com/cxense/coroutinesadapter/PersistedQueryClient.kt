@@ -0,0 +1,221 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.CxenseSdk
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Typed client for persisted queries with a response cache.
+ *
+ * Responses are cached by url, query id and a 64-bit hash of the canonical request body, so equal bodies share an entry
+ * regardless of map order. Bodies and responses that are not maps, collections or values are compared field by field.
+ * The SDK chooses the response type, `type` only casts it. Each url has its own TTL from [ttlMillisByUrl], others use
+ * [ttlMillis]. Expired entries are served for [staleWhileRevalidateMillis] more while a single background query
+ * revalidates them; if the new response is equal to the cached one, the cached instance is kept and only its age is
+ * reset. The cache is an LRU bounded by the approximate size of the responses, taken from the length of their canonical
+ * string form. Identical concurrent queries are executed once.
+ *
+ * @param maxBytes                   approximate size limit of cached responses
+ * @param ttlMillis                  time while a response is considered fresh
+ * @param ttlMillisByUrl             fresh time of responses of specific endpoints
+ * @param staleWhileRevalidateMillis additional time while an expired response can still be served during
+ *                                   revalidation
+ * @param scope                      scope for background revalidation queries
+ */
+class PersistedQueryClient(
+    private val maxBytes: Long = 1024 * 1024,
+    ttlMillis: Long = TimeUnit.MINUTES.toMillis(1),
+    ttlMillisByUrl: Map<String, Long> = emptyMap(),
+    staleWhileRevalidateMillis: Long = TimeUnit.MINUTES.toMillis(5),
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+) {
+    private class Entry(val url: String, val value: Any, val hash: Long, val bytes: Long, val loadedAt: Long)
+
+    private val defaultTtlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis)
+    private val ttlNanosByUrl = ttlMillisByUrl.mapValues { TimeUnit.MILLISECONDS.toNanos(it.value) }
+    private val staleNanos = TimeUnit.MILLISECONDS.toNanos(staleWhileRevalidateMillis)
+    private val flight = SingleFlight<Any>()
+
+    // guarded by this
+    private val entries = LinkedHashMap<String, Entry>(16, 0.75f, true)
+
+    // guarded by this
+    private val refreshing = HashSet<String>()
+
+    // guarded by this
+    private var bytes = 0L
+    private val hits = AtomicLong()
+    private val staleHits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+    private val unchanged = AtomicLong()
+
+    init {
+        require(maxBytes > 0) { "maxBytes must be positive" }
+        require(ttlMillis >= 0 && ttlMillisByUrl.values.all { it >= 0 }) { "ttl must not be negative" }
+        require(staleWhileRevalidateMillis >= 0) { "staleWhileRevalidate must not be negative" }
+    }
+
+    /**
+     * Snapshot of cache counters
+     */
+    val stats: CacheStats
+        get() = CacheStats(
+            hits.get(),
+            staleHits.get(),
+            misses.get(),
+            evictions.get(),
+            synchronized(this) { entries.size }
+        )
+
+    /**
+     * Number of revalidations that returned the cached response unchanged
+     */
+    val unchangedCount: Long
+        get() = unchanged.get()
+
+    /**
+     * Approximate size of cached responses in bytes
+     */
+    val sizeBytes: Long
+        get() = synchronized(this) { bytes }
+
+    /**
+     * Executes persisted query.
+     *
+     * @param url               API endpoint
+     * @param persistentQueryId query id
+     * @param data              data for sending as request body
+     * @param type              response type
+     * @return result of query
+     * @throws ClassCastException if the response has another type
+     */
+    suspend fun <T : Any> query(url: String, persistentQueryId: String, data: Any?, type: Class<T>): T {
+        val key = Keys.persistedQuery(url, persistentQueryId, data)
+        val loader: suspend () -> Any = {
+            flight.join(key) {
+                await<Any>(Endpoint.PERSISTED_QUERY, adapterRetryPolicy) { callback ->
+                    CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, data, callback)
+                }.also { put(key, url, it) }
+            }
+        }
+        return type.cast(get(key, ttlNanosByUrl[url] ?: defaultTtlNanos, loader))
+    }
+
+    /**
+     * Executes persisted query.
+     *
+     * @param url               API endpoint
+     * @param persistentQueryId query id
+     * @param data              data for sending as request body
+     * @return result of query
+     * @throws ClassCastException if the response has another type
+     */
+    suspend inline fun <reified T : Any> query(url: String, persistentQueryId: String, data: Any? = null): T =
+        query(url, persistentQueryId, data, T::class.javaObjectType)
+
+    /**
+     * Removes cached responses of the endpoint. Counters are kept.
+     *
+     * @param url API endpoint
+     */
+    @Synchronized
+    fun invalidate(url: String) {
+        val iterator = entries.values.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.url == url) {
+                bytes -= entry.bytes
+                iterator.remove()
+            }
+        }
+    }
+
+    /**
+     * Removes all cached responses. Counters are kept.
+     */
+    @Synchronized
+    fun invalidateAll() {
+        entries.clear()
+        bytes = 0
+    }
+
+    private suspend fun get(key: String, ttlNanos: Long, loader: suspend () -> Any): Any {
+        val now = System.nanoTime()
+        var refresh = false
+        val entry = synchronized(this) {
+            entries[key]?.let { entry ->
+                if (now - entry.loadedAt > ttlNanos + staleNanos) {
+                    remove(key)
+                    null
+                } else {
+                    if (now - entry.loadedAt > ttlNanos)
+                        refresh = refreshing.add(key)
+                    entry
+                }
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet()
+            return loader()
+        }
+        if (now - entry.loadedAt > ttlNanos) {
+            staleHits.incrementAndGet()
+            if (refresh)
+                revalidate(key, loader)
+        } else {
+            hits.incrementAndGet()
+        }
+        return entry.value
+    }
+
+    private fun revalidate(key: String, loader: suspend () -> Any) {
+        scope.launch {
+            try {
+                loader()
+            } catch (e: Exception) {
+                // keep serving the stale entry until it expires completely
+            } finally {
+                synchronized(this@PersistedQueryClient) {
+                    refreshing.remove(key)
+                }
+            }
+        }
+    }
+
+    private fun put(key: String, url: String, value: Any) {
+        val canonical = Keys.canonical(value)
+        val hash = Keys.hash(canonical)
+        val size = 2L * (key.length + canonical.length)
+        synchronized(this) {
+            val old = entries[key]
+            val stored = if (old != null && old.hash == hash) {
+                // Same response, keep the instance callers already have.
+                unchanged.incrementAndGet()
+                old.value
+            } else {
+                value
+            }
+            remove(key)
+            if (size > maxBytes)
+                return
+            entries[key] = Entry(url, stored, hash, size, System.nanoTime())
+            bytes += size
+            val iterator = entries.values.iterator()
+            while (bytes > maxBytes && iterator.hasNext()) {
+                bytes -= iterator.next().bytes
+                iterator.remove()
+                evictions.incrementAndGet()
+            }
+        }
+    }
+
+    // Called with the lock held.
+    private fun remove(key: String) {
+        entries.remove(key)?.let { bytes -= it.bytes }
+    }
+}
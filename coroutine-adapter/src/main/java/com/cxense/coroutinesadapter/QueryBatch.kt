@@ -0,0 +1,134 @@
+package com.cxense.coroutinesadapter
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.TimeoutCancellationException
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import kotlinx.coroutines.withTimeout
+import java.util.concurrent.TimeUnit
+
+/**
+ * Outcome of one query of a {@link QueryBatch}.
+ *
+ * @property name           name of the query in the batch
+ * @property value          result of the query, or null if it failed or returned nothing
+ * @property error          error of the last attempt, or null if the query succeeded
+ * @property startMillis    time from the batch start to the query start, in milliseconds
+ * @property durationMillis time the query took, in milliseconds
+ */
+data class QueryOutcome(
+    val name: String,
+    val value: Any?,
+    val error: Throwable?,
+    val startMillis: Long,
+    val durationMillis: Long
+) {
+    /**
+     * True if the query succeeded
+     */
+    val isSuccess: Boolean
+        get() = error == null
+}
+
+/**
+ * Combined result of a {@link QueryBatch}.
+ *
+ * @property outcomes      outcomes by query name, in the order the queries were added
+ * @property elapsedMillis time the whole batch took, in milliseconds
+ */
+data class BatchResult(
+    val outcomes: Map<String, QueryOutcome>,
+    val elapsedMillis: Long
+) {
+    /**
+     * Names of queries that failed
+     */
+    val failedNames: List<String>
+        get() = outcomes.values.filterNot { it.isSuccess }.map { it.name }
+
+    /**
+     * True if all queries succeeded
+     */
+    val isComplete: Boolean
+        get() = outcomes.values.all { it.isSuccess }
+
+    /**
+     * @param name name of the query
+     * @return result of the query, or null if it failed or returned nothing
+     * @throws ClassCastException if the result has another type
+     */
+    inline fun <reified T : Any> get(name: String): T? = outcomes[name]?.value?.let { it as T }
+}
+
+/**
+ * Runs a set of heterogeneous requests together, for example everything a screen needs from the DMP.
+ *
+ * Up to `maxConcurrency` requests run at the same time; the rest start as soon as a slot is free. All requests
+ * share one deadline counted from the start of {@link #execute}; requests that are not finished by then fail with
+ * {@link TimeoutCancellationException}. A failed request doesn't fail the batch: {@link #execute} returns a
+ * {@link BatchResult} with the outcome and timings of every request once all of them are finished, so the wait is
+ * close to the slowest request rather than the sum of them.
+ *
+ * Requests are usually functions of this adapter and keep its retry policy. A batch can be executed any number of
+ * times.
+ *
+ * @param maxConcurrency maximum number of requests running at the same time
+ * @param timeoutMillis  deadline of the whole batch
+ */
+class QueryBatch(
+    private val maxConcurrency: Int = 6,
+    private val timeoutMillis: Long = TimeUnit.SECONDS.toMillis(10)
+) {
+    private val queries = LinkedHashMap<String, suspend () -> Any?>()
+
+    init {
+        require(maxConcurrency > 0) { "maxConcurrency must be positive" }
+        require(timeoutMillis > 0) { "timeoutMillis must be positive" }
+    }
+
+    /**
+     * @param name  unique name of the request in the batch
+     * @param query the request
+     * @return this batch
+     */
+    fun add(name: String, query: suspend () -> Any?): QueryBatch = apply {
+        require(name !in queries) { "Duplicate query name: $name" }
+        queries[name] = query
+    }
+
+    /**
+     * Executes all requests of the batch.
+     *
+     * @return the combined result once all requests are finished
+     */
+    suspend fun execute(): BatchResult = coroutineScope {
+        val start = System.nanoTime()
+        val deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)
+        val semaphore = Semaphore(maxConcurrency)
+        val outcomes = queries.map { (name, query) ->
+            async { semaphore.withPermit { run(name, query, start, deadline) } }
+        }.awaitAll()
+        BatchResult(outcomes.associateBy { it.name }, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+    }
+
+    private suspend fun run(name: String, query: suspend () -> Any?, batchStart: Long, deadline: Long): QueryOutcome {
+        val start = System.nanoTime()
+        fun outcome(value: Any?, error: Throwable?) = QueryOutcome(
+            name, value, error,
+            TimeUnit.NANOSECONDS.toMillis(start - batchStart),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+        )
+        return try {
+            outcome(withTimeout(TimeUnit.NANOSECONDS.toMillis(deadline - start)) { query() }, null)
+        } catch (e: TimeoutCancellationException) {
+            outcome(null, e)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            outcome(null, e)
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.CxenseSdk
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharingStarted
+import kotlinx.coroutines.flow.channelFlow
+import kotlinx.coroutines.flow.collect
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.shareIn
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Immutable snapshot of the SDK event queue, see {@link QueueMonitor}.
+ *
+ * @property queueDepth           number of events waiting to be sent
+ * @property sentCount            number of sent events the SDK still keeps
+ * @property oldestEventAgeMillis time the oldest waiting event has been seen in the queue, in milliseconds, or 0
+ *                                if the queue is empty. Events queued before monitoring started count from the
+ *                                first snapshot.
+ * @property eventsPerSecond      events that left the queue per second since the previous snapshot
+ * @property takenAtMillis        monotonic time the snapshot was taken, from [System.nanoTime] in milliseconds
+ */
+data class QueueSnapshot(
+    val queueDepth: Int,
+    val sentCount: Int,
+    val oldestEventAgeMillis: Long,
+    val eventsPerSecond: Double,
+    val takenAtMillis: Long
+)
+
+/**
+ * Shared flow of event queue snapshots.
+ *
+ * The queue is sampled when the SDK reports a dispatch and when events are pushed through {@link EventSink}.
+ * While events are waiting, it is also sampled on a timer that starts at one second and doubles up to 30 seconds
+ * while nothing changes; an empty queue isn't polled at all. Bursts of triggers are coalesced into one sample.
+ * Snapshots are emitted only when the queue depth, the number of kept sent events or the oldest waiting event
+ * changes. New collectors receive the last snapshot first.
+ *
+ * Oldest-event age and throughput are derived from successive snapshots: an event is aged from the first snapshot
+ * that saw it, and events that left the queue between two snapshots count towards throughput.
+ */
+object QueueMonitor {
+    private const val MIN_SAMPLE_MILLIS = 1000L
+    private const val MAX_SAMPLE_MILLIS = 30000L
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val activityCount = AtomicLong()
+    // The sampling loop waits for a new value, so a trigger arriving during a sample isn't lost.
+    private val triggers = MutableStateFlow(0L)
+
+    private val snapshots: Flow<QueueSnapshot> = channelFlow {
+        launch { DispatchStatusHub.statuses().collect { onActivity() } }
+        val sampler = Sampler()
+        while (true) {
+            val seen = triggers.value
+            sampler.sample()?.let { send(it) }
+            if (sampler.waiting)
+                withTimeoutOrNull(sampler.sampleMillis) { triggers.first { it != seen } }
+            else
+                // An empty queue changes only through dispatch or push, which trigger a sample anyway.
+                triggers.first { it != seen }
+        }
+    }.shareIn(scope, SharingStarted.WhileSubscribed(replayExpirationMillis = 0), replay = 1)
+
+    /**
+     * @return a flow that emits a snapshot whenever the queue changes
+     */
+    fun observe(): Flow<QueueSnapshot> = snapshots
+
+    /**
+     * Marks push or flush activity, so the next snapshot is taken now.
+     */
+    internal fun onActivity() {
+        triggers.value = activityCount.incrementAndGet()
+    }
+
+    private class Sampler {
+        private var firstSeen = HashMap<String, Long>()
+        private var last: QueueSnapshot? = null
+        private var oldestEventId: String? = null
+        // events that left the queue since the last snapshot
+        private var left = 0
+        var sampleMillis = MIN_SAMPLE_MILLIS
+        var waiting = false
+
+        fun sample(): QueueSnapshot? {
+            val status = CxenseSdk.getInstance().queueStatus
+            val now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime())
+            val seen = HashMap<String, Long>()
+            var oldestId: String? = null
+            var oldest = now
+            status.notSentEvents.forEach { event ->
+                val since = firstSeen[event.eventId] ?: now
+                seen[event.eventId] = since
+                if (since < oldest || oldestId == null) {
+                    oldest = since
+                    oldestId = event.eventId
+                }
+            }
+            // Departures of skipped samples count towards the next snapshot, which covers their time too.
+            left += firstSeen.keys.count { it !in seen }
+            firstSeen = seen
+            waiting = seen.isNotEmpty()
+            val previous = last
+            val depth = status.notSentEvents.size
+            val sentCount = status.sentEvents.size
+            if (previous != null && previous.queueDepth == depth && previous.sentCount == sentCount && oldestEventId == oldestId) {
+                sampleMillis = minOf(sampleMillis * 2, MAX_SAMPLE_MILLIS)
+                return null
+            }
+            val elapsed = if (previous == null) 0 else now - previous.takenAtMillis
+            val rate = if (elapsed == 0L) 0.0 else left * 1000.0 / elapsed
+            sampleMillis = MIN_SAMPLE_MILLIS
+            oldestEventId = oldestId
+            left = 0
+            return QueueSnapshot(depth, sentCount, now - oldest, rate, now).also { last = it }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.model.User
+import com.cxense.cxensesdk.model.UserExternalData
+import com.cxense.cxensesdk.model.UserIdentity
+
+/**
+ * Coalescing layer for DMP reads. Concurrent calls with equal arguments share one SDK call and one result,
+ * the shared call is cancelled only when its last caller is cancelled.
+ *
+ * Keep a single instance (for example in your Application) and use it instead of the corresponding
+ * top-level functions.
+ */
+class RequestCoalescer {
+    private val users = SingleFlight<User>()
+    private val segments = SingleFlight<List<String>>()
+    private val externalData = SingleFlight<List<UserExternalData>>()
+
+    /**
+     * Coalesced version of [com.cxense.coroutinesadapter.getUserSegmentIds]
+     *
+     * @param identities   a collection of user identifiers for a single user to retrieve segments for
+     * @param siteGroupIds the collection of site groups to retrieve segments for
+     * @return a list of user segment ids
+     */
+    suspend fun getUserSegmentIds(
+        identities: List<UserIdentity>,
+        siteGroupIds: List<String>
+    ): List<String> = segments.join(Keys.segments(identities, siteGroupIds)) {
+        com.cxense.coroutinesadapter.getUserSegmentIds(identities, siteGroupIds)
+    }
+
+    /**
+     * Coalesced version of [com.cxense.coroutinesadapter.getUser]
+     *
+     * @param identity      user identifier with type and id
+     * @param groups        a collection of strings that specify profile item groups to keep in the returned profile.
+     * @param recent        flag whether to only return the most recent user profile information.
+     * @param identityTypes a collection of external customer identifier types.
+     * @return an {@link User} object
+     */
+    suspend fun getUser(
+        identity: UserIdentity,
+        groups: List<String>? = null,
+        recent: Boolean? = null,
+        identityTypes: List<String>? = null
+    ): User = users.join(Keys.user(identity, groups, recent, identityTypes)) {
+        com.cxense.coroutinesadapter.getUser(identity, groups, recent, identityTypes)
+    }
+
+    /**
+     * Coalesced version of [com.cxense.coroutinesadapter.getUserExternalData]
+     *
+     * @param type   the customer identifier type
+     * @param id     identifier for the user. Use 'null' if you want match all users of provided type.
+     * @param filter a traffic filter of type user-external with required group and optional item/items specified
+     * @return a list of {@link UserExternalData} objects
+     */
+    suspend fun getUserExternalData(
+        type: String,
+        id: String? = null,
+        filter: String? = null
+    ): List<UserExternalData> = externalData.join(Keys.externalData(type, id, filter)) {
+        com.cxense.coroutinesadapter.getUserExternalData(type, id, filter)
+    }
+}
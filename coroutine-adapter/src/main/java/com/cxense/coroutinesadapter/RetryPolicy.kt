@@ -0,0 +1,120 @@
+package com.cxense.coroutinesadapter
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.delay
+import java.io.IOException
+import java.util.Random
+import java.util.concurrent.TimeoutException
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.min
+
+/**
+ * Retries of failed network calls with exponential backoff and full jitter.
+ *
+ * Only [idempotent][Endpoint.idempotent] calls that failed with a retryable error are retried. By default
+ * an error is retryable if it or one of its causes is an [IOException] or a [TimeoutException].
+ * The n-th retry waits a random time between zero and `min(maxDelayMillis, baseDelayMillis * 2^(n-1))`.
+ *
+ * All retries share one token bucket budget: a retry takes a token, a successful call returns a fraction of
+ * a token. During an outage the budget runs out and calls fail at once instead of multiplying the load.
+ *
+ * Install with [adapterRetryPolicy].
+ *
+ * @param maxAttempts     maximum number of attempts including the first one
+ * @param baseDelayMillis ceiling of the first retry delay, doubled for each next retry
+ * @param maxDelayMillis  maximum ceiling of a retry delay
+ * @param maxTokens       size of the retry budget, each retry takes one token
+ * @param tokenRatio      part of a token returned by each successful call
+ * @param retryable       returns true for errors that may be retried
+ */
+class RetryPolicy(
+    private val maxAttempts: Int = 3,
+    private val baseDelayMillis: Long = 200,
+    private val maxDelayMillis: Long = 10_000,
+    private val maxTokens: Double = 10.0,
+    private val tokenRatio: Double = 0.1,
+    private val retryable: (Throwable) -> Boolean = ::isTransient
+) {
+    private val random = Random()
+    private val retries = AtomicLong()
+    private val exhausted = AtomicLong()
+    // guarded by this
+    private var tokens = maxTokens
+
+    init {
+        require(maxAttempts > 0) { "maxAttempts must be positive" }
+        require(baseDelayMillis in 1..maxDelayMillis) { "baseDelayMillis must be positive and not greater than maxDelayMillis" }
+        require(maxTokens >= 1 && tokenRatio >= 0) { "maxTokens must be at least 1 and tokenRatio not negative" }
+    }
+
+    /**
+     * Number of retries made
+     */
+    val retryCount: Long
+        get() = retries.get()
+
+    /**
+     * Number of retries skipped because the budget was exhausted
+     */
+    val budgetExhaustedCount: Long
+        get() = exhausted.get()
+
+    /**
+     * Tokens left in the retry budget
+     */
+    val budgetTokens: Double
+        @Synchronized get() = tokens
+
+    /**
+     * @param throwable error of a failed call
+     * @return true if the error is transient and the call may be retried
+     */
+    fun isRetryable(throwable: Throwable): Boolean = throwable !is CancellationException && retryable(throwable)
+
+    internal suspend fun <T> execute(endpoint: Endpoint, metrics: AdapterMetrics?, call: suspend () -> T): T {
+        var attempt = 0
+        while (true) {
+            try {
+                return call().also { onSuccess() }
+            } catch (e: Throwable) {
+                if (!endpoint.idempotent || !isRetryable(e) || ++attempt >= maxAttempts || !tryAcquireToken())
+                    throw e
+            }
+            retries.incrementAndGet()
+            metrics?.onRetry(endpoint)
+            delay(backoffMillis(attempt))
+        }
+    }
+
+    internal fun backoffMillis(retry: Int): Long {
+        var ceiling = baseDelayMillis shl min(retry - 1, 30)
+        if (ceiling <= 0 || ceiling > maxDelayMillis)
+            ceiling = maxDelayMillis
+        return synchronized(random) { (random.nextDouble() * ceiling).toLong() }
+    }
+
+    @Synchronized
+    private fun onSuccess() {
+        tokens = min(maxTokens, tokens + tokenRatio)
+    }
+
+    @Synchronized
+    private fun tryAcquireToken(): Boolean {
+        if (tokens < 1) {
+            exhausted.incrementAndGet()
+            return false
+        }
+        tokens -= 1
+        return true
+    }
+
+    companion object {
+        /**
+         * Default classification: the error or one of its causes is an [IOException] or a [TimeoutException]
+         */
+        @JvmStatic
+        fun isTransient(throwable: Throwable): Boolean =
+            generateSequence(throwable) { t -> t.cause?.takeIf { it !== t } }
+                .any { it is IOException || it is TimeoutException }
+    }
+}
@@ -0,0 +1,158 @@
+package com.cxense.coroutinesadapter
+
+import android.content.Context
+import com.cxense.cxensesdk.model.UserIdentity
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.withContext
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.RandomAccessFile
+
+private const val FILE_NAME = "cxense_segments.bin"
+private const val MAGIC = 0x43585347
+private const val VERSION = 1
+
+/**
+ * Persistent store of the last known user segments per identity set and site group set.
+ *
+ * Segments are kept in a compact binary file that is read with a single read on first access. Each request
+ * emits the stored segments immediately (if any), refreshes them from the server and emits the new segments
+ * only if they differ from the stored ones.
+ *
+ * @param file file to keep segments in
+ */
+class SegmentStore(private val file: File) {
+    // guarded by this
+    private var segments: MutableMap<String, List<String>>? = null
+
+    /**
+     * Creates store in application files directory.
+     *
+     * @param context any context
+     */
+    constructor(context: Context) : this(File(context.applicationContext.filesDir, FILE_NAME))
+
+    /**
+     * Emits stored segments for the user (if any) and then the segments from the server if they have changed.
+     * If the refresh fails and stored segments were emitted, the flow completes without error.
+     *
+     * @param identities   a collection of user identifiers for a single user to retrieve segments for
+     * @param siteGroupIds the collection of site groups to retrieve segments for
+     * @return a flow of user segment ids lists
+     */
+    fun getUserSegmentIds(
+        identities: List<UserIdentity>,
+        siteGroupIds: List<String>
+    ): Flow<List<String>> = flow {
+        val key = Keys.segments(identities, siteGroupIds)
+        val cached = withContext(Dispatchers.IO) { get(key) }
+        cached?.let { emit(it) }
+        val fresh = try {
+            com.cxense.coroutinesadapter.getUserSegmentIds(identities, siteGroupIds)
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: Exception) {
+            if (cached == null)
+                throw e
+            return@flow
+        }
+        if (withContext(Dispatchers.IO) { put(key, fresh) })
+            emit(fresh)
+    }
+
+    /**
+     * Removes all stored segments.
+     *
+     * @return true if the file was deleted or did not exist
+     */
+    @Synchronized
+    fun clear(): Boolean {
+        segments = HashMap()
+        return !file.exists() || file.delete()
+    }
+
+    @Synchronized
+    private fun get(key: String): List<String>? = load()[key]
+
+    @Synchronized
+    private fun put(key: String, fresh: List<String>): Boolean {
+        val sorted = fresh.sorted()
+        val map = load()
+        if (sorted == map[key])
+            return false
+        map[key] = sorted
+        try {
+            write(map)
+        } catch (e: IOException) {
+            // segments stay in memory and are written with the next change
+        }
+        return true
+    }
+
+    private fun load(): MutableMap<String, List<String>> {
+        segments?.let { return it }
+        val map = try {
+            read()
+        } catch (e: IOException) {
+            HashMap()
+        }
+        segments = map
+        return map
+    }
+
+    private fun read(): MutableMap<String, List<String>> {
+        val map = HashMap<String, List<String>>()
+        if (!file.exists())
+            return map
+        val bytes = RandomAccessFile(file, "r").use { raf ->
+            ByteArray(raf.length().toInt()).also { raf.readFully(it) }
+        }
+        val input = DataInputStream(ByteArrayInputStream(bytes))
+        if (input.readInt() != MAGIC || input.readInt() != VERSION)
+            return map
+        // An entry takes at least a key length and an id count, an id at least its length.
+        repeat(input.readCount(2 + 4)) {
+            val key = input.readUTF()
+            map[key] = List(input.readCount(2)) { input.readUTF() }
+        }
+        return map
+    }
+
+    // Reads a count of items of at least itemBytes each, a corrupt count fails like a truncated file.
+    private fun DataInputStream.readCount(itemBytes: Int): Int {
+        val count = readInt()
+        if (count < 0 || count.toLong() * itemBytes > available())
+            throw IOException("Bad count $count")
+        return count
+    }
+
+    private fun write(map: Map<String, List<String>>) {
+        val bytes = ByteArrayOutputStream()
+        DataOutputStream(bytes).apply {
+            writeInt(MAGIC)
+            writeInt(VERSION)
+            writeInt(map.size)
+            map.forEach { (key, ids) ->
+                writeUTF(key)
+                writeInt(ids.size)
+                ids.forEach { writeUTF(it) }
+            }
+            flush()
+        }
+        val tmp = File(file.path + ".tmp")
+        FileOutputStream(tmp).use { stream ->
+            bytes.writeTo(stream)
+            stream.fd.sync()
+        }
+        if (!tmp.renameTo(file))
+            throw IOException("Can't replace $file")
+    }
+}
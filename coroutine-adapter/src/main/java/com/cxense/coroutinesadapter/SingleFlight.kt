@@ -0,0 +1,60 @@
+package com.cxense.coroutinesadapter
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+
+/**
+ * Collapses concurrent calls with the same key into one execution.
+ *
+ * The first caller for a key starts the call, every caller arriving while it is in flight
+ * receives the same result. The shared call is reference-counted: it is cancelled only when the last
+ * waiting caller is cancelled. Once all callers have received the result the key is released and the next
+ * caller starts a new call.
+ *
+ * @param T result type
+ */
+class SingleFlight<T>(
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Unconfined)
+) {
+    private class Call<T>(val deferred: Deferred<T>) {
+        var waiters = 0
+    }
+
+    // guarded by itself
+    private val calls = HashMap<String, Call<T>>()
+
+    /**
+     * Number of distinct calls currently in flight
+     */
+    val inFlightCount: Int
+        get() = synchronized(calls) { calls.size }
+
+    /**
+     * Joins the in-flight call for the given key or starts [block] if there is none.
+     *
+     * @param key   canonical request key
+     * @param block request to execute
+     * @return the shared result
+     */
+    suspend fun join(key: String, block: suspend () -> T): T {
+        val call = synchronized(calls) {
+            calls.getOrPut(key) { Call(scope.async(start = CoroutineStart.LAZY) { block() }) }
+                .also { it.waiters++ }
+        }
+        try {
+            return call.deferred.await()
+        } finally {
+            synchronized(calls) {
+                if (--call.waiters == 0) {
+                    if (calls[key] === call)
+                        calls.remove(key)
+                    call.deferred.cancel()
+                }
+            }
+        }
+    }
+}
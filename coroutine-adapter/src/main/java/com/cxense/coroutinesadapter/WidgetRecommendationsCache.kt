@@ -0,0 +1,154 @@
+package com.cxense.coroutinesadapter
+
+import com.cxense.cxensesdk.model.WidgetItem
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Immutable snapshot of cache counters.
+ *
+ * @property hitCount      number of requests served from a fresh cache entry
+ * @property staleHitCount number of requests served from a stale entry while it was being revalidated
+ * @property missCount     number of requests that had to wait for the network
+ * @property evictionCount number of entries removed to keep the cache within its bounds
+ * @property size          number of entries currently stored
+ */
+data class CacheStats(
+    val hitCount: Long,
+    val staleHitCount: Long,
+    val missCount: Long,
+    val evictionCount: Long,
+    val size: Int
+) {
+    /**
+     * Ratio of requests served from cache (fresh or stale), or 0 if there were no requests
+     */
+    val hitRate: Double
+        get() {
+            val total = hitCount + staleHitCount + missCount
+            return if (total == 0L) 0.0 else (hitCount + staleHitCount).toDouble() / total
+        }
+}
+
+/**
+ * Bounded in-memory LRU cache for widget recommendations.
+ *
+ * Entries younger than [ttl] are served as is. Entries older than [ttl] but younger than
+ * [ttl] + [staleWhileRevalidate] are served immediately while a single background request refreshes them.
+ * Older entries are dropped and the request goes to the network.
+ *
+ * Pass an instance to [loadWidgetRecommendations] to opt in to caching.
+ *
+ * @param maxEntries           maximum number of cached widget responses
+ * @param ttl                  time while an entry is considered fresh
+ * @param staleWhileRevalidate additional time while an expired entry can still be served during refresh
+ * @param unit                 time unit for [ttl] and [staleWhileRevalidate]
+ * @param scope                scope for background revalidation requests
+ */
+class WidgetRecommendationsCache(
+    private val maxEntries: Int = 64,
+    ttl: Long = 60,
+    staleWhileRevalidate: Long = 300,
+    unit: TimeUnit = TimeUnit.SECONDS,
+    private val scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+) {
+    private class Entry(val items: List<WidgetItem>, val loadedAt: Long)
+
+    private val ttlNanos = unit.toNanos(ttl)
+    private val staleNanos = unit.toNanos(staleWhileRevalidate)
+
+    // guarded by this
+    private val entries = LinkedHashMap<String, Entry>(16, 0.75f, true)
+
+    // guarded by this
+    private val refreshing = HashSet<String>()
+    private val hits = AtomicLong()
+    private val staleHits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+
+    init {
+        require(maxEntries > 0) { "maxEntries must be positive" }
+        require(ttl >= 0 && staleWhileRevalidate >= 0) { "ttl and staleWhileRevalidate must not be negative" }
+    }
+
+    /**
+     * Snapshot of cache counters
+     */
+    val stats: CacheStats
+        get() = CacheStats(
+            hits.get(),
+            staleHits.get(),
+            misses.get(),
+            evictions.get(),
+            synchronized(this) { entries.size }
+        )
+
+    /**
+     * Removes all cached entries. Counters are kept.
+     */
+    @Synchronized
+    fun invalidateAll() {
+        entries.clear()
+    }
+
+    internal suspend fun get(key: String, loader: suspend () -> List<WidgetItem>): List<WidgetItem> {
+        val now = System.nanoTime()
+        var refresh = false
+        val entry = synchronized(this) {
+            entries[key]?.let { entry ->
+                if (now - entry.loadedAt > ttlNanos + staleNanos) {
+                    entries.remove(key)
+                    null
+                } else {
+                    if (now - entry.loadedAt > ttlNanos)
+                        refresh = refreshing.add(key)
+                    entry
+                }
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet()
+            return loader().also { put(key, it) }
+        }
+        if (now - entry.loadedAt > ttlNanos) {
+            staleHits.incrementAndGet()
+            if (refresh)
+                revalidate(key, loader)
+        } else {
+            hits.incrementAndGet()
+        }
+        return entry.items
+    }
+
+    private fun revalidate(key: String, loader: suspend () -> List<WidgetItem>) {
+        scope.launch {
+            try {
+                put(key, loader())
+            } catch (e: Exception) {
+                // keep serving the stale entry until it expires completely
+            } finally {
+                synchronized(this@WidgetRecommendationsCache) {
+                    refreshing.remove(key)
+                }
+            }
+        }
+    }
+
+    private fun put(key: String, items: List<WidgetItem>) {
+        val entry = Entry(items, System.nanoTime())
+        synchronized(this) {
+            entries[key] = entry
+            val iterator = entries.entries.iterator()
+            while (entries.size > maxEntries && iterator.hasNext()) {
+                iterator.next()
+                iterator.remove()
+                evictions.incrementAndGet()
+            }
+        }
+    }
+}
@@ -20,4 +20,5 @@ android {
 dependencies {
     implementation(Libs.cxenseSdk)
     implementation(Libs.rxJava)
+    api(Libs.lifecycleCommon)
 }
@@ -0,0 +1,347 @@
+package com.cxense.rxjava2adapter;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.cxense.cxensesdk.CxenseSdk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Measures active time of page views and reports it with {@link CxenseSdk#trackActiveTime(String, long)}.
+ * <p>
+ * A page is bound to the {@link LifecycleOwner} that shows it. Time counts only while the owner is resumed and the
+ * user interacted with it during the last {@code idleTimeout}, measured with {@link SystemClock#elapsedRealtime()}.
+ * Call {@link #onUserInteraction()} from {@code Activity.onUserInteraction()}, it costs a clock read and a field
+ * write.
+ * <p>
+ * Totals are checkpointed to a small file while a page is resumed and when it pauses, so time isn't lost when the
+ * process dies; the next tracker reports it. Changed totals of all pages are reported together when a page
+ * stops. Create one tracker per application and bind pages from the main thread; {@link #close()} stops it.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class ActiveTimeTracker implements LifecycleEventObserver {
+    private static final String FILE_NAME = "cxense_active_time.bin";
+    private static final int MAGIC = 0x43584154;
+    private static final int VERSION = 1;
+    private static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long CHECKPOINT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final File file;
+    private final long idleTimeoutMillis;
+    private final Scheduler scheduler;
+    private final Object fileLock = new Object();
+    // main thread only
+    private final Map<LifecycleOwner, String> owners = new HashMap<>();
+    // main thread only
+    private Disposable checkpoints;
+    private volatile long lastInteraction;
+    // guarded by this
+    private final Map<String, Page> pages = new LinkedHashMap<>();
+    // guarded by this
+    private Page current;
+    // guarded by this
+    private long segmentStart;
+    // guarded by this
+    private boolean dirty;
+    // guarded by fileLock
+    private boolean recovered;
+
+    /**
+     * Creates tracker with checkpoints in application files directory and 30 seconds idle timeout.
+     *
+     * @param context any context
+     */
+    public ActiveTimeTracker(@NonNull Context context) {
+        this(new File(context.getApplicationContext().getFilesDir(), FILE_NAME), DEFAULT_IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS, Schedulers.io());
+    }
+
+    /**
+     * @param file        file to keep checkpoints in
+     * @param idleTimeout time without interaction after which the user is considered inactive
+     * @param unit        time unit
+     * @param scheduler   scheduler for checkpoints and reporting
+     */
+    public ActiveTimeTracker(@NonNull File file, long idleTimeout, @NonNull TimeUnit unit, @NonNull Scheduler scheduler) {
+        if (idleTimeout <= 0)
+            throw new IllegalArgumentException("idleTimeout must be positive");
+        this.file = file;
+        this.idleTimeoutMillis = unit.toMillis(idleTimeout);
+        this.scheduler = scheduler;
+        scheduler.scheduleDirect(this::recover);
+    }
+
+    /**
+     * Binds the page view to the lifecycle of the screen that shows it. Tracking ends when the owner is destroyed.
+     *
+     * @param owner   the screen, usually an activity or a fragment
+     * @param eventId event id of the page view event
+     */
+    public void track(@NonNull LifecycleOwner owner, @NonNull String eventId) {
+        owners.put(owner, eventId);
+        owner.getLifecycle().addObserver(this);
+    }
+
+    /**
+     * Marks user interaction with the resumed page.
+     */
+    public void onUserInteraction() {
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastInteraction > idleTimeoutMillis)
+            resumeAfterIdle(now);
+        else
+            lastInteraction = now;
+    }
+
+    /**
+     * @param eventId event id of the page view event
+     * @return measured active time of the page in milliseconds
+     */
+    public synchronized long getActiveTime(@NonNull String eventId) {
+        account(SystemClock.elapsedRealtime());
+        Page page = pages.get(eventId);
+        return page != null ? page.activeMillis : 0;
+    }
+
+    @Override
+    public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+        String eventId = owners.get(source);
+        if (eventId == null)
+            return;
+        switch (event) {
+            case ON_RESUME:
+                onResume(eventId);
+                if (checkpoints == null)
+                    checkpoints = scheduler.schedulePeriodicallyDirect(this::checkpoint, CHECKPOINT_INTERVAL_MILLIS, CHECKPOINT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                break;
+            case ON_PAUSE:
+                onPause();
+                stopCheckpoints();
+                scheduler.scheduleDirect(this::checkpoint);
+                break;
+            case ON_STOP:
+                scheduler.scheduleDirect(this::report);
+                break;
+            case ON_DESTROY:
+                source.getLifecycle().removeObserver(this);
+                owners.remove(source);
+                onDestroy(eventId);
+                scheduler.scheduleDirect(this::report);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Stops the tracker: unbinds all pages and reports the measured time. Call it from the main thread.
+     */
+    public void close() {
+        for (LifecycleOwner owner : owners.keySet()) {
+            owner.getLifecycle().removeObserver(this);
+        }
+        owners.clear();
+        stopCheckpoints();
+        onPause();
+        scheduler.scheduleDirect(this::report);
+    }
+
+    private void stopCheckpoints() {
+        if (checkpoints != null)
+            checkpoints.dispose();
+        checkpoints = null;
+    }
+
+    private synchronized void onResume(String eventId) {
+        Page page = pages.get(eventId);
+        if (page == null) {
+            page = new Page();
+            pages.put(eventId, page);
+        }
+        current = page;
+        segmentStart = SystemClock.elapsedRealtime();
+        lastInteraction = segmentStart;
+    }
+
+    private synchronized void onPause() {
+        account(SystemClock.elapsedRealtime());
+        current = null;
+    }
+
+    private synchronized void onDestroy(String eventId) {
+        Page page = pages.get(eventId);
+        if (page != null)
+            page.finished = true;
+    }
+
+    private synchronized void resumeAfterIdle(long now) {
+        account(now);
+        segmentStart = now;
+        lastInteraction = now;
+    }
+
+    // Called with the lock held.
+    private void account(long now) {
+        if (current == null)
+            return;
+        long end = Math.min(now, lastInteraction + idleTimeoutMillis);
+        if (end > segmentStart) {
+            current.activeMillis += end - segmentStart;
+            segmentStart = end;
+            dirty = true;
+        }
+    }
+
+    private void recover() {
+        synchronized (fileLock) {
+            recovered = true;
+            Map<String, Page> stored;
+            try {
+                stored = read();
+            } catch (IOException e) {
+                return;
+            }
+            synchronized (this) {
+                for (Map.Entry<String, Page> entry : stored.entrySet()) {
+                    // Pages of the previous process can't be resumed any more.
+                    if (!pages.containsKey(entry.getKey())) {
+                        entry.getValue().finished = true;
+                        pages.put(entry.getKey(), entry.getValue());
+                    }
+                }
+                dirty = true;
+            }
+        }
+        report();
+    }
+
+    private void report() {
+        Map<String, Long> changed = new LinkedHashMap<>();
+        synchronized (this) {
+            account(SystemClock.elapsedRealtime());
+            for (Iterator<Map.Entry<String, Page>> it = pages.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Page> entry = it.next();
+                Page page = entry.getValue();
+                long seconds = TimeUnit.MILLISECONDS.toSeconds(page.activeMillis);
+                if (seconds > page.reportedSeconds) {
+                    changed.put(entry.getKey(), seconds);
+                    page.reportedSeconds = seconds;
+                    dirty = true;
+                }
+                if (page.finished && page != current) {
+                    it.remove();
+                    dirty = true;
+                }
+            }
+        }
+        for (Map.Entry<String, Long> entry : changed.entrySet()) {
+            CxenseSdk.getInstance().trackActiveTime(entry.getKey(), entry.getValue());
+        }
+        checkpoint();
+    }
+
+    private void checkpoint() {
+        // Snapshots are taken and written in order, the main thread only waits for the snapshot.
+        synchronized (fileLock) {
+            if (!recovered)
+                return;
+            Map<String, Page> snapshot;
+            synchronized (this) {
+                account(SystemClock.elapsedRealtime());
+                if (!dirty)
+                    return;
+                dirty = false;
+                snapshot = new LinkedHashMap<>();
+                for (Map.Entry<String, Page> entry : pages.entrySet()) {
+                    snapshot.put(entry.getKey(), entry.getValue().copy());
+                }
+            }
+            try {
+                write(snapshot);
+            } catch (IOException e) {
+                synchronized (this) {
+                    // written with the next checkpoint
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    private Map<String, Page> read() throws IOException {
+        Map<String, Page> map = new LinkedHashMap<>();
+        if (!file.exists())
+            return map;
+        byte[] bytes;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            return map;
+        int entries = in.readInt();
+        for (int i = 0; i < entries; i++) {
+            String eventId = in.readUTF();
+            Page page = new Page();
+            page.activeMillis = in.readLong();
+            page.reportedSeconds = in.readLong();
+            map.put(eventId, page);
+        }
+        return map;
+    }
+
+    private void write(Map<String, Page> map) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(map.size());
+        for (Map.Entry<String, Page> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue().activeMillis);
+            out.writeLong(entry.getValue().reportedSeconds);
+        }
+        out.flush();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmp)) {
+            bytes.writeTo(stream);
+        }
+        if (!tmp.renameTo(file))
+            throw new IOException("Can't replace " + file);
+    }
+
+    private static class Page {
+        long activeMillis;
+        long reportedSeconds;
+        boolean finished;
+
+        Page copy() {
+            Page page = new Page();
+            page.activeMillis = activeMillis;
+            page.reportedSeconds = reportedSeconds;
+            page.finished = finished;
+            return page;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and outcome metrics of adapter calls, per {@link Endpoint}.
+ * <p>
+ * Install with {@link RxCxense#setMetrics(AdapterMetrics)}. Every network call then records its latency in a
+ * fixed-memory histogram, in-flight count, outcome, error type and retries. Recording is lock-free and doesn't
+ * allocate, except the first time an error class is seen. Read the numbers with {@link #getStats()} and export
+ * them to your telemetry.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public final class AdapterMetrics {
+    private static final int MAX_ERROR_TYPES = 32;
+    private static final String OTHER_ERRORS = "other";
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    private final Recorder[] recorders = new Recorder[Endpoint.values().length];
+
+    public AdapterMetrics() {
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder();
+        }
+    }
+
+    /**
+     * @param endpoint the endpoint
+     * @return metrics snapshot for the endpoint
+     */
+    @NonNull
+    public EndpointStats getStats(@NonNull Endpoint endpoint) {
+        return recorders[endpoint.ordinal()].snapshot(endpoint);
+    }
+
+    /**
+     * @return metrics snapshots for all endpoints that were called at least once
+     */
+    @NonNull
+    public Map<Endpoint, EndpointStats> getStats() {
+        Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            Recorder recorder = recorders[endpoint.ordinal()];
+            if (recorder.started.get() > 0)
+                stats.put(endpoint, recorder.snapshot(endpoint));
+        }
+        return stats;
+    }
+
+    /**
+     * Clears all counters and histograms, except in-flight counts.
+     */
+    public void reset() {
+        for (Recorder recorder : recorders) {
+            recorder.reset();
+        }
+    }
+
+    /**
+     * @param endpoint the endpoint
+     * @return start time to pass to one of finishing methods
+     */
+    long onStart(Endpoint endpoint) {
+        Recorder recorder = recorders[endpoint.ordinal()];
+        recorder.started.incrementAndGet();
+        recorder.inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void onSuccess(Endpoint endpoint, long startNanos) {
+        Recorder recorder = recorders[endpoint.ordinal()];
+        recorder.finish(startNanos);
+        recorder.successes.incrementAndGet();
+    }
+
+    void onError(Endpoint endpoint, long startNanos, Throwable throwable) {
+        Recorder recorder = recorders[endpoint.ordinal()];
+        recorder.finish(startNanos);
+        recorder.errors.incrementAndGet();
+        recorder.countError(throwable.getClass());
+    }
+
+    void onRetry(Endpoint endpoint) {
+        recorders[endpoint.ordinal()].retries.incrementAndGet();
+    }
+
+    void onCancel(Endpoint endpoint) {
+        Recorder recorder = recorders[endpoint.ordinal()];
+        recorder.inFlight.decrementAndGet();
+        recorder.cancelled.incrementAndGet();
+    }
+
+    private static final class Recorder {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final AtomicLong started = new AtomicLong();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicLong successes = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong cancelled = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final ConcurrentHashMap<String, AtomicLong> errorTypes = new ConcurrentHashMap<>();
+
+        void finish(long startNanos) {
+            inFlight.decrementAndGet();
+            histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        }
+
+        void countError(Class<?> type) {
+            AtomicLong counter = errorTypes.get(type.getName());
+            if (counter == null) {
+                String name = errorTypes.size() < MAX_ERROR_TYPES ? type.getName() : OTHER_ERRORS;
+                counter = errorTypes.get(name);
+                if (counter == null) {
+                    AtomicLong created = new AtomicLong();
+                    counter = errorTypes.putIfAbsent(name, created);
+                    if (counter == null)
+                        counter = created;
+                }
+            }
+            counter.incrementAndGet();
+        }
+
+        EndpointStats snapshot(Endpoint endpoint) {
+            Map<String, Long> types = new HashMap<>();
+            for (Map.Entry<String, AtomicLong> entry : errorTypes.entrySet()) {
+                types.put(entry.getKey(), entry.getValue().get());
+            }
+            return new EndpointStats(endpoint, successes.get(), errors.get(), cancelled.get(), retries.get(), inFlight.get(),
+                    histogram.getValuesAtPercentiles(PERCENTILES), histogram.getMaxValue(), types);
+        }
+
+        void reset() {
+            histogram.reset();
+            started.set(0);
+            successes.set(0);
+            errors.set(0);
+            cancelled.set(0);
+            retries.set(0);
+            errorTypes.clear();
+        }
+    }
+}
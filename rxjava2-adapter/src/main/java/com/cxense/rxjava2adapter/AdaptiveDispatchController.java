@@ -0,0 +1,254 @@
+package com.cxense.rxjava2adapter;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cxense.cxensesdk.CxenseConstants;
+import com.cxense.cxensesdk.CxenseSdk;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Adjusts the SDK dispatch period and flushes the event queue following a {@link DispatchPolicy}, instead of
+ * dispatching at a fixed period.
+ * <p>
+ * The controller re-evaluates the policy on every {@link QueueMonitor} snapshot, when the app moves between
+ * foreground and background, when the network changes and when a charger is plugged in or out. While events are
+ * waiting it also re-evaluates when the oldest of them is about to miss its latency target, so the target holds
+ * even if the queue doesn't change. Flushes are at least the policy minimum period apart, except for one when the
+ * app leaves foreground, so events of the session don't wait for the background target. The app is in
+ * foreground while any of its activities is started, so start the controller from
+ * {@code Application.onCreate()}. Only pushes through the adapter are seen right away; events pushed to the SDK
+ * directly or queued by the SDK itself wait for the dispatch timer, which the policy keeps within the latency
+ * target. The library manifest declares {@code ACCESS_NETWORK_STATE} for reading the
+ * network state.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class AdaptiveDispatchController implements Application.ActivityLifecycleCallbacks {
+    private final Application application;
+    private final DispatchPolicy policy;
+    private final Scheduler scheduler;
+    private final long minPeriodMillis;
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            scheduleEvaluate(0);
+        }
+    };
+    // main thread only
+    private int startedActivities;
+    private volatile boolean foreground;
+    // guarded by this
+    private boolean started;
+    // guarded by this
+    private QueueSnapshot last;
+    // guarded by this
+    private DispatchPolicy.Decision decision;
+    // guarded by this
+    private long appliedPeriodMillis;
+    // guarded by this
+    private long appliedAtMillis;
+    // guarded by this
+    private long lastFlushMillis = Long.MIN_VALUE / 2;
+    // guarded by this
+    private boolean leftForeground;
+    // guarded by this
+    private Disposable subscription;
+    // guarded by this
+    private Disposable recheck;
+
+    /**
+     * Creates controller with the default {@link DispatchPolicy}.
+     *
+     * @param application the application
+     */
+    public AdaptiveDispatchController(@NonNull Application application) {
+        this(application, new DispatchPolicy.Builder().build(), Schedulers.io());
+    }
+
+    /**
+     * @param application the application
+     * @param policy      policy that chooses the dispatch period and flushes
+     * @param scheduler   scheduler for evaluating the policy
+     */
+    public AdaptiveDispatchController(@NonNull Application application, @NonNull DispatchPolicy policy, @NonNull Scheduler scheduler) {
+        this.application = application;
+        this.policy = policy;
+        this.scheduler = scheduler;
+        // The SDK doesn't dispatch more often than its own minimum.
+        this.minPeriodMillis = Math.max(policy.getMinPeriodMillis(), CxenseConstants.getMinDispatchPeriod());
+    }
+
+    /**
+     * Starts controlling dispatch. Must be called from the main thread.
+     */
+    @SuppressWarnings("deprecation") // CONNECTIVITY_ACTION is the network broadcast on every supported API level.
+    public void start() {
+        synchronized (this) {
+            if (started)
+                return;
+            started = true;
+            subscription = QueueMonitor.getInstance().observe().subscribe(this::onSnapshot, throwable -> {
+                // the monitor stream doesn't fail; keep the last decision if it does
+            });
+        }
+        application.registerActivityLifecycleCallbacks(this);
+        IntentFilter filter = new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION);
+        filter.addAction(Intent.ACTION_POWER_CONNECTED);
+        filter.addAction(Intent.ACTION_POWER_DISCONNECTED);
+        application.registerReceiver(receiver, filter);
+    }
+
+    /**
+     * Stops controlling dispatch. The last applied dispatch period stays. Must be called from the main thread.
+     */
+    public void stop() {
+        synchronized (this) {
+            if (!started)
+                return;
+            started = false;
+            subscription.dispose();
+            if (recheck != null)
+                recheck.dispose();
+            recheck = null;
+            last = null;
+        }
+        application.unregisterActivityLifecycleCallbacks(this);
+        application.unregisterReceiver(receiver);
+    }
+
+    /**
+     * @return the last decision of the policy, or null if the policy wasn't evaluated yet
+     */
+    @Nullable
+    public synchronized DispatchPolicy.Decision getLastDecision() {
+        return decision;
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+        if (startedActivities++ == 0) {
+            foreground = true;
+            scheduleEvaluate(0);
+        }
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+        if (startedActivities > 0 && --startedActivities == 0) {
+            foreground = false;
+            scheduler.scheduleDirect(this::onBackground);
+        }
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+    }
+
+    private synchronized void onSnapshot(QueueSnapshot snapshot) {
+        last = snapshot;
+        evaluate();
+    }
+
+    private synchronized void onBackground() {
+        leftForeground = true;
+        evaluate();
+    }
+
+    private Disposable scheduleEvaluate(long delayMillis) {
+        return scheduler.scheduleDirect(() -> {
+            synchronized (this) {
+                evaluate();
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Called with the lock held.
+    private void evaluate() {
+        if (!started)
+            return;
+        long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        int depth = last != null ? last.getQueueDepth() : 0;
+        // Snapshots are emitted on changes only, so the oldest event keeps ageing after its snapshot.
+        long age = depth > 0 ? last.getOldestEventAgeMillis() + now - last.getTakenAtMillis() : 0;
+        // The SDK timer ticks every period since the period was set.
+        long untilTick = appliedPeriodMillis > 0 ? appliedPeriodMillis - (now - appliedAtMillis) % appliedPeriodMillis : 0;
+        DispatchPolicy.State state = new DispatchPolicy.State(depth, age, appliedPeriodMillis, untilTick, isUnmetered(), isCharging(), foreground);
+        decision = policy.decide(state);
+        long period = Math.max(decision.getPeriodMillis(), CxenseConstants.getMinDispatchPeriod());
+        if (period != appliedPeriodMillis) {
+            CxenseSdk.getInstance().getConfiguration().dispatchPeriod(period, TimeUnit.MILLISECONDS);
+            appliedPeriodMillis = period;
+            appliedAtMillis = now;
+        }
+        long sinceFlush = now - lastFlushMillis;
+        boolean leaving = leftForeground;
+        leftForeground = false;
+        if ((decision.isFlush() && sinceFlush >= minPeriodMillis) || leaving) {
+            lastFlushMillis = now;
+            sinceFlush = 0;
+            RxCxense.flushEventQueue().subscribeOn(scheduler).subscribe(() -> {
+                // the monitor takes a new snapshot after the flush
+            }, throwable -> {
+                // the SDK dispatches the events later
+            });
+        }
+        if (recheck != null)
+            recheck.dispose();
+        recheck = null;
+        if (depth > 0) {
+            // Wake up when the oldest event needs a flush, or when flushing is allowed again.
+            long delay = Math.max(decision.getRecheckMillis(), minPeriodMillis - sinceFlush);
+            recheck = scheduleEvaluate(Math.max(delay, 1));
+        }
+    }
+
+    @SuppressWarnings("deprecation") // NetworkInfo is the only source before API 16.
+    private boolean isUnmetered() {
+        ConnectivityManager manager = (ConnectivityManager) application.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (manager == null)
+            return false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN)
+            return !manager.isActiveNetworkMetered();
+        NetworkInfo info = manager.getActiveNetworkInfo();
+        return info != null && (info.getType() == ConnectivityManager.TYPE_WIFI || info.getType() == ConnectivityManager.TYPE_ETHERNET);
+    }
+
+    private boolean isCharging() {
+        // The battery broadcast is sticky, so this reads the current state without registering a receiver.
+        Intent battery = application.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+}
@@ -0,0 +1,88 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Combined result of a {@link QueryBatch}.
+ */
+public final class BatchResult {
+    private final Map<String, QueryOutcome> outcomes;
+    private final long elapsedMillis;
+
+    BatchResult(@NonNull Map<String, QueryOutcome> outcomes, long elapsedMillis) {
+        this.outcomes = Collections.unmodifiableMap(outcomes);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return outcomes by query name, in the order the queries were added
+     */
+    @NonNull
+    public Map<String, QueryOutcome> getOutcomes() {
+        return outcomes;
+    }
+
+    /**
+     * @param name name of the query
+     * @return outcome of the query, or null if there is no query with this name
+     */
+    @Nullable
+    public QueryOutcome getOutcome(@NonNull String name) {
+        return outcomes.get(name);
+    }
+
+    /**
+     * @param name name of the query
+     * @param type result type
+     * @param <T>  result type
+     * @return result of the query, or null if it failed or completed without a value
+     * @throws ClassCastException if the result has another type
+     */
+    @Nullable
+    public <T> T get(@NonNull String name, @NonNull Class<T> type) {
+        QueryOutcome outcome = outcomes.get(name);
+        return outcome != null ? type.cast(outcome.getValue()) : null;
+    }
+
+    /**
+     * @return names of queries that failed
+     */
+    @NonNull
+    public List<String> getFailedNames() {
+        List<String> names = new ArrayList<>();
+        for (QueryOutcome outcome : outcomes.values()) {
+            if (!outcome.isSuccess())
+                names.add(outcome.getName());
+        }
+        return names;
+    }
+
+    /**
+     * @return true if all queries succeeded
+     */
+    public boolean isComplete() {
+        for (QueryOutcome outcome : outcomes.values()) {
+            if (!outcome.isSuccess())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return time the whole batch took, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" + outcomes.values() + ", " + elapsedMillis + "ms}";
+    }
+}
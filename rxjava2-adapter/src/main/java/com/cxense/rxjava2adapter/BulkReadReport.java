@@ -0,0 +1,57 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import com.cxense.cxensesdk.model.UserIdentity;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Results of a {@link BulkReader} stream collected by identity.
+ *
+ * @param <T> value type
+ */
+public final class BulkReadReport<T> {
+    private final Map<UserIdentity, T> values = new LinkedHashMap<>();
+    private final Map<UserIdentity, Throwable> failures = new LinkedHashMap<>();
+
+    BulkReadReport() {
+    }
+
+    void add(@NonNull ReadResult<T> result) {
+        if (result.isSuccess())
+            values.put(result.getIdentity(), result.getValue());
+        else
+            failures.put(result.getIdentity(), result.getError());
+    }
+
+    /**
+     * @return values of users that were read, in completion order
+     */
+    @NonNull
+    public Map<UserIdentity, T> getValues() {
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * @return errors of users that failed, in completion order
+     */
+    @NonNull
+    public Map<UserIdentity, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return true if no user failed
+     */
+    public boolean isComplete() {
+        return failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkReadReport{read=" + values.size() + ", failed=" + Keys.identities(failures.keySet()) + '}';
+    }
+}
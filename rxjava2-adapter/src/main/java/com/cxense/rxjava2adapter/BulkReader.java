@@ -0,0 +1,149 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.model.User;
+import com.cxense.cxensesdk.model.UserIdentity;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+import io.reactivex.functions.Function;
+
+/**
+ * Reads DMP data of many users with bounded parallelism.
+ * <p>
+ * Identities are deduplicated by type and id, then up to {@code maxConcurrency} users are read at the same time,
+ * each with its own retries. All users of a stream share one deadline counted from subscription; users that are
+ * not read by then fail with {@link java.util.concurrent.TimeoutException}. Failed users don't stop the stream:
+ * every distinct identity produces a {@link ReadResult}, in completion order. Use {@link #report(Flowable)} to
+ * collect them into a {@link BulkReadReport}.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class BulkReader {
+    private final int maxConcurrency;
+    private final long timeoutNanos;
+    @Nullable
+    private final RetryPolicy retryPolicy;
+
+    private BulkReader(Builder builder) {
+        maxConcurrency = builder.maxConcurrency;
+        timeoutNanos = builder.timeoutNanos;
+        retryPolicy = builder.retryPolicy;
+    }
+
+    /**
+     * Collects results of a stream.
+     *
+     * @param results results of {@link #getUsers} or {@link #getSegmentsForMany}
+     * @param <T>     value type
+     * @return a {@link Single} that emits the report once all users are finished
+     */
+    @NonNull
+    public static <T> Single<BulkReadReport<T>> report(@NonNull Flowable<ReadResult<T>> results) {
+        return results.collect(BulkReadReport::new, BulkReadReport::add);
+    }
+
+    /**
+     * Gets profile of each user.
+     *
+     * @param identities    user identifiers with type and id
+     * @param groups        the groups to get data for
+     * @param recent        flag whether to only fetch recently updated data
+     * @param identityTypes the identity types to get data for
+     * @return a {@link Flowable} that emits result for each distinct identity
+     */
+    @NonNull
+    public Flowable<ReadResult<User>> getUsers(@NonNull List<UserIdentity> identities, @Nullable List<String> groups, @Nullable Boolean recent, @Nullable List<String> identityTypes) {
+        return read(identities, identity -> RxCxense.createSingle(Endpoint.GET_USER,
+                callback -> CxenseSdk.getInstance().getUser(identity, groups, recent, identityTypes, callback), policy()));
+    }
+
+    /**
+     * Gets segment ids of each user.
+     *
+     * @param identities   user identifiers with type and id
+     * @param siteGroupIds the site groups to get segments for
+     * @return a {@link Flowable} that emits result for each distinct identity
+     */
+    @NonNull
+    public Flowable<ReadResult<List<String>>> getSegmentsForMany(@NonNull List<UserIdentity> identities, @NonNull List<String> siteGroupIds) {
+        return read(identities, identity -> RxCxense.createSingle(Endpoint.GET_USER_SEGMENT_IDS,
+                callback -> CxenseSdk.getInstance().getUserSegmentIds(Collections.singletonList(identity), siteGroupIds, callback), policy()));
+    }
+
+    @Nullable
+    private RetryPolicy policy() {
+        return retryPolicy != null ? retryPolicy : RxCxense.getRetryPolicy();
+    }
+
+    private <T> Flowable<ReadResult<T>> read(List<UserIdentity> identities, Function<UserIdentity, Single<T>> call) {
+        return Flowable.defer(() -> {
+            long deadline = System.nanoTime() + timeoutNanos;
+            return Flowable.fromIterable(identities)
+                    .distinct(Keys::identity)
+                    .flatMapSingle(identity -> Single.defer(() -> call.apply(identity)
+                            .timeout(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS))
+                            .map(value -> new ReadResult<>(identity, value, null))
+                            .onErrorReturn(error -> new ReadResult<>(identity, null, error)), false, maxConcurrency);
+        });
+    }
+
+    /**
+     * Builder for {@link BulkReader}
+     */
+    public static class Builder {
+        private int maxConcurrency = 8;
+        private long timeoutNanos = TimeUnit.SECONDS.toNanos(30);
+        @Nullable
+        private RetryPolicy retryPolicy;
+
+        /**
+         * @param maxConcurrency maximum number of users read at the same time
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0)
+                throw new IllegalArgumentException("maxConcurrency must be positive");
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * @param timeout deadline of the whole stream, 30 seconds by default
+         * @param unit    time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder timeout(long timeout, @NonNull TimeUnit unit) {
+            if (timeout <= 0)
+                throw new IllegalArgumentException("timeout must be positive");
+            this.timeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * @param retryPolicy retries of each user, by default the policy set with {@link RxCxense#setRetryPolicy}
+         * @return this builder
+         */
+        @NonNull
+        public Builder retryPolicy(@Nullable RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * @return new {@link BulkReader}
+         */
+        @NonNull
+        public BulkReader build() {
+            return new BulkReader(this);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.cxense.rxjava2adapter;
+
+import java.util.Locale;
+
+/**
+ * Immutable snapshot of {@link BulkWriter} progress.
+ */
+public final class BulkWriteStats {
+    private final long succeededCount;
+    private final long failedCount;
+    private final int inFlightCount;
+    private final long elapsedMillis;
+
+    BulkWriteStats(long succeededCount, long failedCount, int inFlightCount, long elapsedMillis) {
+        this.succeededCount = succeededCount;
+        this.failedCount = failedCount;
+        this.inFlightCount = inFlightCount;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return number of written items
+     */
+    public long getSucceededCount() {
+        return succeededCount;
+    }
+
+    /**
+     * @return number of items that failed after all attempts
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * @return number of items being written now
+     */
+    public int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    /**
+     * @return time since the first item started, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * @return finished items per second since the first item started
+     */
+    public double getItemsPerSecond() {
+        return elapsedMillis == 0 ? 0 : (succeededCount + failedCount) * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "BulkWriteStats{succeeded=%d, failed=%d, inFlight=%d, elapsed=%dms, %.1f items/s}",
+                succeededCount, failedCount, inFlightCount, elapsedMillis, getItemsPerSecond());
+    }
+}
@@ -0,0 +1,134 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.model.UserExternalData;
+import com.cxense.cxensesdk.model.UserIdentity;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+/**
+ * Writes and deletes external data of many users with bounded parallelism.
+ * <p>
+ * Up to {@code maxConcurrency} items are written at the same time, each with its own retries. Failed items don't
+ * stop the stream: every item produces a {@link WriteResult}, in completion order. Progress of all streams of the
+ * writer is available with {@link #getStats()}.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class BulkWriter {
+    private final int maxConcurrency;
+    @Nullable
+    private final RetryPolicy retryPolicy;
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong startNanos = new AtomicLong();
+
+    private BulkWriter(Builder builder) {
+        maxConcurrency = builder.maxConcurrency;
+        retryPolicy = builder.retryPolicy;
+    }
+
+    /**
+     * Sets external data for each user of the stream.
+     *
+     * @param items external data of users
+     * @return a {@link Flowable} that emits result for each item
+     */
+    @NonNull
+    public Flowable<WriteResult<UserExternalData>> set(@NonNull Flowable<UserExternalData> items) {
+        return items.flatMapSingle(item -> write(item, RxCxense.createCompletable(Endpoint.SET_USER_EXTERNAL_DATA,
+                callback -> CxenseSdk.getInstance().setUserExternalData(item, callback), policy())), false, maxConcurrency);
+    }
+
+    /**
+     * Deletes external data for each user of the stream.
+     *
+     * @param identities user identifiers with type and id
+     * @return a {@link Flowable} that emits result for each item
+     */
+    @NonNull
+    public Flowable<WriteResult<UserIdentity>> delete(@NonNull Flowable<UserIdentity> identities) {
+        return identities.flatMapSingle(identity -> write(identity, RxCxense.createCompletable(Endpoint.DELETE_USER_EXTERNAL_DATA,
+                callback -> CxenseSdk.getInstance().deleteUserExternalData(identity, callback), policy())), false, maxConcurrency);
+    }
+
+    /**
+     * @return progress of all streams of this writer
+     */
+    @NonNull
+    public BulkWriteStats getStats() {
+        long start = startNanos.get();
+        long elapsed = start == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new BulkWriteStats(succeeded.get(), failed.get(), inFlight.get(), elapsed);
+    }
+
+    @Nullable
+    private RetryPolicy policy() {
+        return retryPolicy != null ? retryPolicy : RxCxense.getRetryPolicy();
+    }
+
+    private <T> Single<WriteResult<T>> write(T item, Completable call) {
+        return call
+                .doOnSubscribe(d -> {
+                    startNanos.compareAndSet(0, System.nanoTime());
+                    inFlight.incrementAndGet();
+                })
+                .doFinally(inFlight::decrementAndGet)
+                .toSingle(() -> {
+                    succeeded.incrementAndGet();
+                    return new WriteResult<>(item, null);
+                })
+                .onErrorReturn(error -> {
+                    failed.incrementAndGet();
+                    return new WriteResult<>(item, error);
+                });
+    }
+
+    /**
+     * Builder for {@link BulkWriter}
+     */
+    public static class Builder {
+        private int maxConcurrency = 8;
+        @Nullable
+        private RetryPolicy retryPolicy;
+
+        /**
+         * @param maxConcurrency maximum number of items written at the same time
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0)
+                throw new IllegalArgumentException("maxConcurrency must be positive");
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * @param retryPolicy retries of each item, by default the policy set with {@link RxCxense#setRetryPolicy}
+         * @return this builder
+         */
+        @NonNull
+        public Builder retryPolicy(@Nullable RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        /**
+         * @return new {@link BulkWriter}
+         */
+        @NonNull
+        public BulkWriter build() {
+            return new BulkWriter(this);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.cxense.rxjava2adapter;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleObserver;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Cancellable;
+
+/**
+ * Concurrency limit for one {@link EndpointFamily}.
+ * <p>
+ * At most {@code maxConcurrent} calls of the family run at the same time. Further calls wait in a FIFO queue of
+ * {@code maxQueued} places and start when a running call finishes. When the queue is full calls fail at once with
+ * {@link BulkheadFullException}. A disposed call leaves the queue or frees its slot immediately.
+ * <p>
+ * Install with {@link RxCxense#setBulkhead(EndpointFamily, Bulkhead)}.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class Bulkhead {
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final AtomicLong rejected = new AtomicLong();
+    // guarded by this
+    private final ArrayDeque<Permit<?>> queue = new ArrayDeque<>();
+    // guarded by this
+    private int running;
+
+    /**
+     * @param maxConcurrent maximum number of calls running at the same time
+     * @param maxQueued     maximum number of calls waiting for a slot
+     */
+    public Bulkhead(int maxConcurrent, int maxQueued) {
+        if (maxConcurrent <= 0 || maxQueued < 0)
+            throw new IllegalArgumentException("maxConcurrent must be positive and maxQueued not negative");
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+    }
+
+    /**
+     * @return number of calls running now
+     */
+    public synchronized int getRunningCount() {
+        return running;
+    }
+
+    /**
+     * @return number of calls waiting for a slot
+     */
+    public synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of calls rejected because the queue was full
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    <T> Single<T> wrap(final Single<T> source, final EndpointFamily family) {
+        return Single.create(emitter -> {
+            Permit<T> permit = new Permit<>(source, emitter);
+            emitter.setCancellable(permit);
+            boolean start = false;
+            boolean queued = false;
+            synchronized (this) {
+                if (running < maxConcurrent) {
+                    running++;
+                    start = true;
+                } else if (queue.size() < maxQueued) {
+                    queue.add(permit);
+                    queued = true;
+                }
+            }
+            if (start) {
+                permit.run();
+            } else if (!queued) {
+                rejected.incrementAndGet();
+                emitter.tryOnError(new BulkheadFullException(family));
+            }
+        });
+    }
+
+    private void release() {
+        Permit<?> next;
+        synchronized (this) {
+            next = queue.poll();
+            if (next == null)
+                running--;
+        }
+        if (next != null)
+            next.run();
+    }
+
+    private synchronized boolean dequeue(Permit<?> permit) {
+        return queue.remove(permit);
+    }
+
+    /**
+     * One call: waits in the queue, runs the source and gives its slot back exactly once.
+     */
+    private final class Permit<T> implements SingleObserver<T>, Cancellable {
+        private final Single<T> source;
+        private final SingleEmitter<T> emitter;
+        // guarded by this
+        private boolean released;
+        // guarded by this
+        private Disposable upstream;
+
+        Permit(Single<T> source, SingleEmitter<T> emitter) {
+            this.source = source;
+            this.emitter = emitter;
+        }
+
+        void run() {
+            if (emitter.isDisposed()) {
+                releaseOnce();
+                return;
+            }
+            source.subscribe(this);
+        }
+
+        @Override
+        public void onSubscribe(Disposable d) {
+            synchronized (this) {
+                upstream = d;
+            }
+            if (emitter.isDisposed()) {
+                d.dispose();
+                releaseOnce();
+            }
+        }
+
+        @Override
+        public void onSuccess(T value) {
+            releaseOnce();
+            emitter.onSuccess(value);
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            releaseOnce();
+            emitter.tryOnError(e);
+        }
+
+        @Override
+        public void cancel() {
+            if (dequeue(this))
+                return;
+            Disposable d;
+            synchronized (this) {
+                d = upstream;
+            }
+            if (d != null) {
+                d.dispose();
+                releaseOnce();
+            }
+        }
+
+        private void releaseOnce() {
+            synchronized (this) {
+                if (released)
+                    return;
+                released = true;
+            }
+            release();
+        }
+    }
+}
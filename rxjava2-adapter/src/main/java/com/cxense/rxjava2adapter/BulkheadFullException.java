@@ -0,0 +1,12 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Signals that a call was rejected because the bulkhead of its family has no free slot and its queue is full.
+ */
+public class BulkheadFullException extends RuntimeException {
+    BulkheadFullException(@NonNull EndpointFamily family) {
+        super("Bulkhead for " + family + " endpoints is full");
+    }
+}
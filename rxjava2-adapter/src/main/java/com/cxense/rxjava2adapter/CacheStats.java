@@ -0,0 +1,74 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Immutable snapshot of cache counters.
+ */
+public final class CacheStats {
+    private final long hitCount;
+    private final long staleHitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+
+    CacheStats(long hitCount, long staleHitCount, long missCount, long evictionCount, int size) {
+        this.hitCount = hitCount;
+        this.staleHitCount = staleHitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+    }
+
+    /**
+     * @return number of requests served from a fresh cache entry
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of requests served from a stale entry while it was being revalidated
+     */
+    public long getStaleHitCount() {
+        return staleHitCount;
+    }
+
+    /**
+     * @return number of requests that had to wait for the network
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return number of entries removed to keep the cache within its bounds
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return number of entries currently stored
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return ratio of requests served from cache (fresh or stale), or 0 if there were no requests
+     */
+    public double getHitRate() {
+        long total = hitCount + staleHitCount + missCount;
+        return total == 0 ? 0 : (double) (hitCount + staleHitCount) / total;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "CacheStats{hits=%d, staleHits=%d, misses=%d, evictions=%d, size=%d}",
+                hitCount, staleHitCount, missCount, evictionCount, size);
+    }
+}
@@ -0,0 +1,152 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.Nullable;
+
+import com.cxense.cxensesdk.LoadCallback;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+import io.reactivex.CompletableEmitter;
+import io.reactivex.SingleEmitter;
+import io.reactivex.functions.Cancellable;
+
+/**
+ * {@link LoadCallback} implementations that bridge SDK calls to Rx emitters and record {@link AdapterMetrics}.
+ * <p>
+ * The SDK keeps a callback until its request finishes. Callbacks are registered as the emitter's
+ * {@link Cancellable}, and dispose detaches them from the emitter, so the subscriber and everything it captures
+ * can be collected while the request is still in flight. A late response is dropped.
+ */
+final class Callbacks {
+    private Callbacks() {
+    }
+
+    static <T> LoadCallback<T> single(Endpoint endpoint, @Nullable AdapterMetrics metrics, SingleEmitter<T> emitter) {
+        SingleCallback<T> callback = new SingleCallback<>(endpoint, metrics, emitter);
+        emitter.setCancellable(callback);
+        return callback;
+    }
+
+    static LoadCallback<Void> completable(Endpoint endpoint, @Nullable AdapterMetrics metrics, CompletableEmitter emitter) {
+        CompletableCallback callback = new CompletableCallback(endpoint, metrics, emitter);
+        emitter.setCancellable(callback);
+        return callback;
+    }
+
+    /**
+     * Records the outcome of one call exactly once: success, error or cancellation, whichever comes first.
+     * Cancellation also detaches the emitter.
+     */
+    abstract static class MeteredCallback<T> implements LoadCallback<T>, Cancellable {
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<MeteredCallback> FINISHED =
+                AtomicIntegerFieldUpdater.newUpdater(MeteredCallback.class, "finished");
+
+        private final Endpoint endpoint;
+        @Nullable
+        private final AdapterMetrics metrics;
+        private final long startNanos;
+        private volatile int finished;
+
+        MeteredCallback(Endpoint endpoint, @Nullable AdapterMetrics metrics) {
+            this.endpoint = endpoint;
+            this.metrics = metrics;
+            this.startNanos = metrics != null ? metrics.onStart(endpoint) : 0;
+        }
+
+        @Override
+        public final void onSuccess(@NotNull T data) {
+            if (metrics != null && FINISHED.compareAndSet(this, 0, 1))
+                metrics.onSuccess(endpoint, startNanos);
+            deliver(data);
+        }
+
+        @Override
+        public final void onError(@NotNull Throwable throwable) {
+            if (metrics != null && FINISHED.compareAndSet(this, 0, 1))
+                metrics.onError(endpoint, startNanos, throwable);
+            fail(throwable);
+        }
+
+        @Override
+        public final void cancel() {
+            if (metrics != null && FINISHED.compareAndSet(this, 0, 1))
+                metrics.onCancel(endpoint);
+            detach();
+        }
+
+        abstract void deliver(T data);
+
+        abstract void fail(Throwable throwable);
+
+        abstract void detach();
+    }
+
+    static final class SingleCallback<T> extends MeteredCallback<T> {
+        @Nullable
+        private volatile SingleEmitter<T> emitter;
+
+        SingleCallback(Endpoint endpoint, @Nullable AdapterMetrics metrics, SingleEmitter<T> emitter) {
+            super(endpoint, metrics);
+            this.emitter = emitter;
+        }
+
+        @Override
+        void deliver(T data) {
+            SingleEmitter<T> e = emitter;
+            if (e != null) {
+                emitter = null;
+                e.onSuccess(data);
+            }
+        }
+
+        @Override
+        void fail(Throwable throwable) {
+            SingleEmitter<T> e = emitter;
+            if (e != null) {
+                emitter = null;
+                e.tryOnError(throwable);
+            }
+        }
+
+        @Override
+        void detach() {
+            emitter = null;
+        }
+    }
+
+    static final class CompletableCallback extends MeteredCallback<Void> {
+        @Nullable
+        private volatile CompletableEmitter emitter;
+
+        CompletableCallback(Endpoint endpoint, @Nullable AdapterMetrics metrics, CompletableEmitter emitter) {
+            super(endpoint, metrics);
+            this.emitter = emitter;
+        }
+
+        @Override
+        void deliver(Void data) {
+            CompletableEmitter e = emitter;
+            if (e != null) {
+                emitter = null;
+                e.onComplete();
+            }
+        }
+
+        @Override
+        void fail(Throwable throwable) {
+            CompletableEmitter e = emitter;
+            if (e != null) {
+                emitter = null;
+                e.tryOnError(throwable);
+            }
+        }
+
+        @Override
+        void detach() {
+            emitter = null;
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Single;
+import io.reactivex.functions.Predicate;
+
+/**
+ * Circuit breaker for one {@link EndpointFamily}.
+ * <p>
+ * While {@link State#CLOSED closed} it keeps outcomes of the last {@code windowSize} calls. When at least
+ * {@code minimumCalls} are recorded and the share of failures reaches the threshold, the breaker opens. While
+ * {@link State#OPEN open} calls fail at once with {@link CircuitBreakerOpenException}. After the open duration
+ * the breaker lets a few trial calls through ({@link State#HALF_OPEN half-open}): if all of them succeed it
+ * closes, any failure opens it again.
+ * <p>
+ * Install with {@link RxCxense#setCircuitBreaker(EndpointFamily, CircuitBreaker)}.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class CircuitBreaker {
+    /**
+     * Breaker states
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final Predicate<Throwable> failure;
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    // guarded by this
+    private final boolean[] window;
+    // guarded by this
+    private int windowIndex;
+    // guarded by this
+    private int windowCount;
+    // guarded by this
+    private int windowFailures;
+    // guarded by this
+    private State state = State.CLOSED;
+    // guarded by this
+    private long openedAtNanos;
+    // guarded by this
+    private int halfOpenPermits;
+    // guarded by this
+    private int halfOpenSuccesses;
+
+    private CircuitBreaker(Builder builder) {
+        window = new boolean[builder.windowSize];
+        minimumCalls = builder.minimumCalls;
+        failureRateThreshold = builder.failureRateThreshold;
+        openDurationNanos = builder.openDurationNanos;
+        halfOpenCalls = builder.halfOpenCalls;
+        failure = builder.failure;
+    }
+
+    /**
+     * @return current state
+     */
+    @NonNull
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openDurationNanos)
+            return State.HALF_OPEN;
+        return state;
+    }
+
+    /**
+     * @return share of failures among calls in the window, or 0 if the window is empty
+     */
+    public synchronized double getFailureRate() {
+        return windowCount == 0 ? 0 : (double) windowFailures / windowCount;
+    }
+
+    /**
+     * @return number of calls rejected while the breaker was open
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return number of times the breaker opened
+     */
+    public long getOpenedCount() {
+        return opened.get();
+    }
+
+    <T> Single<T> wrap(final Single<T> source, final EndpointFamily family) {
+        return Single.defer(() -> {
+            if (!tryAcquire()) {
+                rejected.incrementAndGet();
+                return Single.<T>error(new CircuitBreakerOpenException(family));
+            }
+            final AtomicBoolean finished = new AtomicBoolean();
+            return source
+                    .doOnSuccess(value -> {
+                        if (finished.compareAndSet(false, true))
+                            onSuccess();
+                    })
+                    .doOnError(error -> {
+                        if (finished.compareAndSet(false, true)) {
+                            if (error instanceof BulkheadFullException)
+                                onIgnored();
+                            else if (isFailure(error))
+                                onFailure();
+                            else
+                                onSuccess();
+                        }
+                    })
+                    .doOnDispose(() -> {
+                        if (finished.compareAndSet(false, true))
+                            onIgnored();
+                    });
+        });
+    }
+
+    private boolean isFailure(Throwable error) {
+        try {
+            return failure.test(error);
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openDurationNanos)
+                return false;
+            state = State.HALF_OPEN;
+            halfOpenPermits = halfOpenCalls;
+            halfOpenSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermits == 0)
+                return false;
+            halfOpenPermits--;
+        }
+        return true;
+    }
+
+    private synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++halfOpenSuccesses >= halfOpenCalls)
+                close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    private synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (windowCount >= minimumCalls && (double) windowFailures / windowCount >= failureRateThreshold)
+                open();
+        }
+    }
+
+    private synchronized void onIgnored() {
+        if (state == State.HALF_OPEN)
+            halfOpenPermits++;
+    }
+
+    private void record(boolean failed) {
+        if (windowCount == window.length) {
+            if (window[windowIndex])
+                windowFailures--;
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failed;
+        if (failed)
+            windowFailures++;
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAtNanos = System.nanoTime();
+        opened.incrementAndGet();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowIndex = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+
+    /**
+     * Builder for {@link CircuitBreaker}
+     */
+    public static class Builder {
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 0.5;
+        private long openDurationNanos = TimeUnit.SECONDS.toNanos(30);
+        private int halfOpenCalls = 3;
+        private Predicate<Throwable> failure = error -> true;
+
+        /**
+         * @param windowSize   number of last calls whose outcomes are kept
+         * @param minimumCalls number of calls in the window needed before the breaker may open
+         * @return this builder
+         */
+        @NonNull
+        public Builder window(int windowSize, int minimumCalls) {
+            if (windowSize <= 0 || minimumCalls <= 0 || minimumCalls > windowSize)
+                throw new IllegalArgumentException("windowSize and minimumCalls must be positive, minimumCalls not greater than windowSize");
+            this.windowSize = windowSize;
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * @param failureRateThreshold share of failures in the window that opens the breaker, from 0 to 1
+         * @return this builder
+         */
+        @NonNull
+        public Builder failureRateThreshold(double failureRateThreshold) {
+            if (failureRateThreshold <= 0 || failureRateThreshold > 1)
+                throw new IllegalArgumentException("failureRateThreshold must be greater than 0 and not greater than 1");
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * @param openDuration time the breaker stays open before trial calls
+         * @param unit         time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder openDuration(long openDuration, @NonNull TimeUnit unit) {
+            if (openDuration <= 0)
+                throw new IllegalArgumentException("openDuration must be positive");
+            this.openDurationNanos = unit.toNanos(openDuration);
+            return this;
+        }
+
+        /**
+         * @param halfOpenCalls number of trial calls that must succeed to close the breaker
+         * @return this builder
+         */
+        @NonNull
+        public Builder halfOpenCalls(int halfOpenCalls) {
+            if (halfOpenCalls <= 0)
+                throw new IllegalArgumentException("halfOpenCalls must be positive");
+            this.halfOpenCalls = halfOpenCalls;
+            return this;
+        }
+
+        /**
+         * @param failure returns true for errors that count as failures, by default all errors do
+         * @return this builder
+         */
+        @NonNull
+        public Builder recordFailure(@NonNull Predicate<Throwable> failure) {
+            this.failure = failure;
+            return this;
+        }
+
+        /**
+         * @return new {@link CircuitBreaker}
+         */
+        @NonNull
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Signals that a call was rejected without a request because the circuit breaker of its family is open.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+    CircuitBreakerOpenException(@NonNull EndpointFamily family) {
+        super("Circuit breaker for " + family + " endpoints is open");
+    }
+}
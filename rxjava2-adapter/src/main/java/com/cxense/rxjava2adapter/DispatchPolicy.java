@@ -0,0 +1,210 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses the SDK dispatch period and when to flush, from the state of the event queue and the device.
+ * <p>
+ * While the queue looks empty the period is half the latency target of the current state. Events pushed to the SDK
+ * directly or queued by the SDK itself are seen only when they are dispatched, so the timer alone has to keep
+ * them within the target, and a later switch to the cheaper period still leaves them room. Push events through
+ * the adapter to have them seen right away. While events wait, the period is the latency target of the current state, the foreground target for a visible app and the background one
+ * otherwise, less one minimum period, so an event that restarts the timer still makes its target. While charging on
+ * an unmetered network, where a wake-up is almost free, it is half the target. The policy asks for a flush when a
+ * full batch is waiting, or when the next tick would deliver the oldest event too late, which happens after the
+ * state changed under it. A smaller batch doesn't pay off even when wake-ups are cheap: flushes don't move the
+ * dispatch timer, so a busy stream would wake the radio for the flush and again for the next tick.
+ * <p>
+ * The policy is a pure function of its input and has no Android dependencies, so recorded traces can be replayed
+ * through it. {@link AdaptiveDispatchController} applies it to the SDK.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public final class DispatchPolicy {
+    private final long minPeriodMillis;
+    private final long maxPeriodMillis;
+    private final long foregroundLatencyMillis;
+    private final long backgroundLatencyMillis;
+    private final int batchSize;
+
+    private DispatchPolicy(Builder builder) {
+        minPeriodMillis = builder.minPeriodMillis;
+        maxPeriodMillis = builder.maxPeriodMillis;
+        foregroundLatencyMillis = builder.foregroundLatencyMillis;
+        backgroundLatencyMillis = builder.backgroundLatencyMillis;
+        batchSize = builder.batchSize;
+    }
+
+    /**
+     * @param state state of the queue and the device
+     * @return dispatch period and whether to flush now
+     */
+    @NonNull
+    public Decision decide(@NonNull State state) {
+        long latency = state.foreground ? foregroundLatencyMillis : backgroundLatencyMillis;
+        if (state.queueDepth == 0)
+            return new Decision(clamp(latency / 2), false, 0);
+        boolean cheap = state.unmetered && state.charging;
+        long period = clamp(cheap ? latency / 2 : latency - minPeriodMillis);
+        // Setting another period restarts the dispatch timer.
+        long untilTick = period == state.periodMillis ? Math.min(state.untilTickMillis, period) : period;
+        long slack = latency - untilTick - state.oldestEventAgeMillis;
+        if (state.queueDepth >= batchSize || slack < 0)
+            return new Decision(period, true, 0);
+        return new Decision(period, false, slack + 1);
+    }
+
+    /**
+     * @return minimum dispatch period, in milliseconds
+     */
+    public long getMinPeriodMillis() {
+        return minPeriodMillis;
+    }
+
+    private long clamp(long period) {
+        return Math.max(minPeriodMillis, Math.min(maxPeriodMillis, period));
+    }
+
+    /**
+     * Input of {@link DispatchPolicy#decide(State)}.
+     */
+    public static final class State {
+        final int queueDepth;
+        final long oldestEventAgeMillis;
+        final long periodMillis;
+        final long untilTickMillis;
+        final boolean unmetered;
+        final boolean charging;
+        final boolean foreground;
+
+        /**
+         * @param queueDepth           number of events waiting to be sent
+         * @param oldestEventAgeMillis time the oldest waiting event has been waiting, in milliseconds
+         * @param periodMillis         dispatch period in effect, in milliseconds, or 0 if unknown
+         * @param untilTickMillis      time until the next dispatch of the SDK timer, in milliseconds
+         * @param unmetered            true if the active network is unmetered
+         * @param charging             true if the device is charging
+         * @param foreground           true if the app is visible
+         */
+        public State(int queueDepth, long oldestEventAgeMillis, long periodMillis, long untilTickMillis, boolean unmetered, boolean charging, boolean foreground) {
+            this.queueDepth = queueDepth;
+            this.oldestEventAgeMillis = oldestEventAgeMillis;
+            this.periodMillis = periodMillis;
+            this.untilTickMillis = untilTickMillis;
+            this.unmetered = unmetered;
+            this.charging = charging;
+            this.foreground = foreground;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "State{depth=%d, oldest=%dms, period=%dms, tick in %dms%s%s%s}", queueDepth,
+                    oldestEventAgeMillis, periodMillis, untilTickMillis, unmetered ? ", unmetered" : "", charging ? ", charging" : "", foreground ? ", foreground" : "");
+        }
+    }
+
+    /**
+     * Output of {@link DispatchPolicy#decide(State)}.
+     */
+    public static final class Decision {
+        private final long periodMillis;
+        private final boolean flush;
+        private final long recheckMillis;
+
+        Decision(long periodMillis, boolean flush, long recheckMillis) {
+            this.periodMillis = periodMillis;
+            this.flush = flush;
+            this.recheckMillis = recheckMillis;
+        }
+
+        /**
+         * @return dispatch period to set, in milliseconds
+         */
+        public long getPeriodMillis() {
+            return periodMillis;
+        }
+
+        /**
+         * @return true if the queue should be flushed now
+         */
+        public boolean isFlush() {
+            return flush;
+        }
+
+        /**
+         * @return time after which the oldest waiting event needs a flush if nothing else changes, in
+         * milliseconds, or 0 if there is nothing to wait for
+         */
+        public long getRecheckMillis() {
+            return recheckMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Decision{period=" + periodMillis + "ms" + (flush ? ", flush" : ", recheck=" + recheckMillis + "ms") + '}';
+        }
+    }
+
+    /**
+     * Builder for {@link DispatchPolicy}
+     */
+    public static class Builder {
+        private long minPeriodMillis = TimeUnit.SECONDS.toMillis(10);
+        private long maxPeriodMillis = TimeUnit.MINUTES.toMillis(15);
+        private long foregroundLatencyMillis = TimeUnit.SECONDS.toMillis(30);
+        private long backgroundLatencyMillis = TimeUnit.MINUTES.toMillis(5);
+        private int batchSize = 50;
+
+        /**
+         * @param min  shortest dispatch period, 10 seconds by default
+         * @param max  longest dispatch period, 15 minutes by default
+         * @param unit time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder period(long min, long max, @NonNull TimeUnit unit) {
+            if (min <= 0 || max < min)
+                throw new IllegalArgumentException("min must be positive and not greater than max");
+            this.minPeriodMillis = unit.toMillis(min);
+            this.maxPeriodMillis = unit.toMillis(max);
+            return this;
+        }
+
+        /**
+         * @param foreground latency target while the app is visible, 30 seconds by default
+         * @param background latency target while the app is in background, 5 minutes by default
+         * @param unit       time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder latency(long foreground, long background, @NonNull TimeUnit unit) {
+            if (foreground <= 0 || background <= 0)
+                throw new IllegalArgumentException("latency targets must be positive");
+            this.foregroundLatencyMillis = unit.toMillis(foreground);
+            this.backgroundLatencyMillis = unit.toMillis(background);
+            return this;
+        }
+
+        /**
+         * @param batchSize number of waiting events worth a wake-up of their own, 50 by default
+         * @return this builder
+         */
+        @NonNull
+        public Builder batchSize(int batchSize) {
+            if (batchSize <= 0)
+                throw new IllegalArgumentException("batchSize must be positive");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @return new {@link DispatchPolicy}
+         */
+        @NonNull
+        public DispatchPolicy build() {
+            return new DispatchPolicy(this);
+        }
+    }
+}
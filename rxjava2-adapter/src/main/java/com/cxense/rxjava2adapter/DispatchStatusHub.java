@@ -0,0 +1,111 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.model.EventStatus;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.processors.ReplayProcessor;
+
+/**
+ * Shared source of events sending statuses.
+ * <p>
+ * The SDK keeps a single {@link CxenseSdk.DispatchEventsCallback}. The hub registers its own on every
+ * subscription and fans statuses out to any number of subscribers. Subscribers receive batches sent after
+ * they subscribed; those that ask for replay receive the last {@value #REPLAY_SIZE} batches first. Every
+ * subscriber has its own bounded buffer, batches that don't fit are handled by the requested
+ * {@link BackpressureOverflowStrategy} and counted.
+ * <p>
+ * Don't call {@link CxenseSdk#setDispatchEventsCallback} directly while the hub is in use: it replaces the
+ * callback of the hub, and current subscribers receive nothing until the next subscription registers it again.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public final class DispatchStatusHub {
+    static final int REPLAY_SIZE = 16;
+    public static final int DEFAULT_CAPACITY = 64;
+    private static final DispatchStatusHub INSTANCE = new DispatchStatusHub();
+
+    private final FlowableProcessor<List<EventStatus>> processor = ReplayProcessor.<List<EventStatus>>createWithSize(REPLAY_SIZE).toSerialized();
+    private final FlowableProcessor<List<EventStatus>> live = PublishProcessor.<List<EventStatus>>create().toSerialized();
+    private final CxenseSdk.DispatchEventsCallback callback = statuses -> {
+        processor.onNext(statuses);
+        live.onNext(statuses);
+    };
+    private final AtomicLong droppedBatches = new AtomicLong();
+
+    private DispatchStatusHub() {
+    }
+
+    /**
+     * @return the hub instance
+     */
+    @NonNull
+    public static DispatchStatusHub getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Statuses stream of batches sent after the subscription, with buffer for {@value #DEFAULT_CAPACITY} batches
+     * that drops the oldest batch on overflow.
+     *
+     * @return a {@link Flowable} that emits statuses at each events sending
+     */
+    @NonNull
+    public Flowable<List<EventStatus>> statuses() {
+        return statuses(DEFAULT_CAPACITY, BackpressureOverflowStrategy.DROP_OLDEST, false);
+    }
+
+    /**
+     * Statuses stream with buffer for {@value #DEFAULT_CAPACITY} batches that drops the oldest batch on overflow.
+     *
+     * @param replay true to receive the last {@value #REPLAY_SIZE} batches first
+     * @return a {@link Flowable} that emits statuses at each events sending
+     */
+    @NonNull
+    public Flowable<List<EventStatus>> statuses(boolean replay) {
+        return statuses(DEFAULT_CAPACITY, BackpressureOverflowStrategy.DROP_OLDEST, replay);
+    }
+
+    /**
+     * @param capacity number of batches buffered for a slow subscriber
+     * @param strategy what to do when the buffer is full
+     * @return a {@link Flowable} that emits statuses of batches sent after the subscription
+     */
+    @NonNull
+    public Flowable<List<EventStatus>> statuses(int capacity, @NonNull BackpressureOverflowStrategy strategy) {
+        return statuses(capacity, strategy, false);
+    }
+
+    /**
+     * @param capacity number of batches buffered for a slow subscriber
+     * @param strategy what to do when the buffer is full
+     * @param replay   true to receive the last {@value #REPLAY_SIZE} batches first
+     * @return a {@link Flowable} that emits statuses at each events sending
+     */
+    @NonNull
+    public Flowable<List<EventStatus>> statuses(int capacity, @NonNull BackpressureOverflowStrategy strategy, boolean replay) {
+        return Flowable.defer(() -> {
+            register();
+            return replay ? processor : live;
+        }).onBackpressureBuffer(capacity, droppedBatches::incrementAndGet, strategy);
+    }
+
+    /**
+     * @return number of batches dropped for slow subscribers
+     */
+    public long getDroppedBatchCount() {
+        return droppedBatches.get();
+    }
+
+    private void register() {
+        // The app may have replaced the callback since the last subscription.
+        CxenseSdk.getInstance().setDispatchEventsCallback(callback);
+    }
+}
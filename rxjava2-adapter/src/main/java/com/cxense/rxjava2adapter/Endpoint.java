@@ -0,0 +1,39 @@
+package com.cxense.rxjava2adapter;
+
+/**
+ * SDK calls that go to the network. Metrics are kept per endpoint.
+ */
+public enum Endpoint {
+    TRACK_CLICK(EndpointFamily.WIDGETS, false),
+    LOAD_WIDGET_RECOMMENDATIONS(EndpointFamily.WIDGETS, true),
+    GET_USER_SEGMENT_IDS(EndpointFamily.DMP, true),
+    GET_USER(EndpointFamily.DMP, true),
+    GET_USER_EXTERNAL_DATA(EndpointFamily.DMP, true),
+    SET_USER_EXTERNAL_DATA(EndpointFamily.DMP, true),
+    DELETE_USER_EXTERNAL_DATA(EndpointFamily.DMP, true),
+    GET_USER_EXTERNAL_LINK(EndpointFamily.DMP, true),
+    ADD_USER_EXTERNAL_LINK(EndpointFamily.DMP, true),
+    PERSISTED_QUERY(EndpointFamily.DMP, true);
+
+    private final EndpointFamily family;
+    private final boolean idempotent;
+
+    Endpoint(EndpointFamily family, boolean idempotent) {
+        this.family = family;
+        this.idempotent = idempotent;
+    }
+
+    /**
+     * @return the family the endpoint belongs to
+     */
+    public EndpointFamily getFamily() {
+        return family;
+    }
+
+    /**
+     * @return true if repeating the call has the same effect as making it once, so it can be retried
+     */
+    public boolean isIdempotent() {
+        return idempotent;
+    }
+}
@@ -0,0 +1,16 @@
+package com.cxense.rxjava2adapter;
+
+/**
+ * Groups of endpoints served by the same backend. Circuit breakers and bulkheads are set per family, so
+ * trouble in one family doesn't affect the other.
+ */
+public enum EndpointFamily {
+    /**
+     * Widget recommendations and click tracking, usually on the critical rendering path.
+     */
+    WIDGETS,
+    /**
+     * DMP: user profile, segments, external data and links, persisted queries.
+     */
+    DMP
+}
@@ -0,0 +1,132 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of call metrics for one {@link Endpoint}. Latencies are in microseconds.
+ */
+public final class EndpointStats {
+    private final Endpoint endpoint;
+    private final long successCount;
+    private final long errorCount;
+    private final long cancelledCount;
+    private final long retryCount;
+    private final int inFlightCount;
+    private final long p50;
+    private final long p95;
+    private final long p99;
+    private final long max;
+    private final Map<String, Long> errorTypes;
+
+    EndpointStats(Endpoint endpoint, long successCount, long errorCount, long cancelledCount, long retryCount, int inFlightCount,
+                  long[] percentiles, long max, Map<String, Long> errorTypes) {
+        this.endpoint = endpoint;
+        this.successCount = successCount;
+        this.errorCount = errorCount;
+        this.cancelledCount = cancelledCount;
+        this.retryCount = retryCount;
+        this.inFlightCount = inFlightCount;
+        this.p50 = percentiles[0];
+        this.p95 = percentiles[1];
+        this.p99 = percentiles[2];
+        this.max = max;
+        this.errorTypes = Collections.unmodifiableMap(errorTypes);
+    }
+
+    /**
+     * @return the endpoint
+     */
+    @NonNull
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return number of finished calls, successful or not
+     */
+    public long getCount() {
+        return successCount + errorCount + cancelledCount;
+    }
+
+    /**
+     * @return number of successful calls
+     */
+    public long getSuccessCount() {
+        return successCount;
+    }
+
+    /**
+     * @return number of failed calls
+     */
+    public long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return number of calls disposed before they finished
+     */
+    public long getCancelledCount() {
+        return cancelledCount;
+    }
+
+    /**
+     * @return number of retries, each retry is also counted as a call
+     */
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * @return number of calls running now
+     */
+    public int getInFlightCount() {
+        return inFlightCount;
+    }
+
+    /**
+     * @return median latency in microseconds
+     */
+    public long getP50Micros() {
+        return p50;
+    }
+
+    /**
+     * @return 95th percentile latency in microseconds
+     */
+    public long getP95Micros() {
+        return p95;
+    }
+
+    /**
+     * @return 99th percentile latency in microseconds
+     */
+    public long getP99Micros() {
+        return p99;
+    }
+
+    /**
+     * @return maximum latency in microseconds
+     */
+    public long getMaxMicros() {
+        return max;
+    }
+
+    /**
+     * @return number of errors by error class name
+     */
+    @NonNull
+    public Map<String, Long> getErrorTypes() {
+        return errorTypes;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "EndpointStats{%s, success=%d, errors=%d, cancelled=%d, retries=%d, inFlight=%d, p50=%dus, p95=%dus, p99=%dus, max=%dus, errorTypes=%s}",
+                endpoint, successCount, errorCount, cancelledCount, retryCount, inFlightCount, p50, p95, p99, max, errorTypes);
+    }
+}
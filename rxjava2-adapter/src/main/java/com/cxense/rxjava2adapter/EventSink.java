@@ -0,0 +1,207 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.model.Event;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.BackpressureOverflowStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Streaming sink that pushes events to the SDK queue in batches.
+ * <p>
+ * Events are grouped by count and by time window, each batch is pushed with a single
+ * {@link CxenseSdk#pushEvents(Event...)} call. While the SDK queue holds {@code maxQueueDepth} or more
+ * not sent events, pushing waits and finished batches are kept in a bounded buffer. When the buffer is full
+ * the configured {@link BackpressureOverflowStrategy} applies.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class EventSink {
+    private static final Throwable SATURATED = new IllegalStateException("Event queue is saturated");
+
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final int maxQueueDepth;
+    private final long pollIntervalMillis;
+    private final int bufferCapacity;
+    private final BackpressureOverflowStrategy overflowStrategy;
+    private final Scheduler scheduler;
+    private final AtomicLong pushedEvents = new AtomicLong();
+    private final AtomicLong pushedBatches = new AtomicLong();
+    private final AtomicLong droppedBatches = new AtomicLong();
+
+    private EventSink(Builder builder) {
+        maxBatchSize = builder.maxBatchSize;
+        maxDelayMillis = builder.maxDelayMillis;
+        maxQueueDepth = builder.maxQueueDepth;
+        pollIntervalMillis = builder.pollIntervalMillis;
+        bufferCapacity = builder.bufferCapacity;
+        overflowStrategy = builder.overflowStrategy;
+        scheduler = builder.scheduler;
+    }
+
+    /**
+     * Pushes all events from the stream. Subscribe once per stream.
+     *
+     * @param events stream of events
+     * @return a {@link Completable} that is complete when the stream completed and all its events were pushed
+     */
+    @NonNull
+    public Completable push(@NonNull Flowable<Event> events) {
+        return events
+                .buffer(maxDelayMillis, TimeUnit.MILLISECONDS, scheduler, maxBatchSize)
+                .filter(batch -> !batch.isEmpty())
+                .onBackpressureBuffer(bufferCapacity, droppedBatches::incrementAndGet, overflowStrategy)
+                .concatMapCompletable(batch -> awaitCapacity().andThen(pushBatch(batch)), 1);
+    }
+
+    /**
+     * @return number of events pushed to the SDK queue
+     */
+    public long getPushedEventCount() {
+        return pushedEvents.get();
+    }
+
+    /**
+     * @return number of {@link CxenseSdk#pushEvents(Event...)} calls
+     */
+    public long getPushedBatchCount() {
+        return pushedBatches.get();
+    }
+
+    /**
+     * @return number of batches dropped because the buffer was full
+     */
+    public long getDroppedBatchCount() {
+        return droppedBatches.get();
+    }
+
+    private Completable awaitCapacity() {
+        return Single.fromCallable(() -> CxenseSdk.getInstance().getQueueStatus().getNotSentEvents().size())
+                .flatMapCompletable(depth -> depth < maxQueueDepth ? Completable.complete() : Completable.error(SATURATED))
+                .retryWhen(errors -> errors.flatMap(error -> error == SATURATED
+                        ? Flowable.timer(pollIntervalMillis, TimeUnit.MILLISECONDS, scheduler)
+                        : Flowable.<Long>error(error)));
+    }
+
+    private Completable pushBatch(List<Event> batch) {
+        return Completable.fromAction(() -> {
+            CxenseSdk.getInstance().pushEvents(batch.toArray(new Event[0]));
+            pushedBatches.incrementAndGet();
+            pushedEvents.addAndGet(batch.size());
+            QueueMonitor.getInstance().onActivity();
+        });
+    }
+
+    /**
+     * Builder for {@link EventSink}
+     */
+    public static class Builder {
+        private int maxBatchSize = 50;
+        private long maxDelayMillis = 1000;
+        private int maxQueueDepth = 500;
+        private long pollIntervalMillis = 500;
+        private int bufferCapacity = 16;
+        private BackpressureOverflowStrategy overflowStrategy = BackpressureOverflowStrategy.DROP_OLDEST;
+        private Scheduler scheduler = Schedulers.computation();
+
+        /**
+         * @param maxBatchSize maximum number of events pushed with one call
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxBatchSize(int maxBatchSize) {
+            if (maxBatchSize <= 0)
+                throw new IllegalArgumentException("maxBatchSize must be positive");
+            this.maxBatchSize = maxBatchSize;
+            return this;
+        }
+
+        /**
+         * @param maxDelay maximum time an event waits for its batch to be pushed
+         * @param unit     time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxDelay(long maxDelay, @NonNull TimeUnit unit) {
+            if (maxDelay <= 0)
+                throw new IllegalArgumentException("maxDelay must be positive");
+            this.maxDelayMillis = unit.toMillis(maxDelay);
+            return this;
+        }
+
+        /**
+         * @param maxQueueDepth number of not sent events in the SDK queue at which pushing waits
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxQueueDepth(int maxQueueDepth) {
+            if (maxQueueDepth <= 0)
+                throw new IllegalArgumentException("maxQueueDepth must be positive");
+            this.maxQueueDepth = maxQueueDepth;
+            return this;
+        }
+
+        /**
+         * @param pollInterval how often the SDK queue is checked while it is saturated
+         * @param unit         time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder pollInterval(long pollInterval, @NonNull TimeUnit unit) {
+            if (pollInterval <= 0)
+                throw new IllegalArgumentException("pollInterval must be positive");
+            this.pollIntervalMillis = unit.toMillis(pollInterval);
+            return this;
+        }
+
+        /**
+         * @param bufferCapacity number of batches kept while the SDK queue is saturated
+         * @return this builder
+         */
+        @NonNull
+        public Builder bufferCapacity(int bufferCapacity) {
+            if (bufferCapacity <= 0)
+                throw new IllegalArgumentException("bufferCapacity must be positive");
+            this.bufferCapacity = bufferCapacity;
+            return this;
+        }
+
+        /**
+         * @param overflowStrategy what to do when the batch buffer is full
+         * @return this builder
+         */
+        @NonNull
+        public Builder overflowStrategy(@NonNull BackpressureOverflowStrategy overflowStrategy) {
+            this.overflowStrategy = overflowStrategy;
+            return this;
+        }
+
+        /**
+         * @param scheduler scheduler for batch timers and queue polling
+         * @return this builder
+         */
+        @NonNull
+        public Builder scheduler(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * @return new {@link EventSink}
+         */
+        @NonNull
+        public EventSink build() {
+            return new EventSink(this);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.cxense.rxjava2adapter;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.cxense.cxensesdk.model.ExternalItem;
+import com.cxense.cxensesdk.model.UserExternalData;
+import com.cxense.cxensesdk.model.UserIdentity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Completable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Sends external data of a user only when it differs from the last state acknowledged by the server.
+ * <p>
+ * For each user the store keeps a fingerprint: the sorted 64-bit hashes of its external items. A sync with the
+ * same items as the fingerprint skips the network call. Otherwise the data is sent and, once the server
+ * acknowledged it, becomes the new fingerprint. The update endpoint replaces all external data of the user, so
+ * changed data is sent whole: a payload with changed items only would drop the unchanged ones.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class ExternalDataSync {
+    private static final String FILE_NAME = "cxense_external_data.bin";
+    private static final int MAGIC = 0x43584544;
+    private static final int VERSION = 1;
+    private static final long[] EMPTY = new long[0];
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final String SEPARATOR = "\u001f";
+
+    private final File file;
+    private final Scheduler scheduler;
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    // guarded by this
+    private Map<String, long[]> fingerprints;
+
+    /**
+     * Creates store in application files directory.
+     *
+     * @param context any context
+     */
+    public ExternalDataSync(@NonNull Context context) {
+        this(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+    }
+
+    /**
+     * @param file file to keep fingerprints in
+     */
+    public ExternalDataSync(@NonNull File file) {
+        this(file, Schedulers.io());
+    }
+
+    /**
+     * @param file      file to keep fingerprints in
+     * @param scheduler scheduler for disk operations
+     */
+    public ExternalDataSync(@NonNull File file, @NonNull Scheduler scheduler) {
+        this.file = file;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Sends the external data if it changed since the last acknowledged sync.
+     *
+     * @param userExternalData external data associated with a user
+     * @return a {@link Single} that emits true if the data was sent, false if it was unchanged
+     */
+    @NonNull
+    public Single<Boolean> sync(@NonNull UserExternalData userExternalData) {
+        String key = Keys.externalData(userExternalData.getId(), userExternalData.getType());
+        return Single.defer(() -> {
+            long[] fingerprint = fingerprint(userExternalData.getItems());
+            if (Arrays.equals(fingerprint, get(key))) {
+                skipped.incrementAndGet();
+                return Single.just(Boolean.FALSE);
+            }
+            return RxCxense.setUserExternalData(userExternalData)
+                    .observeOn(scheduler)
+                    .andThen(Completable.fromAction(() -> {
+                        sent.incrementAndGet();
+                        put(key, fingerprint);
+                    }))
+                    .toSingleDefault(Boolean.TRUE);
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * Forgets the fingerprint of the user, so the next sync sends its data. Call it after the data was changed
+     * or deleted by other means.
+     *
+     * @param identity user identifier with type and id
+     * @return a {@link Completable} that completes when the fingerprint is removed
+     */
+    @NonNull
+    public Completable forget(@NonNull UserIdentity identity) {
+        String key = Keys.externalData(identity.getId(), identity.getType());
+        return Completable.fromAction(() -> put(key, null)).subscribeOn(scheduler);
+    }
+
+    /**
+     * Removes all fingerprints.
+     *
+     * @return true if the file was deleted or did not exist
+     */
+    public synchronized boolean clear() {
+        fingerprints = new HashMap<>();
+        return !file.exists() || file.delete();
+    }
+
+    /**
+     * @return number of syncs that sent data
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * @return number of syncs skipped because the data was unchanged
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    private static long[] fingerprint(List<ExternalItem> items) {
+        if (items == null || items.isEmpty())
+            return EMPTY;
+        long[] hashes = new long[items.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            ExternalItem item = items.get(i);
+            hashes[i] = hash(hash(hash(FNV_OFFSET, item.getGroup()), SEPARATOR), item.getItem());
+        }
+        Arrays.sort(hashes);
+        int unique = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (i == 0 || hashes[i] != hashes[unique - 1])
+                hashes[unique++] = hashes[i];
+        }
+        return unique == hashes.length ? hashes : Arrays.copyOf(hashes, unique);
+    }
+
+    // FNV-1a
+    private static long hash(long hash, String value) {
+        if (value == null)
+            return hash;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private synchronized long[] get(String key) {
+        return load().get(key);
+    }
+
+    private synchronized void put(String key, long[] fingerprint) {
+        Map<String, long[]> map = load();
+        if (fingerprint == null ? map.remove(key) == null : Arrays.equals(fingerprint, map.put(key, fingerprint)))
+            return;
+        try {
+            write(map);
+        } catch (IOException e) {
+            // fingerprints stay in memory and are written with the next change
+        }
+    }
+
+    private Map<String, long[]> load() {
+        if (fingerprints == null) {
+            try {
+                fingerprints = read();
+            } catch (IOException e) {
+                fingerprints = new HashMap<>();
+            }
+        }
+        return fingerprints;
+    }
+
+    private Map<String, long[]> read() throws IOException {
+        Map<String, long[]> map = new HashMap<>();
+        if (!file.exists())
+            return map;
+        byte[] bytes;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            return map;
+        // An entry takes at least a key length and a hash count.
+        int entries = count(in, 2 + 4);
+        for (int i = 0; i < entries; i++) {
+            String key = in.readUTF();
+            long[] hashes = new long[count(in, 8)];
+            for (int j = 0; j < hashes.length; j++) {
+                hashes[j] = in.readLong();
+            }
+            map.put(key, hashes);
+        }
+        return map;
+    }
+
+    // Reads a count of items of at least itemBytes each, a corrupt count fails like a truncated file.
+    private static int count(DataInputStream in, int itemBytes) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || (long) count * itemBytes > in.available())
+            throw new IOException("Bad count " + count);
+        return count;
+    }
+
+    private void write(Map<String, long[]> map) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(map.size());
+        for (Map.Entry<String, long[]> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().length);
+            for (long hash : entry.getValue()) {
+                out.writeLong(hash);
+            }
+        }
+        out.flush();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmp)) {
+            bytes.writeTo(stream);
+            stream.getFD().sync();
+        }
+        if (!tmp.renameTo(file))
+            throw new IOException("Can't replace " + file);
+    }
+}
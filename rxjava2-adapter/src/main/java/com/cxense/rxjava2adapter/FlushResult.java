@@ -0,0 +1,77 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Summary of a {@link RxCxense#flushAndAwait(long, java.util.concurrent.TimeUnit)} call: what happened to the
+ * events that were waiting when it was called.
+ */
+public final class FlushResult {
+    private final Set<String> deliveredEventIds;
+    private final Map<String, Exception> failures;
+    private final Set<String> pendingEventIds;
+    private final long elapsedMillis;
+
+    FlushResult(@NonNull Set<String> deliveredEventIds, @NonNull Map<String, Exception> failures,
+                @NonNull Set<String> pendingEventIds, long elapsedMillis) {
+        this.deliveredEventIds = Collections.unmodifiableSet(deliveredEventIds);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.pendingEventIds = Collections.unmodifiableSet(pendingEventIds);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * @return ids of events the SDK reported sent
+     */
+    @NonNull
+    public Set<String> getDeliveredEventIds() {
+        return deliveredEventIds;
+    }
+
+    /**
+     * @return errors by id of events the SDK failed to send, an error can be null. These events stay in the queue.
+     */
+    @NonNull
+    public Map<String, Exception> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return ids of events without a status when the timeout elapsed
+     */
+    @NonNull
+    public Set<String> getPendingEventIds() {
+        return pendingEventIds;
+    }
+
+    /**
+     * @return true if the timeout elapsed before all events were reported
+     */
+    public boolean isTimedOut() {
+        return !pendingEventIds.isEmpty();
+    }
+
+    /**
+     * @return true if all events were delivered
+     */
+    public boolean isSuccess() {
+        return failures.isEmpty() && pendingEventIds.isEmpty();
+    }
+
+    /**
+     * @return time the flush took, in milliseconds
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "FlushResult{delivered=" + deliveredEventIds.size() + ", failed=" + failures.size()
+                + ", pending=" + pendingEventIds.size() + ", " + elapsedMillis + "ms}";
+    }
+}
@@ -0,0 +1,85 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import com.cxense.cxensesdk.model.EventStatus;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Correlates the events waiting at flush time with the statuses the SDK reports for them.
+ * <p>
+ * Only events passed to {@link #track(List)} are followed; statuses of other events are ignored. Statuses that
+ * arrive before the queue is tracked are kept and applied by {@link #track(List)}. A failed event stays in the SDK
+ * queue and counts as failed unless a later status within the same flush reports it sent.
+ */
+final class FlushTracker {
+    private final long start = System.nanoTime();
+    // guarded by this
+    private final Set<String> pending = new LinkedHashSet<>();
+    // guarded by this
+    private final Set<String> delivered = new LinkedHashSet<>();
+    // guarded by this
+    private final Map<String, Exception> failures = new LinkedHashMap<>();
+    // guarded by this, null once tracking
+    private List<List<EventStatus>> early = new ArrayList<>();
+
+    /**
+     * @param queued events waiting to be sent
+     * @return true if there is nothing to wait for
+     */
+    synchronized boolean track(@NonNull List<EventStatus> queued) {
+        for (EventStatus event : queued) {
+            pending.add(event.getEventId());
+        }
+        List<List<EventStatus>> batches = early;
+        early = null;
+        for (List<EventStatus> statuses : batches) {
+            apply(statuses);
+        }
+        return pending.isEmpty();
+    }
+
+    /**
+     * @param statuses statuses of one sending
+     * @return true if all tracked events are reported, always false before {@link #track(List)}
+     */
+    synchronized boolean onStatuses(@NonNull List<EventStatus> statuses) {
+        if (early != null) {
+            early.add(statuses);
+            return false;
+        }
+        apply(statuses);
+        return pending.isEmpty();
+    }
+
+    /**
+     * @return summary of the statuses reported so far
+     */
+    @NonNull
+    synchronized FlushResult result() {
+        return new FlushResult(new LinkedHashSet<>(delivered), new LinkedHashMap<>(failures),
+                new LinkedHashSet<>(pending), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    // Called with the lock held.
+    private void apply(List<EventStatus> statuses) {
+        for (EventStatus status : statuses) {
+            String eventId = status.getEventId();
+            if (status.isSent()) {
+                if (pending.remove(eventId) || failures.containsKey(eventId)) {
+                    failures.remove(eventId);
+                    delivered.add(eventId);
+                }
+            } else if (pending.remove(eventId)) {
+                failures.put(eventId, status.getException());
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Hedged requests with a deadline.
+ * <p>
+ * A request that hasn't finished after the hedge delay gets a duplicate. The first successful response wins
+ * and the other request is disposed. If a request fails, the other one still may succeed. The hedge delay is
+ * either fixed or follows the observed 95th percentile of request latency. Hedges are limited to a share of
+ * requests, so the extra load on the server stays bounded. The whole call fails with
+ * {@link java.util.concurrent.TimeoutException} when the deadline passes.
+ * <p>
+ * Use one policy per kind of request, so that latencies of different requests don't mix.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class HedgingPolicy {
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECALCULATE_EVERY = 16;
+    private static final double MAX_TOKENS = 10;
+
+    private final long hedgeDelayMicros;
+    private final boolean adaptive;
+    private final double maxHedgeRatio;
+    private final Scheduler scheduler;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private volatile long adaptiveDelayMicros;
+    // guarded by this
+    private double tokens = MAX_TOKENS;
+
+    private HedgingPolicy(Builder builder) {
+        hedgeDelayMicros = builder.hedgeDelayMicros;
+        adaptive = builder.adaptive;
+        maxHedgeRatio = builder.maxHedgeRatio;
+        scheduler = builder.scheduler;
+        adaptiveDelayMicros = hedgeDelayMicros;
+    }
+
+    /**
+     * @return current hedge delay in milliseconds
+     */
+    public long getHedgeDelayMillis() {
+        return TimeUnit.MICROSECONDS.toMillis(currentDelayMicros());
+    }
+
+    /**
+     * @return number of requests made through the policy
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return number of hedged duplicates sent
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * @return number of hedged duplicates that responded first
+     */
+    public long getHedgeWinCount() {
+        return hedgeWins.get();
+    }
+
+    <T> Single<T> execute(final Single<T> request, long deadline, TimeUnit unit) {
+        return Single.defer(() -> {
+            requests.incrementAndGet();
+            addToken();
+            final long start = System.nanoTime();
+            final AtomicBoolean observed = new AtomicBoolean();
+            // A primary disposed because the hedge won took at least that long, record it as well.
+            Flowable<T> primary = request
+                    .doOnSuccess(value -> observe(observed, start))
+                    .doOnDispose(() -> observe(observed, start))
+                    .toFlowable();
+            Flowable<T> hedge = Flowable.defer(() -> {
+                if (!tryAcquireToken())
+                    return Flowable.<T>empty();
+                hedges.incrementAndGet();
+                return request.doOnSuccess(value -> hedgeWins.incrementAndGet()).toFlowable();
+            }).delaySubscription(currentDelayMicros(), TimeUnit.MICROSECONDS, scheduler);
+            return Flowable.mergeDelayError(primary, hedge)
+                    .firstOrError()
+                    .timeout(deadline, unit, scheduler);
+        });
+    }
+
+    private long currentDelayMicros() {
+        return adaptive ? adaptiveDelayMicros : hedgeDelayMicros;
+    }
+
+    private void observe(AtomicBoolean observed, long startNanos) {
+        if (!observed.compareAndSet(false, true))
+            return;
+        latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        long count = latencies.getTotalCount();
+        if (adaptive && count >= MIN_SAMPLES && count % RECALCULATE_EVERY == 0)
+            adaptiveDelayMicros = latencies.getValuesAtPercentiles(95)[0];
+    }
+
+    private synchronized void addToken() {
+        tokens = Math.min(MAX_TOKENS, tokens + maxHedgeRatio);
+    }
+
+    private synchronized boolean tryAcquireToken() {
+        if (tokens < 1)
+            return false;
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Builder for {@link HedgingPolicy}
+     */
+    public static class Builder {
+        private long hedgeDelayMicros = TimeUnit.MILLISECONDS.toMicros(300);
+        private boolean adaptive = true;
+        private double maxHedgeRatio = 0.1;
+        private Scheduler scheduler = Schedulers.computation();
+
+        /**
+         * @param hedgeDelay delay before the duplicate request. With adaptive delay it is used until enough
+         *                   latencies are observed
+         * @param unit       time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder hedgeDelay(long hedgeDelay, @NonNull TimeUnit unit) {
+            if (hedgeDelay < 0)
+                throw new IllegalArgumentException("hedgeDelay must not be negative");
+            this.hedgeDelayMicros = unit.toMicros(hedgeDelay);
+            return this;
+        }
+
+        /**
+         * @param adaptive true to follow the observed 95th percentile of latency, false for a fixed delay
+         * @return this builder
+         */
+        @NonNull
+        public Builder adaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+            return this;
+        }
+
+        /**
+         * @param maxHedgeRatio maximum share of requests that get a duplicate, from 0 to 1
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxHedgeRatio(double maxHedgeRatio) {
+            if (maxHedgeRatio < 0 || maxHedgeRatio > 1)
+                throw new IllegalArgumentException("maxHedgeRatio must be between 0 and 1");
+            this.maxHedgeRatio = maxHedgeRatio;
+            return this;
+        }
+
+        /**
+         * @param scheduler scheduler for hedge delays and deadlines
+         * @return this builder
+         */
+        @NonNull
+        public Builder scheduler(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * @return new {@link HedgingPolicy}
+         */
+        @NonNull
+        public HedgingPolicy build() {
+            return new HedgingPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.model.ContentUser;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.BehaviorSubject;
+
+/**
+ * Memoized user identity of the SDK.
+ * <p>
+ * Reading the identity from the SDK may touch preferences or Google Play services. The store reads each value once
+ * and keeps it, so later calls return without I/O. Call {@link #prewarm()} from {@code Application.onCreate} to
+ * read everything on a background thread; the advertising ID is retried for a while, since it arrives
+ * asynchronously. The {@code observe*()} streams replay the current value and emit when it changes.
+ * <p>
+ * Change the user id with {@link #setUserId(String)}. Calling {@link CxenseSdk#setUserId} directly while the store
+ * is in use leaves the store stale.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public final class IdentityStore {
+    private static final IdentityStore INSTANCE = new IdentityStore();
+    private static final int DEFAULT_USER_ID_ATTEMPTS = 6;
+    private static final long DEFAULT_USER_ID_DELAY_MILLIS = 500;
+
+    // values are published under this
+    private final BehaviorSubject<String> userId = BehaviorSubject.create();
+    private final BehaviorSubject<String> defaultUserId = BehaviorSubject.create();
+    private final BehaviorSubject<Boolean> limitAdTracking = BehaviorSubject.create();
+    private final AtomicBoolean prewarmed = new AtomicBoolean();
+    private volatile ContentUser defaultContentUser;
+    // guarded by this, counts id changes
+    private long idGeneration;
+
+    private IdentityStore() {
+    }
+
+    /**
+     * @return the store instance
+     */
+    @NonNull
+    public static IdentityStore getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Reads all values on the io scheduler. Subsequent calls do nothing.
+     */
+    public void prewarm() {
+        if (prewarmed.compareAndSet(false, true))
+            Schedulers.io().scheduleDirect(this::warm);
+    }
+
+    /**
+     * @return a {@link Single} that emits current user id
+     */
+    @NonNull
+    public Single<String> getUserId() {
+        return Single.defer(() -> {
+            String id = userId.getValue();
+            return id != null ? Single.just(id) : Single.fromCallable(this::loadUserId);
+        });
+    }
+
+    /**
+     * Sets the user id used by the SDK and publishes it to {@link #observeUserId()} subscribers.
+     *
+     * @param id new user id
+     * @return a {@link Completable} that is complete when the function finished successfully
+     */
+    @NonNull
+    public Completable setUserId(@NonNull String id) {
+        return Completable.fromAction(() -> {
+            CxenseSdk.getInstance().setUserId(id);
+            publish(userId, id);
+        });
+    }
+
+    /**
+     * @return a {@link Single} that emits advertising ID, or fails with {@link IllegalStateException} if it isn't
+     * available yet
+     */
+    @NonNull
+    public Single<String> getDefaultUserId() {
+        return Single.defer(() -> {
+            String id = defaultUserId.getValue();
+            return id != null ? Single.just(id) : Single.fromCallable(() -> {
+                String loaded = loadDefaultUserId();
+                if (loaded == null)
+                    throw new IllegalStateException("Advertising ID is not available at this moment");
+                return loaded;
+            });
+        });
+    }
+
+    /**
+     * @return a {@link Single} that emits true if the user has limit ad tracking enabled or false else
+     */
+    @NonNull
+    public Single<Boolean> isLimitAdTrackingEnabled() {
+        return Single.defer(() -> {
+            Boolean enabled = limitAdTracking.getValue();
+            return enabled != null ? Single.just(enabled) : Single.fromCallable(this::loadLimitAdTracking);
+        });
+    }
+
+    /**
+     * @return a {@link Single} that emits the default {@link ContentUser}
+     */
+    @NonNull
+    public Single<ContentUser> getDefaultContentUser() {
+        return Single.defer(() -> {
+            ContentUser user = defaultContentUser;
+            return user != null ? Single.just(user) : Single.fromCallable(this::loadDefaultContentUser);
+        });
+    }
+
+    /**
+     * @return an {@link Observable} that emits current user id and its changes
+     */
+    @NonNull
+    public Observable<String> observeUserId() {
+        return observe(userId);
+    }
+
+    /**
+     * @return an {@link Observable} that emits advertising ID once it is available and its changes
+     */
+    @NonNull
+    public Observable<String> observeDefaultUserId() {
+        return observe(defaultUserId);
+    }
+
+    /**
+     * @return an {@link Observable} that emits current limit ad tracking flag and its changes
+     */
+    @NonNull
+    public Observable<Boolean> observeLimitAdTrackingEnabled() {
+        return observe(limitAdTracking);
+    }
+
+    private <T> Observable<T> observe(BehaviorSubject<T> subject) {
+        return Observable.defer(() -> {
+            prewarm();
+            return subject.hide();
+        });
+    }
+
+    private void warm() {
+        try {
+            loadUserId();
+            loadLimitAdTracking();
+            loadDefaultContentUser();
+            warmDefaultUserId(0);
+        } catch (RuntimeException e) {
+            // the SDK isn't ready, the next prewarm() tries again
+            prewarmed.set(false);
+        }
+    }
+
+    private void warmDefaultUserId(int attempt) {
+        if (loadDefaultUserId() == null && attempt + 1 < DEFAULT_USER_ID_ATTEMPTS) {
+            Schedulers.io().scheduleDirect(() -> warmDefaultUserId(attempt + 1),
+                    DEFAULT_USER_ID_DELAY_MILLIS << attempt, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private String loadUserId() {
+        String id = CxenseSdk.getInstance().getUserId();
+        publish(userId, id);
+        return id;
+    }
+
+    private String loadDefaultUserId() {
+        String id = CxenseSdk.getInstance().getDefaultUserId();
+        if (id != null) {
+            publish(defaultUserId, id);
+            // The flag comes with the advertising ID.
+            loadLimitAdTracking();
+        }
+        return id;
+    }
+
+    private Boolean loadLimitAdTracking() {
+        Boolean enabled = CxenseSdk.getInstance().getLimitAdTrackingEnabled();
+        publish(limitAdTracking, enabled);
+        return enabled;
+    }
+
+    private ContentUser loadDefaultContentUser() {
+        long generation;
+        synchronized (this) {
+            generation = idGeneration;
+        }
+        ContentUser user = CxenseSdk.getInstance().getDefaultContentUser();
+        synchronized (this) {
+            // An id changed while loading, the user may be built from the old one.
+            if (generation == idGeneration)
+                defaultContentUser = user;
+        }
+        return user;
+    }
+
+    private synchronized <T> void publish(BehaviorSubject<T> subject, T value) {
+        if (value == null || value.equals(subject.getValue()))
+            return;
+        subject.onNext(value);
+        if (subject != limitAdTracking) {
+            // The default content user is built from the ids.
+            idGeneration++;
+            defaultContentUser = null;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cxense.cxensesdk.model.ContentUser;
+import com.cxense.cxensesdk.model.UserIdentity;
+import com.cxense.cxensesdk.model.WidgetContext;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds canonical string keys for adapter requests. Two requests with equal arguments always produce
+ * the same key, regardless of map iteration order inside the model objects.
+ */
+final class Keys {
+    private static final char SEPARATOR = '\u001f';
+    private static final String NULL = "\u0000";
+    private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+
+    private Keys() {
+    }
+
+    /**
+     * @return canonical key for a widget recommendations request
+     */
+    @NonNull
+    static String widget(@NonNull String widgetId, @NonNull WidgetContext context, @Nullable ContentUser user, @Nullable String tag, @Nullable String prnd) {
+        StringBuilder sb = new StringBuilder("widget");
+        append(sb, widgetId);
+        append(sb, context.getUrl());
+        append(sb, context.getReferrer());
+        append(sb, context.getPageclass());
+        append(sb, context.getSentiment());
+        append(sb, context.getRecommending());
+        append(sb, context.getCategories());
+        append(sb, context.getKeywords());
+        append(sb, context.getNeighbors());
+        if (user == null) {
+            append(sb, (String) null);
+        } else {
+            append(sb, user.getIds());
+            append(sb, canonical(user.getLikes()));
+            append(sb, canonical(user.getDislikes()));
+        }
+        append(sb, tag);
+        append(sb, prnd);
+        return sb.toString();
+    }
+
+    /**
+     * @return canonical key for a user profile request
+     */
+    @NonNull
+    static String user(@NonNull UserIdentity identity, @Nullable List<String> groups, @Nullable Boolean recent, @Nullable List<String> identityTypes) {
+        StringBuilder sb = new StringBuilder("user");
+        append(sb, identity);
+        append(sb, sorted(groups));
+        append(sb, recent == null ? null : recent.toString());
+        append(sb, sorted(identityTypes));
+        return sb.toString();
+    }
+
+    /**
+     * @return canonical key for a user segments request
+     */
+    @NonNull
+    static String segments(@NonNull List<UserIdentity> identities, @NonNull List<String> siteGroupIds) {
+        StringBuilder sb = new StringBuilder("segments");
+        append(sb, identities(identities));
+        append(sb, sorted(siteGroupIds));
+        return sb.toString();
+    }
+
+    /**
+     * @return canonical key for an external data request
+     */
+    @NonNull
+    static String externalData(@Nullable String id, @NonNull String type) {
+        StringBuilder sb = new StringBuilder("external");
+        append(sb, type);
+        append(sb, id);
+        return sb.toString();
+    }
+
+    /**
+     * @return canonical key for a persisted query, the body is reduced to a 64-bit hash of its canonical form
+     */
+    @NonNull
+    static String persistedQuery(@NonNull String url, @NonNull String persistentQueryId, @Nullable Object data) {
+        StringBuilder sb = new StringBuilder("query");
+        append(sb, url);
+        append(sb, persistentQueryId);
+        append(sb, Long.toHexString(hash(canonical(data))));
+        return sb.toString();
+    }
+
+    /**
+     * @return canonical key for a single identity
+     */
+    @NonNull
+    static String identity(@NonNull UserIdentity identity) {
+        StringBuilder sb = new StringBuilder();
+        append(sb, identity);
+        return sb.toString();
+    }
+
+    static void append(@NonNull StringBuilder sb, @NonNull UserIdentity identity) {
+        append(sb, identity.getType());
+        append(sb, identity.getId());
+    }
+
+    @NonNull
+    static List<String> identities(@NonNull Collection<UserIdentity> identities) {
+        List<String> keys = new ArrayList<>(identities.size());
+        for (UserIdentity identity : identities) {
+            keys.add(identity.getType() + ':' + identity.getId());
+        }
+        Collections.sort(keys);
+        return keys;
+    }
+
+    @Nullable
+    static List<String> sorted(@Nullable Collection<String> values) {
+        if (values == null)
+            return null;
+        List<String> list = new ArrayList<>(values);
+        Collections.sort(list);
+        return list;
+    }
+
+    static void append(@NonNull StringBuilder sb, @Nullable String value) {
+        sb.append(SEPARATOR).append(value == null ? NULL : value);
+    }
+
+    static void append(@NonNull StringBuilder sb, @Nullable Collection<?> values) {
+        sb.append(SEPARATOR);
+        if (values == null) {
+            sb.append(NULL);
+            return;
+        }
+        sb.append('[');
+        for (Object value : values) {
+            sb.append(value).append(',');
+        }
+        sb.append(']');
+    }
+
+    static void append(@NonNull StringBuilder sb, @Nullable Map<String, ?> values) {
+        sb.append(SEPARATOR);
+        if (values == null) {
+            sb.append(NULL);
+            return;
+        }
+        sb.append('{');
+        for (Map.Entry<String, ?> entry : new TreeMap<>(values).entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append(',');
+        }
+        sb.append('}');
+    }
+
+    /**
+     * @return string form of the value with map keys and set elements sorted. Other objects are written field by
+     * field, in name order, so equal beans get equal forms; platform types and values use their toString().
+     */
+    @NonNull
+    static String canonical(@Nullable Object value) {
+        StringBuilder sb = new StringBuilder();
+        appendCanonical(sb, value, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return sb.toString();
+    }
+
+    // FNV-1a
+    static long hash(@NonNull String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void appendCanonical(StringBuilder sb, Object value, Set<Object> path) {
+        if (value == null) {
+            sb.append(NULL);
+        } else if (value instanceof CharSequence) {
+            sb.append('"').append(value).append('"');
+        } else if (isValue(value.getClass())) {
+            sb.append(value);
+        } else if (!path.add(value)) {
+            // a cycle, the object is already being written
+            sb.append('^');
+        } else {
+            appendStructure(sb, value, path);
+            path.remove(value);
+        }
+    }
+
+    private static void appendStructure(StringBuilder sb, Object value, Set<Object> path) {
+        if (value instanceof Map) {
+            TreeMap<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            sb.append('{');
+            for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+                sb.append(entry.getKey()).append('=');
+                appendCanonical(sb, entry.getValue(), path);
+                sb.append(',');
+            }
+            sb.append('}');
+        } else if (value instanceof Set) {
+            List<String> elements = new ArrayList<>();
+            for (Object element : (Set<?>) value) {
+                StringBuilder form = new StringBuilder();
+                appendCanonical(form, element, path);
+                elements.add(form.toString());
+            }
+            Collections.sort(elements);
+            sb.append(elements);
+        } else if (value instanceof Collection) {
+            sb.append('[');
+            for (Object element : (Collection<?>) value) {
+                appendCanonical(sb, element, path);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else if (value.getClass().isArray()) {
+            sb.append('[');
+            for (int i = 0, length = Array.getLength(value); i < length; i++) {
+                appendCanonical(sb, Array.get(value, i), path);
+                sb.append(',');
+            }
+            sb.append(']');
+        } else if (isPlatform(value.getClass())) {
+            sb.append(value);
+        } else {
+            sb.append(value.getClass().getName()).append('{');
+            for (Field field : fields(value.getClass())) {
+                Object fieldValue;
+                try {
+                    fieldValue = field.get(value);
+                } catch (IllegalAccessException e) {
+                    continue;
+                }
+                sb.append(field.getName()).append('=');
+                appendCanonical(sb, fieldValue, path);
+                sb.append(',');
+            }
+            sb.append('}');
+        }
+    }
+
+    private static boolean isValue(Class<?> type) {
+        return Number.class.isAssignableFrom(type) || Enum.class.isAssignableFrom(type)
+                || type == Boolean.class || type == Character.class;
+    }
+
+    private static boolean isPlatform(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("android.")
+                || name.startsWith("kotlin.");
+    }
+
+    private static Field[] fields(Class<?> type) {
+        Field[] fields = FIELDS.get(type);
+        if (fields != null)
+            return fields;
+        List<Field> list = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic())
+                    list.add(field);
+            }
+        }
+        Collections.sort(list, (a, b) -> {
+            int byName = a.getName().compareTo(b.getName());
+            return byName != 0 ? byName : a.getDeclaringClass().getName().compareTo(b.getDeclaringClass().getName());
+        });
+        fields = list.toArray(new Field[0]);
+        try {
+            AccessibleObject.setAccessible(fields, true);
+        } catch (SecurityException e) {
+            // inaccessible fields are skipped
+        }
+        FIELDS.put(type, fields);
+        return fields;
+    }
+}
@@ -0,0 +1,97 @@
+package com.cxense.rxjava2adapter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory log-linear histogram of latencies in microseconds, in the spirit of HdrHistogram.
+ * <p>
+ * Values below 64 are counted exactly, larger values fall into buckets that are at most 1/32 of the value wide,
+ * so percentiles are reported within about 3%. Values up to 2^32 microseconds (over an hour) are tracked, larger
+ * values are counted in the last bucket. Recording is lock-free and doesn't allocate.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_HALF = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_HALF << 1;
+    private static final int MAX_EXPONENT = 31;
+    static final int BUCKET_COUNT = indexOf((1L << (MAX_EXPONENT + 1)) - 1) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * @param micros latency in microseconds
+     */
+    void record(long micros) {
+        long value = Math.max(0, micros);
+        counts.incrementAndGet(Math.min(indexOf(value), BUCKET_COUNT - 1));
+        totalCount.incrementAndGet();
+        long max;
+        while (value > (max = maxValue.get()) && !maxValue.compareAndSet(max, value)) {
+            // retry
+        }
+    }
+
+    long getTotalCount() {
+        return totalCount.get();
+    }
+
+    long getMaxValue() {
+        return maxValue.get();
+    }
+
+    /**
+     * Counts are read one by one while other threads may record, so the result is approximate under load.
+     *
+     * @param percentiles percentiles from 0 to 100, in ascending order
+     * @return highest equivalent value for each percentile, or zeros if nothing was recorded
+     */
+    long[] getValuesAtPercentiles(double... percentiles) {
+        long[] result = new long[percentiles.length];
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0)
+            return result;
+        long max = maxValue.get();
+        long seen = 0;
+        int index = 0;
+        for (int p = 0; p < percentiles.length; p++) {
+            long rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100 * total));
+            while (index < BUCKET_COUNT - 1 && seen + snapshot[index] < rank) {
+                seen += snapshot[index++];
+            }
+            result[p] = Math.min(highestEquivalentValue(index), max);
+        }
+        return result;
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    static long highestEquivalentValue(int index) {
+        if (index < LINEAR_LIMIT)
+            return index;
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
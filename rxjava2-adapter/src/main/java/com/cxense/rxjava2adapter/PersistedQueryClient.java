@@ -0,0 +1,304 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cxense.cxensesdk.CxenseSdk;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Single;
+
+/**
+ * Typed client for persisted queries with a response cache.
+ * <p>
+ * Responses are cached by url, query id and a 64-bit hash of the canonical request body, so equal bodies share an entry
+ * regardless of map order. Bodies and responses that are not maps, collections or values are compared field by field.
+ * The SDK chooses the response type, {@code type} only casts it. Each url has its own TTL. Expired entries are served
+ * for {@code staleWhileRevalidate} more while a single background query revalidates them; if the new response is equal
+ * to the cached one, the cached instance is kept and only its age is reset. The cache is an LRU bounded by the
+ * approximate size of the responses, taken from the length of their canonical string form. Identical concurrent queries
+ * are executed once.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class PersistedQueryClient {
+    private final long maxBytes;
+    private final long defaultTtlNanos;
+    private final long staleNanos;
+    private final Map<String, Long> ttlNanosByUrl;
+    private final SingleFlight<Object> flight = new SingleFlight<>();
+    // guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // guarded by this
+    private final Set<String> refreshing = new HashSet<>();
+    // guarded by this
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+
+    private PersistedQueryClient(Builder builder) {
+        maxBytes = builder.maxBytes;
+        defaultTtlNanos = builder.defaultTtlNanos;
+        staleNanos = builder.staleNanos;
+        ttlNanosByUrl = new HashMap<>(builder.ttlNanosByUrl);
+    }
+
+    /**
+     * Executes persisted query without request body.
+     *
+     * @param url               API endpoint
+     * @param persistentQueryId query id
+     * @param type              response type
+     * @param <T>               response type
+     * @return a {@link Single} that emits result of query, or fails with {@link ClassCastException} if the
+     * response has another type
+     */
+    @NonNull
+    public <T> Single<T> query(@NonNull String url, @NonNull String persistentQueryId, @NonNull Class<T> type) {
+        return query(url, persistentQueryId, null, type);
+    }
+
+    /**
+     * Executes persisted query.
+     *
+     * @param url               API endpoint
+     * @param persistentQueryId query id
+     * @param data              data for sending as request body
+     * @param type              response type
+     * @param <T>               response type
+     * @return a {@link Single} that emits result of query, or fails with {@link ClassCastException} if the
+     * response has another type
+     */
+    @NonNull
+    public <T> Single<T> query(@NonNull String url, @NonNull String persistentQueryId, @Nullable Object data, @NonNull Class<T> type) {
+        String key = Keys.persistedQuery(url, persistentQueryId, data);
+        Single<Object> loader = flight.join(key, RxCxense.<Object>createSingle(Endpoint.PERSISTED_QUERY,
+                callback -> CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, data, callback))
+                .doOnSuccess(value -> put(key, url, value)));
+        return get(key, ttlNanos(url), loader).map(type::cast);
+    }
+
+    /**
+     * @return snapshot of cache counters
+     */
+    @NonNull
+    public CacheStats getStats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new CacheStats(hits.get(), staleHits.get(), misses.get(), evictions.get(), size);
+    }
+
+    /**
+     * @return number of revalidations that returned the cached response unchanged
+     */
+    public long getUnchangedCount() {
+        return unchanged.get();
+    }
+
+    /**
+     * @return approximate size of cached responses in bytes
+     */
+    public synchronized long getSizeBytes() {
+        return bytes;
+    }
+
+    /**
+     * Removes cached responses of the endpoint. Counters are kept.
+     *
+     * @param url API endpoint
+     */
+    public synchronized void invalidate(@NonNull String url) {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry.url.equals(url)) {
+                bytes -= entry.bytes;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all cached responses. Counters are kept.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private long ttlNanos(String url) {
+        Long ttl = ttlNanosByUrl.get(url);
+        return ttl != null ? ttl : defaultTtlNanos;
+    }
+
+    private Single<Object> get(String key, long ttlNanos, Single<Object> loader) {
+        return Single.defer(() -> {
+            long now = System.nanoTime();
+            Entry entry;
+            boolean refresh = false;
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry != null && now - entry.loadedAt > ttlNanos + staleNanos) {
+                    remove(key);
+                    entry = null;
+                }
+                if (entry != null && now - entry.loadedAt > ttlNanos)
+                    refresh = refreshing.add(key);
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return loader;
+            }
+            if (now - entry.loadedAt > ttlNanos) {
+                staleHits.incrementAndGet();
+                if (refresh)
+                    revalidate(key, loader);
+            } else {
+                hits.incrementAndGet();
+            }
+            return Single.just(entry.value);
+        });
+    }
+
+    private void revalidate(String key, Single<Object> loader) {
+        loader.doFinally(() -> {
+            synchronized (this) {
+                refreshing.remove(key);
+            }
+        }).subscribe(value -> {
+            // stored by the loader
+        }, throwable -> {
+            // keep serving the stale entry until it expires completely
+        });
+    }
+
+    private void put(String key, String url, Object value) {
+        String canonical = Keys.canonical(value);
+        long hash = Keys.hash(canonical);
+        long size = 2L * (key.length() + canonical.length());
+        synchronized (this) {
+            Entry old = entries.get(key);
+            if (old != null && old.hash == hash) {
+                // Same response, keep the instance callers already have.
+                value = old.value;
+                unchanged.incrementAndGet();
+            }
+            remove(key);
+            if (size > maxBytes)
+                return;
+            entries.put(key, new Entry(url, value, hash, size, System.nanoTime()));
+            bytes += size;
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (bytes > maxBytes && iterator.hasNext()) {
+                bytes -= iterator.next().getValue().bytes;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    // Called with the lock held.
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null)
+            bytes -= entry.bytes;
+    }
+
+    private static final class Entry {
+        final String url;
+        final Object value;
+        final long hash;
+        final long bytes;
+        final long loadedAt;
+
+        Entry(String url, Object value, long hash, long bytes, long loadedAt) {
+            this.url = url;
+            this.value = value;
+            this.hash = hash;
+            this.bytes = bytes;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Builder for {@link PersistedQueryClient}
+     */
+    public static class Builder {
+        private long maxBytes = 1024 * 1024;
+        private long defaultTtlNanos = TimeUnit.MINUTES.toNanos(1);
+        private long staleNanos = TimeUnit.MINUTES.toNanos(5);
+        private final Map<String, Long> ttlNanosByUrl = new HashMap<>();
+
+        /**
+         * @param maxBytes approximate size limit of cached responses, 1 MiB by default
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxBytes(long maxBytes) {
+            if (maxBytes <= 0)
+                throw new IllegalArgumentException("maxBytes must be positive");
+            this.maxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * @param ttl  time while a response is considered fresh, one minute by default
+         * @param unit time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder ttl(long ttl, @NonNull TimeUnit unit) {
+            if (ttl < 0)
+                throw new IllegalArgumentException("ttl must not be negative");
+            this.defaultTtlNanos = unit.toNanos(ttl);
+            return this;
+        }
+
+        /**
+         * @param url  API endpoint
+         * @param ttl  time while a response of the endpoint is considered fresh
+         * @param unit time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder ttl(@NonNull String url, long ttl, @NonNull TimeUnit unit) {
+            if (ttl < 0)
+                throw new IllegalArgumentException("ttl must not be negative");
+            ttlNanosByUrl.put(url, unit.toNanos(ttl));
+            return this;
+        }
+
+        /**
+         * @param staleWhileRevalidate additional time while an expired response can still be served during
+         *                             revalidation, five minutes by default
+         * @param unit                 time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder staleWhileRevalidate(long staleWhileRevalidate, @NonNull TimeUnit unit) {
+            if (staleWhileRevalidate < 0)
+                throw new IllegalArgumentException("staleWhileRevalidate must not be negative");
+            this.staleNanos = unit.toNanos(staleWhileRevalidate);
+            return this;
+        }
+
+        /**
+         * @return new {@link PersistedQueryClient}
+         */
+        @NonNull
+        public PersistedQueryClient build() {
+            return new PersistedQueryClient(this);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Single;
+
+/**
+ * Runs a set of heterogeneous requests together, for example everything a screen needs from the DMP.
+ * <p>
+ * Up to {@code maxConcurrency} requests run at the same time; the rest start as soon as a slot is free. All
+ * requests share one deadline counted from subscription; requests that are not finished by then fail with
+ * {@link java.util.concurrent.TimeoutException}. A failed request doesn't fail the batch: the batch emits a
+ * {@link BatchResult} with the outcome and timings of every request once all of them are finished, so the wait
+ * is close to the slowest request rather than the sum of them.
+ * <p>
+ * Requests are usually built with {@link RxCxense} and keep its retry policy. A batch can be executed any number
+ * of times.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class QueryBatch {
+    private static final Object DONE = new Object();
+
+    private final Map<String, Single<?>> queries;
+    private final int maxConcurrency;
+    private final long timeoutNanos;
+
+    private QueryBatch(Builder builder) {
+        queries = new LinkedHashMap<>(builder.queries);
+        maxConcurrency = builder.maxConcurrency;
+        timeoutNanos = builder.timeoutNanos;
+    }
+
+    /**
+     * Executes all requests of the batch.
+     *
+     * @return a {@link Single} that emits the combined result once all requests are finished
+     */
+    @NonNull
+    public Single<BatchResult> execute() {
+        return Single.defer(() -> {
+            long start = System.nanoTime();
+            long deadline = start + timeoutNanos;
+            return Flowable.fromIterable(queries.entrySet())
+                    .flatMapSingle(query -> run(query.getKey(), query.getValue(), start, deadline), false, maxConcurrency)
+                    .toMap(QueryOutcome::getName)
+                    .map(outcomes -> {
+                        Map<String, QueryOutcome> ordered = new LinkedHashMap<>();
+                        for (String name : queries.keySet()) {
+                            ordered.put(name, outcomes.get(name));
+                        }
+                        return new BatchResult(ordered, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    });
+        });
+    }
+
+    private static Single<QueryOutcome> run(String name, Single<?> query, long batchStart, long deadline) {
+        return Single.defer(() -> {
+            long start = System.nanoTime();
+            return query
+                    .timeout(Math.max(0, deadline - start), TimeUnit.NANOSECONDS)
+                    .map(value -> outcome(name, value == DONE ? null : value, null, batchStart, start))
+                    .onErrorReturn(error -> outcome(name, null, error, batchStart, start));
+        });
+    }
+
+    private static QueryOutcome outcome(String name, Object value, Throwable error, long batchStart, long start) {
+        return new QueryOutcome(name, value, error, TimeUnit.NANOSECONDS.toMillis(start - batchStart),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Builder for {@link QueryBatch}
+     */
+    public static class Builder {
+        private final Map<String, Single<?>> queries = new LinkedHashMap<>();
+        private int maxConcurrency = 6;
+        private long timeoutNanos = TimeUnit.SECONDS.toNanos(10);
+
+        /**
+         * @param name  unique name of the request in the batch
+         * @param query request that emits a result
+         * @return this builder
+         */
+        @NonNull
+        public Builder add(@NonNull String name, @NonNull Single<?> query) {
+            if (queries.containsKey(name))
+                throw new IllegalArgumentException("Duplicate query name: " + name);
+            queries.put(name, query);
+            return this;
+        }
+
+        /**
+         * @param name  unique name of the request in the batch
+         * @param query request without a result
+         * @return this builder
+         */
+        @NonNull
+        public Builder add(@NonNull String name, @NonNull Completable query) {
+            return add(name, query.toSingleDefault(DONE));
+        }
+
+        /**
+         * @param maxConcurrency maximum number of requests running at the same time, 6 by default
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0)
+                throw new IllegalArgumentException("maxConcurrency must be positive");
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * @param timeout deadline of the whole batch, 10 seconds by default
+         * @param unit    time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder timeout(long timeout, @NonNull TimeUnit unit) {
+            if (timeout <= 0)
+                throw new IllegalArgumentException("timeout must be positive");
+            this.timeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * @return new {@link QueryBatch}
+         */
+        @NonNull
+        public QueryBatch build() {
+            return new QueryBatch(this);
+        }
+    }
+}
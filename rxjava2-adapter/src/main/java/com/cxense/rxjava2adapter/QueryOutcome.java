@@ -0,0 +1,75 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Outcome of one query of a {@link QueryBatch}.
+ */
+public final class QueryOutcome {
+    private final String name;
+    @Nullable
+    private final Object value;
+    @Nullable
+    private final Throwable error;
+    private final long startMillis;
+    private final long durationMillis;
+
+    QueryOutcome(@NonNull String name, @Nullable Object value, @Nullable Throwable error, long startMillis, long durationMillis) {
+        this.name = name;
+        this.value = value;
+        this.error = error;
+        this.startMillis = startMillis;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @return name of the query in the batch
+     */
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return result of the query, or null if it failed or completed without a value
+     */
+    @Nullable
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * @return true if the query succeeded
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return error of the last attempt, or null if the query succeeded
+     */
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * @return time from the batch start to the query start, in milliseconds
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return time the query took, in milliseconds
+     */
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryOutcome{" + name + ", " + (error == null ? "ok" : error) + ", +" + startMillis + "ms, " + durationMillis + "ms}";
+    }
+}
@@ -0,0 +1,148 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.model.EventStatus;
+import com.cxense.cxensesdk.model.QueueStatus;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.processors.FlowableProcessor;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Shared stream of event queue snapshots.
+ * <p>
+ * The queue is sampled when the SDK reports a dispatch and when events are pushed or flushed through this
+ * adapter. While events are waiting, it is also sampled on a timer that starts at one second and doubles up to
+ * 30 seconds while nothing changes; an empty queue isn't polled at all. Bursts of triggers are coalesced into one
+ * sample. Snapshots are emitted only when the queue depth, the number of kept sent events or the oldest waiting
+ * event changes. New subscribers receive the last snapshot first.
+ * <p>
+ * Oldest-event age and throughput are derived from successive snapshots: an event is aged from the first snapshot
+ * that saw it, and events that left the queue between two snapshots count towards throughput.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public final class QueueMonitor {
+    private static final long MIN_SAMPLE_MILLIS = 1000;
+    private static final long MAX_SAMPLE_MILLIS = 30000;
+    private static final Object TICK = new Object();
+    private static final QueueMonitor INSTANCE = new QueueMonitor();
+
+    private final FlowableProcessor<Object> activity = PublishProcessor.create().toSerialized();
+    private final Flowable<QueueSnapshot> snapshots;
+    // guarded by this
+    private final Map<String, Long> firstSeen = new HashMap<>();
+    // guarded by this
+    private QueueSnapshot last;
+    // guarded by this
+    private String oldestEventId;
+    // guarded by this, events that left the queue since the last snapshot
+    private int left;
+    // guarded by this
+    private long sampleMillis = MIN_SAMPLE_MILLIS;
+    // guarded by this
+    private Disposable timer;
+
+    private QueueMonitor() {
+        snapshots = Flowable.<Object>merge(DispatchStatusHub.getInstance().statuses(), activity)
+                .startWith(TICK)
+                .onBackpressureLatest()
+                .observeOn(Schedulers.io(), false, 1)
+                .concatMapIterable(trigger -> sample())
+                .doFinally(this::reset)
+                .replay(1)
+                .refCount();
+    }
+
+    /**
+     * @return the monitor instance
+     */
+    @NonNull
+    public static QueueMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return a {@link Flowable} that emits a snapshot whenever the queue changes
+     */
+    @NonNull
+    public Flowable<QueueSnapshot> observe() {
+        return snapshots;
+    }
+
+    /**
+     * Marks push or flush activity, so the next snapshot is taken now.
+     */
+    void onActivity() {
+        activity.onNext(TICK);
+    }
+
+    private synchronized List<QueueSnapshot> sample() {
+        QueueStatus status = CxenseSdk.getInstance().getQueueStatus();
+        long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        List<EventStatus> waiting = status.getNotSentEvents();
+        Map<String, Long> seen = new HashMap<>();
+        String oldestId = null;
+        long oldest = now;
+        for (EventStatus event : waiting) {
+            Long since = firstSeen.get(event.getEventId());
+            if (since == null)
+                since = now;
+            seen.put(event.getEventId(), since);
+            if (since < oldest || oldestId == null) {
+                oldest = since;
+                oldestId = event.getEventId();
+            }
+        }
+        // Departures of skipped samples count towards the next snapshot, which covers their time too.
+        for (String eventId : firstSeen.keySet()) {
+            if (!seen.containsKey(eventId))
+                left++;
+        }
+        firstSeen.clear();
+        firstSeen.putAll(seen);
+        int sentCount = status.getSentEvents().size();
+        boolean changed = last == null || last.getQueueDepth() != waiting.size() || last.getSentCount() != sentCount
+                || !equal(oldestEventId, oldestId);
+        QueueSnapshot snapshot = null;
+        if (changed) {
+            double rate = last == null || now == last.getTakenAtMillis() ? 0 : left * 1000.0 / (now - last.getTakenAtMillis());
+            snapshot = new QueueSnapshot(waiting.size(), sentCount, now - oldest, rate, now);
+            last = snapshot;
+            oldestEventId = oldestId;
+            left = 0;
+            sampleMillis = MIN_SAMPLE_MILLIS;
+        } else {
+            sampleMillis = Math.min(sampleMillis * 2, MAX_SAMPLE_MILLIS);
+        }
+        if (timer != null)
+            timer.dispose();
+        // An empty queue changes only through dispatch or push, which trigger a sample anyway.
+        timer = waiting.isEmpty() ? null : Schedulers.io().scheduleDirect(() -> activity.onNext(TICK), sampleMillis, TimeUnit.MILLISECONDS);
+        return snapshot != null ? Collections.singletonList(snapshot) : Collections.<QueueSnapshot>emptyList();
+    }
+
+    private synchronized void reset() {
+        if (timer != null)
+            timer.dispose();
+        timer = null;
+        last = null;
+        oldestEventId = null;
+        left = 0;
+        sampleMillis = MIN_SAMPLE_MILLIS;
+        firstSeen.clear();
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,67 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Immutable snapshot of the SDK event queue, see {@link QueueMonitor}.
+ */
+public final class QueueSnapshot {
+    private final int queueDepth;
+    private final int sentCount;
+    private final long oldestEventAgeMillis;
+    private final double eventsPerSecond;
+    private final long takenAtMillis;
+
+    QueueSnapshot(int queueDepth, int sentCount, long oldestEventAgeMillis, double eventsPerSecond, long takenAtMillis) {
+        this.queueDepth = queueDepth;
+        this.sentCount = sentCount;
+        this.oldestEventAgeMillis = oldestEventAgeMillis;
+        this.eventsPerSecond = eventsPerSecond;
+        this.takenAtMillis = takenAtMillis;
+    }
+
+    /**
+     * @return number of events waiting to be sent
+     */
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return number of sent events the SDK still keeps
+     */
+    public int getSentCount() {
+        return sentCount;
+    }
+
+    /**
+     * @return time the oldest waiting event has been seen in the queue, in milliseconds, or 0 if the queue is
+     * empty. Events queued before monitoring started count from the first snapshot.
+     */
+    public long getOldestEventAgeMillis() {
+        return oldestEventAgeMillis;
+    }
+
+    /**
+     * @return events that left the queue per second since the previous snapshot
+     */
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    /**
+     * @return monotonic time the snapshot was taken, from {@link System#nanoTime()} in milliseconds
+     */
+    public long getTakenAtMillis() {
+        return takenAtMillis;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "QueueSnapshot{depth=%d, sent=%d, oldest=%dms, %.1f events/s}",
+                queueDepth, sentCount, oldestEventAgeMillis, eventsPerSecond);
+    }
+}
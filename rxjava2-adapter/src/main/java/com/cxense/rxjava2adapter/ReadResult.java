@@ -0,0 +1,61 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cxense.cxensesdk.model.UserIdentity;
+
+/**
+ * Outcome of reading data of one user with {@link BulkReader}.
+ *
+ * @param <T> value type
+ */
+public final class ReadResult<T> {
+    private final UserIdentity identity;
+    @Nullable
+    private final T value;
+    @Nullable
+    private final Throwable error;
+
+    ReadResult(@NonNull UserIdentity identity, @Nullable T value, @Nullable Throwable error) {
+        this.identity = identity;
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * @return the user identity
+     */
+    @NonNull
+    public UserIdentity getIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return the read value, or null if reading failed
+     */
+    @Nullable
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * @return true if the value was read
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return error of the last attempt, or null if the value was read
+     */
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "ReadResult{" + Keys.identity(identity) + ", " + (error == null ? value : error) + '}';
+    }
+}
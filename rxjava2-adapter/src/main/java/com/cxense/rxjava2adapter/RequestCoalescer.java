@@ -0,0 +1,85 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import com.cxense.cxensesdk.model.User;
+import com.cxense.cxensesdk.model.UserExternalData;
+import com.cxense.cxensesdk.model.UserIdentity;
+
+import java.util.List;
+
+import io.reactivex.Single;
+
+/**
+ * Coalescing layer for DMP reads. Concurrent calls with equal arguments share one SDK call and one result,
+ * the shared call is disposed only when its last subscriber disposes.
+ * <p>
+ * Keep a single instance (for example in your Application) and use it instead of the corresponding
+ * {@link RxCxense} methods.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class RequestCoalescer {
+    private final SingleFlight<User> users = new SingleFlight<>();
+    private final SingleFlight<List<String>> segments = new SingleFlight<>();
+    private final SingleFlight<List<UserExternalData>> externalData = new SingleFlight<>();
+
+    /**
+     * Coalesced version of {@link RxCxense#getUserSegmentIds(List, List)}
+     *
+     * @param identities   a list of user identifiers for a single user to retrieve segments for
+     * @param siteGroupIds the list of site groups to retrieve segments for
+     * @return a {@link Single} that emits list of user segment ids
+     */
+    @NonNull
+    public Single<List<String>> getUserSegmentIds(@NonNull List<UserIdentity> identities, @NonNull List<String> siteGroupIds) {
+        return segments.join(Keys.segments(identities, siteGroupIds), RxCxense.getUserSegmentIds(identities, siteGroupIds));
+    }
+
+    /**
+     * Coalesced version of {@link RxCxense#getUser(UserIdentity)}
+     *
+     * @param identity user identifier with type and id
+     * @return a {@link Single} that emits an {@link User} object
+     */
+    @NonNull
+    public Single<User> getUser(@NonNull UserIdentity identity) {
+        return users.join(Keys.user(identity, null, null, null), RxCxense.getUser(identity));
+    }
+
+    /**
+     * Coalesced version of {@link RxCxense#getUser(UserIdentity, List, Boolean, List)}
+     *
+     * @param identity      user identifier with type and id
+     * @param groups        a list of strings that specify profile item groups to keep in the returned profile.
+     * @param recent        flag whether to only return the most recent user profile information.
+     * @param identityTypes a list of external customer identifier types.
+     * @return a {@link Single} that emits an {@link User} object
+     */
+    @NonNull
+    public Single<User> getUser(@NonNull UserIdentity identity, List<String> groups, Boolean recent, List<String> identityTypes) {
+        return users.join(Keys.user(identity, groups, recent, identityTypes), RxCxense.getUser(identity, groups, recent, identityTypes));
+    }
+
+    /**
+     * Coalesced version of {@link RxCxense#getUserExternalData(String)}
+     *
+     * @param type the customer identifier type
+     * @return a {@link Single} that emits list of {@link UserExternalData} objects
+     */
+    @NonNull
+    public Single<List<UserExternalData>> getUserExternalData(@NonNull String type) {
+        return externalData.join(Keys.externalData(null, type), RxCxense.getUserExternalData(type));
+    }
+
+    /**
+     * Coalesced version of {@link RxCxense#getUserExternalData(String, String)}
+     *
+     * @param id   identifier for the user. Use 'null' if you want match all users of provided type.
+     * @param type the customer identifier type
+     * @return a {@link Single} that emits list of {@link UserExternalData} objects
+     */
+    @NonNull
+    public Single<List<UserExternalData>> getUserExternalData(String id, @NonNull String type) {
+        return externalData.join(Keys.externalData(id, type), RxCxense.getUserExternalData(id, type));
+    }
+}
@@ -0,0 +1,230 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.reactivestreams.Publisher;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Retries of failed network calls with exponential backoff and full jitter.
+ * <p>
+ * Only {@link Endpoint#isIdempotent() idempotent} calls that failed with a retryable error are retried. By default
+ * an error is retryable if it or one of its causes is an {@link IOException} or a {@link TimeoutException}.
+ * The n-th retry waits a random time between zero and {@code min(maxDelay, baseDelay * 2^(n-1))}.
+ * <p>
+ * All retries share one token bucket budget: a retry takes a token, a successful call returns a fraction of
+ * a token. During an outage the budget runs out and calls fail at once instead of multiplying the load.
+ * <p>
+ * Install with {@link RxCxense#setRetryPolicy(RetryPolicy)}.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final double maxTokens;
+    private final double tokenRatio;
+    private final Predicate<Throwable> retryable;
+    private final Scheduler scheduler;
+    private final Random random = new Random();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    // guarded by this
+    private double tokens;
+
+    private RetryPolicy(Builder builder) {
+        maxAttempts = builder.maxAttempts;
+        baseDelayMillis = builder.baseDelayMillis;
+        maxDelayMillis = builder.maxDelayMillis;
+        maxTokens = builder.maxTokens;
+        tokenRatio = builder.tokenRatio;
+        retryable = builder.retryable;
+        scheduler = builder.scheduler;
+        tokens = maxTokens;
+    }
+
+    /**
+     * @return number of retries made
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * @return number of retries skipped because the budget was exhausted
+     */
+    public long getBudgetExhaustedCount() {
+        return exhausted.get();
+    }
+
+    /**
+     * @return tokens left in the retry budget
+     */
+    public synchronized double getBudgetTokens() {
+        return tokens;
+    }
+
+    /**
+     * @param throwable error of a failed call
+     * @return true if the error is transient and the call may be retried
+     */
+    public boolean isRetryable(@NonNull Throwable throwable) {
+        try {
+            return retryable.test(throwable);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return default classification: the error or one of its causes is an {@link IOException} or a {@link TimeoutException}
+     */
+    @NonNull
+    public static Predicate<Throwable> transientErrors() {
+        return throwable -> {
+            for (Throwable t = throwable; t != null; t = t.getCause() == t ? null : t.getCause()) {
+                if (t instanceof IOException || t instanceof TimeoutException)
+                    return true;
+            }
+            return false;
+        };
+    }
+
+    /**
+     * @param endpoint the endpoint of the call
+     * @param metrics  metrics to count retries in, or null
+     * @return handler for {@code retryWhen}
+     */
+    Function<Flowable<Throwable>, Publisher<Long>> retryHandler(final Endpoint endpoint, @Nullable final AdapterMetrics metrics) {
+        return errors -> {
+            final int[] attempt = {0};
+            return errors.flatMap(error -> {
+                if (!endpoint.isIdempotent() || !isRetryable(error) || ++attempt[0] >= maxAttempts || !tryAcquireToken())
+                    return Flowable.<Long>error(error);
+                retries.incrementAndGet();
+                if (metrics != null)
+                    metrics.onRetry(endpoint);
+                return Flowable.timer(backoffMillis(attempt[0]), TimeUnit.MILLISECONDS, scheduler);
+            });
+        };
+    }
+
+    /**
+     * Returns a fraction of a token to the budget.
+     */
+    synchronized void onSuccess() {
+        tokens = Math.min(maxTokens, tokens + tokenRatio);
+    }
+
+    long backoffMillis(int retry) {
+        long ceiling = baseDelayMillis << Math.min(retry - 1, 30);
+        if (ceiling <= 0 || ceiling > maxDelayMillis)
+            ceiling = maxDelayMillis;
+        synchronized (random) {
+            return (long) (random.nextDouble() * ceiling);
+        }
+    }
+
+    private synchronized boolean tryAcquireToken() {
+        if (tokens < 1) {
+            exhausted.incrementAndGet();
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Builder for {@link RetryPolicy}
+     */
+    public static class Builder {
+        private int maxAttempts = 3;
+        private long baseDelayMillis = 200;
+        private long maxDelayMillis = 10_000;
+        private double maxTokens = 10;
+        private double tokenRatio = 0.1;
+        private Predicate<Throwable> retryable = transientErrors();
+        private Scheduler scheduler = Schedulers.computation();
+
+        /**
+         * @param maxAttempts maximum number of attempts including the first one
+         * @return this builder
+         */
+        @NonNull
+        public Builder maxAttempts(int maxAttempts) {
+            if (maxAttempts <= 0)
+                throw new IllegalArgumentException("maxAttempts must be positive");
+            this.maxAttempts = maxAttempts;
+            return this;
+        }
+
+        /**
+         * @param baseDelay ceiling of the first retry delay, doubled for each next retry
+         * @param maxDelay  maximum ceiling of a retry delay
+         * @param unit      time unit
+         * @return this builder
+         */
+        @NonNull
+        public Builder backoff(long baseDelay, long maxDelay, @NonNull TimeUnit unit) {
+            if (baseDelay <= 0 || maxDelay < baseDelay)
+                throw new IllegalArgumentException("baseDelay must be positive and not greater than maxDelay");
+            this.baseDelayMillis = unit.toMillis(baseDelay);
+            this.maxDelayMillis = unit.toMillis(maxDelay);
+            return this;
+        }
+
+        /**
+         * @param maxTokens  size of the retry budget, each retry takes one token
+         * @param tokenRatio part of a token returned by each successful call
+         * @return this builder
+         */
+        @NonNull
+        public Builder budget(double maxTokens, double tokenRatio) {
+            if (maxTokens < 1 || tokenRatio < 0)
+                throw new IllegalArgumentException("maxTokens must be at least 1 and tokenRatio not negative");
+            this.maxTokens = maxTokens;
+            this.tokenRatio = tokenRatio;
+            return this;
+        }
+
+        /**
+         * @param retryable returns true for errors that may be retried, see {@link #transientErrors()}
+         * @return this builder
+         */
+        @NonNull
+        public Builder retryOn(@NonNull Predicate<Throwable> retryable) {
+            this.retryable = retryable;
+            return this;
+        }
+
+        /**
+         * @param scheduler scheduler for retry delays
+         * @return this builder
+         */
+        @NonNull
+        public Builder scheduler(@NonNull Scheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * @return new {@link RetryPolicy}
+         */
+        @NonNull
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.cxense.rxjava2adapter;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.cxense.cxensesdk.CxenseConfiguration;
 import com.cxense.cxensesdk.CxenseSdk;
@@ -15,15 +16,109 @@ import com.cxense.cxensesdk.model.UserIdentity;
 import com.cxense.cxensesdk.model.WidgetContext;
 import com.cxense.cxensesdk.model.WidgetItem;
 
-import org.jetbrains.annotations.NotNull;
-
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import io.reactivex.Completable;
-import io.reactivex.Observable;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
 
 public class RxCxense {
+    @Nullable
+    private static volatile AdapterMetrics metrics;
+    @Nullable
+    private static volatile RetryPolicy retryPolicy;
+    private static final AtomicReferenceArray<CircuitBreaker> circuitBreakers = new AtomicReferenceArray<>(EndpointFamily.values().length);
+    private static final AtomicReferenceArray<Bulkhead> bulkheads = new AtomicReferenceArray<>(EndpointFamily.values().length);
+
+    /**
+     * Enables call metrics for all network calls of the adapter, see {@link AdapterMetrics}.
+     *
+     * @param metrics metrics to record to, or null to stop recording
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    public static void setMetrics(@Nullable AdapterMetrics metrics) {
+        RxCxense.metrics = metrics;
+    }
+
+    /**
+     * @return metrics installed with {@link #setMetrics(AdapterMetrics)}, or null
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @Nullable
+    public static AdapterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Enables retries of failed network calls, see {@link RetryPolicy}. The policy applies to calls created
+     * after this method returns.
+     *
+     * @param retryPolicy retry policy, or null to disable retries
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    public static void setRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+        RxCxense.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return retry policy installed with {@link #setRetryPolicy(RetryPolicy)}, or null
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @Nullable
+    public static RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets circuit breaker for calls of the endpoint family, see {@link CircuitBreaker}. The breaker applies to calls
+     * created after this method returns.
+     *
+     * @param family         the endpoint family
+     * @param circuitBreaker circuit breaker, or null to remove it
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    public static void setCircuitBreaker(@NonNull EndpointFamily family, @Nullable CircuitBreaker circuitBreaker) {
+        circuitBreakers.set(family.ordinal(), circuitBreaker);
+    }
+
+    /**
+     * @param family the endpoint family
+     * @return circuit breaker of the family, or null
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @Nullable
+    public static CircuitBreaker getCircuitBreaker(@NonNull EndpointFamily family) {
+        return circuitBreakers.get(family.ordinal());
+    }
+
+    /**
+     * Sets concurrency limit for calls of the endpoint family, see {@link Bulkhead}. The limit applies to calls
+     * created after this method returns.
+     *
+     * @param family   the endpoint family
+     * @param bulkhead bulkhead, or null to remove it
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    public static void setBulkhead(@NonNull EndpointFamily family, @Nullable Bulkhead bulkhead) {
+        bulkheads.set(family.ordinal(), bulkhead);
+    }
+
+    /**
+     * @param family the endpoint family
+     * @return bulkhead of the family, or null
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @Nullable
+    public static Bulkhead getBulkhead(@NonNull EndpointFamily family) {
+        return bulkheads.get(family.ordinal());
+    }
+
     /**
      * Tracks a click for the given click-url
      *
@@ -33,17 +128,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Completable trackClick(@NonNull String url) {
-        return Completable.create(emitter -> CxenseSdk.getInstance().trackClick(url, new LoadCallback<Void>() {
-            @Override
-            public void onSuccess(@NotNull Void data) {
-                emitter.onComplete();
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createCompletable(Endpoint.TRACK_CLICK, callback -> CxenseSdk.getInstance().trackClick(url, callback));
     }
 
     /**
@@ -55,17 +140,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Completable trackClick(@NonNull WidgetItem item) {
-        return Completable.create(emitter -> CxenseSdk.getInstance().trackClick(item, new LoadCallback<Void>() {
-            @Override
-            public void onSuccess(@NotNull Void data) {
-                emitter.onComplete();
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createCompletable(Endpoint.TRACK_CLICK, callback -> CxenseSdk.getInstance().trackClick(item, callback));
     }
 
     /**
@@ -78,17 +153,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<List<WidgetItem>> loadWidgetRecommendations(final String widgetId, final WidgetContext widgetContext) {
-        return Single.create(emitter -> CxenseSdk.getInstance().loadWidgetRecommendations(widgetId, widgetContext, new LoadCallback<List<WidgetItem>>() {
-            @Override
-            public void onSuccess(@NotNull List<WidgetItem> data) {
-                emitter.onSuccess(data);
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createSingle(Endpoint.LOAD_WIDGET_RECOMMENDATIONS, callback -> CxenseSdk.getInstance().loadWidgetRecommendations(widgetId, widgetContext, callback));
     }
 
     /**
@@ -100,28 +165,84 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<List<WidgetItem>> loadWidgetRecommendations(final String widgetId, final WidgetContext widgetContext, ContentUser user, String tag, String prnd) {
-        return Single.create(emitter -> CxenseSdk.getInstance().loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd, new LoadCallback<List<WidgetItem>>() {
-            @Override
-            public void onSuccess(@NotNull List<WidgetItem> data) {
-                emitter.onSuccess(data);
-            }
+        return createSingle(Endpoint.LOAD_WIDGET_RECOMMENDATIONS, callback -> CxenseSdk.getInstance().loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd, callback));
+    }
 
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+    /**
+     * Fetch a list of {@link WidgetItem items} for the given {@link WidgetContext} and widget id through the cache.
+     * Fresh cached items are emitted without a network request, stale ones are emitted at once and refreshed in background.
+     *
+     * @param cache         the cache to read from and to update
+     * @param widgetId      the widget id
+     * @param widgetContext the WidgetContext
+     * @return a {@link Single} that emits list of widgets
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @NonNull
+    public static Single<List<WidgetItem>> loadWidgetRecommendations(@NonNull WidgetRecommendationsCache cache, final String widgetId, final WidgetContext widgetContext) {
+        return cache.get(Keys.widget(widgetId, widgetContext, null, null, null), loadWidgetRecommendations(widgetId, widgetContext));
+    }
+
+    /**
+     * Fetch a list of {@link WidgetItem items} through the cache. See {@link #loadWidgetRecommendations(WidgetRecommendationsCache, String, WidgetContext)}
+     *
+     * @param cache         the cache to read from and to update
+     * @param widgetId      the widget id
+     * @param widgetContext the WidgetContext
+     * @param user          custom user
+     * @return a {@link Single} that emits list of widgets
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @NonNull
+    public static Single<List<WidgetItem>> loadWidgetRecommendations(@NonNull WidgetRecommendationsCache cache, final String widgetId, final WidgetContext widgetContext, ContentUser user, String tag, String prnd) {
+        return cache.get(Keys.widget(widgetId, widgetContext, user, tag, prnd), loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd));
+    }
+
+    /**
+     * Fetch a list of {@link WidgetItem items} with hedged requests. A duplicate request is sent when the first one
+     * is slow, the first response wins, see {@link HedgingPolicy}.
+     *
+     * @param policy        the hedging policy
+     * @param deadline      maximum time to wait for the response
+     * @param unit          time unit for {@code deadline}
+     * @param widgetId      the widget id
+     * @param widgetContext the WidgetContext
+     * @return a {@link Single} that emits list of widgets or fails with {@link java.util.concurrent.TimeoutException}
+     * when the deadline passes
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @NonNull
+    public static Single<List<WidgetItem>> loadWidgetRecommendations(@NonNull HedgingPolicy policy, long deadline, @NonNull TimeUnit unit, final String widgetId, final WidgetContext widgetContext) {
+        return policy.execute(loadWidgetRecommendations(widgetId, widgetContext), deadline, unit);
+    }
+
+    /**
+     * Fetch a list of {@link WidgetItem items} with hedged requests. See {@link #loadWidgetRecommendations(HedgingPolicy, long, TimeUnit, String, WidgetContext)}
+     *
+     * @param policy        the hedging policy
+     * @param deadline      maximum time to wait for the response
+     * @param unit          time unit for {@code deadline}
+     * @param widgetId      the widget id
+     * @param widgetContext the WidgetContext
+     * @param user          custom user
+     * @return a {@link Single} that emits list of widgets or fails with {@link java.util.concurrent.TimeoutException}
+     * when the deadline passes
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @NonNull
+    public static Single<List<WidgetItem>> loadWidgetRecommendations(@NonNull HedgingPolicy policy, long deadline, @NonNull TimeUnit unit, final String widgetId, final WidgetContext widgetContext, ContentUser user, String tag, String prnd) {
+        return policy.execute(loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd), deadline, unit);
     }
 
     /**
-     * Retrieves the user id used by this SDK.
+     * Retrieves the user id used by this SDK, memoized by {@link IdentityStore}.
      *
      * @return a {@link Single} that emits current user id
      */
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<String> getUserId() {
-        return Single.fromCallable(() -> CxenseSdk.getInstance().getUserId());
+        return IdentityStore.getInstance().getUserId();
     }
 
     /**
@@ -134,7 +255,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Completable setUserId(@NonNull String id) {
-        return Completable.fromAction(() -> CxenseSdk.getInstance().setUserId(id));
+        return IdentityStore.getInstance().setUserId(id);
     }
 
     /**
@@ -145,12 +266,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<String> getDefaultUserId() {
-        return Single.fromCallable(() -> {
-            String id = CxenseSdk.getInstance().getDefaultUserId();
-            if (id == null)
-                throw new IllegalStateException("Advertising ID is not available at this moment");
-            return id;
-        });
+        return IdentityStore.getInstance().getDefaultUserId();
     }
 
     /**
@@ -161,7 +277,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<Boolean> isLimitAdTrackingEnabled() {
-        return Single.fromCallable(() -> CxenseSdk.getInstance().getLimitAdTrackingEnabled());
+        return IdentityStore.getInstance().isLimitAdTrackingEnabled();
     }
 
     /**
@@ -185,17 +301,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<List<String>> getUserSegmentIds(@NonNull List<UserIdentity> identities, @NonNull List<String> siteGroupIds) {
-        return Single.create(emitter -> CxenseSdk.getInstance().getUserSegmentIds(identities, siteGroupIds, new LoadCallback<List<String>>() {
-            @Override
-            public void onSuccess(@NotNull List<String> data) {
-                emitter.onSuccess(data);
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createSingle(Endpoint.GET_USER_SEGMENT_IDS, callback -> CxenseSdk.getInstance().getUserSegmentIds(identities, siteGroupIds, callback));
     }
 
     /**
@@ -207,17 +313,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<User> getUser(@NonNull UserIdentity identity) {
-        return Single.create(emitter -> CxenseSdk.getInstance().getUser(identity, new LoadCallback<User>() {
-            @Override
-            public void onSuccess(@NotNull User data) {
-                emitter.onSuccess(data);
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createSingle(Endpoint.GET_USER, callback -> CxenseSdk.getInstance().getUser(identity, callback));
     }
 
     /**
@@ -235,17 +331,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess", "SameParameterValue"}) // Public API.
     @NonNull
     public static Single<User> getUser(@NonNull UserIdentity identity, List<String> groups, Boolean recent, List<String> identityTypes) {
-        return Single.create(emitter -> CxenseSdk.getInstance().getUser(identity, groups, recent, identityTypes, new LoadCallback<User>() {
-            @Override
-            public void onSuccess(@NotNull User data) {
-                emitter.onSuccess(data);
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createSingle(Endpoint.GET_USER, callback -> CxenseSdk.getInstance().getUser(identity, groups, recent, identityTypes, callback));
     }
 
     /**
@@ -257,17 +343,27 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<List<UserExternalData>> getUserExternalData(@NonNull String type) {
-        return Single.create(emitter -> CxenseSdk.getInstance().getUserExternalData(type, new LoadCallback<List<UserExternalData>>() {
-            @Override
-            public void onSuccess(@NotNull List<UserExternalData> data) {
-                emitter.onSuccess(data);
-            }
+        return createSingle(Endpoint.GET_USER_EXTERNAL_DATA, callback -> CxenseSdk.getInstance().getUserExternalData(type, callback));
+    }
 
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+    /**
+     * Streams the external data of all users of a type, one slice at a time. Every filter selects one slice, for
+     * example one group, and is read with its own request. The next slice is requested only after the subscriber
+     * consumed the previous one, so at most one slice is held in memory and cancelling skips the remaining
+     * requests. Filters that overlap emit the shared items more than once.
+     *
+     * @param type    the customer identifier type
+     * @param filters traffic filters of type user-external with required group and optional item/items specified,
+     *                one per slice
+     * @return a {@link Flowable} that emits {@link UserExternalData} objects
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @NonNull
+    public static Flowable<UserExternalData> getUserExternalDataFlowable(@NonNull String type, @NonNull List<String> filters) {
+        return Flowable.fromIterable(filters)
+                .concatMap(filter -> RxCxense.<List<UserExternalData>>createSingle(Endpoint.GET_USER_EXTERNAL_DATA,
+                        callback -> CxenseSdk.getInstance().getUserExternalData(type, null, filter, callback))
+                        .flattenAsFlowable(data -> data), 1);
     }
 
     /**
@@ -280,17 +376,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess", "SameParameterValue"}) // Public API.
     @NonNull
     public static Single<List<UserExternalData>> getUserExternalData(String id, @NonNull String type) {
-        return Single.create(emitter -> CxenseSdk.getInstance().getUserExternalData(id, type, new LoadCallback<List<UserExternalData>>() {
-            @Override
-            public void onSuccess(@NotNull List<UserExternalData> data) {
-                emitter.onSuccess(data);
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createSingle(Endpoint.GET_USER_EXTERNAL_DATA, callback -> CxenseSdk.getInstance().getUserExternalData(id, type, callback));
     }
 
     /**
@@ -302,17 +388,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess", "SameParameterValue"}) // Public API.
     @NonNull
     public static Completable setUserExternalData(@NonNull UserExternalData userExternalData) {
-        return Completable.create(emitter -> CxenseSdk.getInstance().setUserExternalData(userExternalData, new LoadCallback<Void>() {
-            @Override
-            public void onSuccess(@NotNull Void data) {
-                emitter.onComplete();
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createCompletable(Endpoint.SET_USER_EXTERNAL_DATA, callback -> CxenseSdk.getInstance().setUserExternalData(userExternalData, callback));
     }
 
     /**
@@ -324,17 +400,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Completable deleteUserExternalData(@NonNull UserIdentity identity) {
-        return Completable.create(emitter -> CxenseSdk.getInstance().deleteUserExternalData(identity, new LoadCallback<Void>() {
-            @Override
-            public void onSuccess(@NotNull Void data) {
-                emitter.onComplete();
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createCompletable(Endpoint.DELETE_USER_EXTERNAL_DATA, callback -> CxenseSdk.getInstance().deleteUserExternalData(identity, callback));
     }
 
     /**
@@ -347,17 +413,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<UserIdentity> getUserExternalLink(@NonNull String cxenseId, @NonNull String type) {
-        return Single.create(emitter -> CxenseSdk.getInstance().getUserExternalLink(cxenseId, type, new LoadCallback<UserIdentity>() {
-            @Override
-            public void onSuccess(@NotNull UserIdentity data) {
-                emitter.onSuccess(data);
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createSingle(Endpoint.GET_USER_EXTERNAL_LINK, callback -> CxenseSdk.getInstance().getUserExternalLink(cxenseId, type, callback));
     }
 
     /**
@@ -370,17 +426,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<UserIdentity> addUserExternalLink(@NonNull String cxenseId, @NonNull UserIdentity identity) {
-        return Single.create(emitter -> CxenseSdk.getInstance().addUserExternalLink(cxenseId, identity, new LoadCallback<UserIdentity>() {
-            @Override
-            public void onSuccess(@NotNull UserIdentity data) {
-                emitter.onSuccess(data);
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createSingle(Endpoint.ADD_USER_EXTERNAL_LINK, callback -> CxenseSdk.getInstance().addUserExternalLink(cxenseId, identity, callback));
     }
 
     /**
@@ -392,7 +438,22 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Completable pushEvents(@NonNull Event... events) {
-        return Completable.fromAction(() -> CxenseSdk.getInstance().pushEvents(events));
+        return Completable.fromAction(() -> {
+            CxenseSdk.getInstance().pushEvents(events);
+            QueueMonitor.getInstance().onActivity();
+        });
+    }
+
+    /**
+     * Push events from the stream to sending queue in batches, see {@link EventSink}.
+     *
+     * @param events the stream of events that should be pushed.
+     * @return a {@link Completable} that is complete when the stream completed and all its events were pushed
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @NonNull
+    public static Completable pushEvents(@NonNull Flowable<Event> events) {
+        return new EventSink.Builder().build().push(events);
     }
 
     /**
@@ -429,7 +490,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Single<ContentUser> getDefaultContentUser() {
-        return Single.fromCallable(() -> CxenseSdk.getInstance().getDefaultContentUser());
+        return IdentityStore.getInstance().getDefaultContentUser();
     }
 
     /**
@@ -440,7 +501,47 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public static Completable flushEventQueue() {
-        return Completable.fromAction(() -> CxenseSdk.getInstance().flushEventQueue());
+        return Completable.fromAction(() -> {
+            CxenseSdk.getInstance().flushEventQueue();
+            QueueMonitor.getInstance().onActivity();
+        });
+    }
+
+    /**
+     * Forces sending events from queue to server and waits for the SDK to report the result of every event that
+     * was waiting at call time. Events pushed later are not waited for.
+     * <p>
+     * Statuses are taken from {@link DispatchStatusHub}, which registers its callback again for every call.
+     * Calling {@link CxenseSdk#setDispatchEventsCallback} directly while waiting replaces that callback, and the
+     * call then ends with the timeout and the remaining events pending. Failed events stay in the queue for a
+     * later dispatch.
+     *
+     * @param timeout maximum time to wait
+     * @param unit    time unit
+     * @return a {@link Single} that emits a {@link FlushResult} once all waiting events are reported, or when the
+     * timeout elapses with the events still not reported
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @NonNull
+    public static Single<FlushResult> flushAndAwait(long timeout, @NonNull TimeUnit unit) {
+        if (timeout <= 0)
+            throw new IllegalArgumentException("timeout must be positive");
+        return Single.create(emitter -> {
+            FlushTracker tracker = new FlushTracker();
+            // Subscribe before reading the queue, so no status of a waiting event is missed.
+            Disposable statuses = DispatchStatusHub.getInstance().statuses().subscribe(batch -> {
+                if (tracker.onStatuses(batch))
+                    emitter.onSuccess(tracker.result());
+            });
+            Disposable timer = Schedulers.computation().scheduleDirect(() -> emitter.onSuccess(tracker.result()), timeout, unit);
+            emitter.setDisposable(new CompositeDisposable(statuses, timer));
+            if (tracker.track(CxenseSdk.getInstance().getQueueStatus().getNotSentEvents())) {
+                emitter.onSuccess(tracker.result());
+                return;
+            }
+            CxenseSdk.getInstance().flushEventQueue();
+            QueueMonitor.getInstance().onActivity();
+        });
     }
 
     /**
@@ -455,18 +556,38 @@ public class RxCxense {
     }
 
     /**
-     * Listener for events sending statuses
+     * Event queue snapshots driven by dispatch and push activity instead of polling, see {@link QueueMonitor}.
      *
-     * @return an {@link Observable} that emits statuses at each events sending
+     * @return a {@link Flowable} that emits a snapshot whenever the queue changes
      */
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
-    public static Observable<List<EventStatus>> getDispatchEventsStatuses() {
-        return Observable.create(emitter -> {
-                    CxenseSdk.getInstance().setDispatchEventsCallback(emitter::onNext);
-                    emitter.setCancellable(() -> CxenseSdk.getInstance().setDispatchEventsCallback(null));
-                }
-        );
+    public static Flowable<QueueSnapshot> observeQueueStatus() {
+        return QueueMonitor.getInstance().observe();
+    }
+
+    /**
+     * Listener for events sending statuses. Any number of subscribers can listen at the same time,
+     * see {@link DispatchStatusHub}.
+     *
+     * @return a {@link Flowable} that emits statuses of batches sent after the subscription
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @NonNull
+    public static Flowable<List<EventStatus>> getDispatchEventsStatuses() {
+        return DispatchStatusHub.getInstance().statuses();
+    }
+
+    /**
+     * Listener for events sending statuses, see {@link DispatchStatusHub}.
+     *
+     * @param replay true to receive the last batches sent before the subscription first
+     * @return a {@link Flowable} that emits statuses at each events sending
+     */
+    @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+    @NonNull
+    public static Flowable<List<EventStatus>> getDispatchEventsStatuses(boolean replay) {
+        return DispatchStatusHub.getInstance().statuses(replay);
     }
 
     /**
@@ -480,17 +601,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public <T> Single<T> getPersistedQuerySingle(String url, String persistentQueryId) {
-        return Single.create(emitter -> CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, new LoadCallback<T>() {
-            @Override
-            public void onSuccess(@NotNull T data) {
-                emitter.onSuccess(data);
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createSingle(Endpoint.PERSISTED_QUERY, callback -> CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, callback));
     }
 
     /**
@@ -503,17 +614,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public Completable getPersistedQueryCompletable(String url, String persistentQueryId) {
-        return Completable.create(emitter -> CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, new LoadCallback<Void>() {
-            @Override
-            public void onSuccess(@NotNull Void data) {
-                emitter.onComplete();
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createCompletable(Endpoint.PERSISTED_QUERY, callback -> CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, callback));
     }
 
     /**
@@ -528,17 +629,7 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public <T> Single<T> getPersistedQuerySingle(String url, String persistentQueryId, Object data) {
-        return Single.create(emitter -> CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, data, new LoadCallback<T>() {
-            @Override
-            public void onSuccess(@NotNull T data) {
-                emitter.onSuccess(data);
-            }
-
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
-        }));
+        return createSingle(Endpoint.PERSISTED_QUERY, callback -> CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, data, callback));
     }
 
     /**
@@ -552,16 +643,58 @@ public class RxCxense {
     @SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
     @NonNull
     public Completable getPersistedQueryCompletable(String url, String persistentQueryId, Object data) {
-        return Completable.create(emitter -> CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, data, new LoadCallback<Void>() {
-            @Override
-            public void onSuccess(@NotNull Void data) {
-                emitter.onComplete();
-            }
+        return createCompletable(Endpoint.PERSISTED_QUERY, callback -> CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, data, callback));
+    }
 
-            @Override
-            public void onError(@NotNull Throwable throwable) {
-                emitter.tryOnError(throwable);
-            }
+    static <T> Single<T> createSingle(@NonNull Endpoint endpoint, @NonNull Consumer<LoadCallback<T>> call) {
+        return createSingle(endpoint, call, retryPolicy);
+    }
+
+    static <T> Single<T> createSingle(@NonNull Endpoint endpoint, @NonNull Consumer<LoadCallback<T>> call, @Nullable RetryPolicy policy) {
+        Single<T> single = isolate(endpoint, Single.<T>create(emitter -> {
+            // Don't start a request for a subscriber that is already gone.
+            if (!emitter.isDisposed())
+                call.accept(Callbacks.single(endpoint, metrics, emitter));
         }));
+        if (policy == null)
+            return single;
+        return single
+                .retryWhen(policy.retryHandler(endpoint, metrics))
+                .doOnSuccess(data -> policy.onSuccess());
+    }
+
+    static Completable createCompletable(@NonNull Endpoint endpoint, @NonNull Consumer<LoadCallback<Void>> call) {
+        return createCompletable(endpoint, call, retryPolicy);
+    }
+
+    static Completable createCompletable(@NonNull Endpoint endpoint, @NonNull Consumer<LoadCallback<Void>> call, @Nullable RetryPolicy policy) {
+        Completable completable = Completable.create(emitter -> {
+            if (!emitter.isDisposed())
+                call.accept(Callbacks.completable(endpoint, metrics, emitter));
+        });
+        if (isIsolated(endpoint))
+            completable = isolate(endpoint, completable.toSingleDefault(Boolean.TRUE)).ignoreElement();
+        if (policy == null)
+            return completable;
+        return completable
+                .retryWhen(policy.retryHandler(endpoint, metrics))
+                .doOnComplete(policy::onSuccess);
+    }
+
+    private static boolean isIsolated(Endpoint endpoint) {
+        int family = endpoint.getFamily().ordinal();
+        return circuitBreakers.get(family) != null || bulkheads.get(family) != null;
+    }
+
+    private static <T> Single<T> isolate(Endpoint endpoint, Single<T> single) {
+        EndpointFamily family = endpoint.getFamily();
+        Bulkhead bulkhead = bulkheads.get(family.ordinal());
+        if (bulkhead != null)
+            single = bulkhead.wrap(single, family);
+        // The breaker goes outside, so that an open breaker rejects calls without queueing them.
+        CircuitBreaker circuitBreaker = circuitBreakers.get(family.ordinal());
+        if (circuitBreaker != null)
+            single = circuitBreaker.wrap(single, family);
+        return single;
     }
 }
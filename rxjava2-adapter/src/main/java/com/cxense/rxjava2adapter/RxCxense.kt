@@ -4,9 +4,13 @@ import com.cxense.cxensesdk.CxenseConfiguration
 import com.cxense.cxensesdk.CxenseSdk
 import com.cxense.cxensesdk.LoadCallback
 import com.cxense.cxensesdk.model.*
+import io.reactivex.BackpressureOverflowStrategy
 import io.reactivex.Completable
-import io.reactivex.Observable
+import io.reactivex.Flowable
 import io.reactivex.Single
+import io.reactivex.disposables.CompositeDisposable
+import io.reactivex.schedulers.Schedulers
+import java.util.concurrent.TimeUnit
 
 /**
  * Tracks a click for the given click-url
@@ -15,7 +19,7 @@ import io.reactivex.Single
  * @return a {@link Completable} that is complete when the function finished successfully
  */
 fun trackClick(url: String): Completable =
-    createCompletable { loadCallback ->
+    createCompletable(Endpoint.TRACK_CLICK) { loadCallback ->
         CxenseSdk.getInstance().trackClick(url, loadCallback)
     }
 
@@ -26,7 +30,7 @@ fun trackClick(url: String): Completable =
  * @return a {@link Completable} that is complete when the function finished successfully
  */
 fun trackClick(item: WidgetItem): Completable =
-    createCompletable { loadCallback ->
+    createCompletable(Endpoint.TRACK_CLICK) { loadCallback ->
         CxenseSdk.getInstance().trackClick(item, loadCallback)
     }
 
@@ -43,20 +47,64 @@ fun loadWidgetRecommendations(
     tag: String? = null,
     prnd: String? = null
 ): Single<List<WidgetItem>> =
-    createSingle { loadCallback ->
+    createSingle(Endpoint.LOAD_WIDGET_RECOMMENDATIONS) { loadCallback ->
         CxenseSdk.getInstance()
             .loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd, loadCallback)
     }
 
 /**
- * Retrieves the user id used by this SDK.
+ * Fetch a list of widgets through the cache. Fresh cached items are emitted without a network request,
+ * stale ones are emitted at once and refreshed in background.
+ *
+ * @param cache         the cache to read from and to update
+ * @param widgetId      the widget id
+ * @param widgetContext the WidgetContext
+ * @param user          custom user
+ * @return a {@link Single} that emits list of widgets
+ */
+fun loadWidgetRecommendations(
+    cache: WidgetRecommendationsCache,
+    widgetId: String,
+    widgetContext: WidgetContext,
+    user: ContentUser? = null,
+    tag: String? = null,
+    prnd: String? = null
+): Single<List<WidgetItem>> =
+    cache.get(
+        Keys.widget(widgetId, widgetContext, user, tag, prnd),
+        loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd)
+    )
+
+/**
+ * Fetch a list of widgets with hedged requests. A duplicate request is sent when the first one is slow,
+ * the first response wins, see {@link HedgingPolicy}.
+ *
+ * @param policy        the hedging policy
+ * @param deadline      maximum time to wait for the response
+ * @param unit          time unit for deadline
+ * @param widgetId      the widget id
+ * @param widgetContext the WidgetContext
+ * @param user          custom user
+ * @return a {@link Single} that emits list of widgets or fails with {@link java.util.concurrent.TimeoutException} when the deadline passes
+ */
+fun loadWidgetRecommendations(
+    policy: HedgingPolicy,
+    deadline: Long,
+    unit: TimeUnit,
+    widgetId: String,
+    widgetContext: WidgetContext,
+    user: ContentUser? = null,
+    tag: String? = null,
+    prnd: String? = null
+): Single<List<WidgetItem>> =
+    policy.execute(loadWidgetRecommendations(widgetId, widgetContext, user, tag, prnd), deadline, unit)
+
+/**
+ * Retrieves the user id used by this SDK, memoized by {@link IdentityStore}.
  *
  * @return a {@link Single} that emits current user id
  */
-fun getUserId(): Single<String> =
-    Single.fromCallable {
-        CxenseSdk.getInstance().userId
-    }
+fun getUserId(): Single<String> = IdentityStore.getInstance().userId
 
 /**
  * Sets the user id used by this SDK. Must be at least 16 characters long.
@@ -65,31 +113,21 @@ fun getUserId(): Single<String> =
  * @param id new user id
  * @return a {@link Completable} that is complete when the function finished successfully
  */
-fun setUserId(id: String): Completable =
-    Completable.fromAction {
-        CxenseSdk.getInstance().userId = id
-    }
+fun setUserId(id: String): Completable = IdentityStore.getInstance().setUserId(id)
 
 /**
  * Retrieves the default user id for SDK.
  *
  * @return a {@link Single} that emits advertising ID (if available)
  */
-fun getDefaultUserId(): Single<String> =
-    Single.fromCallable {
-        CxenseSdk.getInstance().defaultUserId
-            ?: throw IllegalStateException("Advertising ID is not available at this moment")
-    }
+fun getDefaultUserId(): Single<String> = IdentityStore.getInstance().defaultUserId
 
 /**
  * Retrieves whether the user has limit ad tracking enabled or not.
  *
  * @return a {@link Single} that emits true if the user has limit ad tracking enabled or false else.
  */
-fun isLimitAdTrackingEnabled(): Single<Boolean> =
-    Single.fromCallable {
-        CxenseSdk.getInstance().limitAdTrackingEnabled
-    }
+fun isLimitAdTrackingEnabled(): Single<Boolean> = IdentityStore.getInstance().isLimitAdTrackingEnabled()
 
 /**
  * Gets Cxense SDK configuration
@@ -112,7 +150,7 @@ fun getUserSegmentIds(
     identities: List<UserIdentity>,
     siteGroupIds: List<String>
 ): Single<List<String>> =
-    createSingle { loadCallback ->
+    createSingle(Endpoint.GET_USER_SEGMENT_IDS) { loadCallback ->
         CxenseSdk.getInstance().getUserSegmentIds(identities, siteGroupIds, loadCallback)
     }
 
@@ -134,7 +172,7 @@ fun getUser(
     recent: Boolean? = null,
     identityTypes: List<String>? = null
 ): Single<User> =
-    createSingle { loadCallback ->
+    createSingle(Endpoint.GET_USER) { loadCallback ->
         CxenseSdk.getInstance().getUser(identity, groups, recent, identityTypes, loadCallback)
     }
 
@@ -151,10 +189,25 @@ fun getUserExternalData(
     id: String? = null,
     filter: String? = null
 ): Single<List<UserExternalData>> =
-    createSingle { loadCallback ->
+    createSingle(Endpoint.GET_USER_EXTERNAL_DATA) { loadCallback ->
         CxenseSdk.getInstance().getUserExternalData(type, id, filter, loadCallback)
     }
 
+/**
+ * Streams the external data of all users of a type, one slice at a time. Every filter selects one slice, for
+ * example one group, and is read with its own request. The next slice is requested only after the subscriber
+ * consumed the previous one, so at most one slice is held in memory and cancelling skips the remaining requests.
+ * Filters that overlap emit the shared items more than once.
+ *
+ * @param type    the customer identifier type
+ * @param filters traffic filters of type user-external with required group and optional item/items specified,
+ *                one per slice
+ * @return a {@link Flowable} that emits {@link UserExternalData} objects
+ */
+fun getUserExternalDataFlowable(type: String, filters: List<String>): Flowable<UserExternalData> =
+    Flowable.fromIterable(filters)
+        .concatMap({ filter -> getUserExternalData(type, null, filter).flattenAsFlowable { it } }, 1)
+
 /**
  * Asynchronously sets the external data associated with a given user
  *
@@ -162,7 +215,7 @@ fun getUserExternalData(
  * @return a {@link Completable} that is complete when the function finished successfully
  */
 fun setUserExternalData(userExternalData: UserExternalData): Completable =
-    createCompletable { loadCallback ->
+    createCompletable(Endpoint.SET_USER_EXTERNAL_DATA) { loadCallback ->
         CxenseSdk.getInstance().setUserExternalData(userExternalData, loadCallback)
     }
 
@@ -173,7 +226,7 @@ fun setUserExternalData(userExternalData: UserExternalData): Completable =
  * @return a {@link Completable} that is complete when the function finished successfully
  */
 fun deleteUserExternalData(identity: UserIdentity): Completable =
-    createCompletable { loadCallback ->
+    createCompletable(Endpoint.DELETE_USER_EXTERNAL_DATA) { loadCallback ->
         CxenseSdk.getInstance().deleteUserExternalData(identity, loadCallback)
     }
 
@@ -185,7 +238,7 @@ fun deleteUserExternalData(identity: UserIdentity): Completable =
  * @return a {@link Single} that emits an {@link UserIdentity} object
  */
 fun getUserExternalLink(cxenseId: String, type: String): Single<UserIdentity> =
-    createSingle { loadCallback ->
+    createSingle(Endpoint.GET_USER_EXTERNAL_LINK) { loadCallback ->
         CxenseSdk.getInstance().getUserExternalLink(cxenseId, type, loadCallback)
     }
 
@@ -197,7 +250,7 @@ fun getUserExternalLink(cxenseId: String, type: String): Single<UserIdentity> =
  * @return a {@link Single} that emits an {@link UserIdentity} object
  */
 fun addUserExternalLink(cxenseId: String, identity: UserIdentity): Single<UserIdentity> =
-    createSingle { loadCallback ->
+    createSingle(Endpoint.ADD_USER_EXTERNAL_LINK) { loadCallback ->
         CxenseSdk.getInstance().addUserExternalLink(cxenseId, identity, loadCallback)
     }
 
@@ -210,8 +263,19 @@ fun addUserExternalLink(cxenseId: String, identity: UserIdentity): Single<UserId
 fun pushEvents(vararg events: Event): Completable =
     Completable.fromAction {
         CxenseSdk.getInstance().pushEvents(*events)
+        QueueMonitor.getInstance().onActivity()
     }
 
+/**
+ * Push events from the stream to sending queue in batches, see {@link EventSink}.
+ *
+ * @param events the stream of events that should be pushed.
+ * @param sink   the sink that batches events
+ * @return a {@link Completable} that is complete when the stream completed and all its events were pushed
+ */
+fun pushEvents(events: Flowable<Event>, sink: EventSink = EventSink.Builder().build()): Completable =
+    sink.push(events)
+
 /**
  * Tracks active time for the given page view event. The active time will be calculated
  * as the time between this call and the trackEvent call.
@@ -241,10 +305,7 @@ fun trackActiveTime(eventId: String, activeTime: Long): Completable =
  *
  * @return a {@link Single} that emits the default {@link ContentUser}
  */
-fun getDefaultContentUser(): Single<ContentUser> =
-    Single.fromCallable {
-        CxenseSdk.getInstance().defaultContentUser
-    }
+fun getDefaultContentUser(): Single<ContentUser> = IdentityStore.getInstance().defaultContentUser
 
 /**
  * Forces sending events from queue to server.
@@ -254,8 +315,42 @@ fun getDefaultContentUser(): Single<ContentUser> =
 fun flushEventQueue(): Completable =
     Completable.fromAction {
         CxenseSdk.getInstance().flushEventQueue()
+        QueueMonitor.getInstance().onActivity()
     }
 
+/**
+ * Forces sending events from queue to server and waits for the SDK to report the result of every event that was
+ * waiting at call time. Events pushed later are not waited for.
+ *
+ * Statuses are taken from {@link DispatchStatusHub}, which registers its callback again for every call. Calling
+ * {@link CxenseSdk#setDispatchEventsCallback} directly while waiting replaces that callback, and the call then
+ * ends with the timeout and the remaining events pending. Failed events stay in the queue for a later dispatch.
+ *
+ * @param timeout maximum time to wait
+ * @param unit    time unit
+ * @return a {@link Single} that emits a {@link FlushResult} once all waiting events are reported, or when the
+ * timeout elapses with the events still not reported
+ */
+fun flushAndAwait(timeout: Long, unit: TimeUnit): Single<FlushResult> {
+    require(timeout > 0) { "timeout must be positive" }
+    return Single.create { emitter ->
+        val tracker = FlushTracker()
+        // Subscribe before reading the queue, so no status of a waiting event is missed.
+        val statuses = DispatchStatusHub.getInstance().statuses().subscribe { batch ->
+            if (tracker.onStatuses(batch))
+                emitter.onSuccess(tracker.result())
+        }
+        val timer = Schedulers.computation().scheduleDirect({ emitter.onSuccess(tracker.result()) }, timeout, unit)
+        emitter.setDisposable(CompositeDisposable(statuses, timer))
+        if (tracker.track(CxenseSdk.getInstance().queueStatus.notSentEvents)) {
+            emitter.onSuccess(tracker.result())
+            return@create
+        }
+        CxenseSdk.getInstance().flushEventQueue()
+        QueueMonitor.getInstance().onActivity()
+    }
+}
+
 /**
  * Returns current event queue status
  *
@@ -267,18 +362,27 @@ fun getQueueStatus(): Single<QueueStatus> =
     }
 
 /**
- * Listener for events sending statuses
+ * Event queue snapshots driven by dispatch and push activity instead of polling, see {@link QueueMonitor}.
  *
- * @return an {@link Observable} that emits statuses at each events sending
+ * @return a {@link Flowable} that emits a snapshot whenever the queue changes
  */
-fun getDispatchEventsStatuses(): Observable<List<EventStatus>> =
-    Observable.create { emitter ->
-        CxenseSdk.getInstance()
-            .setDispatchEventsCallback(object : CxenseSdk.DispatchEventsCallback {
-                override fun onDispatch(statuses: List<EventStatus>) = emitter.onNext(statuses)
-            })
-        emitter.setCancellable { CxenseSdk.getInstance().setDispatchEventsCallback(null) }
-    }
+fun observeQueueStatus(): Flowable<QueueSnapshot> = QueueMonitor.getInstance().observe()
+
+/**
+ * Listener for events sending statuses. Any number of subscribers can listen at the same time,
+ * see {@link DispatchStatusHub}.
+ *
+ * @param capacity number of batches buffered for a slow subscriber
+ * @param strategy what to do when the buffer is full
+ * @param replay   true to receive the last batches sent before the subscription first
+ * @return a {@link Flowable} that emits statuses at each events sending
+ */
+fun getDispatchEventsStatuses(
+    capacity: Int = DispatchStatusHub.DEFAULT_CAPACITY,
+    strategy: BackpressureOverflowStrategy = BackpressureOverflowStrategy.DROP_OLDEST,
+    replay: Boolean = false
+): Flowable<List<EventStatus>> =
+    DispatchStatusHub.getInstance().statuses(capacity, strategy, replay)
 
 /**
  * Executes persisted query to Cxense API endpoint. You can find some popular endpoints in {@link CxenseConstants}
@@ -294,7 +398,7 @@ fun <T : Any> getPersistedQuerySingle(
     persistentQueryId: String,
     data: Any? = null
 ): Single<T> =
-    createSingle { loadCallback ->
+    createSingle(Endpoint.PERSISTED_QUERY) { loadCallback ->
         CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, data, loadCallback)
     }
 
@@ -311,32 +415,12 @@ fun getPersistedQueryCompletable(
     persistentQueryId: String,
     data: Any? = null
 ): Completable =
-    createCompletable { loadCallback ->
+    createCompletable(Endpoint.PERSISTED_QUERY) { loadCallback ->
         CxenseSdk.getInstance().executePersistedQuery(url, persistentQueryId, data, loadCallback)
     }
 
-private fun <T : Any> createSingle(func: (LoadCallback<T>) -> Unit): Single<T> =
-    Single.create { emitter ->
-        func(object : LoadCallback<T> {
-            override fun onSuccess(data: T) {
-                emitter.onSuccess(data)
-            }
-
-            override fun onError(throwable: Throwable) {
-                emitter.tryOnError(throwable)
-            }
-        })
-    }
+private fun <T : Any> createSingle(endpoint: Endpoint, func: (LoadCallback<T>) -> Unit): Single<T> =
+    RxCxense.createSingle(endpoint) { func(it) }
 
-private fun createCompletable(func: (LoadCallback<Void>) -> Unit): Completable =
-    Completable.create { emitter ->
-        func(object : LoadCallback<Void> {
-            override fun onSuccess(data: Void) {
-                emitter.onComplete()
-            }
-
-            override fun onError(throwable: Throwable) {
-                emitter.tryOnError(throwable)
-            }
-        })
-    }
+private fun createCompletable(endpoint: Endpoint, func: (LoadCallback<Void>) -> Unit): Completable =
+    RxCxense.createCompletable(endpoint) { func(it) }
@@ -0,0 +1,191 @@
+package com.cxense.rxjava2adapter;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cxense.cxensesdk.model.UserIdentity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Persistent store of the last known user segments per identity set and site group set.
+ * <p>
+ * Segments are kept in a compact binary file that is read with a single read on first access. Each request
+ * emits the stored segments immediately (if any), refreshes them from the server and emits the new segments
+ * only if they differ from the stored ones.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class SegmentStore {
+    private static final String FILE_NAME = "cxense_segments.bin";
+    private static final int MAGIC = 0x43585347;
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final Scheduler scheduler;
+    // guarded by this
+    private Map<String, List<String>> segments;
+
+    /**
+     * Creates store in application files directory.
+     *
+     * @param context any context
+     */
+    public SegmentStore(@NonNull Context context) {
+        this(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+    }
+
+    /**
+     * @param file file to keep segments in
+     */
+    public SegmentStore(@NonNull File file) {
+        this(file, Schedulers.io());
+    }
+
+    /**
+     * @param file      file to keep segments in
+     * @param scheduler scheduler for disk operations
+     */
+    public SegmentStore(@NonNull File file, @NonNull Scheduler scheduler) {
+        this.file = file;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Emits stored segments for the user (if any) and then the segments from the server if they have changed.
+     * If the refresh fails and stored segments were emitted, the stream completes without error.
+     *
+     * @param identities   a list of user identifiers for a single user to retrieve segments for
+     * @param siteGroupIds the list of site groups to retrieve segments for
+     * @return an {@link Observable} that emits lists of user segment ids
+     */
+    @NonNull
+    public Observable<List<String>> getUserSegmentIds(@NonNull List<UserIdentity> identities, @NonNull List<String> siteGroupIds) {
+        String key = Keys.segments(identities, siteGroupIds);
+        return Observable.defer(() -> {
+            List<String> cached = get(key);
+            Observable<List<String>> refresh = RxCxense.getUserSegmentIds(identities, siteGroupIds)
+                    .observeOn(scheduler)
+                    .filter(fresh -> put(key, fresh))
+                    .toObservable();
+            if (cached == null)
+                return refresh;
+            return refresh.onErrorResumeNext(Observable.empty()).startWith(cached);
+        }).subscribeOn(scheduler);
+    }
+
+    /**
+     * Removes all stored segments.
+     *
+     * @return true if the file was deleted or did not exist
+     */
+    public synchronized boolean clear() {
+        segments = new HashMap<>();
+        return !file.exists() || file.delete();
+    }
+
+    @Nullable
+    private synchronized List<String> get(String key) {
+        return load().get(key);
+    }
+
+    private synchronized boolean put(String key, List<String> fresh) {
+        List<String> sorted = new ArrayList<>(fresh);
+        Collections.sort(sorted);
+        Map<String, List<String>> map = load();
+        if (sorted.equals(map.get(key)))
+            return false;
+        map.put(key, Collections.unmodifiableList(sorted));
+        try {
+            write(map);
+        } catch (IOException e) {
+            // segments stay in memory and are written with the next change
+        }
+        return true;
+    }
+
+    private Map<String, List<String>> load() {
+        if (segments == null) {
+            try {
+                segments = read();
+            } catch (IOException e) {
+                segments = new HashMap<>();
+            }
+        }
+        return segments;
+    }
+
+    private Map<String, List<String>> read() throws IOException {
+        Map<String, List<String>> map = new HashMap<>();
+        if (!file.exists())
+            return map;
+        byte[] bytes;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            return map;
+        // An entry takes at least a key length and an id count, an id at least its length.
+        int entries = count(in, 2 + 4);
+        for (int i = 0; i < entries; i++) {
+            String key = in.readUTF();
+            int count = count(in, 2);
+            List<String> ids = new ArrayList<>(count);
+            for (int j = 0; j < count; j++) {
+                ids.add(in.readUTF());
+            }
+            map.put(key, Collections.unmodifiableList(ids));
+        }
+        return map;
+    }
+
+    // Reads a count of items of at least itemBytes each, a corrupt count fails like a truncated file.
+    private static int count(DataInputStream in, int itemBytes) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || (long) count * itemBytes > in.available())
+            throw new IOException("Bad count " + count);
+        return count;
+    }
+
+    private void write(Map<String, List<String>> map) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(map.size());
+        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeInt(entry.getValue().size());
+            for (String id : entry.getValue()) {
+                out.writeUTF(id);
+            }
+        }
+        out.flush();
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(tmp)) {
+            bytes.writeTo(stream);
+            stream.getFD().sync();
+        }
+        if (!tmp.renameTo(file))
+            throw new IOException("Can't replace " + file);
+    }
+}
@@ -0,0 +1,55 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Single;
+
+/**
+ * Collapses concurrent subscriptions with the same key into one upstream subscription.
+ * <p>
+ * The first subscriber for a key starts the call, every subscriber arriving while it is in flight
+ * receives the same result. The shared call is reference-counted: it is disposed only when the last
+ * subscriber disposes. Once the call terminates the key is released and the next subscriber starts a new call.
+ *
+ * @param <T> result type
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class SingleFlight<T> {
+    private final ConcurrentHashMap<String, Single<T>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Joins the in-flight call for the given key or starts {@code source} if there is none.
+     *
+     * @param key    canonical request key
+     * @param source request to execute
+     * @return a {@link Single} that emits the shared result
+     */
+    @NonNull
+    public Single<T> join(@NonNull String key, @NonNull Single<T> source) {
+        return Single.defer(() -> {
+            Single<T> existing = calls.get(key);
+            if (existing != null)
+                return existing;
+            AtomicReference<Single<T>> self = new AtomicReference<>();
+            Single<T> shared = source
+                    .doFinally(() -> calls.remove(key, self.get()))
+                    .toObservable()
+                    .replay(1)
+                    .refCount()
+                    .singleOrError();
+            self.set(shared);
+            existing = calls.putIfAbsent(key, shared);
+            return existing != null ? existing : shared;
+        });
+    }
+
+    /**
+     * @return number of distinct calls currently in flight
+     */
+    public int getInFlightCount() {
+        return calls.size();
+    }
+}
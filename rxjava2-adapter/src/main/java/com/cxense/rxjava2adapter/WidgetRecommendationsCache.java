@@ -0,0 +1,150 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+
+import com.cxense.cxensesdk.model.WidgetItem;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.reactivex.Single;
+
+/**
+ * Bounded in-memory LRU cache for widget recommendations.
+ * <p>
+ * Entries younger than {@code ttl} are served as is. Entries older than {@code ttl} but younger than
+ * {@code ttl + staleWhileRevalidate} are served immediately while a single background request refreshes them.
+ * Older entries are dropped and the request goes to the network.
+ * <p>
+ * Pass an instance to {@link RxCxense#loadWidgetRecommendations(WidgetRecommendationsCache, String, com.cxense.cxensesdk.model.WidgetContext)}
+ * to opt in to caching.
+ */
+@SuppressWarnings({"UnusedDeclaration", "WeakerAccess"}) // Public API.
+public class WidgetRecommendationsCache {
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+    private static final long DEFAULT_TTL_SECONDS = 60;
+    private static final long DEFAULT_STALE_SECONDS = 300;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final long staleNanos;
+    // guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // guarded by this
+    private final Set<String> refreshing = new HashSet<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Creates cache with 64 entries, one minute TTL and five minutes of stale-while-revalidate.
+     */
+    public WidgetRecommendationsCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_SECONDS, DEFAULT_STALE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @param maxEntries           maximum number of cached widget responses
+     * @param ttl                  time while an entry is considered fresh
+     * @param staleWhileRevalidate additional time while an expired entry can still be served during refresh
+     * @param unit                 time unit for {@code ttl} and {@code staleWhileRevalidate}
+     */
+    public WidgetRecommendationsCache(int maxEntries, long ttl, long staleWhileRevalidate, @NonNull TimeUnit unit) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries must be positive");
+        if (ttl < 0 || staleWhileRevalidate < 0)
+            throw new IllegalArgumentException("ttl and staleWhileRevalidate must not be negative");
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.staleNanos = unit.toNanos(staleWhileRevalidate);
+    }
+
+    /**
+     * @return snapshot of cache counters
+     */
+    @NonNull
+    public CacheStats getStats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new CacheStats(hits.get(), staleHits.get(), misses.get(), evictions.get(), size);
+    }
+
+    /**
+     * Removes all cached entries. Counters are kept.
+     */
+    public synchronized void invalidateAll() {
+        entries.clear();
+    }
+
+    @NonNull
+    Single<List<WidgetItem>> get(@NonNull String key, @NonNull Single<List<WidgetItem>> loader) {
+        return Single.defer(() -> {
+            long now = System.nanoTime();
+            Entry entry;
+            boolean refresh = false;
+            synchronized (this) {
+                entry = entries.get(key);
+                if (entry != null && now - entry.loadedAt > ttlNanos + staleNanos) {
+                    entries.remove(key);
+                    entry = null;
+                }
+                if (entry != null && now - entry.loadedAt > ttlNanos)
+                    refresh = refreshing.add(key);
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return loader.doOnSuccess(items -> put(key, items));
+            }
+            if (now - entry.loadedAt > ttlNanos) {
+                staleHits.incrementAndGet();
+                if (refresh)
+                    revalidate(key, loader);
+            } else {
+                hits.incrementAndGet();
+            }
+            return Single.just(entry.items);
+        });
+    }
+
+    private void revalidate(String key, Single<List<WidgetItem>> loader) {
+        loader.doFinally(() -> {
+            synchronized (this) {
+                refreshing.remove(key);
+            }
+        }).subscribe(items -> put(key, items), throwable -> {
+            // keep serving the stale entry until it expires completely
+        });
+    }
+
+    private void put(String key, List<WidgetItem> items) {
+        Entry entry = new Entry(items, System.nanoTime());
+        synchronized (this) {
+            entries.put(key, entry);
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final List<WidgetItem> items;
+        final long loadedAt;
+
+        Entry(List<WidgetItem> items, long loadedAt) {
+            this.items = items;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.cxense.rxjava2adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Outcome of writing one item with {@link BulkWriter}.
+ *
+ * @param <T> item type
+ */
+public final class WriteResult<T> {
+    private final T item;
+    @Nullable
+    private final Throwable error;
+
+    WriteResult(@NonNull T item, @Nullable Throwable error) {
+        this.item = item;
+        this.error = error;
+    }
+
+    /**
+     * @return the written item
+     */
+    @NonNull
+    public T getItem() {
+        return item;
+    }
+
+    /**
+     * @return true if the item was written
+     */
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    /**
+     * @return error of the last attempt, or null if the item was written
+     */
+    @Nullable
+    public Throwable getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "WriteResult{" + item + (error == null ? "" : ", " + error) + '}';
+    }
+}
@@ -5,16 +5,16 @@ import android.text.TextUtils;
 import android.widget.TextView;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.cxense.cxensesdk.CxenseSdk;
 import com.cxense.cxensesdk.LoadCallback;
 import com.cxense.cxensesdk.model.ConversionEvent;
 import com.cxense.cxensesdk.model.CustomParameter;
 import com.cxense.cxensesdk.model.EventStatus;
-import com.cxense.cxensesdk.model.Impression;
 import com.cxense.cxensesdk.model.PageViewEvent;
 import com.cxense.cxensesdk.model.UserIdentity;
-import com.cxense.cxensesdk.model.WidgetContext;
 import com.cxense.cxensesdk.model.WidgetItem;
 import com.google.android.material.snackbar.Snackbar;
 
@@ -31,18 +31,24 @@ public class AnimalActivity extends AppCompatActivity {
     public static final String ITEM_KEY = "item";
     private String item;
     private TextView textView;
+    private RecyclerView recommendations;
+    private boolean resumed;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_animal);
         this.item = getIntent().getStringExtra(ITEM_KEY);
-        textView = findViewById(R.id.text);
+        textView = findViewById(R.id.animalText);
         textView.setText(getString(R.string.item_text, item));
+        recommendations = findViewById(R.id.recommendations);
+        recommendations.setLayoutManager(new LinearLayoutManager(this));
     }
 
     @Override
     protected void onPause() {
+        resumed = false;
+        ((App) getApplication()).getImpressionTracker().detach();
         CxenseSdk.getInstance().trackActiveTime(item);
         CxenseSdk.getInstance().setDispatchEventsCallback(null);
         super.onPause();
@@ -51,6 +57,7 @@ public class AnimalActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
+        resumed = true;
         CxenseSdk.getInstance().setDispatchEventsCallback(statuses -> {
             List<String> sent = new ArrayList<>(), notSent = new ArrayList<>();
             for (EventStatus s : statuses) {
@@ -72,29 +79,10 @@ public class AnimalActivity extends AppCompatActivity {
                         .renewalFrequency("1wC")
                         .build()
         );
-        CxenseSdk.getInstance().loadWidgetRecommendations("ffb1d2523b582f5f649df351d37928d2c108e715", new WidgetContext.Builder("https://cxense.com").build(), new LoadCallback<List<WidgetItem>>() {
+        ((App) getApplication()).getPrefetcher().load(item, new LoadCallback<List<WidgetItem>>() {
             @Override
             public void onSuccess(@NotNull List<WidgetItem> data) {
-                int i = 1;
-                List<Impression> impressions = new ArrayList<>();
-                for (WidgetItem item: data) {
-                    if (item.getClickUrl() != null)
-                        impressions.add(new Impression(item.getClickUrl(), i++));
-                }
-                CxenseSdk.getInstance().reportWidgetVisibilities(
-                        new LoadCallback<Void>() {
-                            @Override
-                            public void onSuccess(@NotNull Void data) {
-                                Timber.d("Success");
-                            }
-
-                            @Override
-                            public void onError(@NotNull Throwable throwable) {
-                                Timber.e(throwable);
-                            }
-                        },
-                        impressions.toArray(new Impression[0])
-                );
+                showRecommendations(data);
             }
 
             @Override
@@ -102,6 +90,19 @@ public class AnimalActivity extends AppCompatActivity {
                 Timber.e(throwable);
             }
         });
+    }
 
+    private void showRecommendations(List<WidgetItem> data) {
+        // The response may arrive after the screen was paused.
+        if (!resumed)
+            return;
+        String[] titles = new String[data.size()];
+        List<String> clickUrls = new ArrayList<>();
+        for (int i = 0; i < data.size(); i++) {
+            titles[i] = data.get(i).getTitle();
+            clickUrls.add(data.get(i).getClickUrl());
+        }
+        recommendations.setAdapter(new MainAdapter(titles, null));
+        ((App) getApplication()).getImpressionTracker().attach(recommendations, clickUrls);
     }
 }
@@ -5,9 +5,20 @@ import android.app.Application;
 import timber.log.Timber;
 
 public class App extends Application {
+    private final RecommendationsPrefetcher prefetcher = new RecommendationsPrefetcher();
+    private final ImpressionTracker impressionTracker = new ImpressionTracker();
+
     @Override
     public void onCreate() {
         super.onCreate();
         Timber.plant(new LoggingTree());
     }
+
+    public RecommendationsPrefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    public ImpressionTracker getImpressionTracker() {
+        return impressionTracker;
+    }
 }
@@ -0,0 +1,215 @@
+package com.example.cxensesdk.java;
+
+import android.graphics.Rect;
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.LoadCallback;
+import com.cxense.cxensesdk.model.Impression;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import timber.log.Timber;
+
+/**
+ * Reports widget impressions for items that were really seen.
+ * <p>
+ * An item counts as seen when at least half of its view stays on screen for a second. Each click-url is
+ * reported once per session, the session set keeps 64-bit hashes of the urls only. Impressions are batched and
+ * sent with a single {@link CxenseSdk#reportWidgetVisibilities} call once no new impression arrived for two
+ * seconds, when the batch is full, or when the list is detached. Must be used from the main thread.
+ */
+public class ImpressionTracker {
+    private static final float MIN_VISIBLE_FRACTION = 0.5f;
+    private static final long DWELL_MILLIS = 1000;
+    private static final long CHECK_INTERVAL_MILLIS = 200;
+    private static final long DEBOUNCE_MILLIS = 2000;
+    private static final int MAX_BATCH_SIZE = 20;
+
+    private final LongHashSet seen = new LongHashSet();
+    private final Map<String, Long> visibleSince = new HashMap<>();
+    private final List<Impression> pending = new ArrayList<>();
+    private final Rect rect = new Rect();
+    private final Runnable check = this::check;
+    private final Runnable flush = this::flush;
+    private RecyclerView recyclerView;
+    private List<String> clickUrls = Collections.emptyList();
+
+    private static long hash(String clickUrl) {
+        // FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < clickUrl.length(); i++) {
+            hash ^= clickUrl.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Starts watching the list.
+     *
+     * @param recyclerView list of widget items
+     * @param clickUrls    click-urls of the items by adapter position
+     */
+    public void attach(RecyclerView recyclerView, List<String> clickUrls) {
+        detach();
+        this.recyclerView = recyclerView;
+        this.clickUrls = clickUrls;
+        recyclerView.postDelayed(check, CHECK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Stops watching the list and sends pending impressions.
+     */
+    public void detach() {
+        if (recyclerView == null)
+            return;
+        recyclerView.removeCallbacks(check);
+        recyclerView.removeCallbacks(flush);
+        flush();
+        recyclerView = null;
+        clickUrls = Collections.emptyList();
+        visibleSince.clear();
+    }
+
+    /**
+     * Starts a new session, items seen before are reported again.
+     */
+    public void resetSession() {
+        seen.clear();
+    }
+
+    private void check() {
+        long now = SystemClock.uptimeMillis();
+        Map<String, Long> stillVisible = new HashMap<>();
+        if (recyclerView.isShown()) {
+            for (int i = 0; i < recyclerView.getChildCount(); i++) {
+                View child = recyclerView.getChildAt(i);
+                int position = recyclerView.getChildAdapterPosition(child);
+                if (position == RecyclerView.NO_POSITION || position >= clickUrls.size() || visibleFraction(child) < MIN_VISIBLE_FRACTION)
+                    continue;
+                String clickUrl = clickUrls.get(position);
+                if (clickUrl == null || seen.contains(hash(clickUrl)))
+                    continue;
+                Long since = visibleSince.get(clickUrl);
+                if (since == null)
+                    since = now;
+                if (now - since >= DWELL_MILLIS)
+                    onSeen(clickUrl, now - since);
+                else
+                    stillVisible.put(clickUrl, since);
+            }
+        }
+        // Items that left the screen start their dwell time again.
+        visibleSince.clear();
+        visibleSince.putAll(stillVisible);
+        recyclerView.postDelayed(check, CHECK_INTERVAL_MILLIS);
+    }
+
+    private float visibleFraction(View view) {
+        int area = view.getWidth() * view.getHeight();
+        if (area == 0 || !view.getGlobalVisibleRect(rect))
+            return 0;
+        return (float) (rect.width() * rect.height()) / area;
+    }
+
+    private void onSeen(String clickUrl, long visibleMillis) {
+        seen.add(hash(clickUrl));
+        pending.add(new Impression(clickUrl, (int) Math.max(1, visibleMillis / 1000)));
+        recyclerView.removeCallbacks(flush);
+        if (pending.size() >= MAX_BATCH_SIZE)
+            flush();
+        else
+            recyclerView.postDelayed(flush, DEBOUNCE_MILLIS);
+    }
+
+    private void flush() {
+        if (pending.isEmpty())
+            return;
+        Impression[] impressions = pending.toArray(new Impression[0]);
+        pending.clear();
+        CxenseSdk.getInstance().reportWidgetVisibilities(new LoadCallback<Void>() {
+            @Override
+            public void onSuccess(@NotNull Void data) {
+                Timber.d("Reported %d impressions", impressions.length);
+            }
+
+            @Override
+            public void onError(@NotNull Throwable throwable) {
+                Timber.e(throwable);
+            }
+        }, impressions);
+    }
+
+    /**
+     * Open addressing set of hashes, much smaller than a set of url strings.
+     */
+    private static class LongHashSet {
+        private static final long EMPTY = 0;
+        private long[] table = new long[64];
+        private int size;
+        private boolean hasEmpty;
+
+        boolean contains(long value) {
+            if (value == EMPTY)
+                return hasEmpty;
+            for (int i = index(value, table.length); ; i = (i + 1) & (table.length - 1)) {
+                if (table[i] == EMPTY)
+                    return false;
+                if (table[i] == value)
+                    return true;
+            }
+        }
+
+        void add(long value) {
+            if (value == EMPTY) {
+                hasEmpty = true;
+                return;
+            }
+            if ((size + 1) * 4 > table.length * 3)
+                resize();
+            if (insert(table, value))
+                size++;
+        }
+
+        void clear() {
+            table = new long[64];
+            size = 0;
+            hasEmpty = false;
+        }
+
+        private void resize() {
+            long[] resized = new long[table.length * 2];
+            for (long value : table) {
+                if (value != EMPTY)
+                    insert(resized, value);
+            }
+            table = resized;
+        }
+
+        private static boolean insert(long[] table, long value) {
+            for (int i = index(value, table.length); ; i = (i + 1) & (table.length - 1)) {
+                if (table[i] == value)
+                    return false;
+                if (table[i] == EMPTY) {
+                    table[i] = value;
+                    return true;
+                }
+            }
+        }
+
+        private static int index(long value, int length) {
+            long mixed = value * 0x9e3779b97f4a7c15L;
+            return (int) (mixed >>> 32) & (length - 1);
+        }
+    }
+}
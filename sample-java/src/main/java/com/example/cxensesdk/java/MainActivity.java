@@ -60,6 +60,7 @@ public class MainActivity extends AppCompatActivity implements MainAdapter.ItemC
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         MainAdapter adapter = new MainAdapter(animals, this);
         recyclerView.setAdapter(adapter);
+        ((App) getApplication()).getPrefetcher().attach(recyclerView, Arrays.asList(animals));
 
         CxenseConfiguration config = CxenseSdk.getInstance().getConfiguration();
         config.dispatchPeriod(CxenseConstants.getMinDispatchPeriod(), TimeUnit.MILLISECONDS);
@@ -84,6 +85,12 @@ public class MainActivity extends AppCompatActivity implements MainAdapter.ItemC
         });
     }
 
+    @Override
+    protected void onDestroy() {
+        ((App) getApplication()).getPrefetcher().detach(recyclerView);
+        super.onDestroy();
+    }
+
     @Override
     protected void onPause() {
         CxenseSdk.getInstance().setDispatchEventsCallback(null);
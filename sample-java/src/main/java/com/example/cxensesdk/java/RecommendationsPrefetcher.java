@@ -0,0 +1,249 @@
+package com.example.cxensesdk.java;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.cxense.cxensesdk.CxenseSdk;
+import com.cxense.cxensesdk.LoadCallback;
+import com.cxense.cxensesdk.model.WidgetContext;
+import com.cxense.cxensesdk.model.WidgetItem;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms widget recommendations for list items while the user scrolls, so that {@link AnimalActivity} can show
+ * them without waiting for the network.
+ * <p>
+ * Visible items and a few items ahead in the scroll direction are queued. Queued items are requested on a
+ * background-priority thread, at most {@value #MAX_CONCURRENT} at a time. Nothing new starts during a fling,
+ * and queued items that left the window are dropped. Requests already in flight can't be cancelled through the
+ * SDK, their results are kept.
+ */
+public class RecommendationsPrefetcher extends RecyclerView.OnScrollListener {
+    static final String WIDGET_ID = "ffb1d2523b582f5f649df351d37928d2c108e715";
+    private static final int LOOKAHEAD = 5;
+    private static final int MAX_CONCURRENT = 2;
+    private static final int MAX_ENTRIES = 64;
+    private static final float FAST_SCROLL_PX_PER_MS = 4f;
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final Executor executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "recommendations-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // guarded by this
+    private final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES && eldest.getValue().data != null;
+        }
+    };
+    // guarded by this
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+    // guarded by this
+    private int running;
+    // main thread only
+    private List<String> items = Collections.emptyList();
+    private long lastScrollTime;
+    private int lastDirection = 1;
+
+    /**
+     * @param item list item
+     * @return widget context of the recommendations for the item
+     */
+    static WidgetContext widgetContext(String item) {
+        return new WidgetContext.Builder("https://cxense.com")
+                .keywords(Collections.singletonList(item))
+                .build();
+    }
+
+    /**
+     * Starts prefetching for the list.
+     *
+     * @param recyclerView list with {@link LinearLayoutManager}
+     * @param items        items shown by the list
+     */
+    public void attach(RecyclerView recyclerView, List<String> items) {
+        this.items = items;
+        recyclerView.addOnScrollListener(this);
+    }
+
+    /**
+     * Stops prefetching for the list and drops queued items.
+     *
+     * @param recyclerView list passed to {@link #attach(RecyclerView, List)}
+     */
+    public void detach(RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(this);
+        items = Collections.emptyList();
+        synchronized (this) {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Returns prefetched recommendations, joins a prefetch in flight or loads them at once.
+     *
+     * @param item     list item
+     * @param callback callback for recommendations
+     */
+    public void load(String item, LoadCallback<List<WidgetItem>> callback) {
+        List<WidgetItem> cached = null;
+        boolean start = false;
+        synchronized (this) {
+            Entry entry = getEntry(item);
+            if (entry == null) {
+                queue.remove(item);
+                entry = new Entry(false);
+                entries.put(item, entry);
+                start = true;
+            }
+            if (entry.data != null)
+                cached = entry.data;
+            else
+                entry.waiters.add(callback);
+        }
+        if (cached != null)
+            callback.onSuccess(cached);
+        else if (start)
+            request(item);
+    }
+
+    @Override
+    public void onScrollStateChanged(@NotNull RecyclerView recyclerView, int newState) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE)
+            prefetchWindow(recyclerView);
+    }
+
+    @Override
+    public void onScrolled(@NotNull RecyclerView recyclerView, int dx, int dy) {
+        long now = SystemClock.uptimeMillis();
+        long elapsed = Math.max(1, now - lastScrollTime);
+        lastScrollTime = now;
+        if (dy != 0)
+            lastDirection = dy > 0 ? 1 : -1;
+        // Items pass by too fast during a fling, wait for it to slow down.
+        if (Math.abs(dy) / (float) elapsed <= FAST_SCROLL_PX_PER_MS)
+            prefetchWindow(recyclerView);
+    }
+
+    private void prefetchWindow(RecyclerView recyclerView) {
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager))
+            return;
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION)
+            return;
+        // Visible items first, then the ones about to become visible.
+        Set<String> window = new LinkedHashSet<>();
+        for (int i = first; i <= last && i < items.size(); i++)
+            window.add(items.get(i));
+        for (int i = 1; i <= LOOKAHEAD; i++) {
+            int position = lastDirection > 0 ? last + i : first - i;
+            if (position >= 0 && position < items.size())
+                window.add(items.get(position));
+        }
+        synchronized (this) {
+            queue.retainAll(window);
+            for (String item : window) {
+                if (getEntry(item) == null && !queue.contains(item))
+                    queue.add(item);
+            }
+        }
+        drain();
+    }
+
+    private synchronized Entry getEntry(String item) {
+        Entry entry = entries.get(item);
+        if (entry != null && entry.data != null && SystemClock.elapsedRealtime() - entry.loadedAt > TTL_MILLIS) {
+            entries.remove(item);
+            return null;
+        }
+        return entry;
+    }
+
+    private void drain() {
+        List<String> started = new ArrayList<>();
+        synchronized (this) {
+            while (running < MAX_CONCURRENT && !queue.isEmpty()) {
+                String item = queue.poll();
+                entries.put(item, new Entry(true));
+                running++;
+                started.add(item);
+            }
+        }
+        for (String item : started)
+            executor.execute(() -> request(item));
+    }
+
+    private void request(String item) {
+        CxenseSdk.getInstance().loadWidgetRecommendations(WIDGET_ID, widgetContext(item), new LoadCallback<List<WidgetItem>>() {
+            @Override
+            public void onSuccess(@NotNull List<WidgetItem> data) {
+                complete(item, data, null);
+            }
+
+            @Override
+            public void onError(@NotNull Throwable throwable) {
+                complete(item, null, throwable);
+            }
+        });
+    }
+
+    private void complete(String item, List<WidgetItem> data, Throwable throwable) {
+        List<LoadCallback<List<WidgetItem>>> waiters;
+        synchronized (this) {
+            Entry entry = entries.get(item);
+            if (entry == null || entry.data != null)
+                return;
+            if (entry.prefetch)
+                running--;
+            waiters = new ArrayList<>(entry.waiters);
+            entry.waiters.clear();
+            if (data != null) {
+                entry.data = data;
+                entry.loadedAt = SystemClock.elapsedRealtime();
+            } else {
+                entries.remove(item);
+            }
+        }
+        for (LoadCallback<List<WidgetItem>> waiter : waiters) {
+            if (data != null)
+                waiter.onSuccess(data);
+            else
+                waiter.onError(throwable);
+        }
+        drain();
+    }
+
+    private static class Entry {
+        final boolean prefetch;
+        final List<LoadCallback<List<WidgetItem>>> waiters = new ArrayList<>();
+        List<WidgetItem> data;
+        long loadedAt;
+
+        Entry(boolean prefetch) {
+            this.prefetch = prefetch;
+        }
+    }
+}
@@ -2,33 +2,36 @@ package com.example.cxensesdk.kotlin
 
 import android.os.Bundle
 import androidx.appcompat.app.AppCompatActivity
+import androidx.recyclerview.widget.LinearLayoutManager
 import by.kirich1409.viewbindingdelegate.viewBinding
 import com.cxense.cxensesdk.CxenseSdk
 import com.cxense.cxensesdk.LoadCallback
 import com.cxense.cxensesdk.model.ConversionEvent
 import com.cxense.cxensesdk.model.CustomParameter
 import com.cxense.cxensesdk.model.EventStatus
-import com.cxense.cxensesdk.model.Impression
 import com.cxense.cxensesdk.model.PageViewEvent
 import com.cxense.cxensesdk.model.PerformanceEvent
 import com.cxense.cxensesdk.model.UserIdentity
-import com.cxense.cxensesdk.model.WidgetContext
 import com.cxense.cxensesdk.model.WidgetItem
 import com.example.cxensesdk.kotlin.databinding.ActivityAnimalBinding
 import com.google.android.material.snackbar.Snackbar
 import timber.log.Timber
 
 class AnimalActivity : AppCompatActivity(R.layout.activity_animal) {
-    private val binding: ActivityAnimalBinding by viewBinding(R.id.animalText)
+    private val binding: ActivityAnimalBinding by viewBinding(R.id.animalRoot)
     private lateinit var item: String
+    private var resumed = false
 
     override fun onCreate(savedInstanceState: Bundle?) {
         super.onCreate(savedInstanceState)
         item = intent.getStringExtra(ITEM_KEY) ?: ""
         binding.animalText.text = getString(R.string.item_text, item)
+        binding.recommendations.layoutManager = LinearLayoutManager(this)
     }
 
     override fun onPause() {
+        resumed = false
+        (application as App).impressionTracker.detach()
         CxenseSdk.getInstance().trackActiveTime(item)
         CxenseSdk.getInstance().setDispatchEventsCallback(null)
         super.onPause()
@@ -36,6 +39,7 @@ class AnimalActivity : AppCompatActivity(R.layout.activity_animal) {
 
     override fun onResume() {
         super.onResume()
+        resumed = true
         CxenseSdk.getInstance().setDispatchEventsCallback(
             object : CxenseSdk.DispatchEventsCallback {
                 override fun onDispatch(statuses: List<EventStatus>) {
@@ -70,25 +74,10 @@ class AnimalActivity : AppCompatActivity(R.layout.activity_animal) {
                 .renewalFrequency("1wC")
                 .build()
         )
-        CxenseSdk.getInstance().loadWidgetRecommendations(
-            "ffb1d2523b582f5f649df351d37928d2c108e715",
-            WidgetContext.Builder("https://cxense.com").build(),
-            callback = object : LoadCallback<List<WidgetItem>> {
-                override fun onSuccess(data: List<WidgetItem>) {
-                    CxenseSdk.getInstance().reportWidgetVisibilities(
-                        object : LoadCallback<Any> {
-                            override fun onSuccess(data: Any) {
-                                Timber.d("Success")
-                            }
-
-                            override fun onError(throwable: Throwable) {
-                                Timber.e(throwable)
-                            }
-                        },
-                        Impression(data[0].clickUrl ?: "", 1),
-                        Impression(data[1].clickUrl ?: "", 2)
-                    )
-                }
+        (application as App).prefetcher.load(
+            item,
+            object : LoadCallback<List<WidgetItem>> {
+                override fun onSuccess(data: List<WidgetItem>) = showRecommendations(data)
 
                 override fun onError(throwable: Throwable) {
                     Timber.e(throwable)
@@ -97,6 +86,14 @@ class AnimalActivity : AppCompatActivity(R.layout.activity_animal) {
         )
     }
 
+    private fun showRecommendations(data: List<WidgetItem>) {
+        // The response may arrive after the screen was paused.
+        if (!resumed)
+            return
+        binding.recommendations.adapter = MainAdapter(data.map { it.title ?: "" }) {}
+        (application as App).impressionTracker.attach(binding.recommendations, data.map { it.clickUrl })
+    }
+
     companion object {
         const val ITEM_KEY = "item"
     }
@@ -4,6 +4,9 @@ import android.app.Application
 import timber.log.Timber
 
 class App : Application() {
+    val prefetcher = RecommendationsPrefetcher()
+    val impressionTracker = ImpressionTracker()
+
     override fun onCreate() {
         super.onCreate()
         Timber.plant(LoggingTree())
@@ -0,0 +1,200 @@
+package com.example.cxensesdk.kotlin
+
+import android.graphics.Rect
+import android.os.SystemClock
+import android.view.View
+import androidx.recyclerview.widget.RecyclerView
+import com.cxense.cxensesdk.CxenseSdk
+import com.cxense.cxensesdk.LoadCallback
+import com.cxense.cxensesdk.model.Impression
+import timber.log.Timber
+
+/**
+ * Reports widget impressions for items that were really seen.
+ *
+ * An item counts as seen when at least half of its view stays on screen for a second. Each click-url is
+ * reported once per session, the session set keeps 64-bit hashes of the urls only. Impressions are batched and
+ * sent with a single [CxenseSdk.reportWidgetVisibilities] call once no new impression arrived for two
+ * seconds, when the batch is full, or when the list is detached. Must be used from the main thread.
+ */
+class ImpressionTracker {
+    private val seen = LongHashSet()
+    private val visibleSince = mutableMapOf<String, Long>()
+    private val pending = mutableListOf<Impression>()
+    private val rect = Rect()
+    private val check = Runnable { check() }
+    private val flush = Runnable { flush() }
+    private var recyclerView: RecyclerView? = null
+    private var clickUrls: List<String?> = emptyList()
+
+    /**
+     * Starts watching the list.
+     *
+     * @param recyclerView list of widget items
+     * @param clickUrls    click-urls of the items by adapter position
+     */
+    fun attach(recyclerView: RecyclerView, clickUrls: List<String?>) {
+        detach()
+        this.recyclerView = recyclerView
+        this.clickUrls = clickUrls
+        recyclerView.postDelayed(check, CHECK_INTERVAL_MILLIS)
+    }
+
+    /**
+     * Stops watching the list and sends pending impressions.
+     */
+    fun detach() {
+        val view = recyclerView ?: return
+        view.removeCallbacks(check)
+        view.removeCallbacks(flush)
+        flush()
+        recyclerView = null
+        clickUrls = emptyList()
+        visibleSince.clear()
+    }
+
+    /**
+     * Starts a new session, items seen before are reported again.
+     */
+    fun resetSession() {
+        seen.clear()
+    }
+
+    private fun check() {
+        val view = recyclerView ?: return
+        val now = SystemClock.uptimeMillis()
+        val stillVisible = mutableMapOf<String, Long>()
+        if (view.isShown) {
+            for (i in 0 until view.childCount) {
+                val child = view.getChildAt(i)
+                val clickUrl = clickUrls.getOrNull(view.getChildAdapterPosition(child)) ?: continue
+                if (visibleFraction(child) < MIN_VISIBLE_FRACTION || seen.contains(hash(clickUrl)))
+                    continue
+                val since = visibleSince[clickUrl] ?: now
+                if (now - since >= DWELL_MILLIS)
+                    onSeen(view, clickUrl, now - since)
+                else
+                    stillVisible[clickUrl] = since
+            }
+        }
+        // Items that left the screen start their dwell time again.
+        visibleSince.clear()
+        visibleSince.putAll(stillVisible)
+        view.postDelayed(check, CHECK_INTERVAL_MILLIS)
+    }
+
+    private fun visibleFraction(view: View): Float {
+        val area = view.width * view.height
+        if (area == 0 || !view.getGlobalVisibleRect(rect))
+            return 0f
+        return rect.width() * rect.height() / area.toFloat()
+    }
+
+    private fun onSeen(view: RecyclerView, clickUrl: String, visibleMillis: Long) {
+        seen.add(hash(clickUrl))
+        pending += Impression(clickUrl, maxOf(1, visibleMillis / 1000).toInt())
+        view.removeCallbacks(flush)
+        if (pending.size >= MAX_BATCH_SIZE)
+            flush()
+        else
+            view.postDelayed(flush, DEBOUNCE_MILLIS)
+    }
+
+    private fun flush() {
+        if (pending.isEmpty())
+            return
+        val impressions = pending.toTypedArray()
+        pending.clear()
+        CxenseSdk.getInstance().reportWidgetVisibilities(
+            object : LoadCallback<Any> {
+                override fun onSuccess(data: Any) {
+                    Timber.d("Reported %d impressions", impressions.size)
+                }
+
+                override fun onError(throwable: Throwable) {
+                    Timber.e(throwable)
+                }
+            },
+            *impressions
+        )
+    }
+
+    /**
+     * Open addressing set of hashes, much smaller than a set of url strings.
+     */
+    private class LongHashSet {
+        private var table = LongArray(INITIAL_CAPACITY)
+        private var size = 0
+        private var hasEmpty = false
+
+        fun contains(value: Long): Boolean {
+            if (value == EMPTY)
+                return hasEmpty
+            var i = index(value, table.size)
+            while (true) {
+                when (table[i]) {
+                    EMPTY -> return false
+                    value -> return true
+                }
+                i = (i + 1) and (table.size - 1)
+            }
+        }
+
+        fun add(value: Long) {
+            if (value == EMPTY) {
+                hasEmpty = true
+                return
+            }
+            if ((size + 1) * 4 > table.size * 3)
+                resize()
+            if (insert(table, value))
+                size++
+        }
+
+        fun clear() {
+            table = LongArray(INITIAL_CAPACITY)
+            size = 0
+            hasEmpty = false
+        }
+
+        private fun resize() {
+            val resized = LongArray(table.size * 2)
+            table.filter { it != EMPTY }.forEach { insert(resized, it) }
+            table = resized
+        }
+
+        private fun insert(table: LongArray, value: Long): Boolean {
+            var i = index(value, table.size)
+            while (true) {
+                when (table[i]) {
+                    value -> return false
+                    EMPTY -> {
+                        table[i] = value
+                        return true
+                    }
+                }
+                i = (i + 1) and (table.size - 1)
+            }
+        }
+
+        private fun index(value: Long, length: Int): Int =
+            ((value * -0x61c8864680b583ebL) ushr 32).toInt() and (length - 1)
+
+        companion object {
+            private const val EMPTY = 0L
+            private const val INITIAL_CAPACITY = 64
+        }
+    }
+
+    companion object {
+        private const val MIN_VISIBLE_FRACTION = 0.5f
+        private const val DWELL_MILLIS = 1000L
+        private const val CHECK_INTERVAL_MILLIS = 200L
+        private const val DEBOUNCE_MILLIS = 2000L
+        private const val MAX_BATCH_SIZE = 20
+
+        // FNV-1a
+        private fun hash(clickUrl: String): Long =
+            clickUrl.fold(-0x340d631b7bdddcdbL) { hash, c -> (hash xor c.toLong()) * 0x100000001b3L }
+    }
+}
@@ -49,6 +49,7 @@ class MainActivity : AppCompatActivity(R.layout.activity_main) {
             layoutManager = LinearLayoutManager(this@MainActivity)
             adapter = MainAdapter(animals, this@MainActivity::onItemClick)
         }
+        (application as App).prefetcher.attach(binding.recyclerview, animals)
 
         CxenseSdk.getInstance().configuration.apply {
             dispatchPeriod(MIN_DISPATCH_PERIOD, TimeUnit.MILLISECONDS)
@@ -62,6 +63,11 @@ class MainActivity : AppCompatActivity(R.layout.activity_main) {
         }
     }
 
+    override fun onDestroy() {
+        (application as App).prefetcher.detach(binding.recyclerview)
+        super.onDestroy()
+    }
+
     override fun onPause() {
         CxenseSdk.getInstance().setDispatchEventsCallback(null)
         super.onPause()
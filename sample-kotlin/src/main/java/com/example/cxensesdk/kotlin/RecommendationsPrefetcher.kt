@@ -0,0 +1,201 @@
+package com.example.cxensesdk.kotlin
+
+import android.os.Process
+import android.os.SystemClock
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import com.cxense.cxensesdk.CxenseSdk
+import com.cxense.cxensesdk.LoadCallback
+import com.cxense.cxensesdk.model.WidgetContext
+import com.cxense.cxensesdk.model.WidgetItem
+import java.util.ArrayDeque
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import kotlin.math.abs
+
+/**
+ * Warms widget recommendations for list items while the user scrolls, so that [AnimalActivity] can show
+ * them without waiting for the network.
+ *
+ * Visible items and a few items ahead in the scroll direction are queued. Queued items are requested on a
+ * background-priority thread, at most [MAX_CONCURRENT] at a time. Nothing new starts during a fling,
+ * and queued items that left the window are dropped. Requests already in flight can't be cancelled through the
+ * SDK, their results are kept.
+ */
+class RecommendationsPrefetcher : RecyclerView.OnScrollListener() {
+    private val executor = Executors.newSingleThreadExecutor { runnable ->
+        Thread({
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND)
+            runnable.run()
+        }, "recommendations-prefetch").apply { isDaemon = true }
+    }
+    // guarded by this
+    private val entries = object : LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Entry>): Boolean =
+            size > MAX_ENTRIES && eldest.value.data != null
+    }
+    // guarded by this
+    private val queue = ArrayDeque<String>()
+    // guarded by this
+    private var running = 0
+    // main thread only
+    private var items: List<String> = emptyList()
+    private var lastScrollTime = 0L
+    private var lastDirection = 1
+
+    /**
+     * Starts prefetching for the list.
+     *
+     * @param recyclerView list with [LinearLayoutManager]
+     * @param items        items shown by the list
+     */
+    fun attach(recyclerView: RecyclerView, items: List<String>) {
+        this.items = items
+        recyclerView.addOnScrollListener(this)
+    }
+
+    /**
+     * Stops prefetching for the list and drops queued items.
+     *
+     * @param recyclerView list passed to [attach]
+     */
+    fun detach(recyclerView: RecyclerView) {
+        recyclerView.removeOnScrollListener(this)
+        items = emptyList()
+        synchronized(this) { queue.clear() }
+    }
+
+    /**
+     * Returns prefetched recommendations, joins a prefetch in flight or loads them at once.
+     *
+     * @param item     list item
+     * @param callback callback for recommendations
+     */
+    fun load(item: String, callback: LoadCallback<List<WidgetItem>>) {
+        var start = false
+        val cached = synchronized(this) {
+            val entry = getEntry(item) ?: Entry(false).also {
+                queue.remove(item)
+                entries[item] = it
+                start = true
+            }
+            entry.data.also { if (it == null) entry.waiters += callback }
+        }
+        when {
+            cached != null -> callback.onSuccess(cached)
+            start -> request(item)
+        }
+    }
+
+    override fun onScrollStateChanged(recyclerView: RecyclerView, newState: Int) {
+        if (newState == RecyclerView.SCROLL_STATE_IDLE)
+            prefetchWindow(recyclerView)
+    }
+
+    override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+        val now = SystemClock.uptimeMillis()
+        val elapsed = maxOf(1, now - lastScrollTime)
+        lastScrollTime = now
+        if (dy != 0)
+            lastDirection = if (dy > 0) 1 else -1
+        // Items pass by too fast during a fling, wait for it to slow down.
+        if (abs(dy) / elapsed.toFloat() <= FAST_SCROLL_PX_PER_MS)
+            prefetchWindow(recyclerView)
+    }
+
+    private fun prefetchWindow(recyclerView: RecyclerView) {
+        val layoutManager = recyclerView.layoutManager as? LinearLayoutManager ?: return
+        val first = layoutManager.findFirstVisibleItemPosition()
+        val last = layoutManager.findLastVisibleItemPosition()
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION)
+            return
+        // Visible items first, then the ones about to become visible.
+        val ahead = (1..LOOKAHEAD).map { if (lastDirection > 0) last + it else first - it }
+        val window = ((first..last) + ahead).mapNotNullTo(LinkedHashSet()) { items.getOrNull(it) }
+        synchronized(this) {
+            queue.retainAll(window)
+            window.filterTo(queue) { getEntry(it) == null && it !in queue }
+        }
+        drain()
+    }
+
+    @Synchronized
+    private fun getEntry(item: String): Entry? {
+        val entry = entries[item] ?: return null
+        if (entry.data != null && SystemClock.elapsedRealtime() - entry.loadedAt > TTL_MILLIS) {
+            entries.remove(item)
+            return null
+        }
+        return entry
+    }
+
+    private fun drain() {
+        val started = mutableListOf<String>()
+        synchronized(this) {
+            while (running < MAX_CONCURRENT && queue.isNotEmpty()) {
+                val item = queue.poll()
+                entries[item] = Entry(true)
+                running++
+                started += item
+            }
+        }
+        started.forEach { executor.execute { request(it) } }
+    }
+
+    private fun request(item: String) {
+        CxenseSdk.getInstance().loadWidgetRecommendations(
+            WIDGET_ID,
+            widgetContext(item),
+            callback = object : LoadCallback<List<WidgetItem>> {
+                override fun onSuccess(data: List<WidgetItem>) = complete(item, data, null)
+
+                override fun onError(throwable: Throwable) = complete(item, null, throwable)
+            }
+        )
+    }
+
+    private fun complete(item: String, data: List<WidgetItem>?, throwable: Throwable?) {
+        val waiters = synchronized(this) {
+            val entry = entries[item]
+            if (entry == null || entry.data != null)
+                return
+            if (entry.prefetch)
+                running--
+            if (data != null) {
+                entry.data = data
+                entry.loadedAt = SystemClock.elapsedRealtime()
+            } else {
+                entries.remove(item)
+            }
+            entry.waiters.toList().also { entry.waiters.clear() }
+        }
+        waiters.forEach {
+            if (data != null) it.onSuccess(data) else it.onError(throwable!!)
+        }
+        drain()
+    }
+
+    private class Entry(val prefetch: Boolean) {
+        val waiters = mutableListOf<LoadCallback<List<WidgetItem>>>()
+        var data: List<WidgetItem>? = null
+        var loadedAt = 0L
+    }
+
+    companion object {
+        const val WIDGET_ID = "ffb1d2523b582f5f649df351d37928d2c108e715"
+        private const val LOOKAHEAD = 5
+        private const val MAX_CONCURRENT = 2
+        private const val MAX_ENTRIES = 64
+        private const val FAST_SCROLL_PX_PER_MS = 4f
+        private val TTL_MILLIS = TimeUnit.MINUTES.toMillis(5)
+
+        /**
+         * @param item list item
+         * @return widget context of the recommendations for the item
+         */
+        fun widgetContext(item: String): WidgetContext =
+            WidgetContext.Builder("https://cxense.com")
+                .keywords(listOf(item))
+                .build()
+    }
+}
@@ -1,4 +1,4 @@
 plugins {
     id("com.gradle.enterprise") version "3.0"
 }
-include(":sample-kotlin", ":sample-java", ":rxjava2-adapter", ":coroutine-adapter")
+include(":sample-kotlin", ":sample-java", ":rxjava2-adapter", ":coroutine-adapter", ":benchmarks", ":test-fixtures")
@@ -0,0 +1,44 @@
+plugins {
+    java
+    application
+}
+
+java {
+    sourceCompatibility = Config.compileSourceVersion
+    targetCompatibility = Config.compileTargetVersion
+}
+
+// The dispatch simulator replays traces through the adapter policy, which is plain Java.
+sourceSets {
+    main {
+        java {
+            srcDir("../rxjava2-adapter/src/main/java")
+            include("com/cxense/testfixtures/**", "**/DispatchPolicy.java")
+        }
+    }
+}
+
+dependencies {
+    implementation(Libs.annotation)
+}
+
+application {
+    mainClassName = "com.cxense.testfixtures.LoadDriver"
+}
+
+tasks {
+    // Replays the committed traces and fails the build if the adaptive policy wakes the radio more often than
+    // the fixed period or misses latency targets.
+    val simulateDispatch by registering(JavaExec::class) {
+        group = "verification"
+        description = "Checks the adaptive dispatch policy against the traces in traces/."
+        classpath = sourceSets["main"].runtimeClasspath
+        main = "com.cxense.testfixtures.DispatchSimulator"
+        val traces = fileTree("traces") { include("*.csv") }
+        inputs.files(traces)
+        args(listOf("--check") + traces.files.sorted().flatMap { listOf("--trace", it.path) })
+    }
+    named("check") {
+        dependsOn(simulateDispatch)
+    }
+}
@@ -0,0 +1,162 @@
+package com.cxense.testfixtures;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local HTTP server that answers the Cxense endpoints listed in {@link Endpoint} with canned data.
+ * <p>
+ * Every endpoint has a {@link FaultProfile}, so latency, error rate and throttling can be set per endpoint and
+ * changed while the server runs. Request bodies are read and discarded.
+ */
+public final class CxenseStubServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<Endpoint, FaultProfile> profiles = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, AtomicLong> requests = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, AtomicLong> failures = new EnumMap<>(Endpoint.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param port port to listen on, or 0 for any free port
+     * @throws IOException if the server can't bind
+     */
+    public CxenseStubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.setExecutor(executor);
+        for (final Endpoint endpoint : Endpoint.values()) {
+            profiles.put(endpoint, FaultProfile.HEALTHY);
+            requests.put(endpoint, new AtomicLong());
+            failures.put(endpoint, new AtomicLong());
+            server.createContext(endpoint.path, exchange -> handle(endpoint, exchange));
+        }
+    }
+
+    /**
+     * Starts the server.
+     *
+     * @return this server
+     */
+    public CxenseStubServer start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * @return base url of the server, like {@code http://127.0.0.1:8080}
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * @param profile faults to inject for all endpoints
+     */
+    public void setFaultProfile(FaultProfile profile) {
+        for (Endpoint endpoint : Endpoint.values()) {
+            setFaultProfile(endpoint, profile);
+        }
+    }
+
+    /**
+     * @param endpoint the endpoint
+     * @param profile  faults to inject for this endpoint
+     */
+    public void setFaultProfile(Endpoint endpoint, FaultProfile profile) {
+        synchronized (profiles) {
+            profiles.put(endpoint, profile);
+        }
+    }
+
+    /**
+     * @return number of requests being handled now
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    /**
+     * @param endpoint the endpoint
+     * @return number of requests received by the endpoint
+     */
+    public long getRequestCount(Endpoint endpoint) {
+        return requests.get(endpoint).get();
+    }
+
+    /**
+     * @param endpoint the endpoint
+     * @return number of requests answered with an injected error or throttled
+     */
+    public long getFailureCount(Endpoint endpoint) {
+        return failures.get(endpoint).get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(Endpoint endpoint, HttpExchange exchange) throws IOException {
+        inFlight.incrementAndGet();
+        try {
+            requests.get(endpoint).incrementAndGet();
+            drain(exchange.getRequestBody());
+            FaultProfile profile;
+            synchronized (profiles) {
+                profile = profiles.get(endpoint);
+            }
+            Random random = ThreadLocalRandom.current();
+            long latency = profile.sampleLatency(random);
+            if (latency > 0)
+                TimeUnit.MILLISECONDS.sleep(latency);
+            int status = profile.sampleFailure(random);
+            if (status != 0) {
+                failures.get(endpoint).incrementAndGet();
+                respond(exchange, status, "{\"error\":\"Injected failure\"}");
+            } else if (!endpoint.method.equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"error\":\"Method not allowed\"}");
+            } else {
+                respond(exchange, 200, endpoint.response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static void drain(InputStream body) throws IOException {
+        byte[] buffer = new byte[4096];
+        while (body.read(buffer) != -1) {
+            // discard
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
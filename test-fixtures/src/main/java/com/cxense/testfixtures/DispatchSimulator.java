@@ -0,0 +1,312 @@
+package com.cxense.testfixtures;
+
+import com.cxense.rxjava2adapter.DispatchPolicy;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays an event trace through the SDK dispatch loop twice, once with a fixed dispatch period and once with
+ * {@link DispatchPolicy} as applied by the adaptive dispatch controller, then prints radio wake-ups, delivery
+ * latency percentiles and latency target misses of both. The adaptive run is replayed a second time with the
+ * events hidden from the policy, as for events pushed to the SDK directly or queued by the SDK itself, which the
+ * controller doesn't see until the next dispatch.
+ * <p>
+ * A trace is a text file with one {@code <millis>,<kind>} line per change, where kind is {@code event},
+ * {@code foreground}, {@code background}, {@code unmetered}, {@code metered}, {@code charging} or
+ * {@code discharging}; lines starting with {@code #} are skipped. A trace starts in background on a metered
+ * network without charger. {@code --trace} can be repeated to replay several traces in one run. Without it a
+ * synthetic day of app usage is generated from {@code --seed}.
+ * <p>
+ * Every dispatch tick and flush with waiting events is a radio wake-up that sends the whole queue; changing the
+ * period restarts the dispatch timer. The policy is evaluated every second. An event misses its target when it is
+ * delivered later than the latency target of the state it was pushed in. With {@code --check} the exit status is 1
+ * if, for any trace, the adaptive run wakes the radio more often than the fixed one, or either adaptive run misses
+ * more than {@code --max-miss-rate} of events.
+ * <p>
+ * Usage: {@code DispatchSimulator [--trace file]... [--seed 1] [--fixed-period 10000] [--min-period 10000]
+ * [--max-period 900000] [--foreground-latency 30000] [--background-latency 300000] [--batch-size 50]
+ * [--max-miss-rate 0.01] [--check]}.
+ */
+public final class DispatchSimulator {
+    private static final long STEP_MILLIS = 1000;
+    private static final List<String> KINDS = Arrays.asList("event", "foreground", "background", "unmetered", "metered", "charging", "discharging");
+
+    private long fixedPeriodMillis = 10_000;
+    private long minPeriodMillis = 10_000;
+    private long maxPeriodMillis = TimeUnit.MINUTES.toMillis(15);
+    private long foregroundLatencyMillis = TimeUnit.SECONDS.toMillis(30);
+    private long backgroundLatencyMillis = TimeUnit.MINUTES.toMillis(5);
+    private int batchSize = 50;
+
+    public static void main(String[] args) throws IOException {
+        DispatchSimulator simulator = new DispatchSimulator();
+        List<String> tracePaths = new ArrayList<>();
+        long seed = 1;
+        double maxMissRate = 0.01;
+        boolean check = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--check")) {
+                check = true;
+                continue;
+            }
+            if (i + 1 >= args.length)
+                throw new IllegalArgumentException("Missing value of " + args[i]);
+            String value = args[++i];
+            switch (args[i - 1]) {
+                case "--trace":
+                    tracePaths.add(value);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--fixed-period":
+                    simulator.fixedPeriodMillis = Long.parseLong(value);
+                    break;
+                case "--min-period":
+                    simulator.minPeriodMillis = Long.parseLong(value);
+                    break;
+                case "--max-period":
+                    simulator.maxPeriodMillis = Long.parseLong(value);
+                    break;
+                case "--foreground-latency":
+                    simulator.foregroundLatencyMillis = Long.parseLong(value);
+                    break;
+                case "--background-latency":
+                    simulator.backgroundLatencyMillis = Long.parseLong(value);
+                    break;
+                case "--batch-size":
+                    simulator.batchSize = Integer.parseInt(value);
+                    break;
+                case "--max-miss-rate":
+                    maxMissRate = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i - 1]);
+            }
+        }
+        boolean failed = false;
+        for (String tracePath : tracePaths.isEmpty() ? Collections.<String>singletonList(null) : tracePaths) {
+            List<Change> trace = tracePath != null ? read(tracePath) : synthetic(new Random(seed));
+            Run fixed = simulator.replay(trace, false, true);
+            Run adaptive = simulator.replay(trace, true, true);
+            Run unobserved = simulator.replay(trace, true, false);
+            simulator.print(System.out, tracePath != null ? tracePath : "synthetic day, seed " + seed, fixed, adaptive, unobserved);
+            if (check && (adaptive.wakeUps > fixed.wakeUps || adaptive.missRate() > maxMissRate
+                    || unobserved.missRate() > maxMissRate)) {
+                System.out.println("FAILED");
+                failed = true;
+            }
+        }
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replays the trace.
+     *
+     * @param trace    changes ordered by time
+     * @param adaptive true to follow the policy, false to dispatch at the fixed period
+     * @param observed true if the policy sees the waiting events, false if it always sees an empty queue
+     * @return counters of the run
+     */
+    Run replay(List<Change> trace, boolean adaptive, boolean observed) {
+        DispatchPolicy policy = new DispatchPolicy.Builder()
+                .period(minPeriodMillis, maxPeriodMillis, TimeUnit.MILLISECONDS)
+                .latency(foregroundLatencyMillis, backgroundLatencyMillis, TimeUnit.MILLISECONDS)
+                .batchSize(batchSize)
+                .build();
+        Run run = new Run();
+        Deque<long[]> queue = new ArrayDeque<>();
+        boolean foreground = false;
+        boolean unmetered = false;
+        boolean charging = false;
+        long period = fixedPeriodMillis;
+        long lastTick = 0;
+        long lastFlush = Long.MIN_VALUE / 2;
+        long end = (trace.isEmpty() ? 0 : trace.get(trace.size() - 1).millis) + 2 * Math.max(maxPeriodMillis, fixedPeriodMillis);
+        int next = 0;
+        for (long now = 0; now <= end; now += STEP_MILLIS) {
+            boolean leftForeground = false;
+            for (; next < trace.size() && trace.get(next).millis <= now; next++) {
+                Change change = trace.get(next);
+                switch (change.kind) {
+                    case "event":
+                        queue.add(new long[]{change.millis, foreground ? foregroundLatencyMillis : backgroundLatencyMillis});
+                        break;
+                    case "foreground":
+                        foreground = true;
+                        break;
+                    case "background":
+                        leftForeground |= foreground;
+                        foreground = false;
+                        break;
+                    default:
+                        unmetered = change.kind.equals("unmetered") || (unmetered && !change.kind.equals("metered"));
+                        charging = change.kind.equals("charging") || (charging && !change.kind.equals("discharging"));
+                        break;
+                }
+            }
+            if (adaptive) {
+                int depth = observed ? queue.size() : 0;
+                long age = depth == 0 ? 0 : now - queue.peek()[0];
+                DispatchPolicy.State state = new DispatchPolicy.State(depth, age, period, period - (now - lastTick), unmetered, charging, foreground);
+                DispatchPolicy.Decision decision = policy.decide(state);
+                long newPeriod = Math.max(decision.getPeriodMillis(), minPeriodMillis);
+                if (newPeriod != period) {
+                    period = newPeriod;
+                    lastTick = now;
+                }
+                // The controller flushes at most once per minimum period, and when the app leaves foreground.
+                if ((decision.isFlush() && now - lastFlush >= minPeriodMillis) || leftForeground) {
+                    lastFlush = now;
+                    deliver(queue, now, run);
+                }
+            }
+            if (now - lastTick >= period) {
+                run.ticks++;
+                lastTick = now;
+                deliver(queue, now, run);
+            }
+        }
+        return run;
+    }
+
+    private static void deliver(Deque<long[]> queue, long now, Run run) {
+        if (queue.isEmpty())
+            return;
+        run.wakeUps++;
+        while (!queue.isEmpty()) {
+            long[] event = queue.poll();
+            long latency = now - event[0];
+            run.add(latency);
+            if (latency > event[1])
+                run.misses++;
+        }
+    }
+
+    private void print(PrintStream out, String source, Run fixed, Run adaptive, Run unobserved) {
+        out.printf(Locale.US, "Trace: %s%nFixed period %d ms; adaptive %d..%d ms, targets %d/%d ms, batch %d%n%n",
+                source, fixedPeriodMillis, minPeriodMillis, maxPeriodMillis, foregroundLatencyMillis,
+                backgroundLatencyMillis, batchSize);
+        out.printf(Locale.US, "%-22s %12s %12s %12s%n", "", "fixed", "adaptive", "unobserved");
+        out.printf(Locale.US, "%-22s %12d %12d %12d%n", "events", fixed.count, adaptive.count, unobserved.count);
+        out.printf(Locale.US, "%-22s %12d %12d %12d%n", "radio wake-ups", fixed.wakeUps, adaptive.wakeUps, unobserved.wakeUps);
+        out.printf(Locale.US, "%-22s %12.2f %12.2f %12.2f%n", "events per wake-up", fixed.eventsPerWakeUp(), adaptive.eventsPerWakeUp(), unobserved.eventsPerWakeUp());
+        out.printf(Locale.US, "%-22s %12d %12d %12d%n", "timer ticks", fixed.ticks, adaptive.ticks, unobserved.ticks);
+        out.printf(Locale.US, "%-22s %12.1f %12.1f %12.1f%n", "p50 latency s", fixed.percentile(0.5) / 1e3, adaptive.percentile(0.5) / 1e3, unobserved.percentile(0.5) / 1e3);
+        out.printf(Locale.US, "%-22s %12.1f %12.1f %12.1f%n", "p95 latency s", fixed.percentile(0.95) / 1e3, adaptive.percentile(0.95) / 1e3, unobserved.percentile(0.95) / 1e3);
+        out.printf(Locale.US, "%-22s %12.1f %12.1f %12.1f%n", "max latency s", fixed.percentile(1) / 1e3, adaptive.percentile(1) / 1e3, unobserved.percentile(1) / 1e3);
+        out.printf(Locale.US, "%-22s %12d %12d %12d%n", "target misses", fixed.misses, adaptive.misses, unobserved.misses);
+    }
+
+    private static List<Change> read(String path) throws IOException {
+        List<Change> trace = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] parts = line.split(",");
+                if (parts.length != 2)
+                    throw new IllegalArgumentException("Bad trace line: " + line);
+                String kind = parts[1].trim();
+                if (!KINDS.contains(kind))
+                    throw new IllegalArgumentException("Unknown change: " + kind);
+                trace.add(new Change(Long.parseLong(parts[0].trim()), kind));
+            }
+        }
+        for (int i = 1; i < trace.size(); i++) {
+            if (trace.get(i).millis < trace.get(i - 1).millis)
+                throw new IllegalArgumentException("Trace is not ordered by time at line " + (i + 1));
+        }
+        return trace;
+    }
+
+    /**
+     * Generates a day of usage: charging on Wi-Fi overnight, Wi-Fi in the evening, short sessions with a page view
+     * every few seconds while awake, and an occasional background event.
+     */
+    private static List<Change> synthetic(Random random) {
+        long hour = TimeUnit.HOURS.toMillis(1);
+        List<Change> trace = new ArrayList<>();
+        trace.add(new Change(0, "unmetered"));
+        trace.add(new Change(0, "charging"));
+        trace.add(new Change(7 * hour, "discharging"));
+        trace.add(new Change(8 * hour, "metered"));
+        trace.add(new Change(18 * hour, "unmetered"));
+        trace.add(new Change(22 * hour, "charging"));
+        long now = 7 * hour;
+        while (now < 23 * hour) {
+            now += TimeUnit.MINUTES.toMillis(20 + random.nextInt(100));
+            long sessionEnd = now + TimeUnit.MINUTES.toMillis(2 + random.nextInt(9));
+            trace.add(new Change(now, "foreground"));
+            for (long at = now; at < sessionEnd; at += TimeUnit.SECONDS.toMillis(3 + random.nextInt(40))) {
+                trace.add(new Change(at, "event"));
+            }
+            trace.add(new Change(sessionEnd, "background"));
+            if (random.nextInt(3) == 0)
+                trace.add(new Change(sessionEnd + TimeUnit.MINUTES.toMillis(1 + random.nextInt(15)), "event"));
+            now = sessionEnd;
+        }
+        for (int i = 0; i < 6; i++) {
+            trace.add(new Change((long) (random.nextDouble() * 24 * hour), "event"));
+        }
+        // Stable sort keeps state changes before events at the same time.
+        trace.sort((a, b) -> Long.compare(a.millis, b.millis));
+        return trace;
+    }
+
+    static final class Change {
+        final long millis;
+        final String kind;
+
+        Change(long millis, String kind) {
+            this.millis = millis;
+            this.kind = kind;
+        }
+    }
+
+    static final class Run {
+        private long[] latencies = new long[256];
+        int count;
+        int wakeUps;
+        int ticks;
+        int misses;
+
+        void add(long latency) {
+            if (count == latencies.length)
+                latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = latency;
+        }
+
+        double eventsPerWakeUp() {
+            return wakeUps == 0 ? 0 : (double) count / wakeUps;
+        }
+
+        double missRate() {
+            return count == 0 ? 0 : (double) misses / count;
+        }
+
+        long percentile(double p) {
+            if (count == 0)
+                return 0;
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int) Math.ceil(p * count) - 1)];
+        }
+    }
+}
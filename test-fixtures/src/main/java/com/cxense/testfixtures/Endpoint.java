@@ -0,0 +1,33 @@
+package com.cxense.testfixtures;
+
+/**
+ * Cxense endpoints served by {@link CxenseStubServer}, with canned responses.
+ */
+public enum Endpoint {
+    DMP_PUSH("POST", "/dmp/push", "{}"),
+    PAGE_VIEW("GET", "/Repo/rep.gif", ""),
+    WIDGET_DATA("POST", "/public/widget/data",
+            "{\"items\":[{\"title\":\"Item 1\",\"url\":\"https://example.com/1\",\"click_url\":\"https://example.com/click/1\"},"
+                    + "{\"title\":\"Item 2\",\"url\":\"https://example.com/2\",\"click_url\":\"https://example.com/click/2\"},"
+                    + "{\"title\":\"Item 3\",\"url\":\"https://example.com/3\",\"click_url\":\"https://example.com/click/3\"}]}"),
+    WIDGET_VISIBILITY("POST", "/public/widget/visibility", "{}"),
+    WIDGET_CLICK("GET", "/public/widget/click", ""),
+    USER_SEGMENTS("POST", "/profile/user/segment", "{\"segments\":[{\"id\":\"segment1\"},{\"id\":\"segment2\"}]}"),
+    USER("POST", "/profile/user", "{\"id\":\"some_user_id\",\"identities\":[{\"type\":\"cxd\",\"id\":\"some_user_id\"}],\"profile\":[]}"),
+    EXTERNAL_READ("POST", "/profile/user/external/read",
+            "{\"data\":[{\"type\":\"cxd\",\"id\":\"some_user_id\",\"profile\":[{\"group\":\"gender\",\"item\":\"male\"}]}]}"),
+    EXTERNAL_UPDATE("POST", "/profile/user/external/update", "{}"),
+    EXTERNAL_DELETE("POST", "/profile/user/external/delete", "{}"),
+    EXTERNAL_LINK("POST", "/profile/user/external/link", "{\"type\":\"cxd\",\"id\":\"some_user_id\"}"),
+    EXTERNAL_LINK_UPDATE("POST", "/profile/user/external/link/update", "{\"type\":\"cxd\",\"id\":\"some_user_id\"}");
+
+    public final String method;
+    public final String path;
+    final String response;
+
+    Endpoint(String method, String path, String response) {
+        this.method = method;
+        this.path = path;
+        this.response = response;
+    }
+}
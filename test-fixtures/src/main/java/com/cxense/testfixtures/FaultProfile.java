@@ -0,0 +1,117 @@
+package com.cxense.testfixtures;
+
+import java.util.Random;
+
+/**
+ * Latency, error rate and throttling injected by {@link CxenseStubServer} for an endpoint.
+ */
+public final class FaultProfile {
+    /**
+     * Profile that answers at once and never fails.
+     */
+    public static final FaultProfile HEALTHY = new Builder().build();
+
+    private final LatencyDistribution latency;
+    private final double errorRate;
+    private final int errorStatus;
+    private final double requestsPerSecond;
+    private final Object lock = new Object();
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    private FaultProfile(Builder builder) {
+        latency = builder.latency;
+        errorRate = builder.errorRate;
+        errorStatus = builder.errorStatus;
+        requestsPerSecond = builder.requestsPerSecond;
+        tokens = requestsPerSecond;
+    }
+
+    /**
+     * @param random source of randomness
+     * @return latency to inject in milliseconds
+     */
+    public long sampleLatency(Random random) {
+        return latency.sample(random);
+    }
+
+    /**
+     * @param random source of randomness
+     * @return HTTP status to answer with instead of the normal response, or 0 if the request passes
+     */
+    public int sampleFailure(Random random) {
+        if (!acquire())
+            return 429;
+        return random.nextDouble() < errorRate ? errorStatus : 0;
+    }
+
+    private boolean acquire() {
+        if (requestsPerSecond <= 0)
+            return true;
+        synchronized (lock) {
+            long now = System.nanoTime();
+            tokens = Math.min(requestsPerSecond, tokens + (now - refilledAt) * requestsPerSecond / 1e9);
+            refilledAt = now;
+            if (tokens < 1)
+                return false;
+            tokens -= 1;
+            return true;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "FaultProfile{latency=" + latency + ", errorRate=" + errorRate + ", errorStatus=" + errorStatus
+                + ", requestsPerSecond=" + requestsPerSecond + '}';
+    }
+
+    /**
+     * Builder for {@link FaultProfile}
+     */
+    public static class Builder {
+        private LatencyDistribution latency = LatencyDistribution.NONE;
+        private double errorRate;
+        private int errorStatus = 503;
+        private double requestsPerSecond;
+
+        /**
+         * @param latency distribution of injected latency
+         * @return this builder
+         */
+        public Builder latency(LatencyDistribution latency) {
+            this.latency = latency;
+            return this;
+        }
+
+        /**
+         * @param errorRate   share of requests answered with an error, from 0 to 1
+         * @param errorStatus HTTP status of the error responses
+         * @return this builder
+         */
+        public Builder errors(double errorRate, int errorStatus) {
+            if (errorRate < 0 || errorRate > 1)
+                throw new IllegalArgumentException("errorRate must be between 0 and 1");
+            this.errorRate = errorRate;
+            this.errorStatus = errorStatus;
+            return this;
+        }
+
+        /**
+         * @param requestsPerSecond rate above which requests are answered with 429, or 0 for no limit
+         * @return this builder
+         */
+        public Builder throttle(double requestsPerSecond) {
+            if (requestsPerSecond < 0)
+                throw new IllegalArgumentException("requestsPerSecond must not be negative");
+            this.requestsPerSecond = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * @return new {@link FaultProfile}
+         */
+        public FaultProfile build() {
+            return new FaultProfile(this);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.cxense.testfixtures;
+
+import java.util.Random;
+
+/**
+ * Distribution of injected response latency.
+ */
+public abstract class LatencyDistribution {
+    /**
+     * No injected latency.
+     */
+    public static final LatencyDistribution NONE = fixed(0);
+
+    /**
+     * @param random source of randomness
+     * @return latency in milliseconds
+     */
+    public abstract long sample(Random random);
+
+    /**
+     * @param millis latency in milliseconds
+     * @return distribution that always returns the same latency
+     */
+    public static LatencyDistribution fixed(final long millis) {
+        return new LatencyDistribution() {
+            @Override
+            public long sample(Random random) {
+                return millis;
+            }
+
+            @Override
+            public String toString() {
+                return "fixed(" + millis + ")";
+            }
+        };
+    }
+
+    /**
+     * @param minMillis minimum latency in milliseconds
+     * @param maxMillis maximum latency in milliseconds
+     * @return distribution with latency uniformly spread between min and max
+     */
+    public static LatencyDistribution uniform(final long minMillis, final long maxMillis) {
+        if (maxMillis < minMillis)
+            throw new IllegalArgumentException("maxMillis must not be less than minMillis");
+        return new LatencyDistribution() {
+            @Override
+            public long sample(Random random) {
+                return minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+            }
+
+            @Override
+            public String toString() {
+                return "uniform(" + minMillis + ", " + maxMillis + ")";
+            }
+        };
+    }
+
+    /**
+     * Long tailed distribution, close to what mobile networks show.
+     *
+     * @param medianMillis median latency in milliseconds
+     * @param sigma        spread, 0.5 gives p99 about 3 times the median
+     * @return log-normal distribution
+     */
+    public static LatencyDistribution logNormal(final long medianMillis, final double sigma) {
+        final double mu = Math.log(Math.max(1, medianMillis));
+        return new LatencyDistribution() {
+            @Override
+            public long sample(Random random) {
+                return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+            }
+
+            @Override
+            public String toString() {
+                return "logNormal(" + medianMillis + ", " + sigma + ")";
+            }
+        };
+    }
+
+    /**
+     * Parses "fixed:50", "uniform:20:200" or "lognormal:80:0.5".
+     *
+     * @param spec distribution spec
+     * @return parsed distribution
+     */
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        switch (parts[0].toLowerCase()) {
+            case "none":
+                return NONE;
+            case "fixed":
+                return fixed(Long.parseLong(parts[1]));
+            case "uniform":
+                return uniform(Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            case "lognormal":
+                return logNormal(Long.parseLong(parts[1]), Double.parseDouble(parts[2]));
+            default:
+                throw new IllegalArgumentException("Unknown latency distribution: " + spec);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.cxense.testfixtures;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Collects call latencies per endpoint and reports percentiles.
+ */
+final class LatencyRecorder {
+    private final Map<Endpoint, Series> series = new EnumMap<>(Endpoint.class);
+
+    LatencyRecorder() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            series.put(endpoint, new Series());
+        }
+    }
+
+    void record(Endpoint endpoint, long nanos, boolean success) {
+        series.get(endpoint).add(nanos, success);
+    }
+
+    String report() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US, "%-22s %8s %8s %9s %9s %9s %9s%n",
+                "endpoint", "calls", "errors", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        for (Map.Entry<Endpoint, Series> entry : series.entrySet()) {
+            long[] values = entry.getValue().sorted();
+            if (values.length == 0)
+                continue;
+            sb.append(String.format(Locale.US, "%-22s %8d %8d %9.1f %9.1f %9.1f %9.1f%n",
+                    entry.getKey(), values.length, entry.getValue().errors(),
+                    percentile(values, 0.5), percentile(values, 0.95), percentile(values, 0.99),
+                    values[values.length - 1] / 1e6));
+        }
+        return sb.toString();
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static final class Series {
+        private long[] values = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void add(long nanos, boolean success) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = nanos;
+            if (!success)
+                errors++;
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(values, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.cxense.testfixtures;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the sample flows at N concurrent virtual users against {@link CxenseStubServer} or any other base url,
+ * then prints latency percentiles per endpoint and the events queue depth over time.
+ * <p>
+ * Usage: {@code LoadDriver [--users 50] [--duration 60] [--dispatch-period 10000] [--think-time 500]
+ * [--latency lognormal:80:0.5] [--error-rate 0.01] [--throttle 0] [--sample-interval 1000] [--url http://...]}.
+ * Without {@code --url} an embedded stub server is started with the given faults.
+ */
+public final class LoadDriver {
+    private int users = 50;
+    private long durationMillis = 60_000;
+    private long dispatchPeriodMillis = 10_000;
+    private long thinkTimeMillis = 500;
+    private long sampleIntervalMillis = 1000;
+    private String baseUrl;
+    private FaultProfile faultProfile = FaultProfile.HEALTHY;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        LoadDriver driver = new LoadDriver();
+        LatencyDistribution latency = LatencyDistribution.NONE;
+        double errorRate = 0;
+        double throttle = 0;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--users":
+                    driver.users = Integer.parseInt(value);
+                    break;
+                case "--duration":
+                    driver.durationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(value));
+                    break;
+                case "--dispatch-period":
+                    driver.dispatchPeriodMillis = Long.parseLong(value);
+                    break;
+                case "--think-time":
+                    driver.thinkTimeMillis = Long.parseLong(value);
+                    break;
+                case "--sample-interval":
+                    driver.sampleIntervalMillis = Long.parseLong(value);
+                    break;
+                case "--latency":
+                    latency = LatencyDistribution.parse(value);
+                    break;
+                case "--error-rate":
+                    errorRate = Double.parseDouble(value);
+                    break;
+                case "--throttle":
+                    throttle = Double.parseDouble(value);
+                    break;
+                case "--url":
+                    driver.baseUrl = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        driver.faultProfile = new FaultProfile.Builder().latency(latency).errors(errorRate, 503).throttle(throttle).build();
+        driver.run(System.out);
+    }
+
+    /**
+     * Runs the load and prints the report.
+     *
+     * @param out where to print the report
+     * @throws IOException          if the embedded server can't start
+     * @throws InterruptedException if interrupted while waiting for the users
+     */
+    public void run(PrintStream out) throws IOException, InterruptedException {
+        CxenseStubServer server = null;
+        String url = baseUrl;
+        if (url == null) {
+            server = new CxenseStubServer(0).start();
+            server.setFaultProfile(faultProfile);
+            url = server.getBaseUrl();
+            out.println("Stub server at " + url + ", " + faultProfile);
+        }
+        LatencyRecorder recorder = new LatencyRecorder();
+        ExecutorService requests = Executors.newCachedThreadPool();
+        ExecutorService userThreads = Executors.newFixedThreadPool(users);
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        final List<VirtualUser> virtualUsers = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            VirtualUser user = new VirtualUser(i, url, requests, recorder, deadline, dispatchPeriodMillis, thinkTimeMillis);
+            virtualUsers.add(user);
+            userThreads.execute(user);
+        }
+        final List<String> timeline = new ArrayList<>();
+        final CxenseStubServer stub = server;
+        sampler.scheduleAtFixedRate(() -> {
+            int depth = 0;
+            for (VirtualUser user : virtualUsers) {
+                depth += user.getQueueDepth();
+            }
+            timeline.add(String.format(Locale.US, "%8.1f %12d %12s",
+                    (System.nanoTime() - start) / 1e9, depth, stub == null ? "-" : String.valueOf(stub.getInFlightCount())));
+        }, 0, sampleIntervalMillis, TimeUnit.MILLISECONDS);
+
+        userThreads.shutdown();
+        userThreads.awaitTermination(durationMillis + TimeUnit.MINUTES.toMillis(5), TimeUnit.MILLISECONDS);
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.SECONDS);
+        requests.shutdownNow();
+
+        out.printf(Locale.US, "%n%d users, %.1f s%n%n", users, (System.nanoTime() - start) / 1e9);
+        out.println(recorder.report());
+        out.printf(Locale.US, "%8s %12s %12s%n", "time s", "queue depth", "in flight");
+        for (String line : timeline) {
+            out.println(line);
+        }
+        if (server != null)
+            server.close();
+    }
+}
@@ -0,0 +1,181 @@
+package com.cxense.testfixtures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated app user. Replays the network traffic of the sample flows: {@code MainActivity.runMethods}
+ * and opening an animal screen ({@code AnimalActivity.onResume} / {@code onPause}). Tracked events are kept in
+ * a local queue and dispatched every dispatch period, failed events stay queued like in the SDK.
+ */
+final class VirtualUser implements Runnable {
+    private static final String[] ANIMALS = {"bear", "cat", "dog", "fox", "lion", "owl", "panda", "tiger", "wolf", "zebra"};
+
+    private final int id;
+    private final String baseUrl;
+    private final ExecutorService requests;
+    private final LatencyRecorder recorder;
+    private final long deadline;
+    private final long dispatchPeriodNanos;
+    private final long thinkTimeMillis;
+    private final Deque<String> pageViews = new ArrayDeque<>();
+    private final Deque<String> dmpEvents = new ArrayDeque<>();
+    private long dispatchedAt = System.nanoTime();
+
+    VirtualUser(int id, String baseUrl, ExecutorService requests, LatencyRecorder recorder, long deadline,
+                long dispatchPeriodMillis, long thinkTimeMillis) {
+        this.id = id;
+        this.baseUrl = baseUrl;
+        this.requests = requests;
+        this.recorder = recorder;
+        this.deadline = deadline;
+        this.dispatchPeriodNanos = TimeUnit.MILLISECONDS.toNanos(dispatchPeriodMillis);
+        this.thinkTimeMillis = thinkTimeMillis;
+    }
+
+    /**
+     * @return number of tracked events not sent yet
+     */
+    synchronized int getQueueDepth() {
+        return pageViews.size() + dmpEvents.size();
+    }
+
+    @Override
+    public void run() {
+        Random random = ThreadLocalRandom.current();
+        try {
+            while (System.nanoTime() < deadline && !Thread.currentThread().isInterrupted()) {
+                if (random.nextInt(4) == 0)
+                    runMethods();
+                else
+                    openAnimal(ANIMALS[random.nextInt(ANIMALS.length)]);
+                if (System.nanoTime() - dispatchedAt >= dispatchPeriodNanos)
+                    dispatch();
+                if (thinkTimeMillis > 0)
+                    TimeUnit.MILLISECONDS.sleep(thinkTimeMillis / 2 + random.nextInt((int) Math.max(1, thinkTimeMillis)));
+            }
+            dispatch();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runMethods() {
+        String identity = "{\"type\":\"cxd\",\"id\":\"user" + id + "\"}";
+        join(
+                call(Endpoint.USER_SEGMENTS, "{\"identities\":[" + identity + "]}"),
+                call(Endpoint.USER_SEGMENTS, "{\"identities\":[" + identity + "],\"siteGroupIds\":[\"1234567890\"]}"),
+                call(Endpoint.USER, "{\"identity\":" + identity + "}"),
+                call(Endpoint.EXTERNAL_READ, "{\"type\":\"cxd\",\"id\":\"user" + id + "\"}"),
+                call(Endpoint.EXTERNAL_READ, "{\"type\":\"cxd\"}"),
+                call(Endpoint.EXTERNAL_DELETE, identity),
+                call(Endpoint.EXTERNAL_UPDATE, "{\"type\":\"cxd\",\"id\":\"user" + id + "\",\"profile\":["
+                        + "{\"group\":\"gender\",\"item\":\"male\"},{\"group\":\"interests\",\"item\":\"football\"},"
+                        + "{\"group\":\"sports\",\"item\":\"football\"}]}")
+        );
+        synchronized (this) {
+            for (int i = 0; i < 2; i++) {
+                dmpEvents.add("{\"type\":\"tap\",\"origin\":\"cxd-origin\",\"userIds\":[" + identity + "]}");
+            }
+        }
+    }
+
+    private void openAnimal(String animal) {
+        synchronized (this) {
+            pageViews.add("/Repo/rep.gif?ver=1&typ=pgv&sid=1234567890&loc=https%3A%2F%2Fexample.com%2F" + animal);
+            dmpEvents.add("{\"type\":\"convert\",\"productId\":\"0ab24abee9a85d869b29f46c837144\"}");
+        }
+        boolean loaded = call(Endpoint.WIDGET_DATA, "{\"widgetId\":\"ffb1d2523b582f5f649df351d37928d2c108e715\","
+                + "\"context\":{\"url\":\"https://cxense.com\"}}").join();
+        if (loaded)
+            call(Endpoint.WIDGET_VISIBILITY, "{\"impressions\":[{\"clickUrl\":\"https://example.com/click/1\",\"visibility\":1}]}").join();
+        synchronized (this) {
+            pageViews.add("/Repo/rep.gif?ver=1&typ=pgv&sid=1234567890&altm=1000&loc=https%3A%2F%2Fexample.com%2F" + animal);
+        }
+    }
+
+    private void dispatch() {
+        dispatchedAt = System.nanoTime();
+        List<String> views;
+        List<String> events;
+        synchronized (this) {
+            views = new ArrayList<>(pageViews);
+            events = new ArrayList<>(dmpEvents);
+        }
+        for (String view : views) {
+            if (!send(Endpoint.PAGE_VIEW, view, null))
+                break;
+            synchronized (this) {
+                pageViews.remove(view);
+            }
+        }
+        if (!events.isEmpty() && send(Endpoint.DMP_PUSH, Endpoint.DMP_PUSH.path, "{\"events\":[" + String.join(",", events) + "]}")) {
+            synchronized (this) {
+                for (String event : events) {
+                    dmpEvents.removeFirstOccurrence(event);
+                }
+            }
+        }
+    }
+
+    private CompletableFuture<Boolean> call(final Endpoint endpoint, final String body) {
+        return CompletableFuture.supplyAsync(() -> send(endpoint, endpoint.path, body), requests);
+    }
+
+    private static void join(CompletableFuture<?>... calls) {
+        CompletableFuture.allOf(calls).join();
+    }
+
+    private boolean send(Endpoint endpoint, String pathAndQuery, String body) {
+        long start = System.nanoTime();
+        boolean success = false;
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + pathAndQuery).openConnection();
+            connection.setRequestMethod(endpoint.method);
+            connection.setConnectTimeout(10000);
+            connection.setReadTimeout(30000);
+            if (body != null) {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+                connection.setFixedLengthStreamingMode(bytes.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(bytes);
+                }
+            }
+            int status = connection.getResponseCode();
+            drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            success = status < 400;
+        } catch (IOException e) {
+            success = false;
+        } finally {
+            recorder.record(endpoint, System.nanoTime() - start, success);
+        }
+        return success;
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in == null)
+            return;
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[4096];
+            while (stream.read(buffer) != -1) {
+                // discard
+            }
+        }
+    }
+}